@@ -0,0 +1,189 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.benchmarks;
+
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Parameter;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds synthetic {@link Job}, {@link Workflow}, and {@link WorkspaceFile}
+ * objects sized like the ones seen in production so the benchmarks do not
+ * depend on a running datastore.  Objectify Refs are disabled since there
+ * is no datastore to resolve them against.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class BenchmarkFixtures {
+
+    /**
+     * Value used for text parameters, contains characters that need
+     * escaping by {@link edu.ucsd.crbs.cws.io.KeplerHtmlStringEscaper}
+     */
+    public static final String TEXT_VALUE = "slice range (0-511) & \"mask\" = 'cell*' <membrane> 100%!";
+    
+    /**
+     * Turns off Objectify Ref usage in {@link Job} and {@link Workflow}
+     */
+    public static void disableRefs(){
+        Job.REFS_ENABLED = false;
+        Workflow.REFS_ENABLED = false;
+    }
+    
+    /**
+     * Creates a {@link Workflow} with <b>numParams</b> parameters cycling 
+     * through the text, textarea, checkbox, dropdown, and file types
+     * @param id Id to set on {@link Workflow}
+     * @param numParams Number of {@link WorkflowParameter}s to add
+     * @return 
+     */
+    public static Workflow createWorkflow(long id,int numParams){
+        Workflow w = new Workflow();
+        w.setId(id);
+        w.setName("workflow"+id);
+        w.setVersion(1);
+        w.setOwner("bob");
+        w.setAuthor("Chuck Norris");
+        w.setCreateDate(new Date());
+        w.setDescription("Segments membranes from a tomogram using a "
+                + "random forest classifier then merges the results");
+        w.setReleaseNotes("-- Some new feature\n-- Fixed a bug");
+        
+        String[] types = {WorkflowParameter.Type.TEXT,
+            WorkflowParameter.Type.TEXT_AREA,
+            WorkflowParameter.Type.CHECK_BOX,
+            WorkflowParameter.Type.DROP_DOWN,
+            WorkflowParameter.Type.FILE};
+        
+        List<WorkflowParameter> params = new ArrayList<>();
+        for (int i = 0; i < numParams; i++){
+            WorkflowParameter wp = new WorkflowParameter();
+            wp.setName("param"+i);
+            wp.setDisplayName("Parameter "+i);
+            wp.setType(types[i % types.length]);
+            wp.setValue(TEXT_VALUE);
+            wp.setHelp("Help text for parameter "+i);
+            wp.setIsRequired(i % 2 == 0);
+            wp.setMaxLength(1024);
+            if (wp.getType().equals(WorkflowParameter.Type.DROP_DOWN)){
+                Map<String,String> valueMap = new LinkedHashMap<>();
+                for (int j = 0; j < 10; j++){
+                    valueMap.put("option"+j, "value"+j);
+                }
+                wp.setValueMap(valueMap);
+            }
+            params.add(wp);
+        }
+        w.setParameters(params);
+        return w;
+    }
+    
+    /**
+     * Creates a {@link Job} that runs <b>workflow</b> with a {@link Parameter}
+     * set for every {@link WorkflowParameter} in the {@link Workflow}
+     * @param id Id to set on {@link Job}
+     * @param workflow {@link Workflow} job runs
+     * @return 
+     */
+    public static Job createJob(long id,Workflow workflow){
+        Job j = new Job();
+        j.setId(id);
+        j.setName("job"+id);
+        j.setOwner("bob");
+        j.setStatus(Job.RUNNING_STATUS);
+        j.setSchedulerJobId(Long.toString(100000+id));
+        j.setCreateDate(new Date());
+        j.setSubmitDate(new Date());
+        j.setStartDate(new Date());
+        j.setHasJobBeenSubmittedToScheduler(true);
+        j.setEstimatedCpuInSeconds(3600);
+        j.setEstimatedDiskInBytes(1073741824L);
+        j.setWorkflow(workflow);
+        List<Parameter> params = new ArrayList<>();
+        if (workflow.getParameters() != null){
+            for (WorkflowParameter wp : workflow.getParameters()){
+                params.add(new Parameter(wp.getName(),TEXT_VALUE));
+            }
+        }
+        j.setParameters(params);
+        return j;
+    }
+    
+    /**
+     * Creates a list of {@link Job}s all running the same {@link Workflow}
+     * @param numJobs Number of jobs to create
+     * @param numParams Number of parameters per job
+     * @return 
+     */
+    public static List<Job> createJobs(int numJobs,int numParams){
+        Workflow w = createWorkflow(1,numParams);
+        List<Job> jobs = new ArrayList<>(numJobs);
+        for (int i = 0; i < numJobs; i++){
+            jobs.add(createJob(i+1,w));
+        }
+        return jobs;
+    }
+    
+    /**
+     * Creates a list of {@link WorkspaceFile}s that look like job outputs
+     * @param numFiles Number of files to create
+     * @return 
+     */
+    public static List<WorkspaceFile> createWorkspaceFiles(int numFiles){
+        List<WorkspaceFile> files = new ArrayList<>(numFiles);
+        for (int i = 0; i < numFiles; i++){
+            WorkspaceFile wsf = new WorkspaceFile();
+            wsf.setId((long)i+1);
+            wsf.setName("job"+i);
+            wsf.setType("job output");
+            wsf.setOwner("bob");
+            wsf.setDescription("Output of job "+i);
+            wsf.setCreateDate(new Date());
+            wsf.setSize(1048576L*i);
+            wsf.setMd5("d41d8cd98f00b204e9800998ecf8427e");
+            wsf.setDir(true);
+            wsf.setPath("/home/foo/cws/jobs/bob/"+i+"/outputs");
+            wsf.setSourceJobId((long)i+1);
+            files.add(wsf);
+        }
+        return files;
+    }
+}
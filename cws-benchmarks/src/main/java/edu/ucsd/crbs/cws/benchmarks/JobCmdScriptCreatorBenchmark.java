@@ -0,0 +1,146 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.benchmarks;
+
+import edu.ucsd.crbs.cws.cluster.JobBinaries;
+import edu.ucsd.crbs.cws.cluster.JobEmailNotificationData;
+import edu.ucsd.crbs.cws.cluster.submission.JobCmdScriptCreatorImpl;
+import edu.ucsd.crbs.cws.io.ResourceToExecutableScriptWriter;
+import edu.ucsd.crbs.cws.io.StringReplacer;
+import edu.ucsd.crbs.cws.workflow.Job;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link JobCmdScriptCreatorImpl#create(java.lang.String, edu.ucsd.crbs.cws.workflow.Job, java.lang.Long)}
+ * which renders the <b>jobCmd.sh</b> template for every submitted job.  The
+ * script is rendered into memory so disk speed does not factor into the
+ * results.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobCmdScriptCreatorBenchmark {
+
+    /**
+     * Applies {@link StringReplacer} to the cached lines of the template and
+     * appends the result to a {@link StringBuilder} instead of writing a file
+     */
+    static class InMemoryScriptWriter implements ResourceToExecutableScriptWriter {
+
+        private List<String> _templateLines;
+        private StringBuilder _script = new StringBuilder();
+        
+        @Override
+        public void writeResourceToScript(String resourcePath, 
+                String destinationScript, StringReplacer replacer) throws Exception {
+            if (_templateLines == null){
+                try (InputStream in = getClass().getResourceAsStream(resourcePath)){
+                    _templateLines = IOUtils.readLines(in);
+                }
+            }
+            _script.setLength(0);
+            for (String line : _templateLines){
+                _script.append(replacer.replace(line)).append('\n');
+            }
+        }
+        
+        public int getScriptLength(){
+            return _script.length();
+        }
+    }
+    
+    @Param({"10", "100"})
+    public int numParams;
+    
+    private JobCmdScriptCreatorImpl _creator;
+    private InMemoryScriptWriter _writer;
+    private Job _job;
+    
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.disableRefs();
+        JobBinaries jobBinaries = new JobBinaries();
+        jobBinaries.setKeplerScript("/home/foo/kepler/kepler.sh");
+        jobBinaries.setRegisterUpdateJar("/home/foo/cws/cws.jar");
+        jobBinaries.setJavaCommand("/usr/bin/java");
+        jobBinaries.setMailCommand("/bin/mail");
+        jobBinaries.setSleepCommand("/bin/sleep");
+        jobBinaries.setEchoCommand("/bin/echo");
+        jobBinaries.setRmCommand("/bin/rm");
+        jobBinaries.setKillCommand("/bin/kill");
+        jobBinaries.setRetryCount(3);
+        jobBinaries.setPostEmailSleepTimeInSeconds(10);
+        jobBinaries.setWorkspaceUpdateRetrySleepTimeInSeconds(60);
+        
+        JobEmailNotificationData emailData = new JobEmailNotificationData();
+        emailData.setProject("CRBS");
+        emailData.setPortalName("CRBS Portal");
+        emailData.setPortalURL("http://portal.crbs.ucsd.edu");
+        emailData.setHelpEmail("help@crbs.ucsd.edu");
+        emailData.setBccEmail("bcc@crbs.ucsd.edu");
+        emailData.setErrorEmail("error@crbs.ucsd.edu");
+        
+        _writer = new InMemoryScriptWriter();
+        _creator = new JobCmdScriptCreatorImpl("/home/foo/cws/workflows",
+                jobBinaries,emailData);
+        _creator.setResourceToExecutableScriptWriter(_writer);
+        _job = BenchmarkFixtures.createJob(1, 
+                BenchmarkFixtures.createWorkflow(1, numParams));
+    }
+
+    @Benchmark
+    public int renderScript() throws Exception {
+        _creator.create("/home/foo/cws/jobs/bob/1", _job, 2L);
+        return _writer.getScriptLength();
+    }
+}
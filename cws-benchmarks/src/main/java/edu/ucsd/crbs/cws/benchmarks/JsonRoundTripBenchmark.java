@@ -0,0 +1,128 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.ucsd.crbs.cws.jerseyclient.RestClientFactory;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures Jackson serialization and deserialization of {@link Job}, 
+ * {@link Workflow}, and {@link WorkspaceFile} lists using the same 
+ * {@link ObjectMapper} the command line client uses via 
+ * {@link RestClientFactory#getObjectMapper()}.  
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonRoundTripBenchmark {
+
+    @Param({"100", "5000"})
+    public int numObjects;
+    
+    @Param({"20"})
+    public int numParams;
+    
+    private ObjectMapper _mapper;
+    private List<Job> _jobs;
+    private List<WorkspaceFile> _workspaceFiles;
+    private Workflow _workflow;
+    private String _jobsJson;
+    private String _workspaceFilesJson;
+    private String _workflowJson;
+    
+    @Setup
+    public void setup() throws Exception {
+        BenchmarkFixtures.disableRefs();
+        _mapper = RestClientFactory.getObjectMapper();
+        _jobs = BenchmarkFixtures.createJobs(numObjects, numParams);
+        _workspaceFiles = BenchmarkFixtures.createWorkspaceFiles(numObjects);
+        _workflow = BenchmarkFixtures.createWorkflow(1, numParams);
+        _jobsJson = _mapper.writeValueAsString(_jobs);
+        _workspaceFilesJson = _mapper.writeValueAsString(_workspaceFiles);
+        _workflowJson = _mapper.writeValueAsString(_workflow);
+    }
+
+    @Benchmark
+    public String serializeJobs() throws Exception {
+        return _mapper.writeValueAsString(_jobs);
+    }
+    
+    @Benchmark
+    public List<Job> deserializeJobs() throws Exception {
+        return _mapper.readValue(_jobsJson, new TypeReference<List<Job>>(){});
+    }
+    
+    @Benchmark
+    public String serializeWorkspaceFiles() throws Exception {
+        return _mapper.writeValueAsString(_workspaceFiles);
+    }
+    
+    @Benchmark
+    public List<WorkspaceFile> deserializeWorkspaceFiles() throws Exception {
+        return _mapper.readValue(_workspaceFilesJson, 
+                new TypeReference<List<WorkspaceFile>>(){});
+    }
+    
+    @Benchmark
+    public Workflow workflowRoundTrip() throws Exception {
+        return _mapper.readValue(_mapper.writeValueAsString(_workflow), Workflow.class);
+    }
+    
+    @Benchmark
+    public Workflow deserializeWorkflow() throws Exception {
+        return _mapper.readValue(_workflowJson, Workflow.class);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.benchmarks;
+
+import edu.ucsd.crbs.cws.io.KeplerMomlFromKar;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory#getWorkflow()}
+ * which is invoked every time a workflow is uploaded.  The fixture is the
+ * MOML from <b>example.kar</b> (around 220kb) padded with 
+ * <b>extraEntities</b> additional actor entities to simulate the large 
+ * workflows seen in production.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MomlParsingBenchmark {
+
+    /**
+     * Kar file loaded from classpath
+     */
+    public static final String EXAMPLE_KAR = "/example.kar";
+    
+    static final String END_ENTITY = "</entity>";
+    
+    @Param({"0", "500", "5000"})
+    public int extraEntities;
+
+    private byte[] _moml;
+
+    @Setup
+    public void setup() throws Exception {
+        Logger.getLogger(WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory.class.getName()).setLevel(Level.OFF);
+        
+        File kar = File.createTempFile("example", ".kar");
+        kar.deleteOnExit();
+        try (InputStream in = getClass().getResourceAsStream(EXAMPLE_KAR);
+             FileOutputStream out = new FileOutputStream(kar)){
+            IOUtils.copy(in, out);
+        }
+        String moml;
+        try (InputStream in = KeplerMomlFromKar.getInputStreamOfWorkflowMoml(kar)){
+            moml = IOUtils.toString(in, StandardCharsets.UTF_8.name());
+        }
+        
+        //insert the padding just before the closing tag of the top level entity
+        int endPos = moml.lastIndexOf(END_ENTITY);
+        StringBuilder sb = new StringBuilder(moml.length()+(extraEntities*512));
+        sb.append(moml.substring(0, endPos));
+        for (int i = 0; i < extraEntities; i++){
+            sb.append("<entity name=\"Padding Constant ").append(i)
+              .append("\" class=\"ptolemy.actor.lib.StringConst\">\n")
+              .append("    <property name=\"value\" class=\"ptolemy.data.expr.Parameter\" value=\"$param")
+              .append(i).append("\">\n    </property>\n")
+              .append("    <property name=\"firingCountLimit\" class=\"ptolemy.data.expr.Parameter\" value=\"1\">\n    </property>\n")
+              .append("    <property name=\"_location\" class=\"ptolemy.kernel.util.Location\" value=\"{")
+              .append(i).append(", 100}\">\n    </property>\n")
+              .append("</entity>\n");
+        }
+        sb.append(moml.substring(endPos));
+        _moml = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Workflow parseWorkflow() throws Exception {
+        WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = 
+                new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
+        xmlFactory.setWorkflowXml(new ByteArrayInputStream(_moml));
+        return xmlFactory.getWorkflow();
+    }
+}
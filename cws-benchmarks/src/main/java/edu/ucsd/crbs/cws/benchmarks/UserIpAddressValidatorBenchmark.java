@@ -0,0 +1,112 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.benchmarks;
+
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.auth.UserIpAddressValidatorImpl;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link UserIpAddressValidatorImpl#isUserRequestFromValidIpAddress(edu.ucsd.crbs.cws.auth.User)}
+ * which runs on every authenticated REST request.  The allowed list mixes
+ * ipv4, ipv4 CIDR, and ipv6 CIDR entries and the request address only 
+ * matches the last entry so the whole list is examined.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserIpAddressValidatorBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int numAllowedAddresses;
+    
+    private UserIpAddressValidatorImpl _validator;
+    private User _ipv4User;
+    private User _ipv6User;
+    
+    @Setup
+    public void setup(){
+        _validator = new UserIpAddressValidatorImpl();
+        List<String> allowed = new ArrayList<>();
+        for (int i = 0; i < numAllowedAddresses - 1; i++){
+            switch (i % 3){
+                case 0:
+                    allowed.add("10."+(i % 256)+".0.0/16");
+                    break;
+                case 1:
+                    allowed.add("2001:db8:"+Integer.toHexString(i)+"::/48");
+                    break;
+                default:
+                    allowed.add("192.168."+(i % 256)+".1");
+            }
+        }
+        allowed.add("132.239.0.0/16");
+        
+        _ipv4User = new User();
+        _ipv4User.setAllowedIpAddresses(allowed);
+        _ipv4User.setIpAddress("132.239.1.2");
+        
+        _ipv6User = new User();
+        _ipv6User.setAllowedIpAddresses(allowed);
+        _ipv6User.setIpAddress("2001:db9::1");
+    }
+
+    @Benchmark
+    public boolean validateIpv4() throws Exception {
+        return _validator.isUserRequestFromValidIpAddress(_ipv4User);
+    }
+    
+    @Benchmark
+    public boolean validateIpv6() throws Exception {
+        return _validator.isUserRequestFromValidIpAddress(_ipv6User);
+    }
+}
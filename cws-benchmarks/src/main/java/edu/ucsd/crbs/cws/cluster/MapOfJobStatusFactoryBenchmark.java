@@ -0,0 +1,126 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.cluster;
+
+import edu.ucsd.crbs.cws.benchmarks.BenchmarkFixtures;
+import edu.ucsd.crbs.cws.util.RunCommandLineProcess;
+import edu.ucsd.crbs.cws.workflow.Job;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MapOfJobStatusFactoryImpl#getJobStatusMap(java.util.List)}
+ * parsing of <b>panfishstat</b> output.  This class lives in the same 
+ * package as {@link MapOfJobStatusFactoryImpl} so canned output can be
+ * injected via the package private 
+ * {@link MapOfJobStatusFactoryImpl#_runCommandLineProcess} field, the same
+ * way the unit tests do it.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapOfJobStatusFactoryBenchmark {
+
+    /**
+     * Returns the same panfishstat output for every call
+     */
+    static class CannedRunCommandLineProcess implements RunCommandLineProcess {
+        private final String _output;
+        
+        CannedRunCommandLineProcess(final String output){
+            _output = output;
+        }
+        
+        @Override
+        public void setWorkingDirectory(String workingDir) {
+        }
+
+        @Override
+        public void setEnvironmentVariables(Map<String, String> envVars) {
+        }
+
+        @Override
+        public String runCommandLineProcess(String... command) throws Exception {
+            return _output;
+        }
+    }
+    
+    @Param({"100", "2000"})
+    public int numJobs;
+    
+    private MapOfJobStatusFactoryImpl _factory;
+    private List<Job> _jobs;
+    
+    @Setup
+    public void setup(){
+        Logger.getLogger(MapOfJobStatusFactoryImpl.class.getName()).setLevel(Level.OFF);
+        BenchmarkFixtures.disableRefs();
+        _jobs = BenchmarkFixtures.createJobs(numJobs, 0);
+        String[] states = {MapOfJobStatusFactoryImpl.RUNNING,
+            MapOfJobStatusFactoryImpl.DONE,MapOfJobStatusFactoryImpl.FAILED,
+            "queued"};
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        for (Job j : _jobs){
+            sb.append(j.getSchedulerJobId()).append(MapOfJobStatusFactoryImpl.EQUAL_SIGN)
+              .append(states[i++ % states.length]).append(MapOfJobStatusFactoryImpl.NEW_LINE);
+        }
+        _factory = new MapOfJobStatusFactoryImpl("/home/foo/panfish/panfishstat");
+        _factory._runCommandLineProcess = new CannedRunCommandLineProcess(sb.toString());
+    }
+
+    @Benchmark
+    public Map<String,String> getJobStatusMap() throws Exception {
+        return _factory.getJobStatusMap(_jobs);
+    }
+}
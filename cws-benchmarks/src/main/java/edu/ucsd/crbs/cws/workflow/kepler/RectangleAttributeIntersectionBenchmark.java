@@ -0,0 +1,176 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.kepler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares matching {@link TextAttribute} and {@link ParameterAttribute}
+ * objects to the {@link RectangleAttribute} they lie in by comparing every
+ * attribute to every rectangle against doing the same with 
+ * {@link RectangleAttributeIndex}.  The synthetic canvas is a grid of 
+ * <b>numRectangles</b> boxes each holding one annotation and
+ * <b>parametersPerRectangle</b> parameters plus a few large boxes that
+ * overlap many others, similar to a heavily annotated workflow.<p/>
+ * 
+ * New attribute objects are created in each invocation since matching
+ * adds to the lists held by the rectangles.  Both benchmarks pay this cost.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RectangleAttributeIntersectionBenchmark {
+
+    static final double BOX_SIZE = 200;
+    static final double BOX_SPACING = 250;
+    static final int NUM_LARGE_BOXES = 3;
+    
+    @Param({"100", "1000", "5000"})
+    public int numRectangles;
+    
+    @Param({"4"})
+    public int parametersPerRectangle;
+    
+    private double[][] _rectangles;
+    private double[][] _texts;
+    private double[][] _parameters;
+    
+    @Setup
+    public void setup(){
+        Random random = new Random(1);
+        int columns = (int)Math.ceil(Math.sqrt(numRectangles));
+        _rectangles = new double[numRectangles + NUM_LARGE_BOXES][];
+        _texts = new double[numRectangles][];
+        _parameters = new double[numRectangles * parametersPerRectangle][];
+        int paramIndex = 0;
+        for (int i = 0; i < numRectangles; i++){
+            double x = (i % columns) * BOX_SPACING;
+            double y = (i / columns) * BOX_SPACING;
+            _rectangles[i] = new double[] {x, y, BOX_SIZE, BOX_SIZE};
+            _texts[i] = new double[] {x + 5, y + 5};
+            for (int j = 0; j < parametersPerRectangle; j++){
+                _parameters[paramIndex++] = new double[] {
+                    x + random.nextDouble() * BOX_SIZE,
+                    y + random.nextDouble() * BOX_SIZE};
+            }
+        }
+        double canvasSize = columns * BOX_SPACING;
+        for (int i = 0; i < NUM_LARGE_BOXES; i++){
+            _rectangles[numRectangles + i] = new double[] {
+                i * canvasSize / NUM_LARGE_BOXES, 0,
+                canvasSize / NUM_LARGE_BOXES, canvasSize};
+        }
+    }
+    
+    private List<RectangleAttribute> createRectangles(){
+        ArrayList<RectangleAttribute> rects = new ArrayList<>(_rectangles.length);
+        for (double[] r : _rectangles){
+            RectangleAttribute ra = new RectangleAttribute();
+            ra.setXCoordinate(r[0]);
+            ra.setYCoordinate(r[1]);
+            ra.setWidth(r[2]);
+            ra.setHeight(r[3]);
+            rects.add(ra);
+        }
+        return rects;
+    }
+    
+    private List<TextAttribute> createTextAttributes(){
+        ArrayList<TextAttribute> texts = new ArrayList<>(_texts.length);
+        for (double[] t : _texts){
+            TextAttribute ta = new TextAttribute();
+            ta.setXCoordinate(t[0]);
+            ta.setYCoordinate(t[1]);
+            texts.add(ta);
+        }
+        return texts;
+    }
+    
+    private List<ParameterAttribute> createParameterAttributes(){
+        ArrayList<ParameterAttribute> params = new ArrayList<>(_parameters.length);
+        for (double[] p : _parameters){
+            ParameterAttribute pa = new ParameterAttribute();
+            pa.setXCoordinate(p[0]);
+            pa.setYCoordinate(p[1]);
+            params.add(pa);
+        }
+        return params;
+    }
+
+    @Benchmark
+    public List<RectangleAttribute> bruteForce(){
+        List<RectangleAttribute> rects = createRectangles();
+        List<TextAttribute> texts = createTextAttributes();
+        List<ParameterAttribute> params = createParameterAttributes();
+        for (RectangleAttribute ra : rects){
+            for (TextAttribute ta : texts){
+                ra.addTextAttributeIfIntersecting(ta);
+            }
+        }
+        for (RectangleAttribute ra : rects){
+            for (ParameterAttribute pa : params){
+                ra.addParameterAttributeIfIntersecting(pa);
+            }
+        }
+        return rects;
+    }
+    
+    @Benchmark
+    public List<RectangleAttribute> rectangleAttributeIndex(){
+        List<RectangleAttribute> rects = createRectangles();
+        RectangleAttributeIndex index = new RectangleAttributeIndex(rects);
+        index.addTextAttributesToIntersectingRectangles(createTextAttributes());
+        index.addParameterAttributesToIntersectingRectangles(createParameterAttributes());
+        return rects;
+    }
+}
@@ -35,14 +35,10 @@ package edu.ucsd.crbs.cws;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import com.googlecode.objectify.ObjectifyService;
-import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
-import com.sun.jersey.core.impl.provider.entity.StringProvider;
-import com.sun.jersey.multipart.impl.MultiPartWriter;
 import static edu.ucsd.crbs.cws.App.LOGIN_ARG;
 import static edu.ucsd.crbs.cws.App.RUN_AS_ARG;
 import static edu.ucsd.crbs.cws.App.TOKEN_ARG;
@@ -54,16 +50,30 @@ import edu.ucsd.crbs.cws.cluster.JobPathImpl;
 import edu.ucsd.crbs.cws.cluster.JobStatusUpdater;
 import edu.ucsd.crbs.cws.cluster.JobSubmissionManager;
 import edu.ucsd.crbs.cws.cluster.MapOfJobStatusFactoryImpl;
+import edu.ucsd.crbs.cws.cluster.SyncMetrics;
 import edu.ucsd.crbs.cws.cluster.WorkspaceFilePathSetterImpl;
+import edu.ucsd.crbs.cws.dao.MigrationDAO;
 import edu.ucsd.crbs.cws.dao.rest.JobRestDAOImpl;
+import edu.ucsd.crbs.cws.dao.rest.MigrationRestDAOImpl;
 import edu.ucsd.crbs.cws.dao.rest.WorkflowRestDAOImpl;
 import edu.ucsd.crbs.cws.dao.rest.WorkspaceFileRestDAOImpl;
+import edu.ucsd.crbs.cws.io.FileDigester;
+import edu.ucsd.crbs.cws.io.FileDigesterImpl;
 import edu.ucsd.crbs.cws.io.KeplerMomlFromKar;
 import edu.ucsd.crbs.cws.io.WorkflowFailedParser;
 import edu.ucsd.crbs.cws.io.WorkflowFailedParserImpl;
+import edu.ucsd.crbs.cws.jerseyclient.ChunkedWorkflowFileUploaderImpl;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactory;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactoryImpl;
+import edu.ucsd.crbs.cws.jerseyclient.RestClientFactory;
+import edu.ucsd.crbs.cws.jerseyclient.WorkflowDirectoryUploaderImpl;
+import edu.ucsd.crbs.cws.jerseyclient.WorkflowFileUploaderImpl;
+import edu.ucsd.crbs.cws.loadtest.LoadTestReport;
+import edu.ucsd.crbs.cws.loadtest.LoadTestRunnerImpl;
 import edu.ucsd.crbs.cws.log.Event;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import edu.ucsd.crbs.cws.metrics.PrometheusTextFormatter;
 import edu.ucsd.crbs.cws.rest.Constants;
 import edu.ucsd.crbs.cws.util.RunCommandLineProcess;
 import edu.ucsd.crbs.cws.util.RunCommandLineProcessImpl;
@@ -78,7 +88,9 @@ import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
-import java.io.StringWriter;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -102,6 +114,10 @@ public class App {
 
     public static final String UPLOAD_WF_ARG = "uploadwf";
     
+    public static final String UPLOAD_WF_DIR_ARG = "uploadwfdir";
+    
+    public static final String UPLOAD_THREADS_ARG = "uploadthreads";
+    
     public static final String UPLOAD_FILE_ARG = "uploadfile";
     
     public static final String DOWNLOAD_FILE_ARG = "downloadfile";
@@ -130,6 +146,8 @@ public class App {
 
     public static final String SYNC_WITH_CLUSTER_ARG = "syncwithcluster";
     
+    public static final String METRICS_FILE_ARG = "metricsfile";
+    
     public static final String HELP_ARG = "h";
 
     public static final String URL_ARG = "url";
@@ -164,6 +182,11 @@ public class App {
 
     public static final String RESAVE_WORKFLOW_ARG = "resaveworkflow";
     
+    /**
+     * How often to check progress of resave of all entities on the server
+     */
+    public static final long MIGRATION_POLL_MILLIS = 5000;
+    
     public static final String PREVIEW_WORKFLOW_ARG = "preview";
     
     public static final String DESCRIPTION_ARG = "description";
@@ -189,18 +212,27 @@ public class App {
     public static final String ERROR_EMAIL_ARG="erroremail";
     
     
+    public static final String LOAD_TEST_ARG = "loadtest";
+    
+    public static final String LOAD_TEST_THREADS_ARG = "loadtestthreads";
+    
+    public static final String LOAD_TEST_RATE_ARG = "loadtestrate";
+    
+    public static final String LOAD_TEST_DURATION_ARG = "loadtestduration";
+    
+    public static final String HTTP_MAX_CONNECTIONS_ARG = "httpmaxconnections";
 
-    //public static final String LOAD_TEST = "loadtest";
     public static final String PROGRAM_HELP = "\nCRBS Workflow Service Command Line Tools "
             + "\n\nThis program provides options to run Workflow Jobs on the local cluster as well"
             + " as add new Workflows to the CRBS Workflow Service";
 
     /**
-     * CSV string of statuses for jobs that have not completed or failed
+     * CSV string of statuses for jobs that have not completed or failed.
+     * Matches {@link Job#ACTIVE_STATUSES}
      */
     public static final String NOT_COMPLETED_STATUSES = Job.IN_QUEUE_STATUS + ","
-            + Job.PAUSED_STATUS + "," + Job.PENDING_STATUS + "," + Job.RUNNING_STATUS +","+
-            ","+Job.WORKSPACE_SYNC_STATUS;
+            + Job.PAUSED_STATUS + "," + Job.PENDING_STATUS + "," + Job.RUNNING_STATUS +","
+            + Job.WORKSPACE_SYNC_STATUS;
    
 
     public static void main(String[] args) {
@@ -211,7 +243,12 @@ public class App {
             OptionParser parser = new OptionParser() {
                 {
                     accepts(UPLOAD_WF_ARG, "Add/Update Workflow").withRequiredArg().ofType(File.class).describedAs("Kepler .kar file");
-                    //accepts(LOAD_TEST,"creates lots of workflows and jobs");
+                    accepts(UPLOAD_WF_DIR_ARG, "Add/Update Workflow for every .kar file in directory skipping .kar files already registered.  Requires --"+URL_ARG+", --"+LOGIN_ARG+", and --"+TOKEN_ARG).withRequiredArg().ofType(File.class).describedAs("Directory");
+                    accepts(UPLOAD_THREADS_ARG,"Number of .kar files to upload concurrently with --"+UPLOAD_WF_DIR_ARG+" (default 4)").withRequiredArg().ofType(Integer.class).describedAs("threads");
+                    accepts(LOAD_TEST_ARG,"Runs load test that creates, lists, counts, and updates Workflows, Jobs, and Workspace files then reports latency per endpoint.  Requires --"+URL_ARG+", --"+LOGIN_ARG+", and --"+TOKEN_ARG);
+                    accepts(LOAD_TEST_THREADS_ARG,"Number of concurrent callers for --"+LOAD_TEST_ARG+" (default 4)").withRequiredArg().ofType(Integer.class).describedAs("threads");
+                    accepts(LOAD_TEST_RATE_ARG,"Target calls per second across all callers for --"+LOAD_TEST_ARG+" (default 0 which means as fast as possible)").withRequiredArg().ofType(Double.class).describedAs("calls per second");
+                    accepts(LOAD_TEST_DURATION_ARG,"Seconds to run --"+LOAD_TEST_ARG+" (default 60)").withRequiredArg().ofType(Long.class).describedAs("seconds");
                     accepts(SYNC_WITH_CLUSTER_ARG, "Submits & Synchronizes Workflow Jobs on local cluster with CRBS Workflow Webservice.  Requires --"+
                             PROJECT_ARG+" --"+PORTALNAME_ARG+" --"+PORTAL_URL_ARG+" --"+HELP_EMAIL_ARG).withRequiredArg().ofType(String.class).describedAs("URL");
                     accepts(GEN_OLD_KEPLER_XML_ARG,"Generates version 1.x kepler xml for given workflow").withRequiredArg().ofType(String.class).describedAs("wfid or .kar file");
@@ -235,7 +272,7 @@ public class App {
                     accepts(RUN_AS_ARG, "User to run as (for power accounts that can run as other users)").withRequiredArg().ofType(String.class).describedAs("runas");
                     accepts(OWNER_ARG,"Sets owner when creating Workspace file and Workflow").withRequiredArg().ofType(String.class).describedAs("username");
                     accepts(JOB_ID_ARG,"Sets source job id for Workspace file when used with --"+UPLOAD_FILE_ARG+" and --"+REGISTER_FILE_ARG).withRequiredArg().ofType(Long.class).describedAs("Job Id");
-                    accepts(MD5_ARG,"Sets md5 for Workspace file when used with --"+UPLOAD_FILE_ARG+" and --"+REGISTER_FILE_ARG).withRequiredArg().ofType(String.class).describedAs("MD5 message digest");
+                    accepts(MD5_ARG,"Sets md5 for Workspace file when used with --"+UPLOAD_FILE_ARG+" and --"+REGISTER_FILE_ARG+". Computed from file for --"+UPLOAD_FILE_ARG+" if unset").withRequiredArg().ofType(String.class).describedAs("MD5 message digest");
                     accepts(SIZE_ARG,"Sets size in bytes for Workspace file when used with --"+UPLOAD_FILE_ARG+" and --"+REGISTER_FILE_ARG).withRequiredArg().ofType(Long.class).describedAs("Size of file/dir in bytes");
                     accepts(RESAVE_WORKSPACEFILE_ARG,"Resaves Workspace file").withRequiredArg().ofType(Long.class).describedAs("WorkspaceFile Id or -1 to resave all");
                     accepts(RESAVE_JOB_ARG,"Resaves Job").withRequiredArg().ofType(Long.class).describedAs("Job Id or -1 to resave all");
@@ -254,6 +291,8 @@ public class App {
                     accepts(BCC_EMAIL_ARG,"Blind Carbon copy email address Used with --"+SYNC_WITH_CLUSTER_ARG).withRequiredArg().ofType(String.class);    
                     accepts(WORKSPACE_FILE_FAILED_ARG,"Denotes whether workspacefile failed (true) or not (false).  Used with --"+UPDATE_PATH_ARG).withRequiredArg().ofType(Boolean.class).describedAs("false = success and true = failed");
                     accepts(ERROR_EMAIL_ARG,"Email to receive notifications if errors are encountered.  Used with --"+SYNC_WITH_CLUSTER_ARG).withRequiredArg().ofType(String.class);
+                    accepts(METRICS_FILE_ARG,"Writes sync metrics in Prometheus text format to this file for the node exporter textfile collector.  Used with --"+SYNC_WITH_CLUSTER_ARG).withRequiredArg().ofType(File.class).describedAs("File ending in .prom");
+                    accepts(HTTP_MAX_CONNECTIONS_ARG,"Number of idle HTTP keep-alive connections to hold per host when talking to the REST service (default "+RestClientFactory.DEFAULT_MAX_CONNECTIONS+" unless -D"+RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY+" is set)").withRequiredArg().ofType(Integer.class).describedAs("connections");
                     accepts(HELP_ARG).forHelp();
                 }
             };
@@ -270,6 +309,7 @@ public class App {
             if (optionSet.has(HELP_ARG) ||
                     (!optionSet.has(SYNC_WITH_CLUSTER_ARG) && 
                      !optionSet.has(UPLOAD_WF_ARG)) &&
+                     !optionSet.has(UPLOAD_WF_DIR_ARG) &&
                      !optionSet.has(EXAMPLE_JSON_ARG) && 
                      !optionSet.has(UPLOAD_FILE_ARG) &&
                      !optionSet.has(GET_WORKSPACE_FILE_INFO_ARG) &&
@@ -282,11 +322,15 @@ public class App {
                      !optionSet.has(GEN_OLD_KEPLER_XML_ARG) &&
                      !optionSet.has(GET_JOB_ARG) &&
                      !optionSet.has(GET_WORKSPACE_FILE_ARG) &&
-                     !optionSet.has(GET_WORKFLOW_ARG)) {
+                     !optionSet.has(GET_WORKFLOW_ARG) &&
+                     !optionSet.has(LOAD_TEST_ARG)) {
                 System.out.println(PROGRAM_HELP + "\n");
                 parser.printHelpOn(System.out);
                 System.exit(0);
             }
+            
+            RestClientFactory.configureConnectionPool(
+                    (Integer)optionSet.valueOf(HTTP_MAX_CONNECTIONS_ARG));
 
             if (optionSet.has(EXAMPLE_JSON_ARG)) {
 
@@ -310,6 +354,22 @@ public class App {
                 System.exit(0);
             }
 
+            if (optionSet.has(UPLOAD_WF_DIR_ARG)){
+                failIfOptionSetMissingURLOrLoginOrToken(optionSet, "--"+UPLOAD_WF_DIR_ARG+" flag");
+                int numFailed = uploadWorkflowDirectory(optionSet);
+                if (numFailed > 0){
+                    System.err.println(numFailed+" .kar file(s) failed to upload");
+                    System.exit(1);
+                }
+                System.exit(0);
+            }
+            
+            if (optionSet.has(LOAD_TEST_ARG)){
+                failIfOptionSetMissingURLOrLoginOrToken(optionSet,"--"+LOAD_TEST_ARG+" flag");
+                runLoadTest(optionSet);
+                System.exit(0);
+            }
+
             MultivaluedMapFactory multivaluedMapFactory = new MultivaluedMapFactoryImpl();
             
             if (optionSet.has(GEN_OLD_KEPLER_XML_ARG)){
@@ -341,9 +401,9 @@ public class App {
                 }
                     
                 VersionOneWorkflowXmlWriter xmlWriter = new VersionOneWorkflowXmlWriter();
-                StringWriter sw = new StringWriter();
-                xmlWriter.write(sw, w);
-                System.out.println(sw.toString());
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+                xmlWriter.write(out, w);
+                System.out.println();
                 System.exit(0);
                     
             }
@@ -374,15 +434,7 @@ public class App {
                 Long workspaceId = (Long)optionSet.valueOf(RESAVE_WORKSPACEFILE_ARG);
                 if (workspaceId == -1){
                     System.out.println("Resaving all workspace files");
-                    List<WorkspaceFile> wsfList = workspaceFileDAO.getWorkspaceFiles(null,null,null, null,null);
-                    if (wsfList != null){
-                        System.out.println("Found "+wsfList.size()+
-                                " workspace files to resave");
-                        for (WorkspaceFile wsf : wsfList){
-                            System.out.println("WorkspaceFile Id: "+wsf.getId());
-                            workspaceFileDAO.resave(wsf.getId());
-                        }
-                    }
+                    runMigration(optionSet,MigrationDAO.WORKSPACEFILE_KIND);
                 }
                 else {
                     workspaceFileDAO.resave(workspaceId);
@@ -399,14 +451,7 @@ public class App {
                 Long jobId = (Long)optionSet.valueOf(RESAVE_JOB_ARG);
                 if (jobId == -1){
                     System.out.println("Resaving all jobs");
-                    List<Job> jobList = jobDAO.getJobs(null,null,null, true, true,Boolean.TRUE);
-                    if (jobList != null){
-                        System.out.println("Found "+jobList.size()+" jobs to resave");
-                        for (Job j : jobList){
-                            System.out.println("job id: "+j.getId());
-                            jobDAO.resave(j.getId());
-                        }
-                    }
+                    runMigration(optionSet,MigrationDAO.JOB_KIND);
                 }
                 else {
                     jobDAO.resave(jobId);
@@ -423,16 +468,7 @@ public class App {
                 Long workflowId = (Long)optionSet.valueOf(RESAVE_WORKFLOW_ARG);
                 if (workflowId == -1){
                     System.out.println("Resaving all workflows");
-                    List<Workflow> workflowList = workflowDAO.getAllWorkflows(true,
-                            Boolean.TRUE);
-                    
-                    if (workflowList != null){
-                        System.out.println("Found "+workflowList.size()+" workflow(s) to resave");
-                        for (Workflow w : workflowList){
-                            System.out.println("workflow id: "+w.getId());
-                            workflowDAO.resave(w.getId());
-                        }
-                    }
+                    runMigration(optionSet,MigrationDAO.WORKFLOW_KIND);
                 }
                 else {
                     workflowDAO.resave(workflowId);
@@ -565,6 +601,13 @@ public class App {
                 JobStatusUpdater updater = new JobStatusUpdater(jobDAO, 
                         jobStatusFactory,workflowFailedParser,jobPath);
                 updater.updateJobs();
+                
+                if (optionSet.has(METRICS_FILE_ARG)){
+                    SyncMetrics.setLastRunTimestamp();
+                    File metricsFile = (File)optionSet.valueOf(METRICS_FILE_ARG);
+                    new PrometheusTextFormatter().writeTextFile(metricsFile, 
+                            MetricsRegistry.getDefault().getMetrics());
+                }
 
                 System.exit(0);
             }
@@ -623,6 +666,8 @@ public class App {
                         w.setOwner((String) optionSet.valueOf(OWNER_ARG));
                     }
 
+                    w.setMd5(Files.hash(workflowFile, Hashing.md5()).toString());
+                    
                     ObjectMapper om = new ObjectMapper();
                     if (parentWfId != null) {
                         w.setId(parentWfId);
@@ -635,21 +680,15 @@ public class App {
                         System.out.println("---------------------------------------");
 
                     } else {
+                        String restURL = postURL;
                         postURL = new StringBuilder().append(postURL).append(Constants.SLASH).
                         append(Constants.REST_PATH).append(Constants.SLASH).
                         append(Constants.WORKFLOWS_PATH).toString();
 
-                        ClientConfig cc = new DefaultClientConfig();
-                        cc.getClasses().add(StringProvider.class);
-                        cc.getClasses().add(MultiPartWriter.class);
-                        Client client = Client.create(cc);
-                        
-                        client.setFollowRedirects(true);
-                        WebResource resource = client.resource(postURL);
+                        User u = getUserFromOptionSet(optionSet);
+                        WebResource resource = RestClientFactory.getWebResource(postURL, u);
                         String workflowAsJson = om.writeValueAsString(w);
 
-                        User u = getUserFromOptionSet(optionSet);
-                        client.addFilter(new HTTPBasicAuthFilter(u.getLogin(),u.getToken()));
                         MultivaluedMap queryParams = multivaluedMapFactory.getMultivaluedMap(u);
 
                         String response = resource.queryParams(queryParams).type(MediaType.APPLICATION_JSON_TYPE)
@@ -663,7 +702,7 @@ public class App {
                                     + ow.writeValueAsString(workflowRes));
                         }
 
-                        uploadWorkflowFile(workflowRes, workflowFile);
+                        uploadWorkflowFile(workflowRes, workflowFile, restURL, u);
                     }
                 }
             }
@@ -678,10 +717,15 @@ public class App {
     }
     
     public static Workflow getWorkflowFromFile(File workflowFile) throws Exception {
-        WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
-        xmlFactory.setWorkflowXml(new BufferedInputStream(KeplerMomlFromKar.getInputStreamOfWorkflowMoml(workflowFile)));
-
-        return xmlFactory.getWorkflow();
+        InputStream momlStream = KeplerMomlFromKar.getInputStreamOfWorkflowMoml(workflowFile);
+        if (momlStream == null){
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(momlStream)){
+            WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
+            xmlFactory.setWorkflowXml(in);
+            return xmlFactory.getWorkflow();
+        }
     }
     
     public static void getJobAsJson(OptionSet optionSet) throws Exception {
@@ -817,6 +861,10 @@ public class App {
         if (optionSet.has(MD5_ARG)){
             wsp.setMd5((String)optionSet.valueOf(MD5_ARG));
         }
+        else if (uploadFile == true && file.isFile()){
+            FileDigester digester = new FileDigesterImpl();
+            wsp.setMd5(digester.getMd5(file));
+        }
         if (optionSet.has(DESCRIPTION_ARG)){
             wsp.setDescription((String)optionSet.valueOf(DESCRIPTION_ARG));
         }
@@ -857,6 +905,13 @@ public class App {
             return;
         }
         
+        if (workspaceFileRes.getUploadURL() == null &&
+                workspaceFileRes.getBlobKey() != null){
+            System.out.println("Contents match existing upload with md5 "+
+                    workspaceFileRes.getMd5()+" skipping upload");
+            return;
+        }
+        
         if (workspaceFileRes.getUploadURL() == null) {
             throw new Exception("No upload url found for workflow!!!"
                     + ow.writeValueAsString(workspaceFileRes));
@@ -864,6 +919,77 @@ public class App {
         uploadWorkspaceFile(workspaceFileRes, file);
     }
     
+    /**
+     * Starts resave of all entities of <b>kind</b> on the server via 
+     * migrations REST service and prints progress until it is done
+     * @param optionSet
+     * @param kind
+     * @throws Exception 
+     */
+    public static void runMigration(OptionSet optionSet,final String kind) throws Exception {
+        MigrationRestDAOImpl migrationDAO = new MigrationRestDAOImpl();
+        migrationDAO.setUser(getUserFromOptionSet(optionSet));
+        migrationDAO.setRestURL((String)optionSet.valueOf(URL_ARG));
+        MigrationStatus status = migrationDAO.start(kind, null);
+        long generation = status.getGeneration();
+        while (status.isRunning() && status.getError() == null){
+            Thread.sleep(MIGRATION_POLL_MILLIS);
+            status = migrationDAO.getMigrationStatus(kind);
+            if (status.getGeneration() != generation){
+                System.err.println("Resave of "+kind+" was restarted by another caller");
+                return;
+            }
+            System.out.println("Resaved "+status.getResavedCount()+" "+kind+
+                    " at "+String.format("%.1f",status.getEntitiesPerSecond())+
+                    " per second");
+        }
+        if (status.getError() != null){
+            System.err.println("Resave of "+kind+" hit error, it will be retried: "+
+                    status.getError());
+            return;
+        }
+        System.out.println("Done resaving "+status.getResavedCount()+" "+kind);
+    }
+    
+    /**
+     * Runs {@link LoadTestRunnerImpl} against REST service set in 
+     * {@link #URL_ARG} and writes {@link LoadTestReport} to standard out
+     * @param optionSet
+     * @throws Exception 
+     */
+    public static void runLoadTest(OptionSet optionSet) throws Exception {
+        User u = getUserFromOptionSet(optionSet);
+        String url = (String)optionSet.valueOf(URL_ARG);
+        
+        JobRestDAOImpl jobDAO = new JobRestDAOImpl();
+        jobDAO.setUser(u);
+        jobDAO.setRestURL(url);
+        
+        WorkflowRestDAOImpl workflowDAO = new WorkflowRestDAOImpl();
+        workflowDAO.setUser(u);
+        workflowDAO.setRestURL(url);
+        
+        WorkspaceFileRestDAOImpl workspaceFileDAO = new WorkspaceFileRestDAOImpl();
+        workspaceFileDAO.setUser(u);
+        workspaceFileDAO.setRestURL(url);
+        
+        String owner = u.getLoginToRunJobAs() != null ? u.getLoginToRunJobAs() : u.getLogin();
+        LoadTestRunnerImpl runner = new LoadTestRunnerImpl(jobDAO,workflowDAO,
+                workspaceFileDAO,owner);
+        if (optionSet.has(LOAD_TEST_THREADS_ARG)){
+            runner.setNumberOfThreads((Integer)optionSet.valueOf(LOAD_TEST_THREADS_ARG));
+        }
+        if (optionSet.has(LOAD_TEST_RATE_ARG)){
+            runner.setOperationsPerSecond((Double)optionSet.valueOf(LOAD_TEST_RATE_ARG));
+        }
+        if (optionSet.has(LOAD_TEST_DURATION_ARG)){
+            runner.setDurationInSeconds((Long)optionSet.valueOf(LOAD_TEST_DURATION_ARG));
+        }
+        System.out.println("Running load test against "+url);
+        LoadTestReport report = runner.run();
+        report.write(System.out);
+    }
+    
     public static void failIfOptionSetMissingURLOrLoginOrToken(OptionSet optionSet,final String message){
         failIfOptionSetMissingURL(optionSet,message);
         failIfOptionSetMissingLoginOrToken(optionSet,message);
@@ -911,31 +1037,54 @@ public class App {
     }
     
     /**
-     * Using curl this method uploads via POST a {@link Workflow} file to REST
-     * service
+     * Uploads {@link Workflow} file to REST service in chunks using 
+     * {@link ChunkedWorkflowFileUploaderImpl} falling back to a multipart 
+     * POST via {@link WorkflowFileUploaderImpl} if the service does not 
+     * support chunked uploads
      * @param w
      * @param workflowFile
+     * @param restURL Base URL of REST service
+     * @param u
      * @throws Exception 
      */
-    public static void uploadWorkflowFile(Workflow w, File workflowFile) throws Exception {
+    public static void uploadWorkflowFile(Workflow w, File workflowFile,
+            final String restURL,User u) throws Exception {
 
-        RunCommandLineProcess procRunner = new RunCommandLineProcessImpl();
-        System.out.println("TODO SWITCH THIS TO USE JERSEY CLIENT!!!\nAttempting to run this command: curl -i -X POST --form '" + 
-                w.getId().toString() + "=@" + workflowFile.getAbsolutePath() + "' "
-                + w.getWorkflowFileUploadURL());
+        System.out.println("Uploading " + workflowFile.getAbsolutePath() + " to "
+                + restURL);
 
-        String res = procRunner.runCommandLineProcess("curl",
-                "-i", "-X", "POST", "--form",
-                w.getId().toString() + "=@" + workflowFile.getAbsolutePath(),
-                w.getWorkflowFileUploadURL());
+        String res = new ChunkedWorkflowFileUploaderImpl(restURL,u,
+                new WorkflowFileUploaderImpl()).uploadWorkflowFile(w, workflowFile);
         
         System.out.println("\n");
-        System.out.println("--------------- OUTPUT FROM CURL ----------------");
+        System.out.println("--------------- OUTPUT FROM UPLOAD ----------------");
         System.out.println(res);
-        System.out.println("--------------- END OF OUTPUT FROM CURL ---------");
+        System.out.println("--------------- END OF OUTPUT FROM UPLOAD ---------");
 
     }
     
+    /**
+     * Creates Workflows and uploads .kar files in directory set by 
+     * {@link #UPLOAD_WF_DIR_ARG} using {@link WorkflowDirectoryUploaderImpl}
+     * @param optionSet
+     * @return Number of .kar files that failed
+     * @throws Exception 
+     */
+    public static int uploadWorkflowDirectory(OptionSet optionSet) throws Exception {
+        User u = getUserFromOptionSet(optionSet);
+        WorkflowRestDAOImpl workflowDAO = new WorkflowRestDAOImpl();
+        workflowDAO.setUser(u);
+        workflowDAO.setRestURL((String)optionSet.valueOf(URL_ARG));
+        
+        WorkflowDirectoryUploaderImpl uploader = new WorkflowDirectoryUploaderImpl(workflowDAO,
+                new ChunkedWorkflowFileUploaderImpl((String)optionSet.valueOf(URL_ARG),u,
+                        new WorkflowFileUploaderImpl()),(String)optionSet.valueOf(OWNER_ARG));
+        if (optionSet.has(UPLOAD_THREADS_ARG)){
+            uploader.setNumberOfThreads((Integer)optionSet.valueOf(UPLOAD_THREADS_ARG));
+        }
+        return uploader.uploadWorkflows((File)optionSet.valueOf(UPLOAD_WF_DIR_ARG));
+    }
+    
     public static void uploadPreviewWorkflowFile(final String url,Workflow w) throws Exception {
 
         
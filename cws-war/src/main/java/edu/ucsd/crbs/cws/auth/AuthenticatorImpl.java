@@ -2,6 +2,7 @@ package edu.ucsd.crbs.cws.auth;
 
 import edu.ucsd.crbs.cws.dao.UserDAO;
 import edu.ucsd.crbs.cws.dao.objectify.UserObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
 import edu.ucsd.crbs.cws.rest.Constants;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -21,6 +22,13 @@ public class AuthenticatorImpl implements Authenticator {
     
     public static final String AUTHORIZATION_HEADER = "authorization";
     
+    public static final String AUTH_SECONDS = "cws_auth_seconds";
+    public static final String AUTH_TOTAL = "cws_auth_total";
+    public static final String RESULT_LABEL = "result";
+    public static final String AUTHORIZED_RESULT = "authorized";
+    public static final String DENIED_RESULT = "denied";
+    public static final String ERROR_RESULT = "error";
+    
     UserDAO _userDAO = new UserObjectifyDAOImpl();
     UserIpAddressValidator _ipAddressValidator;
     AuthStringDecoder _decoder;
@@ -128,6 +136,27 @@ public class AuthenticatorImpl implements Authenticator {
      */
     @Override
     public User authenticate(HttpServletRequest request) throws Exception {
+        long start = System.nanoTime();
+        String result = ERROR_RESULT;
+        try {
+            User user = authenticateRequest(request);
+            if (user != null && user.getPermissions() != Permission.NONE){
+                result = AUTHORIZED_RESULT;
+            }
+            else {
+                result = DENIED_RESULT;
+            }
+            return user;
+        }
+        finally {
+            MetricsRegistry registry = MetricsRegistry.getDefault();
+            registry.timer(AUTH_SECONDS,"Time to authenticate request").recordSince(start);
+            registry.counter(AUTH_TOTAL,"Number of authentication attempts",
+                    RESULT_LABEL,result).inc();
+        }
+    }
+    
+    private User authenticateRequest(HttpServletRequest request) throws Exception {
         if (request == null) {
             throw new Exception("Request is null");
         }
@@ -191,5 +191,10 @@ public class Permission {
      * Permission to delete all WorkspaceFiles
      */
      public static final int DELETE_ALL_WORKSPACEFILES = 1 << 29;
+     
+    /**
+     * Permission to view application metrics
+     */
+    public static final int VIEW_METRICS = 1 << 30;
 }
 
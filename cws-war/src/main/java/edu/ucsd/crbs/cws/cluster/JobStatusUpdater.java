@@ -84,11 +84,22 @@ public class JobStatusUpdater {
      * @throws Exception
      */
     public void updateJobs() throws Exception {
+        long start = System.nanoTime();
+        try {
+            updateUncompletedJobs();
+        }
+        finally {
+            SyncMetrics.getStageTimer(SyncMetrics.UPDATE_STAGE).recordSince(start);
+        }
+    }
+    
+    private void updateUncompletedJobs() throws Exception {
 
         String error;
         String detailedError;
         _log.log(Level.INFO, "Updating status for uncompleted jobs...");
-        List<Job> jobs = _jobDAO.getJobs(null, App.NOT_COMPLETED_STATUSES, false, false, false,null);
+        List<Job> jobs = _jobDAO.getJobs(null, App.NOT_COMPLETED_STATUSES, false, true, true,null);
+        SyncMetrics.getBacklogGauge(SyncMetrics.UPDATE_STAGE).set(jobs == null ? 0 : jobs.size());
         if (jobs != null && jobs.isEmpty() == false) {
 
             _log.log(Level.INFO, " found {0} jobs to possibly update", jobs.size());
@@ -145,6 +145,16 @@ public class JobSubmissionManager {
      * @throws Exception If there was a problem creating or submitting the Job
      */
     public void submitJobs() throws Exception {
+        long start = System.nanoTime();
+        try {
+            submitJobsFoundInDataStore();
+        }
+        finally {
+            SyncMetrics.getStageTimer(SyncMetrics.SUBMIT_STAGE).recordSince(start);
+        }
+    }
+    
+    private void submitJobsFoundInDataStore() throws Exception {
         // @TODO Need to move the logic inside the for loop to another object
         // cause this is doing way too much stuff
         
@@ -154,6 +164,7 @@ public class JobSubmissionManager {
         WorkspaceFilePathSetterStatus status = null;
         String error = null;
         String detailedError = null;
+        SyncMetrics.getBacklogGauge(SyncMetrics.SUBMIT_STAGE).set(jobs == null ? 0 : jobs.size());
         if (jobs != null) {
             _log.log(Level.INFO, "Found {0} job(s) need to be submitted", 
                     jobs.size());
@@ -105,6 +105,17 @@ public class MapOfJobStatusFactoryImpl implements MapOfJobStatusFactory {
      */
     @Override
     public Map<String, String> getJobStatusMap(List<Job> jobs) throws Exception {
+        long start = System.nanoTime();
+        try {
+            SyncMetrics.getBacklogGauge(SyncMetrics.STAT_STAGE).set(jobs == null ? 0 : jobs.size());
+            return getJobStatusMapFromPanfish(jobs);
+        }
+        finally {
+            SyncMetrics.getStageTimer(SyncMetrics.STAT_STAGE).recordSince(start);
+        }
+    }
+    
+    private Map<String, String> getJobStatusMapFromPanfish(List<Job> jobs) throws Exception {
         
         // @TODO need to handle case where there are 2,000+ jobs to get status for
         // cause the bash command line will fail with too many arguments errors
@@ -116,8 +127,15 @@ public class MapOfJobStatusFactoryImpl implements MapOfJobStatusFactory {
             return jobStatusMap;
         }
         
-        String result = _runCommandLineProcess.runCommandLineProcess(_panfishStat,
+        long callStart = System.nanoTime();
+        String result;
+        try {
+            result = _runCommandLineProcess.runCommandLineProcess(_panfishStat,
                 STATUSOFJOBID,delimStringOfJobIds);
+        }
+        finally {
+            SyncMetrics.getSchedulerCallTimer(SyncMetrics.PANFISHSTAT_COMMAND).recordSince(callStart);
+        }
        
         if (result == null){
             return jobStatusMap;
@@ -35,6 +35,7 @@ package edu.ucsd.crbs.cws.cluster;
 
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.List;
 
 /**
  * Defines methods to create and update {@link WorkspaceFile}s that are output of
@@ -53,4 +54,23 @@ public interface OutputWorkspaceFileUtil {
      */
     public WorkspaceFile createAndRegisterJobOutputAsWorkspaceFile(Job j,final String outputDirectory) throws Exception;
     
+    /**
+     * Creates, but does <b>not</b> register, a {@link WorkspaceFile} 
+     * representing the output of {@link Job} <b>j</b>
+     * @param j
+     * @param outputDirectory
+     * @return
+     * @throws Exception 
+     */
+    public WorkspaceFile createJobOutputWorkspaceFile(Job j,final String outputDirectory) throws Exception;
+    
+    /**
+     * Creates and registers the output of each {@link Job} in <b>jobs</b> as
+     * a new {@link WorkspaceFile} with a single batch insert
+     * @param jobs
+     * @return {@link WorkspaceFile}s in same order as <b>jobs</b>
+     * @throws Exception 
+     */
+    public List<WorkspaceFile> createAndRegisterJobOutputsAsWorkspaceFiles(List<Job> jobs) throws Exception;
+    
 }
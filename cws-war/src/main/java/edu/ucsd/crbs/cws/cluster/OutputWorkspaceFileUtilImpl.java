@@ -36,6 +36,7 @@ package edu.ucsd.crbs.cws.cluster;
 import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -67,6 +68,42 @@ public class OutputWorkspaceFileUtilImpl implements OutputWorkspaceFileUtil {
      */
     @Override
     public WorkspaceFile createAndRegisterJobOutputAsWorkspaceFile(Job j, String outputDirectory) throws Exception {
+        WorkspaceFile wsp = createJobOutputWorkspaceFile(j, outputDirectory);
+        _workspaceFileDAO.insert(wsp, false);
+        return wsp;
+    }
+    
+    /**
+     * Creates a new {@link WorkspaceFile} for each {@link Job} in <b>jobs</b>
+     * and inserts them all into the data store with one call to 
+     * {@link WorkspaceFileDAO#insertAll(java.util.List)}
+     * @param jobs {@link Job}s to register output {@link WorkspaceFile}s for
+     * @return
+     * @throws Exception If any {@link Job} is missing information in which 
+     *         case nothing is inserted
+     */
+    @Override
+    public List<WorkspaceFile> createAndRegisterJobOutputsAsWorkspaceFiles(List<Job> jobs) throws Exception {
+        if (jobs == null){
+            throw new IllegalArgumentException("Jobs cannot be null");
+        }
+        List<WorkspaceFile> workspaceFiles = new ArrayList<>();
+        for (Job j : jobs){
+            workspaceFiles.add(createJobOutputWorkspaceFile(j, null));
+        }
+        return _workspaceFileDAO.insertAll(workspaceFiles);
+    }
+    
+    /**
+     * Creates a new {@link WorkspaceFile} for output of {@link Job} <b>j</b>
+     * without inserting it into the data store
+     * @param j {@link Job} that we are creating the output {@link WorkspaceFile} for
+     * @param outputDirectory Path to output directory for job, can be null in which case it is not set
+     * @return
+     * @throws Exception 
+     */
+    @Override
+    public WorkspaceFile createJobOutputWorkspaceFile(Job j, String outputDirectory) throws Exception {
         if (j == null){
             throw new IllegalArgumentException("Job cannot be null");
         }
@@ -100,8 +137,6 @@ public class OutputWorkspaceFileUtilImpl implements OutputWorkspaceFileUtil {
         if (outputDirectory != null){
             wsp.setPath(outputDirectory);
         }
-        
-        _workspaceFileDAO.insert(wsp, false);
         return wsp;
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.cluster;
+
+import edu.ucsd.crbs.cws.metrics.Gauge;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import edu.ucsd.crbs.cws.metrics.Timer;
+
+/**
+ * Names and helpers for the metrics recorded by the cluster sync agent.  
+ * Each run of --syncwithcluster goes through the submit, stat, update,
+ * and download stages and the time spent in each along with the number
+ * of jobs waiting on each stage is recorded.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class SyncMetrics {
+    
+    public static final String STAGE_SECONDS = "cws_sync_stage_seconds";
+    public static final String BACKLOG_JOBS = "cws_sync_backlog_jobs";
+    public static final String SCHEDULER_CALL_SECONDS = "cws_scheduler_call_seconds";
+    public static final String LAST_RUN_TIMESTAMP = "cws_sync_last_run_timestamp_seconds";
+    
+    public static final String STAGE_LABEL = "stage";
+    public static final String COMMAND_LABEL = "command";
+    
+    public static final String SUBMIT_STAGE = "submit";
+    public static final String STAT_STAGE = "stat";
+    public static final String UPDATE_STAGE = "update";
+    public static final String DOWNLOAD_STAGE = "download";
+    
+    public static final String PANFISHCAST_COMMAND = "panfishcast";
+    public static final String PANFISHSTAT_COMMAND = "panfishstat";
+    
+    /**
+     * Gets {@link Timer} for time spent in <b>stage</b> 
+     * @param stage
+     * @return 
+     */
+    public static Timer getStageTimer(final String stage){
+        return MetricsRegistry.getDefault().timer(STAGE_SECONDS,
+                "Time spent in sync agent stage",STAGE_LABEL,stage);
+    }
+    
+    /**
+     * Gets {@link Gauge} for number of jobs found by <b>stage</b> on
+     * most recent run
+     * @param stage
+     * @return 
+     */
+    public static Gauge getBacklogGauge(final String stage){
+        return MetricsRegistry.getDefault().gauge(BACKLOG_JOBS,
+                "Number of jobs found by sync agent stage on last run",
+                STAGE_LABEL,stage);
+    }
+    
+    /**
+     * Gets {@link Timer} for calls to scheduler <b>command</b>
+     * @param command
+     * @return 
+     */
+    public static Timer getSchedulerCallTimer(final String command){
+        return MetricsRegistry.getDefault().timer(SCHEDULER_CALL_SECONDS,
+                "Time spent in scheduler command",COMMAND_LABEL,command);
+    }
+    
+    /**
+     * Sets gauge denoting when sync agent last ran to current time
+     */
+    public static void setLastRunTimestamp(){
+        MetricsRegistry.getDefault().gauge(LAST_RUN_TIMESTAMP,
+                "Time in seconds since epoch sync agent last ran")
+                .set(System.currentTimeMillis()/1000.0);
+    }
+}
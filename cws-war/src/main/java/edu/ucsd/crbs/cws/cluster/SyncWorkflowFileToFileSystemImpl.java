@@ -86,9 +86,16 @@ public class SyncWorkflowFileToFileSystemImpl implements SyncWorkflowFileToFileS
             return;
         }
         
-        File wFile = _fileDownloader.downloadFile(_getURL+"/workflowfile",
+        long start = System.nanoTime();
+        File wFile;
+        try {
+            wFile = _fileDownloader.downloadFile(_getURL+"/workflowfile",
                 Constants.WFID_PARAM,w.getId().toString(),
                 _userLogin, _token);
+        }
+        finally {
+            SyncMetrics.getStageTimer(SyncMetrics.DOWNLOAD_STAGE).recordSince(start);
+        }
         
         if (wFile == null){
             throw new Exception("No file obtained from web request to base url: "+_getURL);
@@ -33,6 +33,7 @@
 
 package edu.ucsd.crbs.cws.cluster.submission;
 
+import edu.ucsd.crbs.cws.cluster.SyncMetrics;
 import edu.ucsd.crbs.cws.cluster.submission.JobCmdScriptSubmitter;
 import edu.ucsd.crbs.cws.workflow.Job;
 import java.io.BufferedReader;
@@ -72,6 +73,17 @@ public class JobCmdScriptSubmitterImpl implements JobCmdScriptSubmitter {
     @Override
     public String submit(final String cmdScript,
             Job j) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return runPanfishCast(cmdScript, j);
+        }
+        finally {
+            SyncMetrics.getSchedulerCallTimer(SyncMetrics.PANFISHCAST_COMMAND).recordSince(start);
+        }
+    }
+    
+    private String runPanfishCast(final String cmdScript,
+            Job j) throws Exception {
 
         String outputDir = new File(cmdScript).getParentFile().getAbsolutePath();
 
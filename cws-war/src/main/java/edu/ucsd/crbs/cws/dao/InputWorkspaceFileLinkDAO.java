@@ -52,6 +52,14 @@ public interface InputWorkspaceFileLinkDAO {
      */
     public InputWorkspaceFileLink insert(InputWorkspaceFileLink workspaceFileLink) throws Exception;
     
+    /**
+     * Adds all <b>workspaceFileLinks</b> to data store in a single batch
+     * @param workspaceFileLinks Objects to add to datastore
+     * @return <b>workspaceFileLinks</b> with ids set
+     * @throws Exception 
+     */
+    public List<InputWorkspaceFileLink> insertAll(List<InputWorkspaceFileLink> workspaceFileLinks) throws Exception;
+    
     /**
      * Resaves {@link InputWorkspaceFileLink} whose {@link InputWorkspaceFileLink#getId() matches 
      * <b>inputWorkspaceFileLinkId</b>
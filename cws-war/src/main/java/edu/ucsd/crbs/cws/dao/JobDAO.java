@@ -35,6 +35,7 @@ package edu.ucsd.crbs.cws.dao;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.Workflow;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -73,9 +74,12 @@ public interface JobDAO {
      * @param status If non null only Jobs with matching status will be returned
      * @param notSubmittedToScheduler If non null only Jobs matching submitted
      * to scheduler flag will be returned
-     * @param noParams True means to exclude Parameters in returned Jobs
-     * @param noWorkflowParams True means to exclude WorkflowParameters in
-     * Workflow objects returned with Jobs
+     * @param noParams True means to exclude Parameters in returned Jobs. For
+     * the data store this also skips loading detailed error, help text, and
+     * phase list
+     * @param noWorkflowParams True means the Workflow of each Job only has
+     * the id, name, and version from {@link Job#getWorkflowSummary()} and
+     * the full Workflow is not loaded
      * @return
      * @throws Exception
      */
@@ -96,6 +100,20 @@ public interface JobDAO {
             final Boolean notSubmittedToScheduler,
             final Boolean showDeleted) throws Exception;
     
+    /**
+     * Gets {@link Job}s that are not deleted and were created on or after
+     * <b>since</b>.  {@link Job#getParameters()} are not returned and the
+     * Workflow of each Job is built from {@link Job#getWorkflowSummary()}
+     *
+     * @param owner If non null only {@link Job}s owned by <b>owner</b> are
+     *              returned
+     * @param since
+     * @return
+     * @throws Exception
+     */
+    public List<Job> getJobsCreatedSince(final String owner,
+            final Date since) throws Exception;
+    
     /**
      * Inserts a new {@link Job} into data store skipping {@link Workflow} Check
      *
@@ -105,6 +123,17 @@ public interface JobDAO {
      * @throws Exception
      */
     public Job insert(Job j, boolean skipWorkflowCheck) throws Exception;
+    
+    /**
+     * Inserts all <b>jobs</b> into data store.  Ids are allocated in bulk and
+     * the {@link Job}s along with their input links are saved in batches.
+     *
+     * @param jobs
+     * @param skipWorkflowCheck
+     * @return <b>jobs</b> with ids set
+     * @throws Exception
+     */
+    public List<Job> insertAll(List<Job> jobs, boolean skipWorkflowCheck) throws Exception;
 
     /**
      * Updates existing job with values passed in.
@@ -128,10 +157,45 @@ public interface JobDAO {
             final Boolean deleted, final String error, final String detailedError) throws Exception;
 
     
+    /**
+     * Updates <b>job</b>, already loaded from the data store, with values 
+     * passed in that are <b>non</b> <code>null</code>.  Nothing is written 
+     * if none of the values differ from those in <b>job</b>.  If the 
+     * {@link Job} in the data store was saved after <b>job</b> was loaded, 
+     * as denoted by {@link Job#getVersion()}, the values are applied to the 
+     * stored {@link Job} instead.
+     *
+     * @param job {@link Job} as loaded via {@link #getJobById(java.lang.String)}
+     * @param status
+     * @param estCpu
+     * @param estWallTime
+     * @param estDisk
+     * @param submitDate
+     * @param startDate
+     * @param finishDate
+     * @param submittedToScheduler
+     * @param schedulerJobId
+     * @param deleted
+     * @param error
+     * @param detailedError
+     * @return Updated {@link Job} or null if it no longer exists in the
+     * data store
+     * @throws Exception
+     */
+    public Job update(final Job job, final String status, Long estCpu, 
+            Long estWallTime, Long estDisk, Long submitDate, Long startDate, 
+            Long finishDate, Boolean submittedToScheduler, 
+            final String schedulerJobId, final Boolean deleted, 
+            final String error, final String detailedError) throws Exception;
+
+    
     /**
      * Updates existing {@link Job} with values set in <b>job</b> 
-     * @param job
+     * @param job {@link Job} with the {@link Job#getVersion()} it was 
+     *            loaded with
      * @return
+     * @throws VersionConflictException if {@link Job#getVersion()} does not
+     *         match the version in the data store
      * @throws Exception 
      */
     public Job update(final Job job) throws Exception;
@@ -0,0 +1,88 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao;
+
+import edu.ucsd.crbs.cws.workflow.report.JobSummary;
+
+/**
+ * Maintains counts of {@link edu.ucsd.crbs.cws.workflow.Job}s by owner and
+ * status and total size of output 
+ * {@link edu.ucsd.crbs.cws.workflow.WorkspaceFile}s by owner so they can
+ * be read without querying every object.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public interface JobSummaryDAO {
+    
+    /**
+     * Adds <b>delta</b> to number of jobs with <b>owner</b> and <b>status</b>.
+     * If called within a transaction the count is updated as part of it and
+     * errors are thrown, otherwise errors are logged and not thrown so 
+     * callers are not affected.
+     * @param owner
+     * @param status
+     * @param delta 
+     */
+    public void incrementJobCount(final String owner,final String status,
+            long delta);
+    
+    /**
+     * Adds <b>delta</b> to total bytes of output workspace files for 
+     * <b>owner</b>.  Errors are handled as in 
+     * {@link #incrementJobCount(java.lang.String, java.lang.String, long)}
+     * @param owner
+     * @param delta 
+     */
+    public void incrementOutputBytes(final String owner,long delta);
+    
+    /**
+     * Gets current counts
+     * @param owner If non null only counts for this owner are returned
+     * @return 
+     * @throws Exception 
+     */
+    public JobSummary getJobSummary(final String owner) throws Exception;
+    
+    /**
+     * Recalculates all counts from the {@link edu.ucsd.crbs.cws.workflow.Job}s
+     * and {@link edu.ucsd.crbs.cws.workflow.WorkspaceFile}s in the data store
+     * correcting existing counts.  This is needed for data saved before 
+     * counts were kept or if counts have drifted.  Implementations may do 
+     * this in the background in which case the counts returned are those
+     * before the rebuild.
+     * @return counts
+     * @throws Exception 
+     */
+    public JobSummary rebuild() throws Exception;
+}
@@ -0,0 +1,98 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao;
+
+import edu.ucsd.crbs.cws.log.MigrationStatus;
+import java.util.List;
+
+/**
+ * Runs and reports on server side resaves of every entity of a given kind.
+ * Resaving is needed whenever indexes or stored representation of an entity
+ * changes.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public interface MigrationDAO {
+    
+    /**
+     * Kind name for {@link edu.ucsd.crbs.cws.workflow.Job}
+     */
+    public static final String JOB_KIND = "Job";
+    
+    /**
+     * Kind name for {@link edu.ucsd.crbs.cws.workflow.WorkspaceFile}
+     */
+    public static final String WORKSPACEFILE_KIND = "WorkspaceFile";
+    
+    /**
+     * Kind name for {@link edu.ucsd.crbs.cws.workflow.Workflow}
+     */
+    public static final String WORKFLOW_KIND = "Workflow";
+    
+    /**
+     * Kind name for {@link edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink}
+     */
+    public static final String INPUTWORKSPACEFILELINK_KIND = "InputWorkspaceFileLink";
+    
+    /**
+     * Kind name for {@link edu.ucsd.crbs.cws.auth.User}
+     */
+    public static final String USER_KIND = "User";
+    
+    /**
+     * Starts resave of all entities of <b>kind</b>.  Any migration of the 
+     * same kind already running is superseded and starts over.
+     * @param kind One of the <b>_KIND</b> constants in this interface
+     * @param batchSize Number of entities to resave at a time, if null a 
+     *        default is used
+     * @return Status of newly started migration
+     * @throws Exception If <b>kind</b> is not known
+     */
+    public MigrationStatus start(final String kind,Integer batchSize) throws Exception;
+    
+    /**
+     * Gets status of migration of <b>kind</b>
+     * @param kind
+     * @return Status or null if no migration of <b>kind</b> was ever started
+     * @throws Exception 
+     */
+    public MigrationStatus getMigrationStatus(final String kind) throws Exception;
+    
+    /**
+     * Gets status of all migrations ever started
+     * @return
+     * @throws Exception 
+     */
+    public List<MigrationStatus> getMigrationStatuses() throws Exception;
+}
@@ -0,0 +1,70 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+package edu.ucsd.crbs.cws.dao;
+
+/**
+ * Thrown when an object passed to an update has a version that does not
+ * match the version in the data store, meaning someone else saved it after
+ * it was loaded.  The caller should load the object again, reapply its 
+ * changes and retry.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class VersionConflictException extends Exception {
+    
+    private final long _expectedVersion;
+    private final long _storedVersion;
+    
+    /**
+     * Constructor
+     * @param kind Kind of object being updated
+     * @param id Id of object being updated
+     * @param expectedVersion Version passed in with the update
+     * @param storedVersion Version in the data store
+     */
+    public VersionConflictException(final String kind,final Long id,
+            long expectedVersion,long storedVersion){
+        super(kind+" "+id+" has version "+storedVersion+
+                " but update was made to version "+expectedVersion);
+        _expectedVersion = expectedVersion;
+        _storedVersion = storedVersion;
+    }
+
+    public long getExpectedVersion() {
+        return _expectedVersion;
+    }
+
+    public long getStoredVersion() {
+        return _storedVersion;
+    }
+}
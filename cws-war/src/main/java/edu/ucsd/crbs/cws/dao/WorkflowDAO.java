@@ -57,6 +57,17 @@ public interface WorkflowDAO {
     public Workflow getWorkflowById(final String workflowId,
             User user) throws Exception;
     
+    /**
+     * Loads {@link Workflow} with id <b>workflowId</b> as stored, without
+     * fetching the drop down values of its parameters as 
+     * {@link #getWorkflowById(java.lang.String, edu.ucsd.crbs.cws.auth.User)}
+     * does.  Meant for callers that only need to check owner or blob key
+     * @param workflowId
+     * @return Workflow object or null if none is found
+     * @throws Exception If there was an error retrieving the Workflow
+     */
+    public Workflow getWorkflowByIdWithoutDropDownFetch(long workflowId) throws Exception;
+    
     /**
      * Gets all workflows from data store
      * @param omitWorkflowParams If set to true then WorkflowParameters will be set to null for every Workflow object returned
@@ -67,9 +78,20 @@ public interface WorkflowDAO {
             final Boolean showDeleted) throws Exception;
     
     /**
-     * Adds a new workflow to the data store.  If the Id of the Workflow is set then the
-     * parent field of this Workflow object is set to that Id and this Workflow is given
-     * a new Id.
+     * Gets only the highest version {@link Workflow} for each distinct 
+     * {@link Workflow#getName()}
+     * @param omitWorkflowParams If set to true then WorkflowParameters will be set to null for every Workflow object returned
+     * @param showDeleted If null or false, deleted {@link Workflow}s are omitted
+     * @return List of Workflow objects if Workflows are found otherwise an empty list
+     * @throws Exception If there was an error retrieving the Workflows
+     */
+    public List<Workflow> getLatestWorkflows(boolean omitWorkflowParams,
+            final Boolean showDeleted) throws Exception;
+    
+    /**
+     * Adds a new workflow to the data store.  The Workflow is always given a new Id,
+     * any Id already set is ignored, and its parent field is set to the Workflow
+     * with the same name and highest version.
      * 
      * @param w Workflow to add to data store
      * @return Workflow object with new id added
@@ -78,6 +78,30 @@ public interface WorkspaceFileDAO {
      * @throws Exception 
      */
     public WorkspaceFile insert(WorkspaceFile wsp,boolean generateUploadURL) throws Exception;
+    
+    /**
+     * Gets a non deleted {@link WorkspaceFile} owned by <b>owner</b> whose 
+     * {@link WorkspaceFile#getMd5()} matches <b>md5</b> and whose contents 
+     * are stored in the blob store.  Only {@link WorkspaceFile}s of the same
+     * owner are considered since the md5 is supplied by the client and 
+     * matching on it alone would hand out other users' blobs.
+     * @param md5 md5 checksum of the contents
+     * @param owner owner of the {@link WorkspaceFile}
+     * @return {@link WorkspaceFile} with {@link WorkspaceFile#getBlobKey()} set
+     *         or <code>null</code> if none found or either parameter is null
+     * @throws Exception 
+     */
+    public WorkspaceFile getWorkspaceFileWithBlobByMd5(final String md5,
+            final String owner) throws Exception;
+    
+    /**
+     * Adds all <b>workspaceFiles</b> to the data store in a single batch.  No
+     * upload URLs are generated.
+     * @param workspaceFiles
+     * @return <b>workspaceFiles</b> with ids set to values from datastore
+     * @throws Exception 
+     */
+    public List<WorkspaceFile> insertAll(List<WorkspaceFile> workspaceFiles) throws Exception;
 
     
     /**
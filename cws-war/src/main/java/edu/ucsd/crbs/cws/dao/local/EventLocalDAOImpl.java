@@ -0,0 +1,84 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.dao.EventDAO;
+import edu.ucsd.crbs.cws.log.Event;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implements {@link EventDAO} on top of a {@link LocalEntityStore}
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class EventLocalDAOImpl implements EventDAO {
+
+    private static final Logger _log
+            = Logger.getLogger(EventLocalDAOImpl.class.getName());
+    
+    private final LocalEntityStore<Event> _events;
+    
+    public EventLocalDAOImpl(LocalEntityStore<Event> events){
+        _events = events;
+    }
+    
+    @Override
+    public Event insert(Event event) throws Exception {
+        if (event == null){
+            throw new NullPointerException("Event is null");
+        }
+        if (event.getDate() == null){
+            event.setDate(new Date());
+        }
+        if (event.getId() == null){
+            event.setId(_events.allocateId());
+        }
+        _events.put(event.getId(), event);
+        return event;
+    }
+
+    @Override
+    public Event neverComplainInsert(Event event) {
+        Event res = null;
+        try {
+            res = insert(event);
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING, "Unable to save Event", ex);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
+import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implements {@link InputWorkspaceFileLinkDAO} on top of a 
+ * {@link LocalEntityStore}.  The {@link Job} and {@link WorkspaceFile} of
+ * each {@link InputWorkspaceFileLink} are stored, and returned, with only
+ * their ids set.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class InputWorkspaceFileLinkLocalDAOImpl implements InputWorkspaceFileLinkDAO {
+
+    private final LocalEntityStore<InputWorkspaceFileLink> _links;
+    
+    public InputWorkspaceFileLinkLocalDAOImpl(LocalEntityStore<InputWorkspaceFileLink> links){
+        _links = links;
+    }
+    
+    @Override
+    public InputWorkspaceFileLink insert(InputWorkspaceFileLink workspaceFileLink) throws Exception {
+        if (workspaceFileLink == null){
+            throw new NullPointerException("InputWorkspaceFileLink is null");
+        }
+        List<InputWorkspaceFileLink> links = new ArrayList<>();
+        links.add(workspaceFileLink);
+        insertAll(links);
+        return workspaceFileLink;
+    }
+
+    @Override
+    public List<InputWorkspaceFileLink> insertAll(List<InputWorkspaceFileLink> workspaceFileLinks) throws Exception {
+        if (workspaceFileLinks == null){
+            throw new NullPointerException("InputWorkspaceFileLink list is null");
+        }
+        for (InputWorkspaceFileLink link : workspaceFileLinks){
+            if (link.getId() == null){
+                link.setId(_links.allocateId());
+            }
+        }
+        save(workspaceFileLinks);
+        return workspaceFileLinks;
+    }
+
+    @Override
+    public InputWorkspaceFileLink resave(long inputWorkspaceFileLinkId) throws Exception {
+        synchronized(_links){
+            InputWorkspaceFileLink link = _links.get(inputWorkspaceFileLinkId);
+            if (link == null){
+                return null;
+            }
+            List<InputWorkspaceFileLink> links = new ArrayList<>();
+            links.add(link);
+            save(links);
+            return link;
+        }
+    }
+
+    @Override
+    public List<InputWorkspaceFileLink> getByJobId(Long jobId, Boolean showDeleted) throws Exception {
+        return _links.get(getIds(LocalBackend.JOB_ID_INDEX,jobId,showDeleted));
+    }
+
+    @Override
+    public List<InputWorkspaceFileLink> getByWorkspaceFileId(Long workspaceFileId,
+            Boolean showDeleted) throws Exception {
+        return _links.get(getIds(LocalBackend.WORKSPACEFILE_ID_INDEX,
+                workspaceFileId,showDeleted));
+    }
+
+    @Override
+    public int getByWorkspaceFileIdCount(Long workspaceFileId, Boolean showDeleted) throws Exception {
+        return getIds(LocalBackend.WORKSPACEFILE_ID_INDEX,workspaceFileId,
+                showDeleted).size();
+    }
+
+    @Override
+    public InputWorkspaceFileLink getById(Long inputWorkspaceFileLinkId) throws Exception {
+        return _links.get(inputWorkspaceFileLinkId);
+    }
+
+    @Override
+    public List<InputWorkspaceFileLink> getInputWorkspaceFileLinks(Boolean showDeleted) throws Exception {
+        if (showDeleted == null || showDeleted == false){
+            return _links.get(_links.getIds(LocalBackend.DELETED_INDEX,false));
+        }
+        return _links.get(_links.getIds());
+    }
+    
+    private Set<Long> getIds(final String indexName,Long id,Boolean showDeleted){
+        synchronized(_links){
+            Set<Long> ids = _links.getIds(indexName, id);
+            if (showDeleted == null || showDeleted == false){
+                ids.retainAll(_links.getIds(LocalBackend.DELETED_INDEX,false));
+            }
+            return ids;
+        }
+    }
+    
+    /**
+     * Saves <b>links</b> storing only the ids of the {@link Job} and
+     * {@link WorkspaceFile}
+     * @param links {@link InputWorkspaceFileLink}s which must have ids
+     * @throws Exception 
+     */
+    private void save(List<InputWorkspaceFileLink> links) throws Exception {
+        Map<Long,InputWorkspaceFileLink> toSave = new LinkedHashMap<>();
+        Map<InputWorkspaceFileLink,Job> jobs = new IdentityHashMap<>();
+        Map<InputWorkspaceFileLink,WorkspaceFile> workspaceFiles = new IdentityHashMap<>();
+        for (InputWorkspaceFileLink link : links){
+            jobs.put(link, link.getJob());
+            workspaceFiles.put(link, link.getWorkspaceFile());
+            link.setJob(LocalBackend.getJobStub(link.getJob()));
+            link.setWorkspaceFile(LocalBackend.getWorkspaceFileStub(link.getWorkspaceFile()));
+            toSave.put(link.getId(), link);
+        }
+        try {
+            _links.putAll(toSave);
+        }
+        finally {
+            for (InputWorkspaceFileLink link : links){
+                link.setJob(jobs.get(link));
+                link.setWorkspaceFile(workspaceFiles.get(link));
+            }
+        }
+    }
+}
@@ -0,0 +1,501 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.VersionConflictException;
+import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Parameter;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowSummary;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
+import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implements {@link JobDAO} on top of a {@link LocalEntityStore}.  The 
+ * {@link Workflow} of a {@link Job} is stored as an id and loaded from
+ * the {@link Workflow} store when the {@link Job} is loaded.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobLocalDAOImpl implements JobDAO {
+
+    private static final Logger _log
+            = Logger.getLogger(JobLocalDAOImpl.class.getName());
+    
+    private static final String COMMA = ",";
+    
+    private final LocalEntityStore<Job> _jobs;
+    private final LocalEntityStore<Workflow> _workflows;
+    private final InputWorkspaceFileLinkDAO _inputWorkspaceFileLinkDAO;
+    private WorkspaceFileDAO _workspaceFileDAO;
+    
+    public JobLocalDAOImpl(LocalEntityStore<Job> jobs,
+            LocalEntityStore<Workflow> workflows,
+            InputWorkspaceFileLinkDAO inputWorkspaceFileLinkDAO){
+        _jobs = jobs;
+        _workflows = workflows;
+        _inputWorkspaceFileLinkDAO = inputWorkspaceFileLinkDAO;
+    }
+    
+    public void setWorkspaceFileDAO(WorkspaceFileDAO workspaceFileDAO){
+        _workspaceFileDAO = workspaceFileDAO;
+    }
+    
+    @Override
+    public Job getJobById(final String jobId) throws Exception {
+        long jobIdAsLong;
+        
+        if (jobId == null){
+            throw new NullPointerException("jobId cannot be null");
+        }
+        try {
+            jobIdAsLong = Long.parseLong(jobId);
+        }
+        catch(NumberFormatException nfe){
+            throw new Exception("jobId must be numeric, error received when "
+                    + "parsing : "+nfe.getMessage(),nfe);
+        }
+        Job job = _jobs.get(jobIdAsLong);
+        if (job == null){
+            return null;
+        }
+        loadWorkflows(Arrays.asList(job));
+        return job;
+    }
+
+    @Override
+    public Job getJobByIdAndUser(String jobId, String user) throws Exception {
+        if (user == null){
+            throw new NullPointerException("User cannot be null");
+        }
+        Job job = getJobById(jobId);
+        if (job == null){
+            _log.log(Level.INFO,"No job found with id {0}",jobId);
+            return null;
+        }
+        if (user.equals(job.getOwner())){
+            return job;
+        }
+        _log.log(Level.INFO,"User {0} does not match owner of job {1}",
+                new Object[]{user,job.getOwner()});
+        return null;
+    }
+    
+    /**
+     * Intersects the secondary indexes to find ids of {@link Job}s matching
+     * the constraints, see {@link JobDAO#getJobs} for description of 
+     * parameters
+     */
+    private Set<Long> getJobIds(String owner, String status,
+           Boolean notSubmittedToScheduler,final Boolean showDeleted){
+        synchronized(_jobs){
+            Set<Long> ids;
+            if (showDeleted == null || showDeleted == false){
+                ids = _jobs.getIds(LocalBackend.DELETED_INDEX, false);
+            }
+            else {
+                ids = _jobs.getIds();
+            }
+            if (status != null){
+                ids.retainAll(_jobs.getIds(LocalBackend.STATUS_INDEX, 
+                        Arrays.asList(status.split(COMMA))));
+            }
+            if (owner != null){
+                ids.retainAll(_jobs.getIds(LocalBackend.OWNER_INDEX, owner));
+            }
+            if (notSubmittedToScheduler != null && 
+                    notSubmittedToScheduler == true){
+                ids.retainAll(_jobs.getIds(
+                        LocalBackend.SUBMITTED_TO_SCHEDULER_INDEX, false));
+            }
+            return ids;
+        }
+    }
+
+    @Override
+    public List<Job> getJobs(String owner, String status, 
+            Boolean notSubmittedToScheduler, boolean noParams, 
+            boolean noWorkflowParams, Boolean showDeleted) throws Exception {
+        
+        List<Job> jobs = _jobs.get(getJobIds(owner,status,
+                notSubmittedToScheduler,showDeleted));
+        if (noWorkflowParams == true){
+            useWorkflowSummaries(jobs);
+        }
+        else {
+            loadWorkflows(jobs);
+        }
+        
+        for (Job j : jobs) {
+            if (noParams == true) {
+                j.setParameters(null);
+            }
+            if (noWorkflowParams == true && !j.isWorkflowSummaryOnly()) {
+                Workflow w = j.getWorkflow();
+                if (w != null) {
+                    w.setParameters(null);
+                    w.setParentWorkflow(null);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    @Override
+    public List<Job> getJobsCreatedSince(final String owner,
+            final Date since) throws Exception {
+        if (since == null){
+            throw new NullPointerException("Date cannot be null");
+        }
+        List<Job> jobs = new ArrayList<>();
+        for (Job j : _jobs.get(getJobIds(owner,null,null,false))){
+            if (j.getCreateDate() != null && !j.getCreateDate().before(since)){
+                j.setParameters(null);
+                jobs.add(j);
+            }
+        }
+        useWorkflowSummaries(jobs);
+        return jobs;
+    }
+
+    @Override
+    public int getJobsCount(String owner, String status, 
+            Boolean notSubmittedToScheduler, Boolean showDeleted) throws Exception {
+        return getJobIds(owner,status,notSubmittedToScheduler,showDeleted).size();
+    }
+
+    @Override
+    public Job insert(Job job, boolean skipWorkflowCheck) throws Exception {
+        if (job == null) {
+            throw new NullPointerException("Job is null");
+        }
+        List<Job> jobs = new ArrayList<>();
+        jobs.add(job);
+        insertAll(jobs,skipWorkflowCheck);
+        return job;
+    }
+
+    @Override
+    public List<Job> insertAll(List<Job> jobs, boolean skipWorkflowCheck) throws Exception {
+        if (jobs == null) {
+            throw new NullPointerException("Job list is null");
+        }
+        if (jobs.isEmpty()){
+            return jobs;
+        }
+        if (skipWorkflowCheck == false) {
+            for (Job job : jobs){
+                if (job.getWorkflow() == null) {
+                    throw new NullPointerException("Job Workflow cannot be null");
+                }
+                if (job.getWorkflow().getId() == null || job.getWorkflow().getId() <= 0) {
+                    throw new Exception("Job Workflow id is either null or 0 or less which is not valid");
+                }
+                Workflow workflow = _workflows.get(job.getWorkflow().getId());
+                if (workflow == null){
+                    throw new Exception("Unable to load Workflow ("+
+                        job.getWorkflow().getId()+") for Job");
+                }
+                job.setWorkflowSummary(new WorkflowSummary(workflow));
+            }
+        }
+        else {
+            for (Job job : jobs){
+                if (job.getWorkflow() != null){
+                    job.setWorkflowSummary(new WorkflowSummary(job.getWorkflow()));
+                }
+            }
+        }
+        Date createDate = new Date();
+        List<InputWorkspaceFileLink> fileLinks = new ArrayList<>();
+        for (Job job : jobs){
+            if (job.getId() == null){
+                job.setId(_jobs.allocateId());
+            }
+            if (job.getCreateDate() == null) {
+                job.setCreateDate(createDate);
+            }
+            job.updateStatusTimeline(null, job.getCreateDate());
+            fileLinks.addAll(getInputWorkspaceFileLinks(job));
+        }
+        save(jobs);
+        _inputWorkspaceFileLinkDAO.insertAll(fileLinks);
+        return jobs;
+    }
+    
+    /**
+     * Builds {@link InputWorkspaceFileLink} objects for every {@link Parameter}
+     * in <b>job</b> that refers to a {@link WorkspaceFile}
+     * @param job {@link Job} which must already have an id
+     * @return List of links which is empty if there are none
+     */
+    private List<InputWorkspaceFileLink> getInputWorkspaceFileLinks(Job job){
+        List<InputWorkspaceFileLink> fileLinks = new ArrayList<>();
+        if (job.getParameters() == null){
+            return fileLinks;
+        }
+        for (Parameter p : job.getParameters()){
+            if (p.isIsWorkspaceId()){
+                InputWorkspaceFileLink fileLink = new InputWorkspaceFileLink();
+                fileLink.setJob(job);
+                fileLink.setParameterName(p.getName());
+                WorkspaceFile wsf = new WorkspaceFile();
+                wsf.setId(Long.valueOf(p.getValue()));
+                fileLink.setWorkspaceFile(wsf);
+                fileLinks.add(fileLink);
+            }
+        }
+        return fileLinks;
+    }
+
+    /**
+     * @deprecated Please use
+     * {@link JobDAO#update(edu.ucsd.crbs.cws.workflow.Job)}
+     */
+    @Override
+    public Job update(long jobId, String status, Long estCpu, Long estWallTime,
+            Long estDisk, Long submitDate, Long startDate, Long finishDate, 
+            Boolean submittedToScheduler, String schedulerJobId, 
+            Boolean deleted, String error, String detailedError) throws Exception {
+        synchronized(_jobs){
+            Job tempJob = getJobById(Long.toString(jobId));
+            if (tempJob == null){
+                return null;
+            }
+            return update(tempJob, status, estCpu, estWallTime, estDisk, 
+                    submitDate, startDate, finishDate, submittedToScheduler, 
+                    schedulerJobId, deleted, error, detailedError);
+        }
+    }
+
+    @Override
+    public Job update(Job job, String status, Long estCpu, Long estWallTime,
+            Long estDisk, Long submitDate, Long startDate, Long finishDate, 
+            Boolean submittedToScheduler, String schedulerJobId, 
+            Boolean deleted, String error, String detailedError) throws Exception {
+        if (job == null){
+            throw new NullPointerException("Job cannot be null");
+        }
+        if (job.getId() == null){
+            throw new Exception("Id must be set for Job");
+        }
+        if (!job.updateWithChanges(status, estCpu, estWallTime, estDisk, 
+                submitDate, startDate, finishDate, submittedToScheduler, 
+                schedulerJobId, deleted, error, detailedError)){
+            return job;
+        }
+        synchronized(_jobs){
+            Job storedJob = _jobs.get(job.getId());
+            if (storedJob == null){
+                return null;
+            }
+            if (storedJob.getVersion() == job.getVersion()){
+                return update(job);
+            }
+            if (!storedJob.updateWithChanges(status, estCpu, estWallTime, 
+                    estDisk, submitDate, startDate, finishDate, 
+                    submittedToScheduler, schedulerJobId, deleted, error, 
+                    detailedError)){
+                return storedJob;
+            }
+            return update(storedJob);
+        }
+    }
+
+    @Override
+    public Job update(Job job) throws Exception {
+        if (job == null){
+            throw new NullPointerException("Job cannot be null");
+        }
+        if (job.getId() == null){
+            throw new Exception("Id must be set for Job");
+        }
+        synchronized(_jobs){
+            Job storedJob = _jobs.get(job.getId());
+            if (storedJob != null && storedJob.getVersion() != job.getVersion()){
+                throw new VersionConflictException("Job",job.getId(),
+                        job.getVersion(),storedJob.getVersion());
+            }
+            job.updateStatusTimeline(storedJob, new Date());
+            if (job.getWorkflowSummary() == null && storedJob != null){
+                job.setWorkflowSummary(storedJob.getWorkflowSummary());
+            }
+            job.setVersion(storedJob == null ? 1 : storedJob.getVersion()+1);
+            save(Arrays.asList(job));
+        }
+        return job;
+    }
+
+    @Override
+    public Job resave(long jobId) throws Exception {
+        synchronized(_jobs){
+            Job job = getJobById(Long.toString(jobId));
+            if (job == null){
+                _log.log(Level.WARNING,"Job {0} not found",jobId);
+                throw new Exception("There was an error resaving job with id: "+jobId);
+            }
+            return update(job);
+        }
+    }
+
+    @Override
+    public List<Job> getJobsWithWorkflowId(long workflowId) throws Exception {
+        List<Job> jobs = _jobs.get(_jobs.getIds(LocalBackend.WORKFLOW_ID_INDEX,
+                workflowId));
+        loadWorkflows(jobs);
+        return jobs;
+    }
+
+    @Override
+    public int getJobsWithWorkflowIdCount(long workflowId) throws Exception {
+        return _jobs.getIds(LocalBackend.WORKFLOW_ID_INDEX,workflowId).size();
+    }
+
+    @Override
+    public DeleteReport delete(long jobId, Boolean permanentlyDelete) throws Exception {
+        DeleteReportImpl dwr = new DeleteReportImpl();
+        dwr.setId(jobId);
+        dwr.setSuccessful(false);
+        dwr.setReason("Unknown");
+        
+        Job job = getJobById(Long.toString(jobId));
+        if (job == null){
+            dwr.setReason("Job not found");
+            return dwr;
+        }
+        
+        List<WorkspaceFile> wsfList = _workspaceFileDAO.getWorkspaceFilesBySourceJobId(jobId);
+        if (wsfList != null && !wsfList.isEmpty()){
+            if (wsfList.size() != 1){
+                dwr.setReason("Found "+wsfList.size()+
+                        " WorkspaceFiles as output for Job, but expected 1");
+                return dwr;
+            }
+            DeleteReport dr = _workspaceFileDAO.delete(wsfList.get(0).getId(), 
+                        permanentlyDelete, true);
+            if (dr.isSuccessful() == false){
+                dwr.setReason("Unable to delete WorkspaceFile ("+dr.getId()+
+                        ") : "+dr.getReason());
+                return dwr;
+            }
+        }
+        if (permanentlyDelete != null && permanentlyDelete == true){
+            _jobs.delete(jobId);
+        }
+        else {
+            job.setDeleted(true);
+            update(job);
+        }
+        dwr.setSuccessful(true);
+        dwr.setReason(null);
+        return dwr;
+    }
+    
+    /**
+     * Saves <b>jobs</b> storing only the id of each {@link Workflow}
+     * @param jobs {@link Job}s which must have ids
+     * @throws Exception 
+     */
+    private void save(List<Job> jobs) throws Exception {
+        Map<Long,Job> toSave = new LinkedHashMap<>();
+        Map<Job,Workflow> workflows = new IdentityHashMap<>();
+        for (Job job : jobs){
+            workflows.put(job, job.getWorkflow());
+            job.setWorkflow(LocalBackend.getWorkflowStub(job.getWorkflow()));
+            toSave.put(job.getId(), job);
+        }
+        try {
+            _jobs.putAll(toSave);
+        }
+        finally {
+            for (Job job : jobs){
+                job.setWorkflow(workflows.get(job));
+            }
+        }
+    }
+    
+    /**
+     * Sets each {@link Job} that has a {@link WorkflowSummary} to build its
+     * {@link Workflow} from it.  {@link Job}s without one have their 
+     * {@link Workflow} loaded.
+     * @param jobs 
+     */
+    private void useWorkflowSummaries(List<Job> jobs) throws Exception {
+        List<Job> noSummary = new ArrayList<>();
+        for (Job job : jobs){
+            if (job.getWorkflowSummary() == null){
+                noSummary.add(job);
+                continue;
+            }
+            job.setWorkflowSummaryOnly(true);
+        }
+        loadWorkflows(noSummary);
+    }
+    
+    /**
+     * Replaces the {@link Workflow} stub in each {@link Job} with the 
+     * {@link Workflow} from the store loading each {@link Workflow} once
+     * @param jobs 
+     */
+    private void loadWorkflows(List<Job> jobs) throws Exception {
+        Map<Long,Workflow> loaded = new HashMap<>();
+        for (Job job : jobs){
+            if (job.getWorkflow() == null || job.getWorkflow().getId() == null){
+                continue;
+            }
+            Long workflowId = job.getWorkflow().getId();
+            if (!loaded.containsKey(workflowId)){
+                loaded.put(workflowId, 
+                        WorkflowLocalDAOImpl.loadWorkflow(_workflows,workflowId));
+            }
+            job.setWorkflow(loaded.get(workflowId));
+        }
+    }
+}
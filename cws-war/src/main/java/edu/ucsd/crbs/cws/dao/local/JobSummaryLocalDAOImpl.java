@@ -0,0 +1,103 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.dao.JobSummaryDAO;
+import edu.ucsd.crbs.cws.dao.objectify.JobSummaryObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import edu.ucsd.crbs.cws.workflow.report.JobSummary;
+import java.util.Set;
+
+/**
+ * Implements {@link JobSummaryDAO} by counting directly from the
+ * {@link LocalEntityStore}s.  Since everything is in memory there are no
+ * counters to keep so the increment methods do nothing.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobSummaryLocalDAOImpl implements JobSummaryDAO {
+
+    private final LocalEntityStore<Job> _jobs;
+    private final LocalEntityStore<WorkspaceFile> _workspaceFiles;
+    
+    public JobSummaryLocalDAOImpl(LocalEntityStore<Job> jobs,
+            LocalEntityStore<WorkspaceFile> workspaceFiles){
+        _jobs = jobs;
+        _workspaceFiles = workspaceFiles;
+    }
+    
+    @Override
+    public void incrementJobCount(String owner, String status, long delta) {
+    }
+
+    @Override
+    public void incrementOutputBytes(String owner, long delta) {
+    }
+
+    @Override
+    public JobSummary getJobSummary(String owner) throws Exception {
+        JobSummary summary = new JobSummary();
+        
+        for (Job job : _jobs.get(getIds(_jobs,owner))){
+            summary.addJobCount(job.getOwner(), job.getStatus(), 1);
+        }
+        for (WorkspaceFile wsf : _workspaceFiles.get(getIds(_workspaceFiles,owner))){
+            long bytes = JobSummaryObjectifyDAOImpl.getOutputBytes(wsf);
+            if (bytes != 0){
+                summary.addOutputBytes(wsf.getOwner(), bytes);
+            }
+        }
+        return summary;
+    }
+
+    @Override
+    public JobSummary rebuild() throws Exception {
+        return getJobSummary(null);
+    }
+    
+    /**
+     * Gets ids of entities in <b>store</b> that are not deleted and, if
+     * <b>owner</b> is not null, are owned by <b>owner</b>
+     */
+    private Set<Long> getIds(LocalEntityStore<?> store,final String owner){
+        synchronized(store){
+            Set<Long> ids = store.getIds(LocalBackend.DELETED_INDEX, false);
+            if (owner != null){
+                ids.retainAll(store.getIds(LocalBackend.OWNER_INDEX, owner));
+            }
+            return ids;
+        }
+    }
+}
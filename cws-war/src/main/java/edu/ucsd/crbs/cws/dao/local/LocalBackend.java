@@ -0,0 +1,420 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.googlecode.objectify.Ref;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.EventDAO;
+import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.JobSummaryDAO;
+import edu.ucsd.crbs.cws.dao.UserDAO;
+import edu.ucsd.crbs.cws.dao.WorkflowDAO;
+import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.log.Event;
+import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.ParameterWithError;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Embedded backend that implements all the DAOs on top of 
+ * {@link LocalEntityStore}s so the service can run without Google App Engine.
+ * Each entity type is kept in its own journal file in the data directory
+ * passed to the constructor.<p/>
+ * 
+ * References between entities are stored as ids and are resolved when
+ * loaded, for this reason {@link #open()} turns off 
+ * {@link Job#REFS_ENABLED}, {@link Workflow#REFS_ENABLED} and
+ * {@link InputWorkspaceFileLink#REFS_ENABLED}.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class LocalBackend {
+    
+    private static final Logger _log
+            = Logger.getLogger(LocalBackend.class.getName());
+    
+    public static final String OWNER_INDEX = "owner";
+    public static final String STATUS_INDEX = "status";
+    public static final String DELETED_INDEX = "deleted";
+    public static final String SUBMITTED_TO_SCHEDULER_INDEX = "submittedToScheduler";
+    public static final String WORKFLOW_ID_INDEX = "workflowId";
+    public static final String NAME_INDEX = "name";
+    public static final String TYPE_INDEX = "type";
+    public static final String FAILED_INDEX = "failed";
+    public static final String SYNCED_INDEX = "synced";
+    public static final String SOURCE_JOB_ID_INDEX = "sourceJobId";
+    public static final String JOB_ID_INDEX = "jobId";
+    public static final String WORKSPACEFILE_ID_INDEX = "workspaceFileId";
+    public static final String LOGIN_INDEX = "login";
+    public static final String MD5_INDEX = "md5";
+    
+    private final File _dataDir;
+    private final List<LocalEntityStore<?>> _stores = new ArrayList<>();
+    
+    private final LocalEntityStore<Workflow> _workflows;
+    private final LocalEntityStore<Job> _jobs;
+    private final LocalEntityStore<WorkspaceFile> _workspaceFiles;
+    private final LocalEntityStore<InputWorkspaceFileLink> _inputWorkspaceFileLinks;
+    private final LocalEntityStore<User> _users;
+    private final LocalEntityStore<Event> _events;
+    
+    private final JobLocalDAOImpl _jobDAO;
+    private final WorkflowLocalDAOImpl _workflowDAO;
+    private final WorkspaceFileLocalDAOImpl _workspaceFileDAO;
+    private final InputWorkspaceFileLinkLocalDAOImpl _inputWorkspaceFileLinkDAO;
+    private final UserLocalDAOImpl _userDAO;
+    private final EventLocalDAOImpl _eventDAO;
+    private final JobSummaryLocalDAOImpl _jobSummaryDAO;
+    
+    /**
+     * Constructor
+     * @param dataDir Directory to store journal files in, if null nothing
+     *        is written to disk
+     */
+    public LocalBackend(File dataDir){
+        _dataDir = dataDir;
+        ObjectMapper mapper = createObjectMapper();
+        
+        _workflows = createStore(Workflow.class,mapper);
+        _workflows.addIndex(NAME_INDEX, new LocalEntityStore.Indexer<Workflow>() {
+            @Override
+            public Object getIndexValue(Workflow w) {
+                return w.getName();
+            }
+        });
+        _workflows.addIndex(DELETED_INDEX, new LocalEntityStore.Indexer<Workflow>() {
+            @Override
+            public Object getIndexValue(Workflow w) {
+                return w.isDeleted();
+            }
+        });
+        
+        _jobs = createStore(Job.class,mapper);
+        _jobs.addIndex(OWNER_INDEX, new LocalEntityStore.Indexer<Job>() {
+            @Override
+            public Object getIndexValue(Job j) {
+                return j.getOwner();
+            }
+        });
+        _jobs.addIndex(STATUS_INDEX, new LocalEntityStore.Indexer<Job>() {
+            @Override
+            public Object getIndexValue(Job j) {
+                return j.getStatus();
+            }
+        });
+        _jobs.addIndex(DELETED_INDEX, new LocalEntityStore.Indexer<Job>() {
+            @Override
+            public Object getIndexValue(Job j) {
+                return j.isDeleted();
+            }
+        });
+        _jobs.addIndex(SUBMITTED_TO_SCHEDULER_INDEX, new LocalEntityStore.Indexer<Job>() {
+            @Override
+            public Object getIndexValue(Job j) {
+                return j.getHasJobBeenSubmittedToScheduler();
+            }
+        });
+        _jobs.addIndex(WORKFLOW_ID_INDEX, new LocalEntityStore.Indexer<Job>() {
+            @Override
+            public Object getIndexValue(Job j) {
+                return j.getWorkflow() == null ? null : j.getWorkflow().getId();
+            }
+        });
+        
+        _workspaceFiles = createStore(WorkspaceFile.class,mapper);
+        _workspaceFiles.addIndex(OWNER_INDEX, new LocalEntityStore.Indexer<WorkspaceFile>() {
+            @Override
+            public Object getIndexValue(WorkspaceFile wsf) {
+                return wsf.getOwner();
+            }
+        });
+        _workspaceFiles.addIndex(TYPE_INDEX, new LocalEntityStore.Indexer<WorkspaceFile>() {
+            @Override
+            public Object getIndexValue(WorkspaceFile wsf) {
+                return wsf.getType();
+            }
+        });
+        _workspaceFiles.addIndex(DELETED_INDEX, new LocalEntityStore.Indexer<WorkspaceFile>() {
+            @Override
+            public Object getIndexValue(WorkspaceFile wsf) {
+                return wsf.getDeleted();
+            }
+        });
+        _workspaceFiles.addIndex(FAILED_INDEX, new LocalEntityStore.Indexer<WorkspaceFile>() {
+            @Override
+            public Object getIndexValue(WorkspaceFile wsf) {
+                return wsf.isFailed();
+            }
+        });
+        _workspaceFiles.addIndex(SYNCED_INDEX, new LocalEntityStore.Indexer<WorkspaceFile>() {
+            @Override
+            public Object getIndexValue(WorkspaceFile wsf) {
+                return wsf.getPath() != null;
+            }
+        });
+        _workspaceFiles.addIndex(SOURCE_JOB_ID_INDEX, new LocalEntityStore.Indexer<WorkspaceFile>() {
+            @Override
+            public Object getIndexValue(WorkspaceFile wsf) {
+                return wsf.getSourceJobId();
+            }
+        });
+        _workspaceFiles.addIndex(MD5_INDEX, new LocalEntityStore.Indexer<WorkspaceFile>() {
+            @Override
+            public Object getIndexValue(WorkspaceFile wsf) {
+                return wsf.getMd5();
+            }
+        });
+        
+        _inputWorkspaceFileLinks = createStore(InputWorkspaceFileLink.class,mapper);
+        _inputWorkspaceFileLinks.addIndex(JOB_ID_INDEX, 
+                new LocalEntityStore.Indexer<InputWorkspaceFileLink>() {
+            @Override
+            public Object getIndexValue(InputWorkspaceFileLink link) {
+                return link.getJob() == null ? null : link.getJob().getId();
+            }
+        });
+        _inputWorkspaceFileLinks.addIndex(WORKSPACEFILE_ID_INDEX, 
+                new LocalEntityStore.Indexer<InputWorkspaceFileLink>() {
+            @Override
+            public Object getIndexValue(InputWorkspaceFileLink link) {
+                return link.getWorkspaceFile() == null ? null : 
+                        link.getWorkspaceFile().getId();
+            }
+        });
+        _inputWorkspaceFileLinks.addIndex(DELETED_INDEX, 
+                new LocalEntityStore.Indexer<InputWorkspaceFileLink>() {
+            @Override
+            public Object getIndexValue(InputWorkspaceFileLink link) {
+                return link.isDeleted();
+            }
+        });
+        
+        _users = createStore(User.class,mapper);
+        _users.addIndex(LOGIN_INDEX, new LocalEntityStore.Indexer<User>() {
+            @Override
+            public Object getIndexValue(User u) {
+                return u.getLogin();
+            }
+        });
+        _users.addIndex(DELETED_INDEX, new LocalEntityStore.Indexer<User>() {
+            @Override
+            public Object getIndexValue(User u) {
+                return u.isDeleted();
+            }
+        });
+        
+        _events = createStore(Event.class,mapper);
+        
+        _jobSummaryDAO = new JobSummaryLocalDAOImpl(_jobs,_workspaceFiles);
+        _inputWorkspaceFileLinkDAO = new InputWorkspaceFileLinkLocalDAOImpl(_inputWorkspaceFileLinks);
+        _jobDAO = new JobLocalDAOImpl(_jobs,_workflows,_inputWorkspaceFileLinkDAO);
+        _workspaceFileDAO = new WorkspaceFileLocalDAOImpl(_workspaceFiles,_jobDAO,
+                _inputWorkspaceFileLinkDAO);
+        _jobDAO.setWorkspaceFileDAO(_workspaceFileDAO);
+        _workflowDAO = new WorkflowLocalDAOImpl(_workflows,_jobDAO);
+        _userDAO = new UserLocalDAOImpl(_users);
+        _eventDAO = new EventLocalDAOImpl(_events);
+    }
+    
+    /**
+     * Creates the data directory if needed and loads all the stores
+     * @throws IOException 
+     */
+    public void open() throws IOException {
+        Job.REFS_ENABLED = false;
+        Workflow.REFS_ENABLED = false;
+        InputWorkspaceFileLink.REFS_ENABLED = false;
+        
+        if (_dataDir != null && !_dataDir.isDirectory() && !_dataDir.mkdirs()){
+            throw new IOException("Unable to create directory "+
+                    _dataDir.getAbsolutePath());
+        }
+        for (LocalEntityStore<?> store : _stores){
+            store.open();
+        }
+        _log.log(Level.INFO,"Opened local backend with {0} jobs, {1} workflows"
+                + " and {2} workspace files",new Object[]{_jobs.size(),
+                    _workflows.size(),_workspaceFiles.size()});
+    }
+    
+    /**
+     * Closes all the stores
+     * @throws IOException 
+     */
+    public void close() throws IOException {
+        for (LocalEntityStore<?> store : _stores){
+            store.close();
+        }
+    }
+    
+    public JobDAO getJobDAO() {
+        return _jobDAO;
+    }
+
+    public WorkflowDAO getWorkflowDAO() {
+        return _workflowDAO;
+    }
+
+    public WorkspaceFileDAO getWorkspaceFileDAO() {
+        return _workspaceFileDAO;
+    }
+
+    public InputWorkspaceFileLinkDAO getInputWorkspaceFileLinkDAO() {
+        return _inputWorkspaceFileLinkDAO;
+    }
+
+    public UserDAO getUserDAO() {
+        return _userDAO;
+    }
+
+    public EventDAO getEventDAO() {
+        return _eventDAO;
+    }
+
+    public JobSummaryDAO getJobSummaryDAO() {
+        return _jobSummaryDAO;
+    }
+    
+    private <T> LocalEntityStore<T> createStore(Class<T> type,ObjectMapper mapper){
+        File journalFile = null;
+        if (_dataDir != null){
+            journalFile = new File(_dataDir,type.getSimpleName()+
+                    LocalEntityStore.JOURNAL_SUFFIX);
+        }
+        LocalEntityStore<T> store = new LocalEntityStore<>(type,mapper,journalFile);
+        _stores.add(store);
+        return store;
+    }
+    
+    /**
+     * Creates {@link ObjectMapper} that serializes the fields of the entities
+     * directly so values hidden from the REST API, such as blob keys, are 
+     * kept.  Objectify {@link Ref} fields and fields that are not persisted
+     * by Objectify are skipped.
+     * @return 
+     */
+    static ObjectMapper createObjectMapper(){
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setVisibility(PropertyAccessor.ALL, Visibility.NONE);
+        mapper.setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.addMixInAnnotations(Workflow.class, WorkflowMixIn.class);
+        mapper.addMixInAnnotations(Job.class, JobMixIn.class);
+        mapper.addMixInAnnotations(WorkspaceFile.class, WorkspaceFileMixIn.class);
+        mapper.addMixInAnnotations(InputWorkspaceFileLink.class, 
+                InputWorkspaceFileLinkMixIn.class);
+        mapper.addMixInAnnotations(User.class, UserMixIn.class);
+        return mapper;
+    }
+    
+    /**
+     * @param w
+     * @return {@link Workflow} with only id set or null if <b>w</b> or its
+     *         id is null
+     */
+    static Workflow getWorkflowStub(Workflow w){
+        if (w == null || w.getId() == null){
+            return null;
+        }
+        Workflow stub = new Workflow();
+        stub.setId(w.getId());
+        return stub;
+    }
+    
+    /**
+     * @param j
+     * @return {@link Job} with only id set or null if <b>j</b> or its
+     *         id is null
+     */
+    static Job getJobStub(Job j){
+        if (j == null || j.getId() == null){
+            return null;
+        }
+        Job stub = new Job();
+        stub.setId(j.getId());
+        return stub;
+    }
+    
+    /**
+     * @param wsf
+     * @return {@link WorkspaceFile} with only id set or null if <b>wsf</b> or
+     *         its id is null
+     */
+    static WorkspaceFile getWorkspaceFileStub(WorkspaceFile wsf){
+        if (wsf == null || wsf.getId() == null){
+            return null;
+        }
+        WorkspaceFile stub = new WorkspaceFile();
+        stub.setId(wsf.getId());
+        return stub;
+    }
+    
+    abstract static class WorkflowMixIn {
+        @JsonIgnore Ref<Workflow> _parent;
+        @JsonIgnore String _workflowFileUploadURL;
+    }
+    
+    abstract static class JobMixIn {
+        @JsonIgnore Ref<Workflow> _workflow;
+        @JsonIgnore List<ParameterWithError> _parametersWithErrors;
+    }
+    
+    abstract static class WorkspaceFileMixIn {
+        @JsonIgnore String _uploadURL;
+    }
+    
+    abstract static class InputWorkspaceFileLinkMixIn {
+        @JsonIgnore Ref<Job> _job;
+        @JsonIgnore Ref<WorkspaceFile> _workspaceFile;
+    }
+    
+    abstract static class UserMixIn {
+        @JsonIgnore String _ipAddress;
+        @JsonIgnore String _loginToRunJobAs;
+    }
+}
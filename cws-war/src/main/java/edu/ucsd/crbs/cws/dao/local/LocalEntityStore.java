@@ -0,0 +1,419 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores entities of a single type in memory as serialized JSON keyed by id
+ * with optional secondary indexes.  If a journal file is given, every change
+ * is appended to it and the journal is replayed and compacted when the store
+ * is opened.<p/>
+ * 
+ * Every get returns a new copy of the entity so callers can modify what they
+ * get back without changing what is stored.  All methods are synchronized 
+ * so callers that need to load, modify and save atomically can synchronize
+ * on the store.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class LocalEntityStore<T> {
+    
+    private static final Logger _log
+            = Logger.getLogger(LocalEntityStore.class.getName());
+    
+    /**
+     * Suffix appended to journal files
+     */
+    public static final String JOURNAL_SUFFIX = ".journal";
+    
+    static final String PUT = "P";
+    static final String DELETE = "D";
+    static final String LAST_ID = "I";
+    static final String TAB = "\t";
+    
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    
+    /**
+     * Gets the value to index an entity under
+     * @param <T> 
+     */
+    public interface Indexer<T> {
+        
+        /**
+         * @param entity 
+         * @return value to index <b>entity</b> under, can be null
+         */
+        public Object getIndexValue(T entity);
+    }
+    
+    private final Class<T> _type;
+    private final ObjectMapper _mapper;
+    private final File _journalFile;
+    private final TreeMap<Long,byte[]> _entities = new TreeMap<>();
+    private final Map<String,Indexer<T>> _indexers = new LinkedHashMap<>();
+    private final Map<String,Map<Object,TreeSet<Long>>> _indexes = new HashMap<>();
+    private final Map<Long,Map<String,Object>> _indexedValues = new HashMap<>();
+    private long _lastId = 0;
+    private Writer _journal;
+    
+    /**
+     * Constructor
+     * @param type Class of entities stored
+     * @param mapper Used to serialize the entities
+     * @param journalFile File to write changes to, if null the store is 
+     *        memory only
+     */
+    public LocalEntityStore(Class<T> type,ObjectMapper mapper,File journalFile){
+        _type = type;
+        _mapper = mapper;
+        _journalFile = journalFile;
+    }
+    
+    /**
+     * Adds a secondary index.  Must be called before {@link #open()}
+     * @param name Name of index
+     * @param indexer Gets value to index entities under
+     */
+    public synchronized void addIndex(final String name,Indexer<T> indexer){
+        _indexers.put(name, indexer);
+        _indexes.put(name, new HashMap<Object,TreeSet<Long>>());
+    }
+    
+    /**
+     * Loads entities from journal file, if any, and rewrites the journal 
+     * so it only contains the current entities
+     * @throws IOException 
+     */
+    public synchronized void open() throws IOException {
+        if (_journalFile == null){
+            return;
+        }
+        int lineCount = 0;
+        if (_journalFile.isFile()){
+            lineCount = replayJournal();
+        }
+        //compacted journal has a line for last id and one per entity
+        if (lineCount != _entities.size() + 1){
+            compactJournal();
+        }
+        _journal = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(_journalFile,true),UTF8));
+    }
+    
+    /**
+     * Closes the journal
+     * @throws IOException 
+     */
+    public synchronized void close() throws IOException {
+        if (_journal != null){
+            _journal.close();
+            _journal = null;
+        }
+    }
+    
+    /**
+     * Gets a new id that is larger then any id in the store
+     * @return 
+     */
+    public synchronized long allocateId(){
+        return ++_lastId;
+    }
+    
+    /**
+     * Gets entity with <b>id</b>
+     * @param id
+     * @return copy of entity or null if not found
+     * @throws IOException 
+     */
+    public synchronized T get(long id) throws IOException {
+        byte[] data = _entities.get(id);
+        if (data == null){
+            return null;
+        }
+        return _mapper.readValue(data, _type);
+    }
+    
+    /**
+     * Gets entities with <b>ids</b> in the order the ids are given skipping
+     * any ids not found
+     * @param ids
+     * @return
+     * @throws IOException 
+     */
+    public synchronized List<T> get(Collection<Long> ids) throws IOException {
+        List<T> entities = new ArrayList<>(ids.size());
+        for (Long id : ids){
+            T entity = get(id);
+            if (entity != null){
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+    
+    /**
+     * Gets all ids in the store
+     * @return ids in ascending order
+     */
+    public synchronized Set<Long> getIds(){
+        return new TreeSet<>(_entities.keySet());
+    }
+    
+    /**
+     * Gets ids of entities whose index value for <b>indexName</b> equals
+     * one of <b>values</b>
+     * @param indexName
+     * @param values
+     * @return ids in ascending order
+     * @throws IllegalArgumentException if there is no index named <b>indexName</b>
+     */
+    public synchronized Set<Long> getIds(final String indexName,
+            Collection<?> values){
+        Map<Object,TreeSet<Long>> index = _indexes.get(indexName);
+        if (index == null){
+            throw new IllegalArgumentException("No index named "+indexName);
+        }
+        TreeSet<Long> ids = new TreeSet<>();
+        for (Object value : values){
+            TreeSet<Long> valueIds = index.get(value);
+            if (valueIds != null){
+                ids.addAll(valueIds);
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * Gets ids of entities whose index value for <b>indexName</b> equals
+     * <b>value</b>
+     * @param indexName
+     * @param value
+     * @return ids in ascending order
+     */
+    public synchronized Set<Long> getIds(final String indexName,Object value){
+        List<Object> values = new ArrayList<>(1);
+        values.add(value);
+        return getIds(indexName,values);
+    }
+    
+    /**
+     * @return number of entities in store
+     */
+    public synchronized int size(){
+        return _entities.size();
+    }
+    
+    /**
+     * Saves <b>entity</b> under <b>id</b> replacing any existing entity
+     * @param id
+     * @param entity
+     * @throws IOException 
+     */
+    public synchronized void put(long id,T entity) throws IOException {
+        Map<Long,T> entities = new HashMap<>(1);
+        entities.put(id, entity);
+        putAll(entities);
+    }
+    
+    /**
+     * Saves all <b>entities</b> writing them to the journal in a single 
+     * flush
+     * @param entities map of id to entity
+     * @throws IOException 
+     */
+    public synchronized void putAll(Map<Long,T> entities) throws IOException {
+        for (Map.Entry<Long,T> entry : entities.entrySet()){
+            byte[] data = _mapper.writeValueAsBytes(entry.getValue());
+            putData(entry.getKey(),data,entry.getValue());
+            if (_journal != null){
+                _journal.write(PUT+TAB+entry.getKey()+TAB+
+                        new String(data,UTF8)+"\n");
+            }
+        }
+        if (_journal != null){
+            _journal.flush();
+        }
+    }
+    
+    /**
+     * Removes entity with <b>id</b>
+     * @param id
+     * @return true if entity was found and removed
+     * @throws IOException 
+     */
+    public synchronized boolean delete(long id) throws IOException {
+        if (removeData(id) == false){
+            return false;
+        }
+        if (_journal != null){
+            _journal.write(DELETE+TAB+id+"\n");
+            _journal.flush();
+        }
+        return true;
+    }
+    
+    private void putData(long id,byte[] data,T entity){
+        removeData(id);
+        _entities.put(id, data);
+        if (id > _lastId){
+            _lastId = id;
+        }
+        if (_indexers.isEmpty()){
+            return;
+        }
+        Map<String,Object> values = new HashMap<>();
+        for (Map.Entry<String,Indexer<T>> entry : _indexers.entrySet()){
+            Object value = entry.getValue().getIndexValue(entity);
+            values.put(entry.getKey(), value);
+            Map<Object,TreeSet<Long>> index = _indexes.get(entry.getKey());
+            TreeSet<Long> ids = index.get(value);
+            if (ids == null){
+                ids = new TreeSet<>();
+                index.put(value, ids);
+            }
+            ids.add(id);
+        }
+        _indexedValues.put(id, values);
+    }
+    
+    private boolean removeData(long id){
+        if (_entities.remove(id) == null){
+            return false;
+        }
+        Map<String,Object> values = _indexedValues.remove(id);
+        if (values == null){
+            return true;
+        }
+        for (Map.Entry<String,Object> entry : values.entrySet()){
+            Map<Object,TreeSet<Long>> index = _indexes.get(entry.getKey());
+            TreeSet<Long> ids = index.get(entry.getValue());
+            if (ids != null){
+                ids.remove(id);
+                if (ids.isEmpty()){
+                    index.remove(entry.getValue());
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Reads journal applying every change in order.  A partially written
+     * last line, as left behind by a crash, is logged and skipped.
+     * @return number of lines in journal
+     * @throws IOException 
+     */
+    private int replayJournal() throws IOException {
+        int lineCount = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(_journalFile),UTF8))){
+            String line = reader.readLine();
+            while (line != null){
+                lineCount++;
+                try {
+                    String[] split = line.split(TAB,3);
+                    long id = Long.parseLong(split[1]);
+                    if (split[0].equals(PUT)){
+                        byte[] data = split[2].getBytes(UTF8);
+                        putData(id,data,_mapper.readValue(data, _type));
+                    }
+                    else if (split[0].equals(DELETE)){
+                        removeData(id);
+                    }
+                    else if (split[0].equals(LAST_ID)){
+                        _lastId = Math.max(_lastId, id);
+                    }
+                    else {
+                        throw new IOException("Unknown operation "+split[0]);
+                    }
+                }
+                catch(IOException | RuntimeException ex){
+                    _log.log(Level.WARNING,"Skipping line {0} of {1} : {2}",
+                            new Object[]{lineCount,_journalFile.getAbsolutePath(),
+                                ex.getMessage()});
+                }
+                line = reader.readLine();
+            }
+        }
+        return lineCount;
+    }
+    
+    /**
+     * Writes last id allocated and current entities to a new journal and 
+     * replaces the old one
+     * @throws IOException 
+     */
+    private void compactJournal() throws IOException {
+        File tmpFile = new File(_journalFile.getAbsolutePath()+".tmp");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tmpFile),UTF8))){
+            //ids of deleted entities are not in the journal anymore so 
+            //the last id is saved to keep them from being reused
+            writer.write(LAST_ID+TAB+_lastId+"\n");
+            for (Map.Entry<Long,byte[]> entry : _entities.entrySet()){
+                writer.write(PUT+TAB+entry.getKey()+TAB+
+                        new String(entry.getValue(),UTF8)+"\n");
+            }
+        }
+        if (_journalFile.exists() && !_journalFile.delete()){
+            throw new IOException("Unable to remove "+_journalFile.getAbsolutePath());
+        }
+        if (!tmpFile.renameTo(_journalFile)){
+            throw new IOException("Unable to rename "+tmpFile.getAbsolutePath()+
+                    " to "+_journalFile.getAbsolutePath());
+        }
+    }
+}
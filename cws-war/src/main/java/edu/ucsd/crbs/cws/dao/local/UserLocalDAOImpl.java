@@ -0,0 +1,150 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.UserDAO;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implements {@link UserDAO} on top of a {@link LocalEntityStore}
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class UserLocalDAOImpl implements UserDAO {
+
+    private static final Logger _log
+            = Logger.getLogger(UserLocalDAOImpl.class.getName());
+    
+    private final LocalEntityStore<User> _users;
+    
+    public UserLocalDAOImpl(LocalEntityStore<User> users){
+        _users = users;
+    }
+    
+    @Override
+    public User getUserByLoginAndToken(String login, String token) throws Exception {
+        if (login == null || token == null){
+            _log.warning("Login and or Token are null");
+            return null;
+        }
+        for (User u : _users.get(getIds(login,null))){
+            if (token.equals(u.getToken())){
+                return u;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public User insert(User u) throws Exception {
+        if (u == null){
+            throw new NullPointerException("User is null");
+        }
+        if (u.getCreateDate() == null){
+            u.setCreateDate(new Date());
+        }
+        if (u.getId() == null){
+            u.setId(_users.allocateId());
+        }
+        _users.put(u.getId(), u);
+        return u;
+    }
+
+    @Override
+    public User getUserById(String userId) throws Exception {
+        long userIdAsLong;
+        try {
+            userIdAsLong = Long.parseLong(userId);
+        }catch(NumberFormatException nfe){
+            throw new Exception(nfe);
+        }
+        return _users.get(userIdAsLong);
+    }
+
+    @Override
+    public List<User> getUsers(String login, Boolean showDeleted) throws Exception {
+        return _users.get(getIds(login,showDeleted));
+    }
+
+    @Override
+    public User update(User u) throws Exception {
+        if (u == null){
+            throw new NullPointerException("User is null");
+        }
+        if (u.getId() == null){
+            throw new Exception("Id of User cannot be null");
+        }
+        _users.put(u.getId(), u);
+        return u;
+    }
+
+    @Override
+    public User resave(long userId) throws Exception {
+        synchronized(_users){
+            User u = _users.get(userId);
+            if (u == null){
+                _log.log(Level.WARNING,"User {0} not found",userId);
+                throw new Exception("There was an error resaving User with id: "+userId);
+            }
+            return update(u);
+        }
+    }
+    
+    /**
+     * Gets ids of {@link User}s with login in comma separated <b>login</b>
+     * leaving out deleted {@link User}s unless <b>showDeleted</b> is true
+     */
+    private Set<Long> getIds(final String login,Boolean showDeleted){
+        synchronized(_users){
+            Set<Long> ids;
+            if (showDeleted == null || showDeleted == false){
+                ids = _users.getIds(LocalBackend.DELETED_INDEX, false);
+            }
+            else {
+                ids = _users.getIds();
+            }
+            if (login != null){
+                ids.retainAll(_users.getIds(LocalBackend.LOGIN_INDEX,
+                        Arrays.asList(login.split(","))));
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.WorkflowDAO;
+import edu.ucsd.crbs.cws.gae.URLFetcherImpl;
+import edu.ucsd.crbs.cws.gae.WorkflowParameterDataFetcher;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
+import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implements {@link WorkflowDAO} on top of a {@link LocalEntityStore}.  The
+ * parent of a {@link Workflow} is stored as an id and only the immediate
+ * parent is loaded when the {@link Workflow} is loaded.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class WorkflowLocalDAOImpl implements WorkflowDAO {
+
+    private static final Logger _log
+            = Logger.getLogger(WorkflowLocalDAOImpl.class.getName());
+    
+    WorkflowParameterDataFetcher _dropDownFetcher = new URLFetcherImpl();
+    
+    private final LocalEntityStore<Workflow> _workflows;
+    private final JobDAO _jobDAO;
+    
+    public WorkflowLocalDAOImpl(LocalEntityStore<Workflow> workflows,
+            JobDAO jobDAO){
+        _workflows = workflows;
+        _jobDAO = jobDAO;
+    }
+    
+    /**
+     * Loads {@link Workflow} with <b>workflowId</b> from <b>workflows</b>
+     * along with its parent
+     * @param workflows
+     * @param workflowId
+     * @return {@link Workflow} or null if not found
+     * @throws IOException 
+     */
+    static Workflow loadWorkflow(LocalEntityStore<Workflow> workflows,
+            long workflowId) throws IOException {
+        Workflow w = workflows.get(workflowId);
+        if (w != null){
+            resolveParent(workflows,w);
+        }
+        return w;
+    }
+    
+    /**
+     * Replaces the parent stub in <b>w</b> with the parent from 
+     * <b>workflows</b>
+     */
+    private static void resolveParent(LocalEntityStore<Workflow> workflows,
+            Workflow w) throws IOException {
+        Workflow parent = w.getParentWorkflow();
+        if (parent != null && parent.getId() != null){
+            w.setParentWorkflow(workflows.get(parent.getId()));
+        }
+    }
+    
+    @Override
+    public Workflow getWorkflowById(String workflowId, User user) throws Exception {
+        Workflow w = loadWorkflow(_workflows,parseWorkflowId(workflowId));
+        if (w == null){
+            return null;
+        }
+        _dropDownFetcher.fetchAndUpdateAll(w.getParameters(), user);
+        return w;
+    }
+
+    @Override
+    public Workflow getWorkflowByIdWithoutDropDownFetch(long workflowId) throws Exception {
+        return loadWorkflow(_workflows,workflowId);
+    }
+
+    @Override
+    public List<Workflow> getAllWorkflows(boolean omitWorkflowParams, 
+            Boolean showDeleted) throws Exception {
+        List<Workflow> workflows;
+        if (showDeleted == null || showDeleted == false){
+            workflows = _workflows.get(_workflows.getIds(LocalBackend.DELETED_INDEX,
+                    false));
+        }
+        else {
+            workflows = _workflows.get(_workflows.getIds());
+        }
+        for (Workflow w : workflows){
+            resolveParent(_workflows,w);
+            if (omitWorkflowParams == true){
+                w.setParameters(null);
+            }
+        }
+        return workflows;
+    }
+
+    @Override
+    public List<Workflow> getLatestWorkflows(boolean omitWorkflowParams, 
+            Boolean showDeleted) throws Exception {
+        Map<String,Workflow> latest = new LinkedHashMap<>();
+        for (Workflow w : _workflows.get(_workflows.getIds())){
+            Workflow current = latest.get(w.getName());
+            if (current == null || current.getVersion() < w.getVersion()){
+                latest.put(w.getName(), w);
+            }
+        }
+        ArrayList<Workflow> workflows = new ArrayList<>();
+        for (Workflow w : latest.values()){
+            if (w.isDeleted() && (showDeleted == null || showDeleted == false)){
+                continue;
+            }
+            resolveParent(_workflows,w);
+            if (omitWorkflowParams == true){
+                w.setParameters(null);
+            }
+            workflows.add(w);
+        }
+        return workflows;
+    }
+
+    /**
+     * Adds <b>w</b> setting its version to one more then the highest version
+     * of any {@link Workflow} with the same name and setting that 
+     * {@link Workflow} as its parent.  A new id is always allocated
+     */
+    @Override
+    public Workflow insert(Workflow w) throws Exception {
+        if (w == null) {
+            throw new Exception("Workflow object passed in is null");
+        }
+        if (w.getName() == null){
+            throw new NullPointerException("Workflow name cannot be null");
+        }
+        if (w.getCreateDate() == null) {
+            w.setCreateDate(new Date());
+        }
+        synchronized(_workflows){
+            Workflow latestWorkflow = null;
+            for (Workflow existing : _workflows.get(_workflows.getIds(
+                    LocalBackend.NAME_INDEX,w.getName()))){
+                if (latestWorkflow == null || 
+                        latestWorkflow.getVersion() < existing.getVersion()){
+                    latestWorkflow = existing;
+                }
+            }
+            w.setId(_workflows.allocateId());
+            w.setVersion(latestWorkflow == null ? 1 : latestWorkflow.getVersion() + 1);
+            w.setParentWorkflow(latestWorkflow);
+            save(w);
+        }
+        return w;
+    }
+
+    @Override
+    public Workflow updateBlobKey(long workflowId, String key) throws Exception {
+        synchronized(_workflows){
+            Workflow w = loadWorkflow(_workflows,workflowId);
+            if (w == null){
+                throw new Exception("There was a problem updating the workflow");
+            }
+            w.setBlobKey(key);
+            save(w);
+            return w;
+        }
+    }
+
+    @Override
+    public Workflow updateDeletedAndVersion(long workflowId, Boolean isDeleted,
+            Integer version) throws Exception {
+        synchronized(_workflows){
+            Workflow w = loadWorkflow(_workflows,workflowId);
+            if (w == null){
+                throw new Exception("There was a problem updating the workflow");
+            }
+            boolean update = false;
+            if (isDeleted != null && w.isDeleted() != isDeleted){
+                w.setDeleted(isDeleted);
+                update = true;
+            }
+            if (version != null && version != w.getVersion()){
+                w.setVersion(version);
+                update = true;
+            }
+            if (update == true){
+                save(w);
+            }
+            return w;
+        }
+    }
+
+    @Override
+    public Workflow getWorkflowForJob(Job job, User user) throws Exception {
+        if (job == null) {
+            throw new IllegalArgumentException("Job cannot be null");
+        }
+        if (job.getWorkflow() == null) {
+            throw new IllegalArgumentException("No Workflow found");
+        }
+        if (job.getWorkflow().getId() == null) {
+            throw new IllegalArgumentException("Workflow id not found");
+        }
+        return getWorkflowById(job.getWorkflow().getId().toString(), user);
+    }
+
+    @Override
+    public Workflow resave(long workflowId) throws Exception {
+        synchronized(_workflows){
+            Workflow w = loadWorkflow(_workflows,workflowId);
+            if (w == null){
+                _log.log(Level.WARNING,"Workflow {0} not found",workflowId);
+                throw new Exception("There was an error resaving Workflow with id: "+workflowId);
+            }
+            save(w);
+            return w;
+        }
+    }
+
+    @Override
+    public DeleteReport delete(long workflowId, Boolean permanentlyDelete) throws Exception {
+        DeleteReportImpl dwr = new DeleteReportImpl();
+        dwr.setId(workflowId);
+        dwr.setSuccessful(false);
+        dwr.setReason("Unknown");
+        
+        int numAssociatedJobs = _jobDAO.getJobsWithWorkflowIdCount(workflowId);
+        if (numAssociatedJobs > 0) {
+            dwr.setReason("Cannot delete " + numAssociatedJobs
+                    + " job(s) have been run under workflow");
+            return dwr;
+        }
+        if (permanentlyDelete != null && permanentlyDelete == true) {
+            Workflow w = _workflows.get(workflowId);
+            if (w == null) {
+                dwr.setReason("No workflow found");
+                return dwr;
+            }
+            if (w.getBlobKey() != null){
+                _log.log(Level.WARNING,"Blob {0} not removed, there is no "
+                        + "blob store in local backend",w.getBlobKey());
+            }
+            _workflows.delete(workflowId);
+        }
+        else {
+            updateDeletedAndVersion(workflowId, true,null);
+        }
+        dwr.setSuccessful(true);
+        dwr.setReason(null);
+        return dwr;
+    }
+    
+    /**
+     * Saves <b>w</b> storing only the id of its parent
+     * @param w
+     * @throws Exception 
+     */
+    private void save(Workflow w) throws Exception {
+        Workflow parent = w.getParentWorkflow();
+        w.setParentWorkflow(LocalBackend.getWorkflowStub(parent));
+        try {
+            _workflows.put(w.getId(), w);
+        }
+        finally {
+            w.setParentWorkflow(parent);
+        }
+    }
+    
+    /**
+     * Parses <b>workflowId</b>
+     * @param workflowId
+     * @return workflow id
+     * @throws Exception If workflowId is null or there is an error parsing the
+     * numerical id or the id is less then 1
+     */
+    private long parseWorkflowId(final String workflowId) throws Exception {
+        long wfId;
+        if (workflowId == null) {
+            throw new IllegalArgumentException("workflow id cannot be null");
+        }
+        try {
+            wfId = Long.parseLong(workflowId);
+        } catch (NumberFormatException nfe) {
+            throw new NumberFormatException("Unable to parse workflow id from: " + workflowId + " : " + nfe.getMessage());
+        }
+        if (wfId <= 0) {
+            throw new Exception(Long.toString(wfId) + " is not a valid workflow id");
+        }
+        return wfId;
+    }
+}
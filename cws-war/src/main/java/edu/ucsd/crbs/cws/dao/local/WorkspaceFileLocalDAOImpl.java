@@ -0,0 +1,307 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
+import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implements {@link WorkspaceFileDAO} on top of a {@link LocalEntityStore}
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class WorkspaceFileLocalDAOImpl implements WorkspaceFileDAO {
+
+    private static final Logger _log
+            = Logger.getLogger(WorkspaceFileLocalDAOImpl.class.getName());
+    
+    private static final String COMMA = ",";
+    
+    private final LocalEntityStore<WorkspaceFile> _workspaceFiles;
+    private final JobDAO _jobDAO;
+    private final InputWorkspaceFileLinkDAO _inputWorkspaceFileLinkDAO;
+
+    public WorkspaceFileLocalDAOImpl(LocalEntityStore<WorkspaceFile> workspaceFiles,
+            JobDAO jobDAO,InputWorkspaceFileLinkDAO inputWorkspaceFileLinkDAO){
+        _workspaceFiles = workspaceFiles;
+        _jobDAO = jobDAO;
+        _inputWorkspaceFileLinkDAO = inputWorkspaceFileLinkDAO;
+    }
+    
+    @Override
+    public List<WorkspaceFile> getWorkspaceFiles(String owner, String type, 
+            Boolean isFailed, Boolean synced, Boolean showDeleted) throws Exception {
+        Set<Long> ids;
+        synchronized(_workspaceFiles){
+            ids = _workspaceFiles.getIds(LocalBackend.DELETED_INDEX,
+                    showDeleted == null ? false : showDeleted);
+            if (owner != null){
+                ids.retainAll(_workspaceFiles.getIds(LocalBackend.OWNER_INDEX,
+                        Arrays.asList(owner.split(COMMA))));
+            }
+            if (type != null){
+                ids.retainAll(_workspaceFiles.getIds(LocalBackend.TYPE_INDEX,
+                        Arrays.asList(type.split(COMMA))));
+            }
+            if (isFailed != null){
+                ids.retainAll(_workspaceFiles.getIds(LocalBackend.FAILED_INDEX,
+                        isFailed));
+            }
+            if (synced != null){
+                ids.retainAll(_workspaceFiles.getIds(LocalBackend.SYNCED_INDEX,
+                        synced));
+            }
+        }
+        return _workspaceFiles.get(ids);
+    }
+
+    @Override
+    public WorkspaceFile getWorkspaceFileById(String workspaceFileId, User user) throws Exception {
+        long wspId;
+        if (workspaceFileId == null) {
+            throw new IllegalArgumentException("workspace file id cannot be null");
+        }
+        try {
+            wspId = Long.parseLong(workspaceFileId);
+        } catch (NumberFormatException nfe) {
+            throw new NumberFormatException("Unable to parse workspacefile id from: " + workspaceFileId + " : " + nfe.getMessage());
+        }
+        if (wspId <= 0) {
+            throw new Exception(workspaceFileId + " is not a valid workspace file id");
+        }
+        return _workspaceFiles.get(wspId);
+    }
+
+    @Override
+    public List<WorkspaceFile> getWorkspaceFilesBySourceJobId(long sourceJobId) throws Exception {
+        return _workspaceFiles.get(_workspaceFiles.getIds(
+                LocalBackend.SOURCE_JOB_ID_INDEX,sourceJobId));
+    }
+
+    @Override
+    public List<WorkspaceFile> getWorkspaceFilesById(String workspaceFileIds, User user) throws Exception {
+        if (workspaceFileIds == null) {
+            _log.log(Level.INFO,"workspaceFileIds was null");
+            return null;
+        }
+        ArrayList<Long> idList = new ArrayList<>();
+        for (String id : workspaceFileIds.split(COMMA)){
+           idList.add(new Long(id));
+        }
+        return _workspaceFiles.get(idList);
+    }
+
+    @Override
+    public WorkspaceFile insert(WorkspaceFile wsp, boolean generateUploadURL) throws Exception {
+        if (wsp == null) {
+            throw new Exception("WorkspaceFile passed in is null");
+        }
+        List<WorkspaceFile> workspaceFiles = new ArrayList<>();
+        workspaceFiles.add(wsp);
+        insertAll(workspaceFiles);
+        return wsp;
+    }
+
+    @Override
+    public WorkspaceFile getWorkspaceFileWithBlobByMd5(final String md5,
+            final String owner) throws Exception {
+        if (md5 == null || owner == null){
+            return null;
+        }
+        Set<Long> ids;
+        synchronized(_workspaceFiles){
+            ids = _workspaceFiles.getIds(LocalBackend.MD5_INDEX,md5);
+            ids.retainAll(_workspaceFiles.getIds(LocalBackend.OWNER_INDEX,owner));
+            ids.retainAll(_workspaceFiles.getIds(LocalBackend.DELETED_INDEX,false));
+        }
+        for (WorkspaceFile wsf : _workspaceFiles.get(ids)){
+            if (wsf.getBlobKey() != null){
+                return wsf;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<WorkspaceFile> insertAll(List<WorkspaceFile> workspaceFiles) throws Exception {
+        if (workspaceFiles == null){
+            throw new Exception("WorkspaceFile list passed in is null");
+        }
+        Date createDate = new Date();
+        Map<Long,WorkspaceFile> toSave = new LinkedHashMap<>();
+        for (WorkspaceFile wsp : workspaceFiles){
+            if (wsp.getCreateDate() == null){
+                wsp.setCreateDate(createDate);
+            }
+            if (wsp.getId() == null){
+                wsp.setId(_workspaceFiles.allocateId());
+            }
+            toSave.put(wsp.getId(), wsp);
+        }
+        _workspaceFiles.putAll(toSave);
+        return workspaceFiles;
+    }
+
+    /**
+     * @deprecated This method has been replaced by {@link #update(edu.ucsd.crbs.cws.workflow.WorkspaceFile, java.lang.Boolean, java.lang.Boolean, java.lang.Boolean) }
+     */
+    @Override
+    public WorkspaceFile updateBlobKey(long workspaceFileId, String key) throws Exception {
+        WorkspaceFile tempWsp = new WorkspaceFile();
+        tempWsp.setId(workspaceFileId);
+        tempWsp.setBlobKey(key);
+        return update(tempWsp,null,null,null);
+    }
+
+    /**
+     * @deprecated This method has been replaced by {@link #update(edu.ucsd.crbs.cws.workflow.WorkspaceFile, java.lang.Boolean, java.lang.Boolean, java.lang.Boolean) }
+     */
+    @Override
+    public WorkspaceFile updatePathSizeAndFailStatus(long workspaceFileId, 
+            String path, String size, Boolean isFailed) throws Exception {
+        WorkspaceFile tempWsp = new WorkspaceFile();
+        tempWsp.setId(workspaceFileId);
+        tempWsp.setPath(path);
+        if (size != null){
+            tempWsp.setSize(new Long(size));
+        }
+        return update(tempWsp,null,isFailed,null);
+    }
+
+    /**
+     * @deprecated Use {@link #update(edu.ucsd.crbs.cws.workflow.WorkspaceFile)}
+     */
+    @Override
+    public WorkspaceFile update(WorkspaceFile wsp, Boolean isDeleted, 
+            Boolean isFailed, Boolean isDir) throws Exception {
+        if (wsp == null) {
+            throw new IllegalArgumentException("WorkspaceFile cannot be null");
+        }
+        if (wsp.getId() == null) {
+            throw new Exception("Id must be set");
+        }
+        synchronized(_workspaceFiles){
+            WorkspaceFile storedWsp = _workspaceFiles.get(wsp.getId());
+            if (storedWsp == null){
+                throw new Exception("There was a problem updating the WorkspaceFile");
+            }
+            if (storedWsp.updateWithChanges(wsp, isDeleted, isFailed, isDir)){
+                _workspaceFiles.put(storedWsp.getId(), storedWsp);
+            }
+            return storedWsp;
+        }
+    }
+
+    @Override
+    public WorkspaceFile update(WorkspaceFile wsp) throws Exception {
+        if (wsp == null) {
+            throw new Exception("WorkspaceFile passed in is null");
+        }
+        if (wsp.getId() == null){
+            throw new Exception("WorkspaceFile Id is null");
+        }
+        _workspaceFiles.put(wsp.getId(), wsp);
+        return wsp;
+    }
+
+    @Override
+    public WorkspaceFile resave(long workspaceFileId) throws Exception {
+        synchronized(_workspaceFiles){
+            WorkspaceFile wsp = _workspaceFiles.get(workspaceFileId);
+            if (wsp == null){
+                return null;
+            }
+            return update(wsp);
+        }
+    }
+
+    @Override
+    public DeleteReport delete(long workspaceFileId, Boolean permanentlyDelete,
+            boolean ignoreParentJob) throws Exception {
+        DeleteReportImpl dwr = new DeleteReportImpl();
+        dwr.setId(workspaceFileId);
+        dwr.setSuccessful(false);
+        dwr.setReason("Unknown");
+
+        WorkspaceFile wsf = getWorkspaceFileById(Long.toString(workspaceFileId), null);
+        if (wsf == null){
+            dwr.setReason("WorkspaceFile not found");
+            return dwr;
+        }
+        if (ignoreParentJob == false && wsf.getSourceJobId() != null){
+            Job j = _jobDAO.getJobById(wsf.getSourceJobId().toString());
+            if (j != null){
+                dwr.setReason("Cannot delete WorkspaceFile it is output of job ("+
+                        j.getId()+") "+j.getName());
+                return dwr;
+            }
+        }
+        int numLinkedWorkspaceFiles = _inputWorkspaceFileLinkDAO.getByWorkspaceFileIdCount(wsf.getId(), 
+                null);
+        if (numLinkedWorkspaceFiles > 0){
+            dwr.setReason("Found WorkspaceFile is linked to "+
+                    numLinkedWorkspaceFiles+" Job(s)");
+            return dwr;
+        }
+        if (permanentlyDelete != null && permanentlyDelete == true) {
+            if (wsf.getBlobKey() != null){
+                _log.log(Level.WARNING,"Blob {0} not removed, there is no "
+                        + "blob store in local backend",wsf.getBlobKey());
+            }
+            _workspaceFiles.delete(wsf.getId());
+        }
+        else {
+            wsf.setDeleted(true);
+            update(wsf);
+        }
+        dwr.setSuccessful(true);
+        dwr.setReason(null);
+        return dwr;
+    }
+}
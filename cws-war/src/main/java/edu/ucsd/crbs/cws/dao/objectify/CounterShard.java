@@ -0,0 +1,108 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Index;
+
+/**
+ * One shard of a counter.  A counter is identified by type, owner, and
+ * status and its value is the sum of the counts of all its shards.  Spreading
+ * a counter across shards lets many requests update it at the same time 
+ * without contending on a single entity.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@Entity
+public class CounterShard {
+    
+    private static final String SEPARATOR = "|";
+    
+    @Id private String _id;
+    @Index private String _type;
+    @Index private String _owner;
+    private String _status;
+    private long _count;
+    
+    public CounterShard(){
+        
+    }
+    
+    public CounterShard(final String type,final String owner,
+            final String status,int shard){
+        _id = getId(type,owner,status,shard);
+        _type = type;
+        _owner = owner;
+        _status = status;
+    }
+    
+    /**
+     * Generates id of shard
+     * @param type
+     * @param owner
+     * @param status
+     * @param shard
+     * @return 
+     */
+    public static String getId(final String type,final String owner,
+            final String status,int shard){
+        return type + SEPARATOR + (owner == null ? "" : owner) + SEPARATOR
+                + (status == null ? "" : status) + SEPARATOR + shard;
+    }
+
+    public String getId() {
+        return _id;
+    }
+
+    public String getType() {
+        return _type;
+    }
+
+    public String getOwner() {
+        return _owner;
+    }
+
+    public String getStatus() {
+        return _status;
+    }
+
+    public long getCount() {
+        return _count;
+    }
+
+    public void setCount(long count) {
+        _count = count;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+
+/**
+ * Helpers used by the update methods of the data store to skip writes
+ * that would not change anything.  The outcome of each update is recorded 
+ * by kind in {@link MetricsRegistry#getDefault()}.  Comparing 
+ * {@link #ENTITY_WRITES_SKIPPED_TOTAL} with {@link #ENTITY_WRITES_TOTAL} 
+ * shows how many datastore and memcache writes were avoided.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class EntityWrites {
+    
+    public static final String ENTITY_WRITES_TOTAL = "cws_entity_writes_total";
+    
+    public static final String ENTITY_WRITES_SKIPPED_TOTAL = 
+            "cws_entity_writes_skipped_total";
+    
+    public static final String ENTITY_VERSION_CONFLICTS_TOTAL = 
+            "cws_entity_version_conflicts_total";
+    
+    private EntityWrites(){
+        
+    }
+    
+    /**
+     * Compares the properties <b>entity</b> would be saved with against 
+     * those of <b>storedEntity</b>
+     * @param storedEntity entity as loaded from the data store or null
+     * @param entity entity about to be saved
+     * @return <b>true</b> if saving <b>entity</b> would change what is in 
+     * the data store otherwise <b>false</b>
+     */
+    public static boolean isChanged(final Object storedEntity,
+            final Object entity){
+        if (storedEntity == null || entity == null){
+            return true;
+        }
+        return !ofy().save().toEntity(storedEntity).getProperties()
+                .equals(ofy().save().toEntity(entity).getProperties());
+    }
+    
+    /**
+     * Records an update that was saved to the data store
+     * @param kind 
+     */
+    public static void written(final String kind){
+        MetricsRegistry.getDefault().counter(ENTITY_WRITES_TOTAL,
+                "Number of updates saved to the data store",
+                MetricsObjectifyFactory.KIND_LABEL,kind).inc();
+    }
+    
+    /**
+     * Records an update that was not saved because nothing changed
+     * @param kind 
+     */
+    public static void skipped(final String kind){
+        MetricsRegistry.getDefault().counter(ENTITY_WRITES_SKIPPED_TOTAL,
+                "Number of updates not saved because nothing changed",
+                MetricsObjectifyFactory.KIND_LABEL,kind).inc();
+    }
+    
+    /**
+     * Records an update where the entity passed in was older than the one
+     * in the data store.  The update was either applied to the latter 
+     * instead or rejected
+     * @param kind 
+     */
+    public static void versionConflict(final String kind){
+        MetricsRegistry.getDefault().counter(ENTITY_VERSION_CONFLICTS_TOTAL,
+                "Number of updates made to an out of date version of the entity",
+                MetricsObjectifyFactory.KIND_LABEL,kind).inc();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs list queries as a keys only query followed by a single batch load
+ * of the keys.  The batch load is served from the Objectify session cache 
+ * and memcache first so only entities missing from both are read from the 
+ * datastore.  Objectify only does this on its own for queries without 
+ * <b>in</b> or <b>!=</b> filters and loads the keys in chunks.<p/>
+ * 
+ * The number of keys returned is recorded by kind in 
+ * {@link MetricsRegistry#getDefault()} as {@link #QUERY_KEYS_TOTAL} which 
+ * can be compared with 
+ * {@link MetricsObjectifyFactory#DATASTORE_ENTITY_READS_TOTAL} to see how 
+ * many were served from cache.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class HybridQueryLoader {
+    
+    public static final String QUERY_KEYS_TOTAL = "cws_query_keys_total";
+    
+    private HybridQueryLoader(){
+        
+    }
+    
+    /**
+     * Runs <b>query</b> keys only and then loads the matching entities in
+     * one batch.  Queries with <b>in</b> or <b>!=</b> filters cannot also 
+     * have a sort order, other than by key, when run keys only.
+     * @param <T>
+     * @param query
+     * @return List of entities in the order returned by <b>query</b>, 
+     * entities removed between the query and the load are left out
+     */
+    public static <T> List<T> list(Query<T> query){
+        List<Key<T>> keys = query.keys().list();
+        List<T> entities = new ArrayList<>(keys.size());
+        if (keys.isEmpty()){
+            return entities;
+        }
+        MetricsRegistry.getDefault().counter(QUERY_KEYS_TOTAL,
+                "Number of keys returned by keys only list queries",
+                MetricsObjectifyFactory.KIND_LABEL,keys.get(0).getKind())
+                .inc(keys.size());
+        
+        Map<Key<T>,T> loaded = ofy().load().keys(keys);
+        for (Key<T> key : keys){
+            T entity = loaded.get(key);
+            if (entity != null){
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+}
@@ -62,6 +62,18 @@ public class InputWorkspaceFileLinkObjectifyDAOImpl implements InputWorkspaceFil
         Key<InputWorkspaceFileLink> iKey = ofy().save().entity(workspaceFileLink).now();
         return workspaceFileLink;
     }
+    
+    @Override
+    public List<InputWorkspaceFileLink> insertAll(List<InputWorkspaceFileLink> workspaceFileLinks) throws Exception {
+        if (workspaceFileLinks == null){
+            throw new NullPointerException("InputWorkspaceFileLink list is null");
+        }
+        if (workspaceFileLinks.isEmpty()){
+            return workspaceFileLinks;
+        }
+        ofy().save().entities(workspaceFileLinks).now();
+        return workspaceFileLinks;
+    }
 
     
     @Override
@@ -71,7 +83,7 @@ public class InputWorkspaceFileLinkObjectifyDAOImpl implements InputWorkspaceFil
         q = q.filter("_job",jobKey);
         
         q = addShowDeletedFilter(q, showDeleted);
-        return q.list();
+        return HybridQueryLoader.list(q);
     }
     
     
@@ -101,7 +113,7 @@ public class InputWorkspaceFileLinkObjectifyDAOImpl implements InputWorkspaceFil
     public List<InputWorkspaceFileLink> getByWorkspaceFileId(Long workspaceFileId, Boolean showDeleted) throws Exception {
         Query<InputWorkspaceFileLink> q = getByWorkspaceFileIdQuery(workspaceFileId,
                 showDeleted);
-        return q.list();
+        return HybridQueryLoader.list(q);
     }
 
     @Override
@@ -169,7 +181,7 @@ public class InputWorkspaceFileLinkObjectifyDAOImpl implements InputWorkspaceFil
         Query<InputWorkspaceFileLink> q = ofy().load().type(InputWorkspaceFileLink.class);
         
         q = addShowDeletedFilter(q,showDeleted);
-        return q.list();
+        return HybridQueryLoader.list(q);
     }
     
     /**
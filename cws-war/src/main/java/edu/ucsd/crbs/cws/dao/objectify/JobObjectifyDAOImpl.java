@@ -34,22 +34,35 @@
 package edu.ucsd.crbs.cws.dao.objectify;
 
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
 import com.googlecode.objectify.Work;
 import com.googlecode.objectify.cmd.Query;
 import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
 import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.JobSummaryDAO;
+import edu.ucsd.crbs.cws.dao.MigrationDAO;
+import edu.ucsd.crbs.cws.dao.VersionConflictException;
 import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
 import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
 import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
 import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.JobDetails;
 import edu.ucsd.crbs.cws.workflow.Parameter;
 import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowSummary;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -64,9 +77,38 @@ public class JobObjectifyDAOImpl implements JobDAO {
     private static final Logger _log
             = Logger.getLogger(JobObjectifyDAOImpl.class.getName());
     private static final String COMMA = ",";
+    
+    /**
+     * Most {@link Job}s saved in one transaction by 
+     * {@link #insertAll(java.util.List, boolean)}.  Each {@link Job} is its
+     * own entity group and a cross group transaction can span 25 groups, 
+     * one of which is needed for the job count shard
+     */
+    static final int MAX_JOBS_PER_TRANSACTION = 24;
 
     private InputWorkspaceFileLinkDAO _inputWorkspaceFileLinkDAO;
     private WorkspaceFileDAO _workspaceFileDAO;
+    private JobSummaryDAO _jobSummaryDAO = new JobSummaryObjectifyDAOImpl();
+    
+    /**
+     * Milliseconds to wait before checking again whether the 
+     * {@link Job#isActive()} flag has been backfilled, see 
+     * {@link #isActiveFlagBackfilled()}
+     */
+    public static final long ACTIVE_FLAG_CHECK_MILLIS = 60000;
+    
+    /**
+     * Set once a completed resave of all {@link Job}s is seen at which point
+     * every {@link Job} has the {@link Job#isActive()} flag.  Shared by all
+     * instances since it never goes back to false
+     */
+    private static volatile boolean _activeFlagBackfilled = false;
+    
+    /**
+     * Time in milliseconds of the last check that found the flag was not
+     * yet backfilled
+     */
+    private static volatile long _activeFlagCheckTime = 0;
     
     
     public JobObjectifyDAOImpl(InputWorkspaceFileLinkDAO inputWorkspaceFileLinkDAO)
@@ -78,6 +120,10 @@ public class JobObjectifyDAOImpl implements JobDAO {
         _workspaceFileDAO = workspaceFileDAO;
     }
     
+    public void setJobSummaryDAO(JobSummaryDAO jobSummaryDAO){
+        _jobSummaryDAO = jobSummaryDAO;
+    }
+    
     /**
      * In a transaction this method loads a {@link Job} with matching <b>jobId</b>
      * and resaves it to data store
@@ -105,7 +151,7 @@ public class JobObjectifyDAOImpl implements JobDAO {
                     return null;
                 }
 
-                Key<Job> tKey = ofy().save().entity(job).now();
+                ofy().save().<Object>entities(job,new JobDetails(job)).now();
                 return job;
             }
         });
@@ -117,7 +163,8 @@ public class JobObjectifyDAOImpl implements JobDAO {
     }
       
     /**
-     * Load {@link Job} with <b>jobId</b> from data store
+     * Load {@link Job} with <b>jobId</b> from data store along with its
+     * {@link JobDetails} in the same batch get
      * @param jobId id of {@link Job} to load
      * @return {@link Job} from datastore with matching <b>jobId</b>
      * @throws NullPointerException if <b>jobId</b> is null
@@ -139,7 +186,40 @@ public class JobObjectifyDAOImpl implements JobDAO {
                     + "parsing : "+nfe.getMessage(),nfe);
         }
         
-        return ofy().load().type(Job.class).id(jobIdAsLong).now();
+        Key<Job> jobKey = Key.create(Job.class, jobIdAsLong);
+        Map<Key<Object>,Object> loaded = ofy().load().<Object>keys(jobKey,
+                JobDetails.createKey(jobIdAsLong));
+        Job job = (Job)loaded.get(jobKey);
+        if (job == null){
+            return null;
+        }
+        JobDetails details = (JobDetails)loaded.get(
+                JobDetails.createKey(jobIdAsLong));
+        if (details != null){
+            details.copyTo(job);
+        }
+        return job;
+    }
+    
+    /**
+     * Loads {@link JobDetails} for <b>jobs</b> in a single batch and copies
+     * them into the {@link Job}s.  {@link Job}s saved before 
+     * {@link JobDetails} existed have none and keep the values loaded from
+     * the {@link Job} entity.
+     * @param jobs 
+     */
+    private void loadJobDetails(List<Job> jobs){
+        List<Key<JobDetails>> keys = new ArrayList<>(jobs.size());
+        for (Job j : jobs){
+            keys.add(JobDetails.createKey(j.getId()));
+        }
+        Map<Key<JobDetails>,JobDetails> details = ofy().load().keys(keys);
+        for (Job j : jobs){
+            JobDetails jd = details.get(JobDetails.createKey(j.getId()));
+            if (jd != null){
+                jd.copyTo(j);
+            }
+        }
     }
 
     /**
@@ -185,7 +265,9 @@ public class JobObjectifyDAOImpl implements JobDAO {
      * {@link Job#getOwner()} will be returned
      * @param status If <b>non</b> <code>null</code> only {@link Job} that has
      * {@link Job#getStatus() } in this variable (supports comma separated list)
-     * will be returned
+     * will be returned.  If the list matches {@link Job#ACTIVE_STATUSES} and
+     * {@link #isActiveFlagBackfilled()} the query filters on 
+     * {@link Job#isActive()} instead
      * @param notSubmittedToScheduler If <b>non</b> <code>null</code> and set
      * to <code>true</b> then {@link Job}s with 
      * {@link Job#getHasJobBeenSubmittedToScheduler()} set to <code>false</code>
@@ -204,7 +286,16 @@ public class JobObjectifyDAOImpl implements JobDAO {
          Query<Job> q = ofy().load().type(Job.class);
 
         if (status != null) {
-            q = q.filter("_status in ", generateListFromCommaSeparatedString(status));
+            List<String> statuses = generateListFromCommaSeparatedString(status);
+            if (isActiveStatuses(statuses) && isActiveFlagBackfilled()){
+                q = q.filter("_active", true);
+            }
+            else if (statuses.size() == 1){
+                q = q.filter("_status", statuses.get(0));
+            }
+            else {
+                q = q.filter("_status in ", statuses);
+            }
         }
         if (owner != null) {
             q = q.filter("_owner", owner);
@@ -228,22 +319,68 @@ public class JobObjectifyDAOImpl implements JobDAO {
         Query<Job> q = getJobsQuery(owner,status,notSubmittedToScheduler,
                 showDeleted);
         
+        List<Job> jobs = HybridQueryLoader.list(q);
+        if (noParams == false) {
+            loadJobDetails(jobs);
+        }
         if (noParams == false && noWorkflowParams == false) {
-            return q.list();
+            return jobs;
         }
 
-        List<Job> jobs = q.list();
         for (Job j : jobs) {
             if (noParams == true) {
                 j.setParameters(null);
             }
             if (noWorkflowParams == true) {
-                Workflow w = j.getWorkflow();
-                if (w != null) {
-                    w.setParameters(null);
-                    w.setParentWorkflow(null);
-                }
+                useWorkflowSummary(j);
+            }
+        }
+        return jobs;
+    }
+    
+    /**
+     * If <b>job</b> has a {@link WorkflowSummary} then <b>job</b> is set to
+     * return a {@link Workflow} built from it so the {@link Workflow} is 
+     * never loaded.  {@link Job}s inserted before {@link WorkflowSummary} 
+     * existed fall back to loading the {@link Workflow} and removing its 
+     * parameters and parent.
+     * @param job 
+     */
+    private void useWorkflowSummary(Job job){
+        if (job.getWorkflowSummary() != null){
+            job.setWorkflowSummaryOnly(true);
+            return;
+        }
+        Workflow w = job.getWorkflow();
+        if (w != null) {
+            w.setParameters(null);
+            w.setParentWorkflow(null);
+        }
+    }
+
+    /**
+     * Deleted {@link Job}s are filtered out after the query so only the 
+     * built in index on create date, or the composite index on owner and 
+     * create date if <b>owner</b> is set, is needed
+     */
+    @Override
+    public List<Job> getJobsCreatedSince(final String owner,
+            final Date since) throws Exception {
+        if (since == null){
+            throw new NullPointerException("Date cannot be null");
+        }
+        Query<Job> q = ofy().load().type(Job.class);
+        if (owner != null){
+            q = q.filter("_owner", owner);
+        }
+        List<Job> jobs = new ArrayList<>();
+        for (Job j : HybridQueryLoader.list(q.filter("_createDate >=", since))){
+            if (j.isDeleted()){
+                continue;
             }
+            j.setParameters(null);
+            useWorkflowSummary(j);
+            jobs.add(j);
         }
         return jobs;
     }
@@ -268,13 +405,14 @@ public class JobObjectifyDAOImpl implements JobDAO {
      * @throws Exception
      */
     @Override
-    public Job insert(Job job, boolean skipWorkflowCheck) throws Exception {
+    public Job insert(final Job job, boolean skipWorkflowCheck) throws Exception {
         if (job == null) {
             throw new NullPointerException("Job is null");
         }
         if (job.getCreateDate() == null) {
             job.setCreateDate(new Date());
         }
+        job.updateStatusTimeline(null, job.getCreateDate());
 
         if (skipWorkflowCheck == false) {
 
@@ -292,29 +430,185 @@ public class JobObjectifyDAOImpl implements JobDAO {
                 throw new Exception("Unable to load Workflow ("+
                         job.getWorkflow().getId()+") for Job");
             }
+            job.setWorkflowSummary(new WorkflowSummary(wf));
+        }
+        else if (job.getWorkflow() != null){
+            job.setWorkflowSummary(new WorkflowSummary(job.getWorkflow()));
         }
         
         
-        Key<Job> jKey = ofy().save().entity(job).now();
+        if (job.getId() == null){
+            job.setId(ofy().factory().allocateId(Job.class).getId());
+        }
+        // job count is updated in the same transaction as the job is saved
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                ofy().save().<Object>entities(job,new JobDetails(job)).now();
+                updateJobCounts(null,job);
+            }
+        });
 
         //iterate through parameters and insert
         //InputWorkspaceFileLink objects for WorkspaceFiles that are being
         //used
-        if (job.getParameters() != null){
-            for (Parameter p : job.getParameters()){
-                if (p.isIsWorkspaceId()){
-                    InputWorkspaceFileLink fileLink = new InputWorkspaceFileLink();
-                    fileLink.setJob(job);
-                    fileLink.setParameterName(p.getName());
-                    WorkspaceFile wsf = new WorkspaceFile();
-                    wsf.setId(Long.valueOf(p.getValue()));
-                    fileLink.setWorkspaceFile(wsf);
-                    _inputWorkspaceFileLinkDAO.insert(fileLink);
+        List<InputWorkspaceFileLink> fileLinks = getInputWorkspaceFileLinks(job);
+        if (!fileLinks.isEmpty()){
+            _inputWorkspaceFileLinkDAO.insertAll(fileLinks);
+        }
+        
+        return job;
+    }
+
+    /**
+     * Creates all the <b>jobs</b> in the data store.  Ids for the {@link Job}s
+     * are allocated in a single call so the {@link InputWorkspaceFileLink}s 
+     * can be built before anything is written.  {@link Job}s with the same
+     * owner and status are then saved in transactions of up to 
+     * {@link #MAX_JOBS_PER_TRANSACTION} that also update their job count, 
+     * after which the links are saved in one batch.<p/>
+     * If <b>skipWorkflowCheck</b> is false each distinct {@link Workflow} is
+     * loaded once and an {@link Exception} is thrown, before anything is 
+     * saved, if any are missing.
+     *
+     * @param jobs Jobs to insert
+     * @param skipWorkflowCheck
+     * @return <b>jobs</b> with ids updated
+     * @throws Exception
+     */
+    @Override
+    public List<Job> insertAll(List<Job> jobs, boolean skipWorkflowCheck) throws Exception {
+        if (jobs == null) {
+            throw new NullPointerException("Job list is null");
+        }
+        if (jobs.isEmpty()){
+            return jobs;
+        }
+        
+        if (skipWorkflowCheck == false) {
+            Set<Long> workflowIds = new HashSet<>();
+            for (Job job : jobs){
+                if (job.getWorkflow() == null) {
+                    throw new NullPointerException("Job Workflow cannot be null");
+                }
+                if (job.getWorkflow().getId() == null || job.getWorkflow().getId() <= 0) {
+                    throw new Exception("Job Workflow id is either null or 0 or less which is not valid");
+                }
+                workflowIds.add(job.getWorkflow().getId());
+            }
+            Map<Long,Workflow> workflows = ofy().load().type(Workflow.class).ids(workflowIds);
+            for (Long workflowId : workflowIds){
+                if (workflows.get(workflowId) == null){
+                    throw new Exception("Unable to load Workflow ("+
+                        workflowId+") for Job");
+                }
+            }
+            for (Job job : jobs){
+                job.setWorkflowSummary(new WorkflowSummary(
+                        workflows.get(job.getWorkflow().getId())));
+            }
+        }
+        else {
+            for (Job job : jobs){
+                if (job.getWorkflow() != null){
+                    job.setWorkflowSummary(new WorkflowSummary(job.getWorkflow()));
                 }
             }
         }
         
-        return job;
+        int idsNeeded = 0;
+        for (Job job : jobs){
+            if (job.getId() == null){
+                idsNeeded++;
+            }
+        }
+        Iterator<Key<Job>> keyIterator = null;
+        if (idsNeeded > 0){
+            keyIterator = ofy().factory().allocateIds(Job.class,idsNeeded).iterator();
+        }
+        
+        // group jobs by owner and status so each transaction below only
+        // touches a single counter
+        Date createDate = new Date();
+        List<InputWorkspaceFileLink> fileLinks = new ArrayList<>();
+        Map<List<Object>,List<Job>> jobsByCounter = new LinkedHashMap<>();
+        for (Job job : jobs){
+            if (job.getId() == null){
+                job.setId(keyIterator.next().getId());
+            }
+            if (job.getCreateDate() == null) {
+                job.setCreateDate(createDate);
+            }
+            job.updateStatusTimeline(null, job.getCreateDate());
+            fileLinks.addAll(getInputWorkspaceFileLinks(job));
+            List<Object> counter = Arrays.<Object>asList(job.isDeleted(),
+                    job.getOwner(),job.getStatus());
+            List<Job> counterJobs = jobsByCounter.get(counter);
+            if (counterJobs == null){
+                counterJobs = new ArrayList<>();
+                jobsByCounter.put(counter, counterJobs);
+            }
+            counterJobs.add(job);
+        }
+        
+        for (List<Job> counterJobs : jobsByCounter.values()){
+            for (int i = 0; i < counterJobs.size(); i += MAX_JOBS_PER_TRANSACTION){
+                saveWithJobCount(counterJobs.subList(i, Math.min(
+                        i+MAX_JOBS_PER_TRANSACTION, counterJobs.size())));
+            }
+        }
+        _inputWorkspaceFileLinkDAO.insertAll(fileLinks);
+        return jobs;
+    }
+    
+    /**
+     * Saves <b>jobs</b>, which must all have the same owner, status, and
+     * deleted flag, along with their {@link JobDetails} and adds them to the
+     * job count in a single transaction
+     * @param jobs No more then {@link #MAX_JOBS_PER_TRANSACTION} {@link Job}s
+     */
+    private void saveWithJobCount(final List<Job> jobs){
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                List<Object> toSave = new ArrayList<>(jobs.size()*2);
+                for (Job job : jobs){
+                    toSave.add(job);
+                    toSave.add(new JobDetails(job));
+                }
+                ofy().save().entities(toSave).now();
+                Job job = jobs.get(0);
+                if (!job.isDeleted()){
+                    _jobSummaryDAO.incrementJobCount(job.getOwner(), 
+                            job.getStatus(), jobs.size());
+                }
+            }
+        });
+    }
+    
+    /**
+     * Builds {@link InputWorkspaceFileLink} objects for every {@link Parameter}
+     * in <b>job</b> that refers to a {@link WorkspaceFile}
+     * @param job {@link Job} which must already have an id
+     * @return List of links which is empty if there are none
+     */
+    private List<InputWorkspaceFileLink> getInputWorkspaceFileLinks(Job job){
+        List<InputWorkspaceFileLink> fileLinks = new ArrayList<>();
+        if (job.getParameters() == null){
+            return fileLinks;
+        }
+        for (Parameter p : job.getParameters()){
+            if (p.isIsWorkspaceId()){
+                InputWorkspaceFileLink fileLink = new InputWorkspaceFileLink();
+                fileLink.setJob(job);
+                fileLink.setParameterName(p.getName());
+                WorkspaceFile wsf = new WorkspaceFile();
+                wsf.setId(Long.valueOf(p.getValue()));
+                fileLink.setWorkspaceFile(wsf);
+                fileLinks.add(fileLink);
+            }
+        }
+        return fileLinks;
     }
 
     /**
@@ -349,64 +643,127 @@ public class JobObjectifyDAOImpl implements JobDAO {
             final String error,
             final String detailedError) throws Exception {
 
-        Job tempJob = this.getJobById(Long.toString(jobId));
+        // only the small Job entity is loaded, JobDetails is loaded only
+        // if a field stored there is being changed
+        Job tempJob = ofy().load().type(Job.class).id(jobId).now();
         
         if (tempJob == null){
             return null;
         }
-        boolean updated = false;
-        if (status != null){
-            updated = true;
-            tempJob.setStatus(status);
-        }
-        if (estCpu != null){
-            updated = true;
-            tempJob.setEstimatedCpuInSeconds(estCpu);
-        }
-        if (estWallTime != null){
-            updated = true;
-            tempJob.setEstimatedWallTimeInSeconds(estWallTime);
-        }
-        if (estDisk != null){
-            updated = true;
-            tempJob.setEstimatedDiskInBytes(estDisk);
-        }
-        if (submitDate != null){
-            updated = true;
-            tempJob.setSubmitDate(new Date(submitDate));
-        }
-        if (startDate != null){
-            updated = true;
-            tempJob.setStartDate(new Date(startDate));
-        }
-        if (finishDate != null){
-            updated = true;
-            tempJob.setFinishDate(new Date(finishDate));
-        }
-        if (submittedToScheduler != null){
-            updated = true;
-            tempJob.setHasJobBeenSubmittedToScheduler(submittedToScheduler);
+        if (detailedError != null){
+            loadJobDetails(Arrays.asList(tempJob));
         }
-        if (schedulerJobId != null){
-            updated = true;
-            tempJob.setSchedulerJobId(schedulerJobId);
+        return update(tempJob, status, estCpu, estWallTime, estDisk, 
+                submitDate, startDate, finishDate, submittedToScheduler, 
+                schedulerJobId, deleted, error, detailedError);
+    }
+    
+    /**
+     * Updates <b>job</b> with any of the values below that are 
+     * <b>non</b> <code>null</code> and differ from those in <b>job</b>.  If 
+     * none differ nothing is read from or written to the data store.  
+     * Otherwise the {@link Job} is reloaded in a transaction and if its 
+     * {@link Job#getVersion()} no longer matches <b>job</b> the values are
+     * applied to the stored {@link Job} which is saved only if that
+     * changed it.  {@link JobDetails} is saved only if <b>detailedError</b>
+     * changed or the {@link Job} has legacy details.
+     * @param job {@link Job} as loaded from data store.  If 
+     * <b>detailedError</b> is set {@link JobDetails} should be loaded as well
+     * @param status 
+     * @param estCpu
+     * @param estWallTime
+     * @param estDisk
+     * @param submitDate
+     * @param startDate
+     * @param finishDate
+     * @param submittedToScheduler
+     * @param schedulerJobId
+     * @param deleted
+     * @param error
+     * @param detailedError
+     * @return Updated {@link Job} or null if it is no longer in data store
+     * @throws Exception 
+     */
+    @Override
+    public Job update(final Job job, final String status, final Long estCpu,
+            final Long estWallTime, final Long estDisk, final Long submitDate,
+            final Long startDate, final Long finishDate,
+            final Boolean submittedToScheduler,
+            final String schedulerJobId,
+            final Boolean deleted,
+            final String error,
+            final String detailedError) throws Exception {
+        if (job == null){
+            throw new NullPointerException("Job cannot be null");
         }
-        if (deleted != null){
-            updated = true;
-            tempJob.setDeleted(deleted);
+        if (job.getId() == null){
+            throw new Exception("Id must be set for Job");
         }
-        if (error != null){
-            updated = true;
-            tempJob.setError(error);
+        final String kind = Key.getKind(Job.class);
+        if (!job.updateWithChanges(status, estCpu, estWallTime, estDisk, 
+                submitDate, startDate, finishDate, submittedToScheduler, 
+                schedulerJobId, deleted, error, detailedError)){
+            EntityWrites.skipped(kind);
+            return job;
         }
-        if (detailedError != null){
-            updated = true;
-            tempJob.setDetailedError(detailedError);
+        
+        final Job[] previousJob = new Job[1];
+        Job resJob = ofy().transact(new Work<Job>() {
+            @Override
+            public Job run() {
+                previousJob[0] = null;
+                Job storedJob = ofy().load().type(Job.class).id(job.getId()).now();
+                if (storedJob == null){
+                    return null;
+                }
+                Job previous = getJobCountsSnapshot(storedJob);
+                long storedVersion = storedJob.getVersion();
+                Job jobToSave = job;
+                if (storedVersion != job.getVersion()){
+                    EntityWrites.versionConflict(kind);
+                    jobToSave = storedJob;
+                    if (detailedError != null){
+                        loadJobDetails(Arrays.asList(jobToSave));
+                    }
+                    if (!jobToSave.updateWithChanges(status, estCpu, 
+                            estWallTime, estDisk, submitDate, startDate, 
+                            finishDate, submittedToScheduler, schedulerJobId, 
+                            deleted, error, detailedError)){
+                        return jobToSave;
+                    }
+                }
+                prepareForSave(jobToSave,storedJob);
+                save(jobToSave,storedVersion,getDetailsToSave(jobToSave,
+                        detailedError != null));
+                updateJobCounts(previous,jobToSave);
+                previousJob[0] = previous;
+                return jobToSave;
+            }
+        });
+        if (resJob == null){
+            return null;
         }
-        if (updated == true){
-           return update(tempJob);
+        if (previousJob[0] == null){
+            EntityWrites.skipped(kind);
+            return resJob;
         }
-        return tempJob;
+        EntityWrites.written(kind);
+        return resJob;
+    }
+    
+    /**
+     * Creates a {@link Job} with only the values used by 
+     * {@link #updateJobCounts(edu.ucsd.crbs.cws.workflow.Job, edu.ucsd.crbs.cws.workflow.Job)}
+     * copied from <b>job</b>
+     * @param job
+     * @return 
+     */
+    private Job getJobCountsSnapshot(final Job job){
+        Job snapshot = new Job();
+        snapshot.setOwner(job.getOwner());
+        snapshot.setStatus(job.getStatus());
+        snapshot.setDeleted(job.isDeleted());
+        return snapshot;
     }
 
     /**
@@ -414,23 +771,180 @@ public class JobObjectifyDAOImpl implements JobDAO {
      * <b>NOTE:</b> It is suggested to load {@link Job} via 
      * {@link JobDAO#getJobById(java.lang.String) } make changes and then pass
      * it to this method.
-     * @param job Must have {@link Job#getId()} set 
+     * @param job Must have {@link Job#getId()} set and the 
+     *            {@link Job#getVersion()} it was loaded with
      * @return Updated {@link Job}
+     * @throws VersionConflictException if {@link Job#getVersion()} does not
+     *         match the version in the data store
      * @throws Exception if {@link Job#getId()} is not set for {@link Job} 
      * @throws NullPointerException if <b>job</b> passed in is <code>null</code>
      */
     @Override
     public Job update(final Job job) throws Exception {
+        return update(job,true);
+    }
+    
+    /**
+     * Updates {@link Job} in data store with <b>job</b> passed in.  Nothing
+     * is written if <b>job</b> and its {@link JobDetails} match what is 
+     * already in the data store, unless {@link Job#hasLegacyDetails()} is 
+     * <b>true</b>
+     * @param job Must have {@link Job#getId()} set
+     * @param saveDetails if <b>true</b> {@link JobDetails} built from 
+     * <b>job</b> is saved as well otherwise only the {@link Job} entity is
+     * saved, unless {@link Job#hasLegacyDetails()} is <b>true</b>.  Detail
+     * fields that are null in <b>job</b> keep their stored values
+     * @return Updated {@link Job}
+     * @throws VersionConflictException if {@link Job#getVersion()} of 
+     *         <b>job</b> does not match the version in the data store
+     * @throws Exception 
+     */
+    private Job update(final Job job,final boolean saveDetails) throws Exception {
         if (job == null){
             throw new NullPointerException("Job cannot be null");
         }
         if (job.getId() == null){
             throw new Exception("Id must be set for Job");
         }
-        ofy().save().entity(job).now();
+        final boolean[] written = new boolean[1];
+        final long[] conflictVersion = new long[]{-1};
+        ofy().transact(new Work<Job>() {
+            @Override
+            public Job run() {
+                written[0] = false;
+                conflictVersion[0] = -1;
+                Job storedJob = ofy().load().type(Job.class).id(job.getId()).now();
+                long storedVersion = storedJob == null ? 0 : storedJob.getVersion();
+                if (storedJob != null && storedVersion != job.getVersion()){
+                    conflictVersion[0] = storedVersion;
+                    return storedJob;
+                }
+                prepareForSave(job,storedJob);
+                JobDetails details = getDetailsToSave(job,saveDetails);
+                if (storedJob != null && !job.hasLegacyDetails() && 
+                        !EntityWrites.isChanged(storedJob,job)){
+                    if (details == null){
+                        return storedJob;
+                    }
+                    JobDetails storedDetails = ofy().load()
+                            .key(JobDetails.createKey(job.getId())).now();
+                    if (!EntityWrites.isChanged(storedDetails,details)){
+                        return storedJob;
+                    }
+                }
+                save(job,storedVersion,details);
+                updateJobCounts(storedJob,job);
+                written[0] = true;
+                return storedJob;
+            }
+        });
+        String kind = Key.getKind(Job.class);
+        if (conflictVersion[0] >= 0){
+            EntityWrites.versionConflict(kind);
+            throw new VersionConflictException(kind,job.getId(),
+                    job.getVersion(),conflictVersion[0]);
+        }
+        if (!written[0]){
+            EntityWrites.skipped(kind);
+            return job;
+        }
+        EntityWrites.written(kind);
         return job;
     }
     
+    /**
+     * Carries status timeline and {@link WorkflowSummary} forward from 
+     * <b>storedJob</b> into <b>job</b>.  The version of <b>job</b> must 
+     * already match that of <b>storedJob</b>
+     * @param job {@link Job} to be saved
+     * @param storedJob {@link Job} as loaded in the transaction or null
+     */
+    private void prepareForSave(final Job job,final Job storedJob){
+        job.updateStatusTimeline(storedJob, new Date());
+        if (job.getWorkflowSummary() == null && storedJob != null){
+            job.setWorkflowSummary(storedJob.getWorkflowSummary());
+        }
+    }
+    
+    /**
+     * Builds the {@link JobDetails} to save with <b>job</b>.  Fields not set 
+     * in <b>job</b>, because its details were never loaded or were not 
+     * sent, keep the values in the stored {@link JobDetails} and those 
+     * values are copied back into <b>job</b>.  Must be called within a 
+     * transaction
+     * @param job {@link Job} to save
+     * @param saveDetails if <b>false</b> details are only built if 
+     *        {@link Job#hasLegacyDetails()} is <b>true</b>
+     * @return {@link JobDetails} to save or null if they should not be saved
+     */
+    private JobDetails getDetailsToSave(final Job job,final boolean saveDetails){
+        if (!saveDetails && !job.hasLegacyDetails()){
+            return null;
+        }
+        JobDetails details = new JobDetails(job);
+        details.fillMissingFrom(ofy().load()
+                .key(JobDetails.createKey(job.getId())).now());
+        details.copyTo(job);
+        return details;
+    }
+    
+    /**
+     * Sets version of <b>job</b> to one more than <b>storedVersion</b> and
+     * saves it.  Must be called within a transaction after 
+     * {@link #prepareForSave(edu.ucsd.crbs.cws.workflow.Job, edu.ucsd.crbs.cws.workflow.Job)}
+     * @param job {@link Job} to save
+     * @param storedVersion version of {@link Job} as loaded in the transaction
+     * @param details {@link JobDetails} from 
+     *        {@link #getDetailsToSave(edu.ucsd.crbs.cws.workflow.Job, boolean)}
+     *        to save as well or null to save only the {@link Job}
+     */
+    private void save(final Job job,final long storedVersion,
+            final JobDetails details){
+        job.setVersion(storedVersion+1);
+        if (details != null){
+            ofy().save().<Object>entities(job,details).now();
+        }
+        else {
+            ofy().save().entity(job).now();
+        }
+    }
+    
+    /**
+     * Updates job counts in {@link JobSummaryDAO} to reflect change from
+     * <b>previousJob</b> to <b>job</b>.  Deleted {@link Job}s are not counted.
+     * Must be called within the transaction that saved <b>job</b> so the 
+     * counts change only if the save commits
+     * @param previousJob {@link Job} as it was in data store or null if 
+     * it did not exist
+     * @param job {@link Job} as it is now in data store or null if removed
+     */
+    private void updateJobCounts(Job previousJob,Job job){
+        if (previousJob != null && job != null && 
+                previousJob.isDeleted() == job.isDeleted()){
+            if (previousJob.isDeleted()){
+                return;
+            }
+            if (equals(previousJob.getOwner(),job.getOwner()) && 
+                    equals(previousJob.getStatus(),job.getStatus())){
+                return;
+            }
+        }
+        if (previousJob != null && !previousJob.isDeleted()){
+            _jobSummaryDAO.incrementJobCount(previousJob.getOwner(), 
+                    previousJob.getStatus(), -1);
+        }
+        if (job != null && !job.isDeleted()){
+            _jobSummaryDAO.incrementJobCount(job.getOwner(), job.getStatus(), 1);
+        }
+    }
+    
+    private boolean equals(final String a,final String b){
+        if (a == null){
+            return b == null;
+        }
+        return a.equals(b);
+    }
+    
     /**
      * Gets {@link Job}s that were run from the <b>workflowId</b> passed in
      * @param workflowId id of {@link Workflow} that {@link Job} was run from
@@ -443,7 +957,7 @@ public class JobObjectifyDAOImpl implements JobDAO {
         Workflow w = new Workflow();
         w.setId(workflowId);
         q = q.filter("_workflow", Key.create(w));
-        return q.list();
+        return HybridQueryLoader.list(q);
     }
 
     /**
@@ -492,7 +1006,18 @@ public class JobObjectifyDAOImpl implements JobDAO {
             }
         }
         if (permanentlyDelete != null && permanentlyDelete == true){
-            ofy().delete().type(Job.class).id(job.getId()).now();
+            final long id = job.getId();
+            ofy().transact(new VoidWork() {
+                @Override
+                public void vrun() {
+                    Job storedJob = ofy().load().type(Job.class).id(id).now();
+                    ofy().delete().keys(Key.create(Job.class, id),
+                            JobDetails.createKey(id)).now();
+                    if (storedJob != null){
+                        updateJobCounts(storedJob,null);
+                    }
+                }
+            });
         }
         else {
             job.setDeleted(true);
@@ -507,6 +1032,60 @@ public class JobObjectifyDAOImpl implements JobDAO {
     
     
     
+    /**
+     * Checks if <b>statuses</b>, ignoring empty entries, is the same set as 
+     * {@link Job#ACTIVE_STATUSES} in which case the indexed 
+     * {@link Job#isActive()} flag can be queried instead of each status
+     * @param statuses
+     * @return true if <b>statuses</b> matches {@link Job#ACTIVE_STATUSES}
+     */
+    private boolean isActiveStatuses(List<String> statuses){
+        Set<String> statusSet = new HashSet<>(statuses);
+        statusSet.remove("");
+        return statusSet.equals(new HashSet<>(Job.ACTIVE_STATUSES));
+    }
+    
+    /**
+     * {@link Job}s saved before {@link Job#isActive()} was added lack the 
+     * property and are not returned by a filter on it until resaved.  This 
+     * method denotes whether a resave of all {@link Job}s, started via 
+     * {@link MigrationDAO}, has finished without error and was run with 
+     * a {@link MigrationStatus#getSchemaVersion()} of at least 
+     * {@link Job#SCHEMA_VERSION}.  Once it has the result is kept for the 
+     * life of the instance, until then the datastore is checked at most 
+     * once every {@link #ACTIVE_FLAG_CHECK_MILLIS} milliseconds.
+     * @return true if the {@link Job} migration has completed
+     */
+    boolean isActiveFlagBackfilled(){
+        if (_activeFlagBackfilled){
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (_activeFlagCheckTime > 0 && 
+                now - _activeFlagCheckTime < ACTIVE_FLAG_CHECK_MILLIS){
+            return false;
+        }
+        MigrationStatus status = ofy().load().type(MigrationStatus.class)
+                .id(MigrationDAO.JOB_KIND).now();
+        if (status != null && status.isRunning() == false && 
+                status.getFinishDate() != null && status.getError() == null &&
+                status.getSchemaVersion() >= Job.SCHEMA_VERSION){
+            _activeFlagBackfilled = true;
+            return true;
+        }
+        _activeFlagCheckTime = now;
+        return false;
+    }
+    
+    /**
+     * Clears cached result of {@link #isActiveFlagBackfilled()} so the next
+     * call checks the datastore
+     */
+    static void resetActiveFlagBackfilled(){
+        _activeFlagBackfilled = false;
+        _activeFlagCheckTime = 0;
+    }
+    
     private List<String> generateListFromCommaSeparatedString(final String val) {
         return Arrays.asList(val.split(COMMA));
     }
@@ -0,0 +1,392 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.googlecode.objectify.VoidWork;
+import com.googlecode.objectify.cmd.Query;
+import edu.ucsd.crbs.cws.dao.JobSummaryDAO;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitterImpl;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import edu.ucsd.crbs.cws.workflow.report.JobSummary;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Implements {@link JobSummaryDAO} with sharded counters stored as 
+ * {@link CounterShard} entities via Objectify.  Each increment updates one
+ * randomly chosen shard in a transaction and reads sum all shards.<p/>
+ * 
+ * {@link #rebuild()} never deletes shards.  It walks {@link Job}s and 
+ * {@link WorkspaceFile}s in slices run by {@link JobSummaryRebuildTask}s.
+ * Each slice saves the counts it found as a {@link JobSummaryRebuildSlice}
+ * and passes only its cursor on to the next slice.  When done the counts
+ * of all slices are summed and the difference between them and the 
+ * current counts is added to each counter.  Increments made while the rebuild runs
+ * are kept, though a change to an object after its slice was counted will
+ * still be off until the next rebuild.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobSummaryObjectifyDAOImpl implements JobSummaryDAO {
+
+    private static final Logger _log
+            = Logger.getLogger(JobSummaryObjectifyDAOImpl.class.getName());
+    
+    /**
+     * Number of shards per counter
+     */
+    public static final int NUM_SHARDS = 10;
+    
+    /**
+     * {@link CounterShard#getType()} for job counts
+     */
+    public static final String JOB_COUNT_TYPE = "jobcount";
+    
+    /**
+     * {@link CounterShard#getType()} for output workspace file bytes
+     */
+    public static final String OUTPUT_BYTES_TYPE = "outputbytes";
+    
+    /**
+     * Number of entities loaded at a time by rebuild
+     */
+    public static final int REBUILD_BATCH_SIZE = 500;
+    
+    /**
+     * Maximum number of batches loaded in a single rebuild slice
+     */
+    public static final int DEFAULT_BATCHES_PER_SLICE = 20;
+    
+    /**
+     * Counts increments that failed outside of a transaction.  The counters
+     * are off by the lost deltas until the next {@link #rebuild()}
+     */
+    public static final String INCREMENT_FAILURES_TOTAL = 
+            "cws_job_summary_increment_failures_total";
+    
+    /**
+     * Label holding {@link CounterShard#getType()} on 
+     * {@link #INCREMENT_FAILURES_TOTAL}
+     */
+    public static final String TYPE_LABEL = "type";
+    
+    private final Random _random = new Random();
+    
+    private DeferredTaskSubmitter _taskSubmitter = new DeferredTaskSubmitterImpl();
+    private int _batchSize = REBUILD_BATCH_SIZE;
+    private int _batchesPerSlice = DEFAULT_BATCHES_PER_SLICE;
+    
+    void setDeferredTaskSubmitter(DeferredTaskSubmitter taskSubmitter){
+        _taskSubmitter = taskSubmitter;
+    }
+    
+    void setBatchSize(int batchSize){
+        _batchSize = batchSize;
+    }
+    
+    void setBatchesPerSlice(int batchesPerSlice){
+        _batchesPerSlice = batchesPerSlice;
+    }
+    
+    @Override
+    public void incrementJobCount(String owner, String status, long delta) {
+        increment(JOB_COUNT_TYPE,owner,status,delta);
+    }
+
+    @Override
+    public void incrementOutputBytes(String owner, long delta) {
+        increment(OUTPUT_BYTES_TYPE,owner,null,delta);
+    }
+    
+    /**
+     * Adds <b>delta</b> to a random shard of counter.  If a transaction is
+     * already in progress the shard is updated as part of it and any error
+     * is thrown so the caller's transaction fails as well.  Otherwise the 
+     * shard is updated in its own transaction and errors are logged and
+     * counted in {@link #INCREMENT_FAILURES_TOTAL} so drift is visible and
+     * can be repaired with {@link #rebuild()}.
+     */
+    private void increment(final String type,final String owner,
+            final String status,final long delta){
+        if (delta == 0){
+            return;
+        }
+        final int shard = _random.nextInt(NUM_SHARDS);
+        if (ofy().getTransaction() != null){
+            incrementShard(type, owner, status, shard, delta);
+            return;
+        }
+        try {
+            ofy().transact(new VoidWork() {
+                @Override
+                public void vrun() {
+                    incrementShard(type, owner, status, shard, delta);
+                }
+            });
+        }
+        catch(Exception ex){
+            MetricsRegistry.getDefault().counter(INCREMENT_FAILURES_TOTAL,
+                    "Number of job summary counter updates that failed",
+                    TYPE_LABEL,type).inc();
+            _log.log(Level.WARNING,"Unable to update counter "+
+                    CounterShard.getId(type, owner, status, shard)+
+                    " by "+delta+", counts are off until next rebuild",ex);
+        }
+    }
+    
+    /**
+     * Adds <b>delta</b> to <b>shard</b> of counter.  Must be called within
+     * a transaction
+     */
+    private void incrementShard(final String type,final String owner,
+            final String status,int shard,final long delta){
+        CounterShard cs = ofy().load().type(CounterShard.class)
+                .id(CounterShard.getId(type, owner, status, shard)).now();
+        if (cs == null){
+            cs = new CounterShard(type,owner,status,shard);
+        }
+        cs.setCount(cs.getCount()+delta);
+        ofy().save().entity(cs).now();
+    }
+
+    @Override
+    public JobSummary getJobSummary(String owner) throws Exception {
+        Query<CounterShard> q = ofy().load().type(CounterShard.class);
+        if (owner != null){
+            q = q.filter("_owner", owner);
+        }
+        JobSummary summary = new JobSummary();
+        for (CounterShard cs : q.list()){
+            if (cs.getCount() == 0){
+                continue;
+            }
+            if (JOB_COUNT_TYPE.equals(cs.getType())){
+                summary.addJobCount(cs.getOwner(), cs.getStatus(), cs.getCount());
+            }
+            else if (OUTPUT_BYTES_TYPE.equals(cs.getType())){
+                summary.addOutputBytes(cs.getOwner(), cs.getCount());
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Queues the first {@link JobSummaryRebuildTask} and returns the counts
+     * as they are now.  The counts are corrected once the last slice has 
+     * run.
+     * @return current counts
+     * @throws Exception 
+     */
+    @Override
+    public JobSummary rebuild() throws Exception {
+        JobSummaryRebuildTask task = new JobSummaryRebuildTask(
+                System.currentTimeMillis(),0,JOB_COUNT_TYPE,null);
+        submitSlice(task);
+        return getJobSummary(null);
+    }
+    
+    /**
+     * Counts the next batches of {@link Job}s, or {@link WorkspaceFile}s if
+     * <b>type</b> is {@link #OUTPUT_BYTES_TYPE}, after <b>cursor</b>.  If 
+     * there is more to count the counts are saved as a 
+     * {@link JobSummaryRebuildSlice} and the next slice is queued.  
+     * Otherwise the counts of all earlier slices are loaded and added to 
+     * those of this slice and the counters are corrected to match.  A 
+     * retried slice overwrites its saved counts so nothing is counted twice.
+     * @param generation Time rebuild was started, used in task names
+     * @param slice Number of this slice starting at 0
+     * @param type {@link #JOB_COUNT_TYPE} or {@link #OUTPUT_BYTES_TYPE}
+     * @param cursor Web safe cursor to start at or null to start at beginning
+     * @throws Exception 
+     */
+    void runRebuildSlice(long generation,int slice,final String type,
+            final String cursor) throws Exception {
+        JobSummary counts = new JobSummary();
+        String curCursor = cursor;
+        boolean done = false;
+        int batches = 0;
+        while (done == false && batches < _batchesPerSlice){
+            Query<?> q = ofy().load().type(JOB_COUNT_TYPE.equals(type) ? 
+                    Job.class : WorkspaceFile.class)
+                    .filter("_deleted", false).limit(_batchSize);
+            if (curCursor != null){
+                q = q.startAt(Cursor.fromWebSafeString(curCursor));
+            }
+            QueryResultIterator<?> itr = q.iterator();
+            int count = 0;
+            while (itr.hasNext()){
+                add(counts,itr.next());
+                count++;
+            }
+            curCursor = itr.getCursor().toWebSafeString();
+            done = count < _batchSize;
+            batches++;
+            // entities are not needed again so keep session cache small
+            ofy().clear();
+        }
+        
+        if (done == false){
+            saveSliceCounts(generation, slice, counts);
+            submitSlice(new JobSummaryRebuildTask(generation,slice+1,type,
+                    curCursor));
+            return;
+        }
+        if (JOB_COUNT_TYPE.equals(type)){
+            saveSliceCounts(generation, slice, counts);
+            submitSlice(new JobSummaryRebuildTask(generation,slice+1,
+                    OUTPUT_BYTES_TYPE,null));
+            return;
+        }
+        
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < slice; i++){
+            ids.add(JobSummaryRebuildSlice.getId(generation, i));
+        }
+        Map<String,JobSummaryRebuildSlice> savedSlices = ofy().load()
+                .type(JobSummaryRebuildSlice.class).ids(ids);
+        for (String id : ids){
+            JobSummaryRebuildSlice savedSlice = savedSlices.get(id);
+            if (savedSlice == null){
+                throw new Exception("Counts for slice "+id+
+                        " of job summary rebuild not found");
+            }
+            addAll(counts,savedSlice.getCounts());
+        }
+        applyCorrections(counts);
+        ofy().delete().type(JobSummaryRebuildSlice.class).ids(ids).now();
+        _log.log(Level.INFO, "Rebuild of job summary {0} finished after {1} slices",
+                new Object[]{generation,slice+1});
+    }
+    
+    private void saveSliceCounts(long generation,int slice,
+            final JobSummary counts){
+        ofy().save().entity(new JobSummaryRebuildSlice(generation,slice,
+                counts)).now();
+    }
+    
+    /**
+     * Adds <b>entity</b> which is a {@link Job} or {@link WorkspaceFile} to
+     * <b>counts</b>
+     */
+    private void add(JobSummary counts,Object entity){
+        if (entity instanceof Job){
+            Job job = (Job)entity;
+            counts.addJobCount(job.getOwner(), job.getStatus(), 1);
+            return;
+        }
+        WorkspaceFile wsf = (WorkspaceFile)entity;
+        long bytes = getOutputBytes(wsf);
+        if (bytes != 0){
+            counts.addOutputBytes(wsf.getOwner(), bytes);
+        }
+    }
+    
+    /**
+     * Adds difference between <b>counts</b> and current counts to each 
+     * counter
+     */
+    private void applyCorrections(final JobSummary counts) throws Exception {
+        JobSummary current = getJobSummary(null);
+        JobSummary delta = copy(counts);
+        for (Map.Entry<String,Map<String,Long>> ownerEntry : current.getJobCounts().entrySet()){
+            for (Map.Entry<String,Long> statusEntry : ownerEntry.getValue().entrySet()){
+                delta.addJobCount(ownerEntry.getKey(), statusEntry.getKey(), 
+                        -statusEntry.getValue());
+            }
+        }
+        for (Map.Entry<String,Long> ownerEntry : current.getOutputBytes().entrySet()){
+            delta.addOutputBytes(ownerEntry.getKey(), -ownerEntry.getValue());
+        }
+        
+        for (Map.Entry<String,Map<String,Long>> ownerEntry : delta.getJobCounts().entrySet()){
+            for (Map.Entry<String,Long> statusEntry : ownerEntry.getValue().entrySet()){
+                incrementJobCount(ownerEntry.getKey(),statusEntry.getKey(),
+                        statusEntry.getValue());
+            }
+        }
+        for (Map.Entry<String,Long> ownerEntry : delta.getOutputBytes().entrySet()){
+            incrementOutputBytes(ownerEntry.getKey(), ownerEntry.getValue());
+        }
+    }
+    
+    private JobSummary copy(final JobSummary summary){
+        JobSummary summaryCopy = new JobSummary();
+        addAll(summaryCopy,summary);
+        return summaryCopy;
+    }
+    
+    /**
+     * Adds all counts in <b>summary</b> to <b>counts</b>
+     */
+    private void addAll(JobSummary counts,final JobSummary summary){
+        for (Map.Entry<String,Map<String,Long>> ownerEntry : summary.getJobCounts().entrySet()){
+            for (Map.Entry<String,Long> statusEntry : ownerEntry.getValue().entrySet()){
+                counts.addJobCount(ownerEntry.getKey(), statusEntry.getKey(), 
+                        statusEntry.getValue());
+            }
+        }
+        for (Map.Entry<String,Long> ownerEntry : summary.getOutputBytes().entrySet()){
+            counts.addOutputBytes(ownerEntry.getKey(), ownerEntry.getValue());
+        }
+    }
+    
+    private void submitSlice(JobSummaryRebuildTask task) throws Exception {
+        task._summaryDAO = this;
+        _taskSubmitter.submit(task.getTaskName(), task);
+    }
+    
+    /**
+     * Gets number of bytes <b>wsf</b> contributes to output bytes total
+     * @param wsf
+     * @return {@link WorkspaceFile#getSize()} if <b>wsf</b> is not deleted,
+     * has a size, and is output of a job otherwise 0
+     */
+    public static long getOutputBytes(WorkspaceFile wsf){
+        if (wsf == null || wsf.getDeleted() || wsf.getSourceJobId() == null
+                || wsf.getSize() == null){
+            return 0;
+        }
+        return wsf.getSize();
+    }
+}
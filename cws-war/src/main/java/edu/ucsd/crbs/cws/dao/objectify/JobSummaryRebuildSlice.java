@@ -0,0 +1,96 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Serialize;
+import edu.ucsd.crbs.cws.workflow.report.JobSummary;
+
+/**
+ * Counts found by one slice of a job summary rebuild.  Each slice saves
+ * its counts under an id made from the rebuild generation and slice number
+ * so a retried slice overwrites rather than adds to them.  The last slice
+ * loads and sums the counts of all earlier slices and then deletes them.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@Entity
+public class JobSummaryRebuildSlice {
+    
+    private static final String SEPARATOR = "-";
+    
+    @Id private String _id;
+    private long _generation;
+    private int _slice;
+    @Serialize private JobSummary _counts;
+    
+    public JobSummaryRebuildSlice(){
+        
+    }
+    
+    public JobSummaryRebuildSlice(long generation,int slice,
+            final JobSummary counts){
+        _id = getId(generation,slice);
+        _generation = generation;
+        _slice = slice;
+        _counts = counts;
+    }
+    
+    /**
+     * Generates id of slice
+     * @param generation
+     * @param slice
+     * @return 
+     */
+    public static String getId(long generation,int slice){
+        return Long.toString(generation) + SEPARATOR + Integer.toString(slice);
+    }
+
+    public String getId() {
+        return _id;
+    }
+
+    public long getGeneration() {
+        return _generation;
+    }
+
+    public int getSlice() {
+        return _slice;
+    }
+
+    public JobSummary getCounts() {
+        return _counts;
+    }
+}
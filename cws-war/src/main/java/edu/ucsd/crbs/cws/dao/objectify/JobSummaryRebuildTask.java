@@ -0,0 +1,97 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs one slice of a job summary rebuild via 
+ * {@link JobSummaryObjectifyDAOImpl#runRebuildSlice(long, int, java.lang.String, java.lang.String)}.
+ * Only the cursor is carried from slice to slice, counts are saved in the
+ * data store as {@link JobSummaryRebuildSlice}s so the task stays small.
+ * The task name contains the generation and slice number so the same slice
+ * is never queued twice.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobSummaryRebuildTask implements DeferredTask {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final Logger _log
+            = Logger.getLogger(JobSummaryRebuildTask.class.getName());
+    
+    /**
+     * Prefix for task name
+     */
+    public static final String TASK_NAME_PREFIX = "jobsummaryrebuild-";
+    
+    private final long _generation;
+    private final int _slice;
+    private final String _type;
+    private final String _cursor;
+    
+    transient JobSummaryObjectifyDAOImpl _summaryDAO;
+    
+    public JobSummaryRebuildTask(long generation,int slice,final String type,
+            final String cursor){
+        _generation = generation;
+        _slice = slice;
+        _type = type;
+        _cursor = cursor;
+    }
+    
+    public String getTaskName(){
+        return TASK_NAME_PREFIX+Long.toString(_generation)+"-"+
+                Integer.toString(_slice);
+    }
+
+    @Override
+    public void run() {
+        if (_summaryDAO == null){
+            _summaryDAO = new JobSummaryObjectifyDAOImpl();
+        }
+        try {
+            _summaryDAO.runRebuildSlice(_generation, _slice, _type, _cursor);
+        }
+        catch(Exception ex){
+            _log.log(Level.SEVERE, "Slice "+_slice+" of job summary rebuild "+
+                    _generation+" failed", ex);
+            // throwing lets the task queue retry
+            throw new RuntimeException(ex);
+        }
+    }
+}
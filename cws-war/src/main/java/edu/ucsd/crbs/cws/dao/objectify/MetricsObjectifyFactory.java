@@ -0,0 +1,186 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceConfig;
+import com.google.appengine.api.datastore.Key;
+import com.googlecode.objectify.ObjectifyFactory;
+import com.googlecode.objectify.impl.EntityMemcacheStats;
+import edu.ucsd.crbs.cws.metrics.MetricsCollector;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+
+/**
+ * {@link ObjectifyFactory} that records datastore usage in 
+ * {@link MetricsRegistry}.<p/>
+ * 
+ * Datastore calls are counted by operation and entities read by key are
+ * counted by kind.  Only calls that miss the session and memcache caches
+ * and actually go to the datastore are counted.  The Objectify memcache 
+ * and {@link WorkflowCache} hit rates are published as well.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class MetricsObjectifyFactory extends ObjectifyFactory {
+
+    public static final String DATASTORE_CALLS_TOTAL = "cws_datastore_calls_total";
+    public static final String DATASTORE_ENTITY_READS_TOTAL = "cws_datastore_entity_reads_total";
+    public static final String MEMCACHE_HITS = "cws_memcache_hits";
+    public static final String MEMCACHE_MISSES = "cws_memcache_misses";
+    public static final String MEMCACHE_HIT_RATIO = "cws_memcache_hit_ratio";
+    public static final String WORKFLOW_CACHE_HITS = "cws_workflow_cache_hits";
+    public static final String WORKFLOW_CACHE_MISSES = "cws_workflow_cache_misses";
+    public static final String WORKFLOW_CACHE_EVICTIONS = "cws_workflow_cache_evictions";
+    public static final String WORKFLOW_CACHE_SIZE = "cws_workflow_cache_size";
+    public static final String OP_LABEL = "op";
+    public static final String KIND_LABEL = "kind";
+    
+    static final String GET_METHOD = "get";
+    
+    private final MetricsRegistry _registry;
+    
+    public MetricsObjectifyFactory(){
+        this(MetricsRegistry.getDefault());
+    }
+    
+    public MetricsObjectifyFactory(MetricsRegistry registry){
+        _registry = registry;
+        _registry.addCollector(new CacheStatsCollector());
+    }
+    
+    /**
+     * Wraps the {@link AsyncDatastoreService} created by Objectify in a 
+     * proxy that increments a counter for every method invoked
+     * @param cfg
+     * @return 
+     */
+    @Override
+    protected AsyncDatastoreService createRawAsyncDatastoreService(DatastoreServiceConfig cfg) {
+        final AsyncDatastoreService delegate = super.createRawAsyncDatastoreService(cfg);
+        return (AsyncDatastoreService)Proxy.newProxyInstance(
+                AsyncDatastoreService.class.getClassLoader(), 
+                new Class<?>[] { AsyncDatastoreService.class },
+                new CountingInvocationHandler(delegate));
+    }
+    
+    /**
+     * Counts each call and passes it on to the real datastore service
+     */
+    class CountingInvocationHandler implements InvocationHandler {
+        
+        private final AsyncDatastoreService _delegate;
+        
+        CountingInvocationHandler(AsyncDatastoreService delegate){
+            _delegate = delegate;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() != Object.class){
+                _registry.counter(DATASTORE_CALLS_TOTAL,"Number of datastore calls",
+                        OP_LABEL,method.getName()).inc();
+                if (method.getName().equals(GET_METHOD) && args != null){
+                    countEntityReads(args);
+                }
+            }
+            try {
+                return method.invoke(_delegate, args);
+            }
+            catch(InvocationTargetException ite){
+                throw ite.getCause();
+            }
+        }
+    }
+    
+    /**
+     * Increments a counter, by kind, for each {@link Key} passed to a 
+     * datastore get.  Since the datastore service wrapped here sits below 
+     * the Objectify caches these are the entities that were not found in 
+     * the session cache or memcache.
+     * @param args arguments passed to get
+     */
+    private void countEntityReads(Object[] args){
+        for (Object arg : args){
+            if (arg instanceof Key){
+                countEntityRead((Key)arg);
+            }
+            else if (arg instanceof Iterable){
+                for (Object key : (Iterable<?>)arg){
+                    if (key instanceof Key){
+                        countEntityRead((Key)key);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void countEntityRead(Key key){
+        _registry.counter(DATASTORE_ENTITY_READS_TOTAL,
+                "Number of entities read from datastore by key",
+                KIND_LABEL,key.getKind()).inc();
+    }
+    
+    /**
+     * Copies the current Objectify memcache and {@link WorkflowCache} 
+     * statistics into gauges
+     */
+    class CacheStatsCollector implements MetricsCollector {
+
+        @Override
+        public void collect(MetricsRegistry registry) {
+            for (Map.Entry<String,EntityMemcacheStats.Stat> entry : 
+                    getMemcacheStats().getStats().entrySet()){
+                EntityMemcacheStats.Stat stat = entry.getValue();
+                registry.gauge(MEMCACHE_HITS,"Objectify memcache hits",
+                        KIND_LABEL,entry.getKey()).set(stat.getHits());
+                registry.gauge(MEMCACHE_MISSES,"Objectify memcache misses",
+                        KIND_LABEL,entry.getKey()).set(stat.getMisses());
+                long total = stat.getHits()+stat.getMisses();
+                registry.gauge(MEMCACHE_HIT_RATIO,"Objectify memcache hit ratio",
+                        KIND_LABEL,entry.getKey()).set(total == 0 ? 0.0 : 
+                                (double)stat.getHits()/(double)total);
+            }
+            WorkflowCache cache = WorkflowCache.getInstance();
+            registry.gauge(WORKFLOW_CACHE_HITS,"Workflow cache hits").set(cache.getHits());
+            registry.gauge(WORKFLOW_CACHE_MISSES,"Workflow cache misses").set(cache.getMisses());
+            registry.gauge(WORKFLOW_CACHE_EVICTIONS,"Workflow cache evictions").set(cache.getEvictions());
+            registry.gauge(WORKFLOW_CACHE_SIZE,"Workflow cache entries").set(cache.getSize());
+        }
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.googlecode.objectify.Work;
+import com.googlecode.objectify.cmd.Query;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.MigrationDAO;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitterImpl;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
+import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.JobDetails;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resaves every entity of a kind by walking the kind with a query cursor.
+ * The work is split into slices that each run in their own 
+ * {@link MigrationSliceTask}.  A slice resaves up to 
+ * {@link #DEFAULT_BATCHES_PER_SLICE} batches, saving the cursor in 
+ * {@link MigrationStatus} after each batch, and then queues the next slice
+ * so no single request runs into the task deadline.<p/>
+ * 
+ * A slice that is retried starts from the last saved cursor so at most one
+ * batch is resaved twice which is harmless.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class MigrationObjectifyDAOImpl implements MigrationDAO {
+
+    private static final Logger _log
+            = Logger.getLogger(MigrationObjectifyDAOImpl.class.getName());
+    
+    /**
+     * Number of entities resaved at a time if caller does not say
+     */
+    public static final int DEFAULT_BATCH_SIZE = 250;
+    
+    /**
+     * Largest batch size allowed which matches the number of entities the
+     * datastore accepts in a single put
+     */
+    public static final int MAX_BATCH_SIZE = 500;
+    
+    /**
+     * Maximum number of batches to resave in a single slice
+     */
+    public static final int DEFAULT_BATCHES_PER_SLICE = 20;
+    
+    /**
+     * Slice stops starting new batches after this many milliseconds which 
+     * leaves plenty of room under the 10 minute task deadline
+     */
+    public static final long DEFAULT_SLICE_MILLIS = 120000;
+    
+    private static final Map<String,Class<?>> KINDS = new LinkedHashMap<>();
+    
+    /**
+     * Schema version a completed migration brings entities of a kind up to.
+     * Kinds not in this map have a version of 0
+     */
+    private static final Map<String,Integer> SCHEMA_VERSIONS = new HashMap<>();
+    
+    static {
+        KINDS.put(JOB_KIND, Job.class);
+        KINDS.put(WORKSPACEFILE_KIND, WorkspaceFile.class);
+        KINDS.put(WORKFLOW_KIND, Workflow.class);
+        KINDS.put(INPUTWORKSPACEFILELINK_KIND, InputWorkspaceFileLink.class);
+        KINDS.put(USER_KIND, User.class);
+        
+        SCHEMA_VERSIONS.put(JOB_KIND, Job.SCHEMA_VERSION);
+    }
+    
+    private DeferredTaskSubmitter _taskSubmitter = new DeferredTaskSubmitterImpl();
+    private int _batchesPerSlice = DEFAULT_BATCHES_PER_SLICE;
+    private long _sliceMillis = DEFAULT_SLICE_MILLIS;
+    
+    void setDeferredTaskSubmitter(DeferredTaskSubmitter taskSubmitter){
+        _taskSubmitter = taskSubmitter;
+    }
+    
+    void setBatchesPerSlice(int batchesPerSlice){
+        _batchesPerSlice = batchesPerSlice;
+    }
+    
+    void setSliceMillis(long sliceMillis){
+        _sliceMillis = sliceMillis;
+    }
+    
+    @Override
+    public MigrationStatus start(final String kind, Integer batchSize) throws Exception {
+        getKindClass(kind);
+        
+        int size = DEFAULT_BATCH_SIZE;
+        if (batchSize != null){
+            if (batchSize <= 0){
+                throw new Exception("Batch size must be larger then 0");
+            }
+            size = Math.min(batchSize, MAX_BATCH_SIZE);
+        }
+        
+        MigrationStatus previous = getMigrationStatus(kind);
+        Date startDate = new Date();
+        long generation = startDate.getTime();
+        if (previous != null && previous.getGeneration() >= generation){
+            generation = previous.getGeneration()+1;
+        }
+        
+        MigrationStatus status = new MigrationStatus();
+        status.setKind(kind);
+        status.setGeneration(generation);
+        status.setBatchSize(size);
+        status.setRunning(true);
+        status.setStartDate(startDate);
+        status.setLastUpdateDate(startDate);
+        Integer schemaVersion = SCHEMA_VERSIONS.get(kind);
+        if (schemaVersion != null){
+            status.setSchemaVersion(schemaVersion);
+        }
+        ofy().save().entity(status).now();
+        _log.log(Level.INFO, "Starting resave of {0} in batches of {1}",
+                new Object[]{kind,size});
+        
+        submitSlice(status, 0);
+        return status;
+    }
+
+    @Override
+    public MigrationStatus getMigrationStatus(final String kind) throws Exception {
+        if (kind == null){
+            throw new IllegalArgumentException("Kind cannot be null");
+        }
+        return ofy().load().type(MigrationStatus.class).id(kind).now();
+    }
+
+    @Override
+    public List<MigrationStatus> getMigrationStatuses() throws Exception {
+        return ofy().load().type(MigrationStatus.class).list();
+    }
+    
+    /**
+     * Resaves the next batches of entities for migration of <b>kind</b> and 
+     * queues the next slice if there are more.  Nothing is done if 
+     * <b>generation</b> does not match the current migration which happens
+     * when the migration was restarted.
+     * @param kind
+     * @param generation
+     * @param slice Number of this slice starting at 0
+     * @return Status after slice or null if no migration of <b>kind</b> exists
+     * @throws Exception 
+     */
+    public MigrationStatus runSlice(final String kind,long generation,
+            int slice) throws Exception {
+        Class<?> kindClass = getKindClass(kind);
+        MigrationStatus status = getMigrationStatus(kind);
+        if (status == null || status.getGeneration() != generation || 
+                !status.isRunning()){
+            _log.log(Level.INFO, "Skipping slice {0} of {1} since migration is "
+                    + "done or was restarted", new Object[]{slice,kind});
+            return status;
+        }
+        status.setSliceCount(status.getSliceCount()+1);
+        long sliceStart = System.currentTimeMillis();
+        int batches = 0;
+        boolean done = false;
+        
+        while (done == false && batches < _batchesPerSlice &&
+                System.currentTimeMillis() - sliceStart < _sliceMillis){
+            done = resaveBatch(kindClass, status);
+            batches++;
+            status.setLastUpdateDate(new Date());
+            if (done){
+                status.setRunning(false);
+                status.setFinishDate(status.getLastUpdateDate());
+            }
+            if (checkpoint(status) == false){
+                _log.log(Level.INFO, "Migration of {0} was restarted, stopping",
+                        kind);
+                return status;
+            }
+            // entities are not needed again so keep session cache small
+            ofy().clear();
+        }
+        
+        _log.log(Level.INFO, "Slice {0} of {1} resaved {2} batches, {3} total "
+                + "at {4} per second", new Object[]{slice,kind,batches,
+                status.getResavedCount(),status.getEntitiesPerSecond()});
+        if (done == false){
+            submitSlice(status, slice+1);
+        }
+        return status;
+    }
+    
+    /**
+     * Records <b>error</b> in migration of <b>kind</b> if <b>generation</b>
+     * is still current.  Any errors doing so are logged.
+     */
+    void recordError(final String kind,long generation,final String error){
+        try {
+            MigrationStatus status = getMigrationStatus(kind);
+            if (status == null || status.getGeneration() != generation){
+                return;
+            }
+            status.setError(error);
+            status.setLastUpdateDate(new Date());
+            checkpoint(status);
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING, "Unable to record error for migration of "
+                    + kind, ex);
+        }
+    }
+    
+    /**
+     * Resaves the next batch of entities after cursor in <b>status</b> and
+     * updates cursor and count in <b>status</b>
+     * @return true if there are no more entities to resave
+     */
+    private boolean resaveBatch(Class<?> kindClass,MigrationStatus status){
+        Query<?> q = ofy().load().type(kindClass).limit(status.getBatchSize());
+        if (status.getCursor() != null){
+            q = q.startAt(Cursor.fromWebSafeString(status.getCursor()));
+        }
+        QueryResultIterator<?> itr = q.iterator();
+        List<Object> entities = new ArrayList<>();
+        while (itr.hasNext()){
+            entities.add(itr.next());
+        }
+        if (!entities.isEmpty()){
+            ofy().save().entities(addLegacyJobDetails(entities)).now();
+            status.setCursor(itr.getCursor().toWebSafeString());
+            status.setResavedCount(status.getResavedCount()+entities.size());
+        }
+        return entities.size() < status.getBatchSize();
+    }
+    
+    /**
+     * Fields of {@link Job} stored in {@link JobDetails} are not saved in
+     * the {@link Job} entity so a {@link JobDetails} is added for any 
+     * {@link Job} in <b>entities</b> still holding those fields otherwise
+     * they would be lost
+     * @param entities
+     * @return <b>entities</b> plus any {@link JobDetails} needed
+     */
+    private List<Object> addLegacyJobDetails(List<Object> entities){
+        List<Object> toSave = new ArrayList<>(entities);
+        for (Object entity : entities){
+            if (entity instanceof Job && ((Job)entity).hasLegacyDetails()){
+                toSave.add(new JobDetails((Job)entity));
+            }
+        }
+        return toSave;
+    }
+    
+    /**
+     * Saves <b>status</b> unless the migration was restarted in the meantime
+     * @return true if saved, false if migration has a new generation
+     */
+    private boolean checkpoint(final MigrationStatus status){
+        return ofy().transact(new Work<Boolean>() {
+            @Override
+            public Boolean run() {
+                MigrationStatus current = ofy().load().type(MigrationStatus.class)
+                        .id(status.getKind()).now();
+                if (current == null || 
+                        current.getGeneration() != status.getGeneration()){
+                    return false;
+                }
+                ofy().save().entity(status).now();
+                return true;
+            }
+        });
+    }
+    
+    private void submitSlice(MigrationStatus status,int slice) throws Exception {
+        MigrationSliceTask task = new MigrationSliceTask(status.getKind(),
+                status.getGeneration(),slice);
+        task._migrationDAO = this;
+        _taskSubmitter.submit(task.getTaskName(), task);
+    }
+    
+    private Class<?> getKindClass(final String kind) throws Exception {
+        if (kind == null){
+            throw new IllegalArgumentException("Kind cannot be null");
+        }
+        Class<?> kindClass = KINDS.get(kind);
+        if (kindClass == null){
+            throw new Exception("Unknown kind "+kind+" must be one of: "+
+                    KINDS.keySet());
+        }
+        return kindClass;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs one slice of a migration via 
+ * {@link MigrationObjectifyDAOImpl#runSlice(java.lang.String, long, int)}.
+ * The task name contains the kind, generation and slice number so the same
+ * slice is never queued twice.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class MigrationSliceTask implements DeferredTask {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private static final Logger _log
+            = Logger.getLogger(MigrationSliceTask.class.getName());
+    
+    /**
+     * Prefix for task name
+     */
+    public static final String TASK_NAME_PREFIX = "migrate-";
+    
+    private final String _kind;
+    private final long _generation;
+    private final int _slice;
+    
+    transient MigrationObjectifyDAOImpl _migrationDAO;
+    
+    public MigrationSliceTask(final String kind,long generation,int slice){
+        _kind = kind;
+        _generation = generation;
+        _slice = slice;
+    }
+    
+    public String getTaskName(){
+        return TASK_NAME_PREFIX+_kind+"-"+Long.toString(_generation)+"-"+
+                Integer.toString(_slice);
+    }
+
+    @Override
+    public void run() {
+        if (_migrationDAO == null){
+            _migrationDAO = new MigrationObjectifyDAOImpl();
+        }
+        try {
+            _migrationDAO.runSlice(_kind, _generation, _slice);
+        }
+        catch(Exception ex){
+            _log.log(Level.SEVERE, "Slice "+_slice+" of "+_kind+" failed", ex);
+            _migrationDAO.recordError(_kind, _generation, ex.getMessage());
+            // throwing lets the task queue retry
+            throw new RuntimeException(ex);
+        }
+    }
+}
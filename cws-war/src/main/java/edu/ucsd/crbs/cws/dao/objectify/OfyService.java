@@ -38,9 +38,12 @@ import com.googlecode.objectify.ObjectifyService;
 import com.googlecode.objectify.Objectify;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.log.Event;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
 import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.JobDetails;
 import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
 import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowHead;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 
 
@@ -54,15 +57,22 @@ import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 public class OfyService {
     
     /**
-     * Put list of classes that need to be persisted by Objectify in here
+     * Put list of classes that need to be persisted by Objectify in here.
+     * The factory is replaced first so datastore calls are counted
      */
     static {
+        ObjectifyService.setFactory(new MetricsObjectifyFactory());
         factory().register(Workflow.class);
         factory().register(Job.class);
+        factory().register(JobDetails.class);
         factory().register(User.class);
         factory().register(Event.class);
         factory().register(WorkspaceFile.class);
         factory().register(InputWorkspaceFileLink.class);
+        factory().register(WorkflowHead.class);
+        factory().register(CounterShard.class);
+        factory().register(JobSummaryRebuildSlice.class);
+        factory().register(MigrationStatus.class);
     }
 
     /**
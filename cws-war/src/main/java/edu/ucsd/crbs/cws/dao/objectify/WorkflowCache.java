@@ -0,0 +1,214 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.datastore.Entity;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded least recently used cache of {@link Workflow} objects keyed
+ * by id that lives for the life of the instance.  
+ * <p/>
+ * {@link Workflow}s are stored as the datastore {@link Entity} built by 
+ * Objectify and every call to {@link #get(long)} builds a new 
+ * {@link Workflow} from it.  This way callers are free to modify the 
+ * {@link Workflow} and its parameters without affecting the cache.
+ * <p/>
+ * Entries are removed via {@link #invalidate(java.lang.Long)} which the
+ * DAO calls whenever a {@link Workflow} is modified.  Since other instances
+ * can modify a {@link Workflow} entries are also dropped once they are 
+ * older then {@link #DEFAULT_MAX_AGE_MILLIS}
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class WorkflowCache {
+
+    /**
+     * Maximum number of {@link Workflow}s to keep
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 200;
+    
+    /**
+     * Maximum time in milliseconds to keep an entry
+     */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 300000;
+    
+    private static final WorkflowCache _instance = 
+            new WorkflowCache(DEFAULT_MAX_ENTRIES,DEFAULT_MAX_AGE_MILLIS);
+    
+    private final LinkedHashMap<Long,CacheEntry> _map;
+    private final long _maxAgeMillis;
+    private final AtomicLong _hits = new AtomicLong(0);
+    private final AtomicLong _misses = new AtomicLong(0);
+    private final AtomicLong _evictions = new AtomicLong(0);
+    private final AtomicLong _invalidations = new AtomicLong(0);
+    
+    private static class CacheEntry {
+        final Entity entity;
+        final long cacheTime;
+        
+        CacheEntry(Entity entity,long cacheTime){
+            this.entity = entity;
+            this.cacheTime = cacheTime;
+        }
+    }
+    
+    /**
+     * Gets cache shared by everything in this instance
+     * @return 
+     */
+    public static WorkflowCache getInstance(){
+        return _instance;
+    }
+    
+    public WorkflowCache(final int maxEntries,long maxAgeMillis){
+        _maxAgeMillis = maxAgeMillis;
+        _map = new LinkedHashMap<Long,CacheEntry>(16,0.75f,true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,CacheEntry> eldest){
+                if (size() > maxEntries){
+                    _evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * Gets a new copy of {@link Workflow} with <b>workflowId</b>
+     * @param workflowId
+     * @return {@link Workflow} or null if not in cache
+     */
+    public Workflow get(long workflowId){
+        CacheEntry entry;
+        synchronized(this){
+            entry = _map.get(workflowId);
+            if (entry != null && 
+                    System.currentTimeMillis() - entry.cacheTime > _maxAgeMillis){
+                _map.remove(workflowId);
+                entry = null;
+            }
+        }
+        if (entry == null){
+            _misses.incrementAndGet();
+            return null;
+        }
+        _hits.incrementAndGet();
+        return ofy().load().fromEntity(entry.entity);
+    }
+    
+    /**
+     * Gets a stamp to pass to {@link #put(edu.ucsd.crbs.cws.workflow.Workflow, long) }
+     * This should be called before the {@link Workflow} is loaded from
+     * the datastore.
+     * @return 
+     */
+    public long getStamp(){
+        return _invalidations.get();
+    }
+    
+    /**
+     * Adds <b>workflow</b> to cache unless an invalidation occurred since 
+     * <b>stamp</b> was obtained from {@link #getStamp()} in which case 
+     * <b>workflow</b> may be out of date.
+     * @param workflow
+     * @param stamp 
+     */
+    public void put(Workflow workflow,long stamp){
+        if (workflow == null || workflow.getId() == null){
+            return;
+        }
+        Entity entity = ofy().save().toEntity(workflow);
+        synchronized(this){
+            if (stamp != _invalidations.get()){
+                return;
+            }
+            _map.put(workflow.getId(), 
+                    new CacheEntry(entity,System.currentTimeMillis()));
+        }
+    }
+    
+    /**
+     * Removes {@link Workflow} with <b>workflowId</b> from cache
+     * @param workflowId 
+     */
+    public synchronized void invalidate(Long workflowId){
+        _invalidations.incrementAndGet();
+        if (workflowId != null){
+            _map.remove(workflowId);
+        }
+    }
+    
+    /**
+     * Removes everything from cache
+     */
+    public synchronized void clear(){
+        _invalidations.incrementAndGet();
+        _map.clear();
+    }
+    
+    public synchronized int getSize(){
+        return _map.size();
+    }
+    
+    public long getHits(){
+        return _hits.get();
+    }
+    
+    public long getMisses(){
+        return _misses.get();
+    }
+    
+    public long getEvictions(){
+        return _evictions.get();
+    }
+    
+    /**
+     * @return hits divided by hits plus misses or 0 if there have been no 
+     * requests
+     */
+    public double getHitRate(){
+        long hits = _hits.get();
+        long total = hits + _misses.get();
+        if (total == 0){
+            return 0;
+        }
+        return (double)hits/(double)total;
+    }
+}
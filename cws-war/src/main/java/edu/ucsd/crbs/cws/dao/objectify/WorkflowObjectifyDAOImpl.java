@@ -37,6 +37,7 @@ import com.google.appengine.api.blobstore.BlobInfoFactory;
 import com.google.appengine.api.blobstore.BlobKey;
 import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.VoidWork;
 import com.googlecode.objectify.Work;
 import com.googlecode.objectify.cmd.Query;
 import edu.ucsd.crbs.cws.auth.User;
@@ -44,14 +45,16 @@ import edu.ucsd.crbs.cws.dao.JobDAO;
 import edu.ucsd.crbs.cws.dao.WorkflowDAO;
 import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
 import edu.ucsd.crbs.cws.gae.WorkflowParameterDataFetcher;
-import edu.ucsd.crbs.cws.gae.URLFetcherImpl;
+import edu.ucsd.crbs.cws.gae.CachingURLFetcherImpl;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.Workflow;
-import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import edu.ucsd.crbs.cws.workflow.WorkflowHead;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,13 +69,19 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
     private static final Logger _log
             = Logger.getLogger(WorkflowObjectifyDAOImpl.class.getName());
 
-    WorkflowParameterDataFetcher _dropDownFetcher = new URLFetcherImpl();
+    WorkflowParameterDataFetcher _dropDownFetcher = new CachingURLFetcherImpl();
 
     private JobDAO _jobDAO = null;
+    
+    private WorkflowCache _workflowCache = WorkflowCache.getInstance();
 
     public WorkflowObjectifyDAOImpl(JobDAO jobDAO) {
         _jobDAO = jobDAO;
     }
+    
+    void setWorkflowCache(WorkflowCache workflowCache){
+        _workflowCache = workflowCache;
+    }
 
     /**
      * Via a transaction load {@link Workflow} by <b>workflowId</b> and then
@@ -89,7 +98,7 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
             public Workflow run() {
                 Workflow workflow;
                 try {
-                    workflow = getWorkflowById(Long.toString(workflowId), null);
+                    workflow = getWorkflowFromDatastore(Long.toString(workflowId));
                 } catch (Exception ex) {
                     _log.log(Level.WARNING,
                             "Caught exception attempting to load Workflow {0} : {1}",
@@ -108,57 +117,97 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
         if (res == null){
             throw new Exception("There was an error resaving Workflow with id: "+workflowId);
         }
+        _workflowCache.invalidate(workflowId);
+        createWorkflowHeadIfMissing(res.getName());
+        updateWorkflowHead(res);
         return res;
     }
 
     /**
      * Adds a new {@link Workflow} to the data store setting 
      * {@link Workflow#getVersion()} to +1 higher then the highest version
-     * {@link Workflow} with same {@link Workflow#getName()}
+     * {@link Workflow} with same {@link Workflow#getName()}.  The 
+     * {@link WorkflowHead} for the name and the {@link Workflow} are saved
+     * in one cross group transaction so concurrent inserts cannot end up 
+     * with the same version and the head never points to a missing 
+     * {@link Workflow}.  A new id is always allocated, any id already set 
+     * in <b>w</b> is ignored.
      * @param w {@link Workflow} to add to data store
      * @return {@link Workflow} object with new id added
      * @throws Exception If there was an error during persistence
      */
     @Override
-    public Workflow insert(Workflow w) throws Exception {
+    public Workflow insert(final Workflow w) throws Exception {
         if (w == null) {
             throw new Exception("Workflow object passed in is null");
         }
+        
+        if (w.getName() == null){
+            throw new NullPointerException("Workflow name cannot be null");
+        }
 
         //set date if it is null
         if (w.getCreateDate() == null) {
             w.setCreateDate(new Date());
         }
 
-        Workflow latestWorkflow = getLatestWorkflowWithName(w.getName());
-
-        if (latestWorkflow != null){
-            w.setVersion(latestWorkflow.getVersion() + 1);
-            w.setParentWorkflow(latestWorkflow);
+        //workflows saved before WorkflowHead existed need a head built
+        //from a query which cannot be done within the transaction
+        final WorkflowHead seedHead;
+        if (getWorkflowHead(w.getName()) == null){
+            seedHead = buildWorkflowHeadFromQuery(w.getName(),null);
         }
         else {
-            w.setVersion(1);
-            w.setParentWorkflow(null);
+            seedHead = null;
         }
-
-        Key<Workflow> wfKey = ofy().save().entity(w).now();
+        
+        final long workflowId = ofy().factory().allocateId(Workflow.class).getId();
+        
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                WorkflowHead head = getWorkflowHead(w.getName());
+                if (head == null){
+                    head = seedHead;
+                }
+                Workflow latestWorkflow = null;
+                if (head != null && head.getLatestWorkflowId() != null){
+                    latestWorkflow = ofy().load().type(Workflow.class)
+                            .id(head.getLatestWorkflowId()).now();
+                }
+                w.setId(workflowId);
+                w.setVersion(head == null ? 1 : head.getLatestVersion() + 1);
+                w.setParentWorkflow(latestWorkflow);
+                ofy().save().entities(new WorkflowHead(w.getName(),workflowId,
+                        w.getVersion()),w).now();
+            }
+        });
+        _workflowCache.invalidate(workflowId);
         return w;
     }
+    
+    /**
+     * Loads {@link WorkflowHead} for <b>name</b>
+     * @param name
+     * @return {@link WorkflowHead} or null if none found
+     */
+    private WorkflowHead getWorkflowHead(final String name){
+        return ofy().load().type(WorkflowHead.class).id(name).now();
+    }
 
     /**
-     * Finds {@link Workflow} with highest version matching <b>name</b> passed
-     * in.
+     * Builds a {@link WorkflowHead} by querying for all {@link Workflow}s 
+     * with <b>name</b> and finding the one with the highest version.  This
+     * is only used for {@link Workflow}s saved before {@link WorkflowHead}
+     * existed or after the latest {@link Workflow} is permanently deleted.
      *
      * @param name {@link Workflow} name to filter by
-     * @return {@link Workflow} with highest {@link Workflow#getVersion()} or
-     * null if none found
-     * @throws Exception
+     * @param excludeId Id of {@link Workflow} to skip, can be null
+     * @return {@link WorkflowHead} for {@link Workflow} with highest 
+     * {@link Workflow#getVersion()} or null if none found
      */
-    private Workflow getLatestWorkflowWithName(final String name) throws Exception {
-        
-        if (name == null){
-            throw new NullPointerException("Workflow name cannot be null");
-        }
+    private WorkflowHead buildWorkflowHeadFromQuery(final String name,
+            final Long excludeId) {
         
         Query<Workflow> q = ofy().load().type(Workflow.class);
         q = q.filter("_name", name);
@@ -166,13 +215,114 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
         Workflow latestWorkflow = null;
 
         for (Workflow w : workflows) {
+            if (excludeId != null && excludeId.equals(w.getId())){
+                continue;
+            }
             if (latestWorkflow == null) {
                 latestWorkflow = w;
             } else if (latestWorkflow.getVersion() < w.getVersion()) {
                 latestWorkflow = w;
             }
         }
-        return latestWorkflow;
+        if (latestWorkflow == null){
+            return null;
+        }
+        return new WorkflowHead(name,latestWorkflow.getId(),
+                latestWorkflow.getVersion());
+    }
+    
+    /**
+     * Points {@link WorkflowHead} for <b>w</b> at <b>w</b> if <b>w</b> now
+     * has a higher version or if the head already points to <b>w</b>.
+     * If there is no {@link WorkflowHead} nothing is done.
+     * @param w 
+     */
+    private void updateWorkflowHead(final Workflow w){
+        if (w == null || w.getName() == null || w.getId() == null){
+            return;
+        }
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                WorkflowHead head = getWorkflowHead(w.getName());
+                if (head == null){
+                    return;
+                }
+                boolean isLatest = w.getId().equals(head.getLatestWorkflowId());
+                if (isLatest && w.getVersion() == head.getLatestVersion()){
+                    return;
+                }
+                if (isLatest || w.getVersion() > head.getLatestVersion()){
+                    head.setLatestWorkflowId(w.getId());
+                    head.setLatestVersion(w.getVersion());
+                    ofy().save().entity(head).now();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Saves a {@link WorkflowHead} built via a query if none exists for
+     * <b>name</b>
+     * @param name 
+     */
+    private void createWorkflowHeadIfMissing(final String name){
+        if (name == null || getWorkflowHead(name) != null){
+            return;
+        }
+        final WorkflowHead head = buildWorkflowHeadFromQuery(name,null);
+        if (head == null){
+            return;
+        }
+        //query cannot run in the transaction so only save if an insert 
+        //has not created the head in the meantime
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                if (getWorkflowHead(name) == null){
+                    ofy().save().entity(head).now();
+                }
+            }
+        });
+    }
+    
+    /**
+     * Gets the {@link Workflow} with the highest version for each name via
+     * {@link WorkflowHead} entities.
+     * 
+     * @param omitWorkflowParams If set to true then WorkflowParameters is set
+     * to null
+     * @param showDeleted If null or false latest versions that are deleted 
+     * are left out
+     * @return List of {@link Workflow} objects or empty list
+     */
+    @Override
+    public List<Workflow> getLatestWorkflows(boolean omitWorkflowParams,
+            final Boolean showDeleted) throws Exception {
+        List<WorkflowHead> heads = ofy().load().type(WorkflowHead.class).list();
+        ArrayList<Long> ids = new ArrayList<>();
+        for (WorkflowHead head : heads){
+            if (head.getLatestWorkflowId() != null){
+                ids.add(head.getLatestWorkflowId());
+            }
+        }
+        Map<Long,Workflow> workflowMap = ofy().load().type(Workflow.class).ids(ids);
+        
+        ArrayList<Workflow> workflows = new ArrayList<>();
+        for (Long id : ids){
+            Workflow w = workflowMap.get(id);
+            if (w == null){
+                continue;
+            }
+            if (w.isDeleted() && (showDeleted == null || showDeleted == false)){
+                continue;
+            }
+            if (omitWorkflowParams == true){
+                w.setParameters(null);
+            }
+            workflows.add(w);
+        }
+        return workflows;
     }
 
     /**
@@ -196,7 +346,7 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
             q = q.filter("_deleted", false);
         }
 
-        List<Workflow> workflows = q.list();
+        List<Workflow> workflows = HybridQueryLoader.list(q);
 
         if (omitWorkflowParams == false) {
             return workflows;
@@ -209,7 +359,9 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
     }
 
     /**
-     * Queries Objectify to get Workflow matching id passed in.
+     * Gets Workflow matching id passed in from {@link WorkflowCache} or
+     * if not there from Objectify.  The {@link Workflow} returned is a copy
+     * so it can be modified by caller.
      *
      * @param workflowId String containing workflow id. Id must be greater then
      * 0
@@ -219,6 +371,50 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
      */
     @Override
     public Workflow getWorkflowById(final String workflowId, User user) throws Exception {
+        long wfId = parseWorkflowId(workflowId);
+        
+        Workflow w = _workflowCache.get(wfId);
+        if (w == null){
+            long stamp = _workflowCache.getStamp();
+            w = ofy().load().type(Workflow.class).id(wfId).now();
+            if (w == null) {
+                return null;
+            }
+            _workflowCache.put(w, stamp);
+        }
+
+        _dropDownFetcher.fetchAndUpdateAll(w.getParameters(), user);
+        return w;
+    }
+
+    /**
+     * Loads {@link Workflow} directly from Objectify bypassing 
+     * {@link WorkflowCache} so the blob key is current
+     */
+    @Override
+    public Workflow getWorkflowByIdWithoutDropDownFetch(long workflowId) throws Exception {
+        return ofy().load().type(Workflow.class).id(workflowId).now();
+    }
+    
+    /**
+     * Loads {@link Workflow} directly from Objectify bypassing 
+     * {@link WorkflowCache}
+     * @param workflowId
+     * @return Workflow object or null if none is found
+     * @throws Exception 
+     */
+    private Workflow getWorkflowFromDatastore(final String workflowId) throws Exception {
+        return ofy().load().type(Workflow.class).id(parseWorkflowId(workflowId)).now();
+    }
+    
+    /**
+     * Parses <b>workflowId</b>
+     * @param workflowId
+     * @return workflow id
+     * @throws Exception If workflowId is null or there is an error parsing the
+     * numerical id or the id is less then 1
+     */
+    private long parseWorkflowId(final String workflowId) throws Exception {
         long wfId;
         if (workflowId == null) {
             throw new IllegalArgumentException("workflow id cannot be null");
@@ -232,18 +428,7 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
         if (wfId <= 0) {
             throw new Exception(Long.toString(wfId) + " is not a valid workflow id");
         }
-        Workflow w = ofy().load().type(Workflow.class).id(wfId).now();
-
-        if (w == null) {
-            return null;
-        }
-
-        if (w.getParameters() != null) {
-            for (WorkflowParameter param : w.getParameters()) {
-                _dropDownFetcher.fetchAndUpdate(param, user);
-            }
-        }
-        return w;
+        return wfId;
     }
 
     @Override
@@ -271,6 +456,7 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
                 return w;
             }
         });
+        _workflowCache.invalidate(workflowId);
         if (resWorkflow == null) {
             throw new Exception("There was a problem updating the workflow");
         }
@@ -307,9 +493,11 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
                 return w;
             }
         });
+        _workflowCache.invalidate(workflowId);
         if (resWorkflow == null) {
             throw new Exception("There was a problem updating the workflow");
         }
+        updateWorkflowHead(resWorkflow);
         return resWorkflow;
     }
 
@@ -327,6 +515,41 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
         return getWorkflowById(job.getWorkflow().getId().toString(), user);
     }
 
+    /**
+     * If {@link WorkflowHead} for <b>w</b> points to <b>w</b> then the head
+     * is rebuilt from the remaining {@link Workflow}s or removed if there
+     * are none.  The version in the head is left as is so versions are 
+     * not reused.  The query for the remaining {@link Workflow}s cannot 
+     * run in a transaction so the head is updated in a transaction only if
+     * it still points to <b>w</b>.
+     * @param w {@link Workflow} that was permanently deleted
+     */
+    private void removeFromWorkflowHead(final Workflow w){
+        if (w.getName() == null){
+            return;
+        }
+        WorkflowHead currentHead = getWorkflowHead(w.getName());
+        if (currentHead == null || !w.getId().equals(currentHead.getLatestWorkflowId())){
+            return;
+        }
+        final WorkflowHead rebuiltHead = buildWorkflowHeadFromQuery(w.getName(),w.getId());
+        ofy().transact(new VoidWork() {
+            @Override
+            public void vrun() {
+                WorkflowHead head = getWorkflowHead(w.getName());
+                if (head == null || !w.getId().equals(head.getLatestWorkflowId())){
+                    return;
+                }
+                if (rebuiltHead == null){
+                    ofy().delete().entity(head).now();
+                    return;
+                }
+                head.setLatestWorkflowId(rebuiltHead.getLatestWorkflowId());
+                ofy().save().entity(head).now();
+            }
+        });
+    }
+
     /**
      * Deletes {@link Workflow} identified by <b>workflowId</b> logically or for
      * real depending on value of <b>permanentlyDelete</b> parameter.<p/>
@@ -368,7 +591,7 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
         //if permanentlyDelete is not null and true then run real delete
         if (permanentlyDelete != null && permanentlyDelete == true) {
             //need to load workflow and get its blobkey if any
-            Workflow w = getWorkflowById(Long.toString(workflowId), null);
+            Workflow w = getWorkflowFromDatastore(Long.toString(workflowId));
             if (w == null) {
                 dwr.setSuccessful(false);
                 dwr.setReason("No workflow found");
@@ -387,6 +610,8 @@ public class WorkflowObjectifyDAOImpl implements WorkflowDAO {
                 }
             }
             ofy().delete().type(Workflow.class).id(workflowId).now();
+            _workflowCache.invalidate(workflowId);
+            removeFromWorkflowHead(w);
         } else {
             //else just set _deleted to true 
             updateDeletedAndVersion(workflowId, true,null);
@@ -42,6 +42,7 @@ import com.googlecode.objectify.cmd.Query;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
 import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.JobSummaryDAO;
 import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
 import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
 import edu.ucsd.crbs.cws.workflow.Job;
@@ -68,6 +69,7 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
     
     private JobDAO _jobDAO = null;
     private InputWorkspaceFileLinkDAO _inputWorkspaceFileLinkDAO = null;
+    private JobSummaryDAO _jobSummaryDAO = new JobSummaryObjectifyDAOImpl();
     
     
     public WorkspaceFileObjectifyDAOImpl(JobDAO jobDAO,
@@ -75,6 +77,10 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
         _jobDAO = jobDAO;
         _inputWorkspaceFileLinkDAO = inputWorkspaceFileLinkDAO;
     }
+    
+    public void setJobSummaryDAO(JobSummaryDAO jobSummaryDAO){
+        _jobSummaryDAO = jobSummaryDAO;
+    }
 
     @Override
     public WorkspaceFile resave(final long workspaceFileId) throws Exception {
@@ -135,7 +141,7 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
                 q = q.filter("_path ==", null);
             }
         }
-        return q.list();
+        return HybridQueryLoader.list(q);
     }
 
     @Override
@@ -201,8 +207,47 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
             wsp.setCreateDate(new Date());
         }
         Key<WorkspaceFile> wspKey = ofy().save().entity(wsp).now();
+        updateOutputBytes(null,0,wsp);
         return wsp;
     }
+    
+    @Override
+    public WorkspaceFile getWorkspaceFileWithBlobByMd5(final String md5,
+            final String owner) throws Exception {
+        if (md5 == null || owner == null){
+            return null;
+        }
+        Query<WorkspaceFile> q = ofy().load().type(WorkspaceFile.class)
+                .filter("_md5 ==", md5).filter("_owner ==", owner)
+                .filter("_deleted ==", false);
+        for (WorkspaceFile wsf : q){
+            if (wsf.getBlobKey() != null){
+                return wsf;
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public List<WorkspaceFile> insertAll(List<WorkspaceFile> workspaceFiles) throws Exception {
+        if (workspaceFiles == null){
+            throw new Exception("WorkspaceFile list passed in is null");
+        }
+        if (workspaceFiles.isEmpty()){
+            return workspaceFiles;
+        }
+        Date createDate = new Date();
+        for (WorkspaceFile wsp : workspaceFiles){
+            if (wsp.getCreateDate() == null){
+                wsp.setCreateDate(createDate);
+            }
+        }
+        ofy().save().entities(workspaceFiles).now();
+        for (WorkspaceFile wsp : workspaceFiles){
+            updateOutputBytes(null,0,wsp);
+        }
+        return workspaceFiles;
+    }
 
     /**
      * 
@@ -267,16 +312,22 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
             throw new Exception("Id must be set");
         }
         WorkspaceFile resWsp;
+        final boolean[] written = new boolean[1];
         resWsp = ofy().transact(new Work<WorkspaceFile>() {
             @Override
             public WorkspaceFile run() {
+                written[0] = false;
                 WorkspaceFile wspFromDataStore = ofy().load().type(WorkspaceFile.class).id(wsp.getId()).now();
                 if (wspFromDataStore == null) {
                     return null;
                 }                
+                String previousOwner = wspFromDataStore.getOwner();
+                long previousBytes = JobSummaryObjectifyDAOImpl.getOutputBytes(wspFromDataStore);
                 
                 if (wspFromDataStore.updateWithChanges(wsp, isDeleted, isFailed, isDir)){
                     Key<WorkspaceFile> wspKey = ofy().save().entity(wspFromDataStore).now();
+                    updateOutputBytes(previousOwner,previousBytes,wspFromDataStore);
+                    written[0] = true;
                     return wspFromDataStore;
                 }
                 return wspFromDataStore;
@@ -285,11 +336,17 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
         if (resWsp == null) {
             throw new Exception("There was a problem updating the WorkspaceFile");
         }
+        String kind = Key.getKind(WorkspaceFile.class);
+        if (!written[0]){
+            EntityWrites.skipped(kind);
+            return resWsp;
+        }
+        EntityWrites.written(kind);
         return resWsp;
     }
 
     @Override
-    public WorkspaceFile update(WorkspaceFile wsp) throws Exception {
+    public WorkspaceFile update(final WorkspaceFile wsp) throws Exception {
         if (wsp == null) {
             throw new Exception("WorkspaceFile passed in is null");
         }
@@ -297,16 +354,64 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
             throw new Exception("WorkspaceFile Id is null");
         }
         
-        ofy().save().entity(wsp).now();
+        final boolean[] written = new boolean[1];
+        ofy().transact(new Work<WorkspaceFile>() {
+            @Override
+            public WorkspaceFile run() {
+                written[0] = false;
+                WorkspaceFile storedWsp = ofy().load().type(WorkspaceFile.class).id(wsp.getId()).now();
+                if (EntityWrites.isChanged(storedWsp, wsp)){
+                    ofy().save().entity(wsp).now();
+                    if (storedWsp == null){
+                        updateOutputBytes(null,0,wsp);
+                    }
+                    else {
+                        updateOutputBytes(storedWsp.getOwner(),
+                                JobSummaryObjectifyDAOImpl.getOutputBytes(storedWsp),wsp);
+                    }
+                    written[0] = true;
+                }
+                return storedWsp;
+            }
+        });
+        String kind = Key.getKind(WorkspaceFile.class);
+        if (!written[0]){
+            EntityWrites.skipped(kind);
+            return wsp;
+        }
+        EntityWrites.written(kind);
         return wsp;
     }
     
+    /**
+     * Updates output bytes in {@link JobSummaryDAO} to reflect change from
+     * <b>previousBytes</b> owned by <b>previousOwner</b> to <b>wsp</b>
+     * @param previousOwner
+     * @param previousBytes bytes previous version of {@link WorkspaceFile} 
+     * contributed to output bytes
+     * @param wsp {@link WorkspaceFile} as it is now in data store or null
+     * if removed.  If <b>wsp</b> was saved in a transaction this must be 
+     * called within it
+     */
+    private void updateOutputBytes(final String previousOwner,
+            long previousBytes,WorkspaceFile wsp){
+        long bytes = JobSummaryObjectifyDAOImpl.getOutputBytes(wsp);
+        String owner = wsp == null ? null : wsp.getOwner();
+        
+        if (previousOwner == null ? owner == null : previousOwner.equals(owner)){
+            _jobSummaryDAO.incrementOutputBytes(owner, bytes - previousBytes);
+            return;
+        }
+        _jobSummaryDAO.incrementOutputBytes(previousOwner, -previousBytes);
+        _jobSummaryDAO.incrementOutputBytes(owner, bytes);
+    }
+    
     @Override
     public List<WorkspaceFile> getWorkspaceFilesBySourceJobId(long sourceJobId) throws Exception {
         Query<WorkspaceFile> q = ofy().load().type(WorkspaceFile.class);
         q = q.filter("_sourceJobId ==", sourceJobId);
 
-        return q.list();
+        return HybridQueryLoader.list(q);
     }
     
     @Override
@@ -350,7 +455,13 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
         
         //if permanentlyDelete is not null and true then run real delete
         if (permanentlyDelete != null && permanentlyDelete == true) {
-            if (wsf.getBlobKey() != null) {
+            int numBlobReferences = getNumberOfOtherWorkspaceFilesWithBlobKey(wsf);
+            if (numBlobReferences > 0){
+                _log.log(Level.INFO, "Blob {0} still referenced by {1} other "
+                        + "WorkspaceFile(s), leaving it in blobstore",
+                        new Object[]{wsf.getBlobKey(),numBlobReferences});
+            }
+            else if (wsf.getBlobKey() != null) {
                 _log.log(Level.INFO, "Blob key found {0}  Deleting from blobstore",
                         wsf.getBlobKey());
                 BlobKey bk = new BlobKey(wsf.getBlobKey());
@@ -363,6 +474,8 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
                 }
             }
             ofy().delete().type(WorkspaceFile.class).id(wsf.getId()).now();
+            updateOutputBytes(wsf.getOwner(),
+                    JobSummaryObjectifyDAOImpl.getOutputBytes(wsf),null);
         }
         else {
             wsf.setDeleted(true);
@@ -374,4 +487,25 @@ public class WorkspaceFileObjectifyDAOImpl implements WorkspaceFileDAO {
         return dwr;
     }
 
+    /**
+     * Blobs can be shared by {@link WorkspaceFile}s with the same contents, 
+     * deleted or not, so this counts how many other {@link WorkspaceFile}s 
+     * reference the {@link WorkspaceFile#getBlobKey()} of <b>wsf</b>
+     * @param wsf
+     * @return number of other {@link WorkspaceFile}s with the same blob key or
+     *         0 if <b>wsf</b> has no blob key
+     */
+    private int getNumberOfOtherWorkspaceFilesWithBlobKey(WorkspaceFile wsf){
+        if (wsf.getBlobKey() == null){
+            return 0;
+        }
+        int count = 0;
+        for (Key<WorkspaceFile> key : ofy().load().type(WorkspaceFile.class)
+                .filter("_blobKey ==", wsf.getBlobKey()).keys()){
+            if (key.getId() != wsf.getId()){
+                count++;
+            }
+        }
+        return count;
+    }
 }
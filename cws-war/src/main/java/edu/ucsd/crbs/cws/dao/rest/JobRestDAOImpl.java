@@ -34,22 +34,17 @@
 package edu.ucsd.crbs.cws.dao.rest;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.googlecode.objectify.util.jackson.ObjectifyJacksonModule;
-import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
-import com.sun.jersey.api.json.JSONConfiguration;
-import com.sun.jersey.core.impl.provider.entity.StringProvider;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.dao.JobDAO;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactory;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactoryImpl;
+import edu.ucsd.crbs.cws.jerseyclient.RestClientFactory;
 import edu.ucsd.crbs.cws.rest.Constants;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
+import java.io.InputStream;
+import java.util.Date;
 import java.util.List;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -61,6 +56,9 @@ import javax.ws.rs.core.MultivaluedMap;
  */
 public class JobRestDAOImpl implements JobDAO {
 
+    private static final TypeReference<List<Job>> JOB_LIST_TYPE = 
+            new TypeReference<List<Job>>() {};
+
     private String _restURL;
     private User _user;
 
@@ -91,20 +89,10 @@ public class JobRestDAOImpl implements JobDAO {
      */
     @Override
     public Job getJobById(String jobId) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).path(Constants.JOBS_PATH).path(jobId);
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).path(Constants.JOBS_PATH).path(jobId);
         
-        String json = resource.accept(MediaType.APPLICATION_JSON).get(String.class);
-    
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<Job>() {
-        });
-    
+        InputStream in = resource.accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(Job.class).readValue(in);
     }
 
     @Override
@@ -116,12 +104,7 @@ public class JobRestDAOImpl implements JobDAO {
     public List<Job> getJobs(String owner, String status,
             Boolean notSubmittedToScheduler, boolean noParams, 
             boolean noWorkflowParams,final Boolean showDeleted) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).path(Constants.JOBS_PATH);
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).path(Constants.JOBS_PATH);
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
 
         if (owner != null) {
@@ -147,23 +130,106 @@ public class JobRestDAOImpl implements JobDAO {
             queryParams.add(Constants.SHOW_DELETED_QUERY_PARAM,showDeleted.toString());
         }
 
-        String json = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(String.class);
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<List<Job>>() {
-        });
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(JOB_LIST_TYPE).readValue(in);
+    }
+
+    @Override
+    public List<Job> getJobsCreatedSince(String owner, Date since) throws Exception {
+        if (since == null){
+            throw new NullPointerException("Date cannot be null");
+        }
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH)
+                .path(Constants.JOBS_PATH).path(Constants.CREATED_SINCE_PATH);
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+
+        if (owner != null) {
+            queryParams.add(Constants.OWNER_QUERY_PARAM, owner);
+        }
+        queryParams.add(Constants.SINCE_QUERY_PARAM, Long.toString(since.getTime()));
+
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(JOB_LIST_TYPE).readValue(in);
     }
 
     @Override
     public int getJobsCount(String owner, String status, 
             Boolean notSubmittedToScheduler, 
             Boolean showDeleted) throws Exception {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH)
+                .path(Constants.JOBS_PATH).path(Constants.COUNT_PATH);
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+
+        if (owner != null) {
+            queryParams.add(Constants.OWNER_QUERY_PARAM, owner);
+        }
+
+        if (status != null) {
+            queryParams.add(Constants.STATUS_QUERY_PARAM, status);
+        }
+
+        if (notSubmittedToScheduler != null) {
+            queryParams.add(Constants.NOTSUBMITTED_TO_SCHED_QUERY_PARAM, notSubmittedToScheduler.toString());
+        }
+        
+        if (showDeleted != null){
+            queryParams.add(Constants.SHOW_DELETED_QUERY_PARAM,showDeleted.toString());
+        }
+
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(Integer.class).<Integer>readValue(in);
     }
 
+    /**
+     * Creates {@link Job} via REST service.  The <b>skipWorkflowCheck</b> flag
+     * is ignored since the REST service always validates the {@link Job}
+     * @param j
+     * @param skipWorkflowCheck ignored
+     * @return {@link Job} returned by REST service which will have errors 
+     *         set if validation failed
+     * @throws Exception 
+     */
     @Override
     public Job insert(Job j, boolean skipWorkflowCheck) throws Exception {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).
+                path(Constants.JOBS_PATH);
+
+        String jobAsJson = RestClientFactory.getWriter().writeValueAsString(j);
+        
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        
+        InputStream in = resource.queryParams(queryParams)
+                .accept(MediaType.APPLICATION_JSON)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(jobAsJson)
+                .post(InputStream.class);
+        return RestClientFactory.getReader(Job.class).readValue(in);
+    }
+
+    /**
+     * Creates {@link Job}s in a single call to the batch endpoint of the
+     * REST service.  The <b>skipWorkflowCheck</b> flag is ignored since the 
+     * REST service always validates the {@link Job}s
+     * @param jobs
+     * @param skipWorkflowCheck ignored
+     * @return {@link Job}s in the order passed in
+     * @throws Exception 
+     */
+    @Override
+    public List<Job> insertAll(List<Job> jobs, boolean skipWorkflowCheck) throws Exception {
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).
+                path(Constants.JOBS_PATH).path(Constants.BATCH_PATH);
+
+        String jobsAsJson = RestClientFactory.getWriter().writeValueAsString(jobs);
+        
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        
+        InputStream in = resource.queryParams(queryParams)
+                .accept(MediaType.APPLICATION_JSON)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(jobsAsJson)
+                .post(InputStream.class);
+        return RestClientFactory.getReader(JOB_LIST_TYPE).readValue(in);
     }
 
     @Override
@@ -175,12 +241,7 @@ public class JobRestDAOImpl implements JobDAO {
             final String error,
             final String detailedError) throws Exception {
         
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getClasses().add(StringProvider.class);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).
                 path(Constants.JOBS_PATH).path(Long.toString(jobId));
 
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
@@ -226,18 +287,35 @@ public class JobRestDAOImpl implements JobDAO {
             queryParams.add(Constants.DETAILED_ERROR_QUERY_PARAM,detailedError);
         }
 
-        String json = resource.queryParams(queryParams)
+        InputStream in = resource.queryParams(queryParams)
                 .accept(MediaType.APPLICATION_JSON)
                 .type(MediaType.APPLICATION_JSON_TYPE)
                 .entity("{}")
-                .post(String.class);
-
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<Job>() {
-        });
+                .post(InputStream.class);
+        return RestClientFactory.getReader(Job.class).readValue(in);
     }
     
+    /**
+     * Sends the values passed in to the server which applies them to the
+     * {@link Job} it has stored, <b>job</b> is only used for its id
+     */
+    @Override
+    public Job update(Job job, final String status, Long estCpu, 
+            Long estWallTime, Long estDisk, Long submitDate, Long startDate, 
+            Long finishDate, Boolean submittedToScheduler, 
+            final String schedulerJobId, final Boolean deleted, 
+            final String error, final String detailedError) throws Exception {
+        if (job == null){
+            throw new NullPointerException("Job cannot be null");
+        }
+        if (job.getId() == null){
+            throw new Exception("Id must be set for Job");
+        }
+        return update(job.getId(), status, estCpu, estWallTime, estDisk, 
+                submitDate, startDate, finishDate, submittedToScheduler, 
+                schedulerJobId, deleted, error, detailedError);
+    }
+
     @Override
     public Job update(Job job) throws Exception {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -245,28 +323,20 @@ public class JobRestDAOImpl implements JobDAO {
 
     @Override
     public Job resave(long jobId) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getClasses().add(StringProvider.class);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).
                 path(Constants.JOBS_PATH).path(Long.toString(jobId));
 
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
 
         queryParams.add(Constants.RESAVE_QUERY_PARAM, "true");
        
-        String json = resource.queryParams(queryParams)
+        InputStream in = resource.queryParams(queryParams)
                 .accept(MediaType.APPLICATION_JSON)
                 .type(MediaType.APPLICATION_JSON_TYPE)
                 .entity("{}")
-                .post(String.class);
-
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<Job>() {
-        });    }
+                .post(InputStream.class);
+        return RestClientFactory.getReader(Job.class).readValue(in);
+    }
 
     @Override
     public List<Job> getJobsWithWorkflowId(long workflowId) throws Exception {
@@ -0,0 +1,112 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.sun.jersey.api.client.WebResource;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.MigrationDAO;
+import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactory;
+import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactoryImpl;
+import edu.ucsd.crbs.cws.jerseyclient.RestClientFactory;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
+import edu.ucsd.crbs.cws.rest.Constants;
+import java.io.InputStream;
+import java.util.List;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * Implements {@link MigrationDAO} by calling the migrations REST service
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class MigrationRestDAOImpl implements MigrationDAO {
+    
+    private static final TypeReference<List<MigrationStatus>> MIGRATIONSTATUS_LIST_TYPE = 
+            new TypeReference<List<MigrationStatus>>() {};
+
+    private User _user;
+    private String _restURL;
+    
+    MultivaluedMapFactory _multivaluedMapFactory = new MultivaluedMapFactoryImpl();
+
+    /**
+     * Sets the base REST URL
+     *
+     * @param url
+     */
+    public void setRestURL(final String url) {
+        _restURL = url;
+    }
+
+    public void setUser(User user) {
+        _user = user;
+    }
+
+    @Override
+    public MigrationStatus start(final String kind, Integer batchSize) throws Exception {
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
+                path(Constants.REST_PATH).path(Constants.MIGRATIONS_PATH).path(kind);
+
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        if (batchSize != null){
+            queryParams.add(Constants.BATCH_SIZE_QUERY_PARAM, batchSize.toString());
+        }
+        InputStream in = resource.queryParams(queryParams)
+                .accept(MediaType.APPLICATION_JSON)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity("{}")
+                .post(InputStream.class);
+        return RestClientFactory.getReader(MigrationStatus.class).readValue(in);
+    }
+
+    @Override
+    public MigrationStatus getMigrationStatus(final String kind) throws Exception {
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
+                path(Constants.REST_PATH).path(Constants.MIGRATIONS_PATH).path(kind);
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(MigrationStatus.class).readValue(in);
+    }
+
+    @Override
+    public List<MigrationStatus> getMigrationStatuses() throws Exception {
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
+                path(Constants.REST_PATH).path(Constants.MIGRATIONS_PATH);
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(MIGRATIONSTATUS_LIST_TYPE).readValue(in);
+    }
+}
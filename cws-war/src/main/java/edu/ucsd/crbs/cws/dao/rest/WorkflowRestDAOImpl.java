@@ -34,23 +34,17 @@
 package edu.ucsd.crbs.cws.dao.rest;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.googlecode.objectify.util.jackson.ObjectifyJacksonModule;
-import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
-import com.sun.jersey.api.json.JSONConfiguration;
-import com.sun.jersey.core.impl.provider.entity.StringProvider;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.dao.WorkflowDAO;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactory;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactoryImpl;
+import edu.ucsd.crbs.cws.jerseyclient.RestClientFactory;
 import edu.ucsd.crbs.cws.rest.Constants;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.Workflow;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.io.InputStream;
 import java.util.List;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -61,6 +55,9 @@ import javax.ws.rs.core.MultivaluedMap;
  */
 public class WorkflowRestDAOImpl implements WorkflowDAO {
 
+    private static final TypeReference<List<Workflow>> WORKFLOW_LIST_TYPE = 
+            new TypeReference<List<Workflow>>() {};
+
     private User _user;
     private String _restURL;
     
@@ -86,29 +83,25 @@ public class WorkflowRestDAOImpl implements WorkflowDAO {
     
     @Override
     public Workflow getWorkflowById(String workflowId, User user) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(user.getLogin(),user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).path(Constants.WORKFLOWS_PATH).path(workflowId);
+        WebResource resource = RestClientFactory.getWebResource(_restURL, user).path(Constants.REST_PATH).path(Constants.WORKFLOWS_PATH).path(workflowId);
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
-        String json = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(String.class);
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<Workflow>() {
-        });
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(Workflow.class).readValue(in);
+    }
+
+    /**
+     * There is no REST call that skips the drop down fetch so this just calls
+     * {@link #getWorkflowById(java.lang.String, edu.ucsd.crbs.cws.auth.User)}
+     */
+    @Override
+    public Workflow getWorkflowByIdWithoutDropDownFetch(long workflowId) throws Exception {
+        return getWorkflowById(Long.toString(workflowId),_user);
     }
 
     @Override
     public List<Workflow> getAllWorkflows(boolean omitWorkflowParams,
             final Boolean showDeleted) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).path(Constants.WORKFLOWS_PATH);
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).path(Constants.WORKFLOWS_PATH);
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
 
         if (omitWorkflowParams == true) {
@@ -120,16 +113,43 @@ public class WorkflowRestDAOImpl implements WorkflowDAO {
         }
         
 
-        String json = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(String.class);
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<List<Workflow>>() {
-        });
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(WORKFLOW_LIST_TYPE).readValue(in);
+    }
+
+    @Override
+    public List<Workflow> getLatestWorkflows(boolean omitWorkflowParams,
+            final Boolean showDeleted) throws Exception {
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).path(Constants.WORKFLOWS_PATH);
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        queryParams.add(Constants.LATEST_ONLY_QUERY_PARAM, Boolean.TRUE.toString());
+        
+        if (omitWorkflowParams == true) {
+            queryParams.add(Constants.NOWORKFLOWPARAMS_QUERY_PARAM, Boolean.TRUE.toString());
+        }
+        
+        if (showDeleted != null){
+            queryParams.add(Constants.SHOW_DELETED_QUERY_PARAM,showDeleted.toString());
+        }
+
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(WORKFLOW_LIST_TYPE).readValue(in);
     }
 
     @Override
     public Workflow insert(Workflow w) throws Exception {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).path(Constants.WORKFLOWS_PATH);
+        
+        String workflowAsJson = RestClientFactory.getWriter().writeValueAsString(w);
+        
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        
+        InputStream in = resource.queryParams(queryParams)
+                .accept(MediaType.APPLICATION_JSON)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(workflowAsJson)
+                .post(InputStream.class);
+        return RestClientFactory.getReader(Workflow.class).readValue(in);
     }
 
     @Override
@@ -144,28 +164,19 @@ public class WorkflowRestDAOImpl implements WorkflowDAO {
 
     @Override
     public Workflow resave(long workflowId) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getClasses().add(StringProvider.class);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).path(Constants.REST_PATH).
                 path(Constants.WORKFLOWS_PATH).path(Long.toString(workflowId));
 
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
 
         queryParams.add(Constants.RESAVE_QUERY_PARAM, Boolean.TRUE.toString());
        
-        String json = resource.queryParams(queryParams)
+        InputStream in = resource.queryParams(queryParams)
                 .accept(MediaType.APPLICATION_JSON)
                 .type(MediaType.APPLICATION_JSON_TYPE)
                 .entity("{}")
-                .post(String.class);
-
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<Workflow>() {
-        });    
+                .post(InputStream.class);
+        return RestClientFactory.getReader(Workflow.class).readValue(in);
     }
 
     @Override
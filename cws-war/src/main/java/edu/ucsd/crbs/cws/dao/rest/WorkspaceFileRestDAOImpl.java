@@ -34,23 +34,16 @@
 package edu.ucsd.crbs.cws.dao.rest;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.googlecode.objectify.util.jackson.ObjectifyJacksonModule;
-import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
-import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
-import com.sun.jersey.api.json.JSONConfiguration;
-import com.sun.jersey.core.impl.provider.entity.StringProvider;
-import com.sun.jersey.multipart.impl.MultiPartWriter;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactoryImpl;
 import edu.ucsd.crbs.cws.jerseyclient.MultivaluedMapFactory;
+import edu.ucsd.crbs.cws.jerseyclient.RestClientFactory;
 import edu.ucsd.crbs.cws.rest.Constants;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
+import java.io.InputStream;
 import java.util.List;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -61,6 +54,9 @@ import javax.ws.rs.core.MultivaluedMap;
  */
 public class WorkspaceFileRestDAOImpl implements WorkspaceFileDAO {
     
+    private static final TypeReference<List<WorkspaceFile>> WORKSPACEFILE_LIST_TYPE =
+            new TypeReference<List<WorkspaceFile>>() {};
+    
     private String _restURL;
     private User _user;
     
@@ -81,30 +77,17 @@ public class WorkspaceFileRestDAOImpl implements WorkspaceFileDAO {
  
     @Override
     public List<WorkspaceFile> getWorkspaceFilesById(String workspaceFileIds, User user) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        
-        if (user != null){
-            client.addFilter(new HTTPBasicAuthFilter(user.getLogin(),user.getToken()));
-        }
-        else if (_user != null) {
-            client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        }        
         
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
+        WebResource resource = RestClientFactory.getWebResource(_restURL, 
+                user != null ? user : _user)
+                .path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(user);
         if (workspaceFileIds != null){
             queryParams.add(Constants.WSFID_PARAM,workspaceFileIds);
         }
 
-        String json = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(String.class);
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<List<WorkspaceFile>>() {
-        });
-        
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(WORKSPACEFILE_LIST_TYPE).readValue(in);
     }
     
     
@@ -112,12 +95,8 @@ public class WorkspaceFileRestDAOImpl implements WorkspaceFileDAO {
     @Override
     public List<WorkspaceFile> getWorkspaceFiles(String owner, final String type,final Boolean isFailed,Boolean synced,
             final Boolean showDeleted) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user)
+                .path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
         
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
 
@@ -138,63 +117,80 @@ public class WorkspaceFileRestDAOImpl implements WorkspaceFileDAO {
             queryParams.add(Constants.SHOW_DELETED_QUERY_PARAM,showDeleted.toString());
         }
 
-        String json = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(String.class);
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<List<WorkspaceFile>>() {
-        });
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(WORKSPACEFILE_LIST_TYPE).readValue(in);
     }
 
     @Override
     public WorkspaceFile getWorkspaceFileById(String workspaceFileId, User user) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        
-        if (user != null){
-            client.addFilter(new HTTPBasicAuthFilter(user.getLogin(),user.getToken()));
-        }
-        else if (_user != null) {
-            client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        }        
-        
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL)
+        WebResource resource = RestClientFactory.getWebResource(_restURL, 
+                user != null ? user : _user)
                 .path(Constants.REST_PATH)
                 .path(Constants.WORKSPACEFILES_PATH)
                 .path(workspaceFileId);
-        String json = resource.accept(MediaType.APPLICATION_JSON).get(String.class);
-    
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<WorkspaceFile>() {
-        });
+        InputStream in = resource.accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(WorkspaceFile.class).readValue(in);
+    }
+
+    @Override
+    public List<WorkspaceFile> insertAll(List<WorkspaceFile> workspaceFiles) throws Exception {
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
+                path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH).
+                path(Constants.BATCH_PATH);
+
+        String workspaceFilesAsJson = RestClientFactory.getWriter().writeValueAsString(workspaceFiles);
+
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+
+        InputStream in = resource.queryParams(queryParams)
+                .accept(MediaType.APPLICATION_JSON)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(workspaceFilesAsJson)
+                .post(InputStream.class);
+        return RestClientFactory.getReader(WORKSPACEFILE_LIST_TYPE).readValue(in);
     }
 
     @Override
     public WorkspaceFile insert(WorkspaceFile wsp,boolean generateUploadURL) throws Exception {
-        ObjectMapper om = new ObjectMapper();
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getClasses().add(StringProvider.class);
-        cc.getClasses().add(MultiPartWriter.class);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
                 path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
 
-        String workspaceFileAsJson = om.writeValueAsString(wsp);
+        String workspaceFileAsJson = RestClientFactory.getWriter().writeValueAsString(wsp);
 
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
 
         if (generateUploadURL == false){
             queryParams.add(Constants.ADD_UPLOAD_URL_PARAM, "false");
         }
+        else if (wsp.getMd5() != null){
+            queryParams.add(Constants.DEDUPLICATE_QUERY_PARAM, "true");
+        }
 
-        String response = resource.queryParams(queryParams).type(MediaType.APPLICATION_JSON_TYPE)
+        InputStream in = resource.queryParams(queryParams).type(MediaType.APPLICATION_JSON_TYPE)
                 .entity(workspaceFileAsJson)
-                .post(String.class);
-        return om.readValue(response, WorkspaceFile.class);
+                .post(InputStream.class);
+        return RestClientFactory.getReader(WorkspaceFile.class).readValue(in);
+    }
+
+    @Override
+    public WorkspaceFile getWorkspaceFileWithBlobByMd5(String md5,
+            String owner) throws Exception {
+        if (md5 == null || owner == null){
+            return null;
+        }
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user)
+                .path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
+        
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        queryParams.add(Constants.MD5_QUERY_PARAM, md5);
+        queryParams.add(Constants.OWNER_QUERY_PARAM, owner);
+        
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        List<WorkspaceFile> wsfList = RestClientFactory.getReader(WORKSPACEFILE_LIST_TYPE).readValue(in);
+        if (wsfList == null || wsfList.isEmpty()){
+            return null;
+        }
+        return wsfList.get(0);
     }
 
     @Override
@@ -205,13 +201,7 @@ public class WorkspaceFileRestDAOImpl implements WorkspaceFileDAO {
     @Override
     public WorkspaceFile updatePathSizeAndFailStatus(long workspaceFileId, String path,
             final String size,final Boolean isFailed) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getClasses().add(StringProvider.class);
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
                 path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH).
                 path(Long.toString(workspaceFileId));
         
@@ -227,16 +217,12 @@ public class WorkspaceFileRestDAOImpl implements WorkspaceFileDAO {
             queryParams.add(Constants.WS_FAILED_QUERY_PARAM, isFailed.toString());
         }
         
-         String json = resource.queryParams(queryParams)
+        InputStream in = resource.queryParams(queryParams)
                 .accept(MediaType.APPLICATION_JSON)
                 .type(MediaType.APPLICATION_JSON_TYPE)
                 .entity("{}")
-                .post(String.class);
-         
-           ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<WorkspaceFile>() {
-        });
+                .post(InputStream.class);
+        return RestClientFactory.getReader(WorkspaceFile.class).readValue(in);
     }
 
     @Override
@@ -247,76 +233,51 @@ public class WorkspaceFileRestDAOImpl implements WorkspaceFileDAO {
 
     @Override
     public WorkspaceFile update(WorkspaceFile wsp) throws Exception {
-          ObjectMapper om = new ObjectMapper();
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getClasses().add(StringProvider.class);
-        cc.getClasses().add(MultiPartWriter.class);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),
-                _user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
                 path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH).
                 path(wsp.getId().toString());
 
-        String workspaceFileAsJson = om.writeValueAsString(wsp);
+        String workspaceFileAsJson = RestClientFactory.getWriter().writeValueAsString(wsp);
 
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
         
         queryParams.add(Constants.ADD_UPLOAD_URL_PARAM, "false");
 
-        String response = resource.queryParams(queryParams).
+        InputStream in = resource.queryParams(queryParams).
                 type(MediaType.APPLICATION_JSON_TYPE)
                 .entity(workspaceFileAsJson)
-                .put(String.class);
-        return om.readValue(response, WorkspaceFile.class);
+                .put(InputStream.class);
+        return RestClientFactory.getReader(WorkspaceFile.class).readValue(in);
     }
     
 
     @Override
     public WorkspaceFile resave(long workspaceFileId) throws Exception {
-         ClientConfig cc = new DefaultClientConfig();
-        cc.getClasses().add(StringProvider.class);
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user).
                 path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH).
                 path(Long.toString(workspaceFileId));
         
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
         queryParams.add(Constants.RESAVE_QUERY_PARAM, "true");
         
-         String json = resource.queryParams(queryParams)
+        InputStream in = resource.queryParams(queryParams)
                 .accept(MediaType.APPLICATION_JSON)
                 .type(MediaType.APPLICATION_JSON_TYPE)
                 .entity("{}")
-                .post(String.class);
-         
-           ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<WorkspaceFile>() {
-        });
+                .post(InputStream.class);
+        return RestClientFactory.getReader(WorkspaceFile.class).readValue(in);
     }
 
     @Override
     public List<WorkspaceFile> getWorkspaceFilesBySourceJobId(long sourceJobId) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        cc.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
-        Client client = Client.create(cc);
-        client.addFilter(new HTTPBasicAuthFilter(_user.getLogin(),_user.getToken()));
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(_restURL).path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user)
+                .path(Constants.REST_PATH).path(Constants.WORKSPACEFILES_PATH);
         
         MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
         queryParams.add(Constants.SOURCE_JOB_ID_QUERY_PARAM, Long.toString(sourceJobId));
 
-        String json = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(String.class);
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new ObjectifyJacksonModule());
-        return mapper.readValue(json, new TypeReference<List<WorkspaceFile>>() {
-        });
+        InputStream in = resource.queryParams(queryParams).accept(MediaType.APPLICATION_JSON).get(InputStream.class);
+        return RestClientFactory.getReader(WORKSPACEFILE_LIST_TYPE).readValue(in);
     }
 
     @Override
@@ -0,0 +1,520 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.memcache.Expiration;
+import com.google.appengine.api.memcache.MemcacheService;
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.api.urlfetch.HTTPResponse;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link WorkflowParameterDataFetcher} that wraps a {@link URLFetcherImpl} 
+ * and caches the value maps obtained from drop down parameter URLs.
+ * <p/>
+ * Entries are keyed by the URL after {@link URLFetcherImpl#getUpdatedURL(java.lang.String, edu.ucsd.crbs.cws.auth.User) }
+ * substitution along with the name value delimiter so user specific URLs 
+ * are never shared across users.  Entries are kept in a per instance cache
+ * and in memcache so all instances see the same data.  An entry younger 
+ * then the time to live is returned as is.  An entry older then the time 
+ * to live, but younger then the max stale time is returned immediately and 
+ * a {@link DropDownRefreshTask} is submitted to refresh that URL.  Anything
+ * older is fetched again.
+ * <p/>
+ * When a list of parameters is passed in, parameters with the same URL are
+ * fetched once and the distinct http URLs are fetched in parallel via
+ * {@link URLFetcherImpl#fetchAsync(edu.ucsd.crbs.cws.workflow.WorkflowParameter, edu.ucsd.crbs.cws.auth.User) }
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class CachingURLFetcherImpl implements WorkflowParameterDataFetcher {
+
+    private static final Logger _log
+            = Logger.getLogger(CachingURLFetcherImpl.class.getName());
+    
+    /**
+     * Time in milliseconds an entry is considered fresh
+     */
+    public static final long DEFAULT_TTL_MILLIS = 60000;
+    
+    /**
+     * Time in milliseconds a stale entry can still be returned while it
+     * is refreshed by a {@link DropDownRefreshTask}
+     */
+    public static final long DEFAULT_MAX_STALE_MILLIS = 600000;
+    
+    /**
+     * Maximum number of URLs kept in the per instance cache
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+    
+    /**
+     * Memcache namespace for cached drop down values
+     */
+    public static final String MEMCACHE_NAMESPACE = "dropdownvalues";
+    
+    /**
+     * Cache shared by all instances of this class
+     */
+    private static final DropDownValueCache _sharedCache = 
+            new DropDownValueCache(DEFAULT_MAX_ENTRIES);
+    
+    private URLFetcherImpl _fetcher = new URLFetcherImpl();
+    private DropDownValueCache _cache = _sharedCache;
+    private MemcacheService _memcache;
+    private DeferredTaskSubmitter _taskSubmitter;
+    private long _ttlMillis = DEFAULT_TTL_MILLIS;
+    private long _maxStaleMillis = DEFAULT_MAX_STALE_MILLIS;
+    
+    /**
+     * Holds a value map and the time it was fetched
+     */
+    static class CacheEntry implements Serializable {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final Map<String,String> _valueMap;
+        private final long _fetchTime;
+        
+        CacheEntry(Map<String,String> valueMap,long fetchTime){
+            _valueMap = Collections.unmodifiableMap(
+                    new LinkedHashMap<>(valueMap));
+            _fetchTime = fetchTime;
+        }
+        
+        Map<String,String> getValueMap(){
+            return _valueMap;
+        }
+        
+        long getFetchTime(){
+            return _fetchTime;
+        }
+    }
+    
+    /**
+     * Size bounded least recently used cache of {@link CacheEntry} objects
+     */
+    static class DropDownValueCache {
+        private final LinkedHashMap<String,CacheEntry> _map;
+        
+        DropDownValueCache(final int maxEntries){
+            _map = new LinkedHashMap<String,CacheEntry>(16,0.75f,true){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String,CacheEntry> eldest){
+                    return size() > maxEntries;
+                }
+            };
+        }
+        
+        synchronized CacheEntry get(final String key){
+            return _map.get(key);
+        }
+        
+        synchronized void put(final String key,CacheEntry entry){
+            _map.put(key, entry);
+        }
+        
+        synchronized int size(){
+            return _map.size();
+        }
+        
+        synchronized void clear(){
+            _map.clear();
+        }
+    }
+    
+    void setURLFetcher(URLFetcherImpl fetcher){
+        _fetcher = fetcher;
+    }
+    
+    void setCache(DropDownValueCache cache){
+        _cache = cache;
+    }
+    
+    void setMemcacheService(MemcacheService memcache){
+        _memcache = memcache;
+    }
+    
+    void setDeferredTaskSubmitter(DeferredTaskSubmitter taskSubmitter){
+        _taskSubmitter = taskSubmitter;
+    }
+    
+    void setTimeToLiveMillis(long ttlMillis){
+        _ttlMillis = ttlMillis;
+    }
+    
+    void setMaxStaleMillis(long maxStaleMillis){
+        _maxStaleMillis = maxStaleMillis;
+    }
+    
+    /**
+     * Updates value map of <b>parameter</b> using cached data if available.
+     * See {@link URLFetcherImpl#fetchAndUpdate(edu.ucsd.crbs.cws.workflow.WorkflowParameter, edu.ucsd.crbs.cws.auth.User) }
+     * for details on how the URL is fetched
+     * @param parameter
+     * @param user
+     * @throws Exception 
+     */
+    @Override
+    public void fetchAndUpdate(WorkflowParameter parameter, User user) throws Exception {
+        ArrayList<WorkflowParameter> params = new ArrayList<>();
+        params.add(parameter);
+        fetchAndUpdateAll(params,user);
+    }
+
+    /**
+     * Updates value map of all drop down <b>parameters</b> using cached data
+     * if available.  Parameters whose data is not in the cache are grouped by
+     * URL and each distinct URL is fetched once.  If any fetch fails the 
+     * first exception encountered is thrown after all fetches have completed.
+     * @param parameters
+     * @param user
+     * @throws Exception 
+     */
+    @Override
+    public void fetchAndUpdateAll(List<WorkflowParameter> parameters, User user) throws Exception {
+        if (parameters == null){
+            return;
+        }
+        
+        LinkedHashMap<String,List<WorkflowParameter>> misses = new LinkedHashMap<>();
+        
+        for (WorkflowParameter param : parameters){
+            if (!isCacheable(param,user)){
+                _fetcher.fetchAndUpdate(param, user);
+                continue;
+            }
+            String key = getCacheKey(param,user);
+            CacheEntry entry = getEntry(key);
+            long age = entry == null ? Long.MAX_VALUE : 
+                    System.currentTimeMillis() - entry.getFetchTime();
+            
+            if (age <= getMaxStaleMillis(param)){
+                param.setValueMap(new LinkedHashMap<>(entry.getValueMap()));
+                if (age > _ttlMillis){
+                    submitRefresh(key,entry,param,user);
+                }
+                continue;
+            }
+            
+            List<WorkflowParameter> group = misses.get(key);
+            if (group == null){
+                group = new ArrayList<>();
+                misses.put(key, group);
+            }
+            group.add(param);
+        }
+        
+        if (misses.isEmpty()){
+            return;
+        }
+        fetchMisses(misses,user);
+    }
+    
+    /**
+     * Fetches each group in <b>misses</b>.  Asynchronous fetches are 
+     * started for all groups that support them before the remaining groups
+     * are fetched one after another, then the asynchronous results are 
+     * collected.
+     * @param misses
+     * @param user
+     * @throws Exception first exception encountered
+     */
+    private void fetchMisses(Map<String,List<WorkflowParameter>> misses,
+            final User user) throws Exception {
+        
+        LinkedHashMap<String,Future<HTTPResponse>> pending = new LinkedHashMap<>();
+        Exception firstException = null;
+        
+        for (Map.Entry<String,List<WorkflowParameter>> e : misses.entrySet()){
+            try {
+                Future<HTTPResponse> f = _fetcher.fetchAsync(e.getValue().get(0),
+                        user);
+                if (f != null){
+                    pending.put(e.getKey(), f);
+                }
+            }
+            catch(Exception ex){
+                if (firstException == null){
+                    firstException = ex;
+                }
+            }
+        }
+        
+        for (Map.Entry<String,List<WorkflowParameter>> e : misses.entrySet()){
+            if (pending.containsKey(e.getKey())){
+                continue;
+            }
+            try {
+                cacheAndUpdate(e.getKey(),e.getValue(),
+                        fetch(e.getValue().get(0),user));
+            }
+            catch(Exception ex){
+                if (firstException == null){
+                    firstException = ex;
+                }
+            }
+        }
+        
+        for (Map.Entry<String,Future<HTTPResponse>> e : pending.entrySet()){
+            List<WorkflowParameter> group = misses.get(e.getKey());
+            try {
+                WorkflowParameter copy = copyOf(group.get(0));
+                _fetcher.updateValueMap(e.getValue().get(), copy);
+                cacheAndUpdate(e.getKey(),group,copy.getValueMap());
+            }
+            catch(ExecutionException ee){
+                if (firstException == null){
+                    firstException = ee.getCause() instanceof Exception ? 
+                            (Exception)ee.getCause() : ee;
+                }
+            }
+            catch(Exception ex){
+                if (firstException == null){
+                    firstException = ex;
+                }
+            }
+        }
+        
+        if (firstException != null){
+            throw firstException;
+        }
+    }
+    
+    /**
+     * Stores <b>valueMap</b> in the cache and sets a copy of it on every 
+     * parameter in <b>group</b>
+     * @param key
+     * @param group
+     * @param valueMap 
+     */
+    private void cacheAndUpdate(final String key,List<WorkflowParameter> group,
+            Map<String,String> valueMap){
+        if (valueMap == null){
+            valueMap = new LinkedHashMap<>();
+        }
+        putEntry(key, new CacheEntry(valueMap,System.currentTimeMillis()));
+        for (WorkflowParameter param : group){
+            param.setValueMap(new LinkedHashMap<>(valueMap));
+        }
+    }
+    
+    /**
+     * Fetches value map for <b>param</b> via a copy of the parameter so
+     * the parameter passed in is not modified
+     * @param param
+     * @param user
+     * @return
+     * @throws Exception 
+     */
+    private Map<String,String> fetch(WorkflowParameter param,User user) throws Exception {
+        WorkflowParameter copy = copyOf(param);
+        _fetcher.fetchAndUpdate(copy, user);
+        if (copy.getValueMap() == null){
+            return new LinkedHashMap<>();
+        }
+        return new LinkedHashMap<>(copy.getValueMap());
+    }
+    
+    private WorkflowParameter copyOf(WorkflowParameter param){
+        WorkflowParameter copy = new WorkflowParameter();
+        copy.setType(param.getType());
+        copy.setValue(param.getValue());
+        copy.setNameValueDelimiter(param.getNameValueDelimiter());
+        return copy;
+    }
+    
+    /**
+     * Fetches <b>urlTemplate</b> for <b>user</b> and stores the result 
+     * in the cache.  Called by {@link DropDownRefreshTask}
+     * @param keyDigest Digest of the cache key the task was created for
+     * @param urlTemplate URL before any user keywords are replaced
+     * @param nameValueDelimiter
+     * @param user User with login, but no token
+     * @throws Exception if the fetch fails or the cache key for 
+     *         <b>urlTemplate</b> and <b>user</b> does not match <b>keyDigest</b>
+     */
+    void refresh(final String keyDigest,final String urlTemplate,
+            final String nameValueDelimiter,User user) throws Exception {
+        WorkflowParameter param = new WorkflowParameter();
+        param.setType(WorkflowParameter.Type.DROP_DOWN);
+        param.setValue(urlTemplate);
+        param.setNameValueDelimiter(nameValueDelimiter);
+        String key = getCacheKey(param,user);
+        if (!getDigest(key).equals(keyDigest)){
+            throw new Exception("Cache key for "+urlTemplate
+                    +" does not match digest "+keyDigest);
+        }
+        putEntry(key, new CacheEntry(fetch(param,user),
+                System.currentTimeMillis()));
+    }
+    
+    /**
+     * Submits a {@link DropDownRefreshTask} for <b>key</b>.  The task name
+     * includes the fetch time of the stale <b>entry</b> so only one refresh
+     * is run per entry no matter how many requests or instances see it.
+     * URLs that need the user token are never refreshed in a task so the
+     * token is not written to the task queue.  Failures are logged and the
+     * stale entry is kept.
+     */
+    private void submitRefresh(final String key,CacheEntry entry,
+            WorkflowParameter param,User user){
+        if (needsUserToken(param)){
+            return;
+        }
+        try {
+            DropDownRefreshTask task = new DropDownRefreshTask(getDigest(key),
+                    param.getValue(),param.getNameValueDelimiter(),
+                    user.getLogin(),user.getLoginToRunJobAs(),
+                    entry.getFetchTime());
+            getDeferredTaskSubmitter().submit(task.getTaskName(),task);
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING,"Unable to submit refresh of "
+                    +param.getValue(),ex);
+        }
+    }
+    
+    /**
+     * Stale entries for URLs that need the user token cannot be refreshed
+     * in the background so they are fetched again by the next request once
+     * they are older then the time to live
+     */
+    private long getMaxStaleMillis(WorkflowParameter param){
+        if (needsUserToken(param)){
+            return Math.min(_ttlMillis,_maxStaleMillis);
+        }
+        return _maxStaleMillis;
+    }
+    
+    private boolean needsUserToken(WorkflowParameter param){
+        return param.getValue().contains(URLFetcherImpl.USER_TOKEN_KEYWORD);
+    }
+    
+    /**
+     * Gets entry for <b>key</b> from the per instance cache, falling back
+     * to memcache if the entry is missing or no longer fresh.  The newer
+     * of the two is returned.
+     */
+    private CacheEntry getEntry(final String key){
+        CacheEntry entry = _cache.get(key);
+        if (entry != null && 
+                System.currentTimeMillis() - entry.getFetchTime() <= _ttlMillis){
+            return entry;
+        }
+        CacheEntry shared = null;
+        try {
+            shared = (CacheEntry)getMemcacheService().get(getDigest(key));
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING,"Unable to read memcache",ex);
+        }
+        if (shared != null && 
+                (entry == null || shared.getFetchTime() > entry.getFetchTime())){
+            _cache.put(key, shared);
+            return shared;
+        }
+        return entry;
+    }
+    
+    private void putEntry(final String key,CacheEntry entry){
+        _cache.put(key, entry);
+        try {
+            if (_maxStaleMillis > 0){
+                getMemcacheService().put(getDigest(key), entry,
+                        Expiration.byDeltaMillis((int)_maxStaleMillis));
+            }
+            else {
+                getMemcacheService().put(getDigest(key), entry);
+            }
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING,"Unable to write memcache",ex);
+        }
+    }
+    
+    private MemcacheService getMemcacheService(){
+        if (_memcache == null){
+            _memcache = MemcacheServiceFactory.getMemcacheService(MEMCACHE_NAMESPACE);
+        }
+        return _memcache;
+    }
+    
+    private DeferredTaskSubmitter getDeferredTaskSubmitter(){
+        if (_taskSubmitter == null){
+            _taskSubmitter = new DeferredTaskSubmitterImpl();
+        }
+        return _taskSubmitter;
+    }
+    
+    /**
+     * Only drop down parameters with a URL value and a non null user are
+     * cached.  Everything else is passed directly to {@link URLFetcherImpl}
+     */
+    private boolean isCacheable(WorkflowParameter param,User user){
+        if (param == null || user == null || param.getType() == null){
+            return false;
+        }
+        if (!param.getType().equalsIgnoreCase(WorkflowParameter.Type.DROP_DOWN)){
+            return false;
+        }
+        return URLFetcherImpl.isURL(param.getValue());
+    }
+    
+    private String getCacheKey(WorkflowParameter param,User user){
+        return _fetcher.getUpdatedURL(param.getValue(), user)+"\n"
+                +param.getNameValueDelimiter();
+    }
+    
+    /**
+     * Cache keys can contain user tokens and exceed memcache key and task
+     * name limits so a digest of the key is used for both
+     */
+    static String getDigest(final String key){
+        return Hashing.sha256().hashString(key, Charsets.UTF_8).toString();
+    }
+}
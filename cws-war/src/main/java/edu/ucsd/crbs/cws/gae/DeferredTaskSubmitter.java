@@ -0,0 +1,67 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+
+/**
+ * Defines method to run a {@link DeferredTask} outside of the current
+ * request
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public interface DeferredTaskSubmitter {
+    
+    /**
+     * Submits <b>task</b> to be run later.  Only one task with a given
+     * <b>taskName</b> is ever accepted so submitting the same name again 
+     * is silently ignored.
+     * @param taskName Unique name for the task
+     * @param task Task to run
+     * @throws Exception If the task could not be submitted
+     */
+    public void submit(final String taskName,DeferredTask task) throws Exception;
+    
+    /**
+     * Submits <b>task</b> to be run no sooner then <b>delayMillis</b> 
+     * milliseconds from now.  Like {@link #submit(java.lang.String, com.google.appengine.api.taskqueue.DeferredTask)}
+     * submitting the same <b>taskName</b> again is silently ignored.
+     * @param taskName Unique name for the task
+     * @param task Task to run
+     * @param delayMillis Delay in milliseconds before the task is run
+     * @throws Exception If the task could not be submitted
+     */
+    public void submit(final String taskName,DeferredTask task,
+            long delayMillis) throws Exception;
+}
@@ -0,0 +1,80 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import com.google.appengine.api.taskqueue.QueueFactory;
+import com.google.appengine.api.taskqueue.TaskAlreadyExistsException;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Submits {@link DeferredTask}s to the default App Engine push queue.  The
+ * task name is used to dedupe submissions so a retried request does not 
+ * queue the same work twice.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class DeferredTaskSubmitterImpl implements DeferredTaskSubmitter {
+
+    private static final Logger _log
+            = Logger.getLogger(DeferredTaskSubmitterImpl.class.getName());
+    
+    @Override
+    public void submit(final String taskName, DeferredTask task) throws Exception {
+        submit(taskName,task,0);
+    }
+
+    @Override
+    public void submit(final String taskName, DeferredTask task, 
+            long delayMillis) throws Exception {
+        if (task == null){
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        TaskOptions options = TaskOptions.Builder.withPayload(task);
+        if (taskName != null){
+            options = options.taskName(taskName);
+        }
+        if (delayMillis > 0){
+            options = options.countdownMillis(delayMillis);
+        }
+        try {
+            QueueFactory.getDefaultQueue().add(options);
+        }
+        catch(TaskAlreadyExistsException tae){
+            _log.log(Level.INFO, "Task {0} already submitted", taskName);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import edu.ucsd.crbs.cws.auth.User;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Refreshes a stale drop down value map cached by 
+ * {@link CachingURLFetcherImpl}.  Submitted when a request is served a
+ * stale entry so the fetch happens outside of that request.  Failures are
+ * logged and not retried since the stale entry is still served and is 
+ * fetched again once it is older then the max stale time.
+ * <p/>
+ * The task only holds the URL template as set on the 
+ * {@link edu.ucsd.crbs.cws.workflow.WorkflowParameter}, a digest of the
+ * cache key, and the login of the user.  User tokens are never stored so
+ * URLs containing {@link URLFetcherImpl#USER_TOKEN_KEYWORD} are not 
+ * refreshed this way.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class DropDownRefreshTask implements DeferredTask {
+    
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger _log
+            = Logger.getLogger(DropDownRefreshTask.class.getName());
+    
+    /**
+     * Prefix for task name, a digest of the cache key and the fetch time
+     * of the stale entry are appended to it
+     */
+    public static final String TASK_NAME_PREFIX = "dropdownrefresh-";
+    
+    private final String _cacheKeyDigest;
+    private final String _urlTemplate;
+    private final String _nameValueDelimiter;
+    private final String _login;
+    private final String _loginToRunAs;
+    private final long _staleFetchTime;
+    
+    transient CachingURLFetcherImpl _cachingFetcher;
+    
+    /**
+     * Constructor
+     * @param cacheKeyDigest Digest of key of entry in {@link CachingURLFetcherImpl}
+     * @param urlTemplate URL to fetch before any user keywords are replaced
+     * @param nameValueDelimiter Delimiter for name value pairs
+     * @param login Login of user used to replace keywords in <b>urlTemplate</b>
+     * @param loginToRunAs Login to run as of user used to replace keywords 
+     *        in <b>urlTemplate</b>
+     * @param staleFetchTime Fetch time of the stale entry
+     * @throws IllegalArgumentException if <b>urlTemplate</b> contains
+     *         {@link URLFetcherImpl#USER_TOKEN_KEYWORD}
+     */
+    public DropDownRefreshTask(final String cacheKeyDigest,
+            final String urlTemplate,final String nameValueDelimiter,
+            final String login,final String loginToRunAs,long staleFetchTime){
+        if (urlTemplate != null && 
+                urlTemplate.contains(URLFetcherImpl.USER_TOKEN_KEYWORD)){
+            throw new IllegalArgumentException("URLs with user token cannot be refreshed in a task");
+        }
+        _cacheKeyDigest = cacheKeyDigest;
+        _urlTemplate = urlTemplate;
+        _nameValueDelimiter = nameValueDelimiter;
+        _login = login;
+        _loginToRunAs = loginToRunAs;
+        _staleFetchTime = staleFetchTime;
+    }
+    
+    /**
+     * Gets the task name which is unique for the stale entry so only one
+     * refresh is queued per entry
+     * @return 
+     */
+    public String getTaskName(){
+        return TASK_NAME_PREFIX+_cacheKeyDigest+"-"
+                +Long.toString(_staleFetchTime);
+    }
+
+    @Override
+    public void run() {
+        if (_cachingFetcher == null){
+            _cachingFetcher = new CachingURLFetcherImpl();
+        }
+        User user = new User();
+        user.setLogin(_login);
+        user.setLoginToRunJobAs(_loginToRunAs);
+        try {
+            _cachingFetcher.refresh(_cacheKeyDigest,_urlTemplate, 
+                    _nameValueDelimiter,user);
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING, "Unable to refresh "+_urlTemplate
+                    +" keeping stale entry", ex);
+        }
+    }
+}
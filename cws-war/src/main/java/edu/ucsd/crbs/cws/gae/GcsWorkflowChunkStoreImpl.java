@@ -0,0 +1,286 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.appidentity.AppIdentityServiceFactory;
+import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
+import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
+import com.google.appengine.tools.cloudstorage.GcsFileOptions;
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.appengine.tools.cloudstorage.GcsInputChannel;
+import com.google.appengine.tools.cloudstorage.GcsOutputChannel;
+import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.appengine.tools.cloudstorage.GcsServiceFactory;
+import com.google.appengine.tools.cloudstorage.ListItem;
+import com.google.appengine.tools.cloudstorage.ListOptions;
+import com.google.appengine.tools.cloudstorage.ListResult;
+import com.google.appengine.tools.cloudstorage.RetryParams;
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link WorkflowChunkStore} that keeps each chunk as an object named
+ * by its hash under {@link #CHUNK_DIR}/&lt;workflow id&gt;/ in the default 
+ * Google Cloud Storage bucket.  Assembled files are written under 
+ * {@link #WORKFLOW_DIR} which is the same location the blob store upload url 
+ * for {@link edu.ucsd.crbs.cws.workflow.Workflow}s writes to.  Along with
+ * the assembled file an index of hash and length of each chunk is written
+ * to {@link #CHUNK_DIR}/&lt;workflow id&gt;{@link #INDEX_SUFFIX} so the next
+ * version can copy matching chunks out of the assembled file.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class GcsWorkflowChunkStoreImpl implements WorkflowChunkStore {
+    
+    private static final Logger _log
+            = Logger.getLogger(GcsWorkflowChunkStoreImpl.class.getName());
+    
+    public static final String CHUNK_DIR = "workflowchunks/";
+    
+    public static final String WORKFLOW_DIR = "workflows/";
+    
+    public static final String KAR_SUFFIX = ".kar";
+    
+    public static final String INDEX_SUFFIX = ".index";
+    
+    static final int COPY_BUFFER_SIZE = 1024 * 1024;
+    
+    private GcsService _gcsService;
+    private String _bucket;
+    
+    public GcsWorkflowChunkStoreImpl(){
+    }
+    
+    /**
+     * Constructor
+     * @param gcsService Service to use
+     * @param bucket Bucket to store chunks and assembled files in
+     */
+    public GcsWorkflowChunkStoreImpl(GcsService gcsService,final String bucket){
+        _gcsService = gcsService;
+        _bucket = bucket;
+    }
+    
+    private synchronized GcsService getGcsService(){
+        if (_gcsService == null){
+            _gcsService = GcsServiceFactory.createGcsService(RetryParams.getDefaultInstance());
+        }
+        return _gcsService;
+    }
+    
+    private synchronized String getBucket(){
+        if (_bucket == null){
+            _bucket = AppIdentityServiceFactory.getAppIdentityService().getDefaultGcsBucketName();
+        }
+        return _bucket;
+    }
+    
+    private String getChunkPrefix(long workflowId){
+        return CHUNK_DIR+Long.toString(workflowId)+"/";
+    }
+    
+    private GcsFilename getChunkFilename(long workflowId,final String hash){
+        return new GcsFilename(getBucket(),getChunkPrefix(workflowId)+hash);
+    }
+    
+    private GcsFilename getIndexFilename(long workflowId){
+        return new GcsFilename(getBucket(),
+                CHUNK_DIR+Long.toString(workflowId)+INDEX_SUFFIX);
+    }
+    
+    private GcsFilename getKarFilename(long workflowId){
+        return new GcsFilename(getBucket(),
+                WORKFLOW_DIR+Long.toString(workflowId)+KAR_SUFFIX);
+    }
+
+    @Override
+    public List<String> getMissingChunks(long workflowId, Long previousWorkflowId, 
+            List<String> hashes) throws Exception {
+        GcsService gcsService = getGcsService();
+        Map<String,long[]> previousIndex = getIndex(previousWorkflowId);
+        List<String> missing = new ArrayList<>();
+        for (String hash : new LinkedHashSet<>(hashes)){
+            if (previousIndex.containsKey(hash)){
+                continue;
+            }
+            if (gcsService.getMetadata(getChunkFilename(workflowId,hash)) == null){
+                missing.add(hash);
+            }
+        }
+        return missing;
+    }
+
+    @Override
+    public void saveChunk(long workflowId,final String hash, byte[] data) throws Exception {
+        getGcsService().createOrReplace(getChunkFilename(workflowId,hash), 
+                GcsFileOptions.getDefaultInstance(), ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public String assemble(long workflowId, Long previousWorkflowId,
+            List<String> hashes) throws Exception {
+        GcsService gcsService = getGcsService();
+        Map<String,long[]> previousIndex = getIndex(previousWorkflowId);
+        GcsFilename karFile = getKarFilename(workflowId);
+        StringBuilder index = new StringBuilder();
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        try (GcsOutputChannel out = gcsService.createOrReplace(karFile, 
+                GcsFileOptions.getDefaultInstance())){
+            for (String hash : hashes){
+                GcsFilename chunkFile = getChunkFilename(workflowId,hash);
+                GcsFileMetadata meta = gcsService.getMetadata(chunkFile);
+                long length;
+                if (meta != null){
+                    length = meta.getLength();
+                    copy(gcsService,chunkFile,0,length,out,buffer);
+                }
+                else if (previousIndex.containsKey(hash)){
+                    long[] offsetAndLength = previousIndex.get(hash);
+                    length = offsetAndLength[1];
+                    copy(gcsService,getKarFilename(previousWorkflowId),
+                            offsetAndLength[0],length,out,buffer);
+                }
+                else {
+                    throw new Exception("Chunk "+hash+" not found");
+                }
+                index.append(hash).append(" ").append(length).append("\n");
+            }
+        }
+        gcsService.createOrReplace(getIndexFilename(workflowId), 
+                GcsFileOptions.getDefaultInstance(), 
+                ByteBuffer.wrap(index.toString().getBytes(StandardCharsets.UTF_8)));
+        for (String hash : new LinkedHashSet<>(hashes)){
+            gcsService.delete(getChunkFilename(workflowId,hash));
+        }
+        return BlobstoreServiceFactory.getBlobstoreService().createGsBlobKey("/gs/"+
+                karFile.getBucketName()+"/"+karFile.getObjectName()).getKeyString();
+    }
+
+    @Override
+    public int deleteChunks(long workflowId) throws Exception {
+        GcsService gcsService = getGcsService();
+        ListResult result = gcsService.list(getBucket(), 
+                new ListOptions.Builder().setPrefix(getChunkPrefix(workflowId))
+                        .setRecursive(true).build());
+        int count = 0;
+        while (result.hasNext()){
+            ListItem item = result.next();
+            if (item.isDirectory()){
+                continue;
+            }
+            if (gcsService.delete(new GcsFilename(getBucket(),item.getName()))){
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Copies <b>length</b> bytes starting at <b>offset</b> of <b>file</b> to
+     * <b>out</b>
+     */
+    private void copy(GcsService gcsService,GcsFilename file,long offset,
+            long length,GcsOutputChannel out,ByteBuffer buffer) throws Exception {
+        long remaining = length;
+        try (GcsInputChannel in = gcsService.openReadChannel(file, offset)){
+            buffer.clear();
+            while (remaining > 0){
+                buffer.limit((int)Math.min(buffer.capacity(), remaining));
+                int numRead = in.read(buffer);
+                if (numRead == -1){
+                    throw new Exception("Unexpected end of "+file.getObjectName());
+                }
+                remaining -= numRead;
+                buffer.flip();
+                while (buffer.hasRemaining()){
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+    }
+    
+    /**
+     * Loads the index written by {@link #assemble} for <b>workflowId</b>
+     * @return Map of hash to offset and length within the assembled file, 
+     *         empty if <b>workflowId</b> is null or there is no index or 
+     *         assembled file
+     */
+    private Map<String,long[]> getIndex(Long workflowId) throws Exception {
+        Map<String,long[]> index = new HashMap<>();
+        if (workflowId == null){
+            return index;
+        }
+        GcsService gcsService = getGcsService();
+        GcsFilename indexFile = getIndexFilename(workflowId);
+        if (gcsService.getMetadata(indexFile) == null ||
+            gcsService.getMetadata(getKarFilename(workflowId)) == null){
+            return index;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(
+                        gcsService.openReadChannel(indexFile, 0)),
+                        StandardCharsets.UTF_8))){
+            long offset = 0;
+            String line = reader.readLine();
+            while (line != null){
+                String[] split = line.split(" ");
+                if (split.length == 2){
+                    long length = Long.parseLong(split[1]);
+                    if (!index.containsKey(split[0])){
+                        index.put(split[0], new long[]{offset,length});
+                    }
+                    offset += length;
+                }
+                line = reader.readLine();
+            }
+        }
+        catch(NumberFormatException nfe){
+            _log.log(Level.WARNING,"Unable to parse chunk index of workflow {0}",
+                    workflowId);
+            index.clear();
+        }
+        return index;
+    }
+}
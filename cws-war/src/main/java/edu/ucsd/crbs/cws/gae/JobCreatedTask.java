@@ -0,0 +1,180 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import edu.ucsd.crbs.cws.cluster.OutputWorkspaceFileUtil;
+import edu.ucsd.crbs.cws.cluster.OutputWorkspaceFileUtilImpl;
+import edu.ucsd.crbs.cws.dao.EventDAO;
+import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.dao.objectify.EventObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.dao.objectify.InputWorkspaceFileLinkObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.dao.objectify.JobObjectifyDAOImpl;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.dao.objectify.WorkspaceFileObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.log.Event;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Performs the work that follows creation of a {@link Job} that the caller
+ * does not need to wait for, namely saving the create job {@link Event} and 
+ * registering the output {@link WorkspaceFile} for the {@link Job}.<p/>
+ * 
+ * The ids of the {@link Event} and {@link WorkspaceFile} are allocated when
+ * this object is constructed so running it more then once, as can happen
+ * when the task queue retries, writes the same entities instead of creating
+ * duplicates.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobCreatedTask implements DeferredTask {
+    
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger _log
+            = Logger.getLogger(JobCreatedTask.class.getName());
+    
+    /**
+     * Prefix for task name, the {@link Job} id is appended to it
+     */
+    public static final String TASK_NAME_PREFIX = "jobcreated-";
+    
+    private final long _jobId;
+    private final long _outputWorkspaceFileId;
+    private final Event _event;
+    
+    transient JobDAO _jobDAO;
+    transient WorkspaceFileDAO _workspaceFileDAO;
+    transient EventDAO _eventDAO;
+    transient OutputWorkspaceFileUtil _workspaceFileUtil;
+
+    /**
+     * Constructor
+     * @param job {@link Job} that was created, must have an id
+     * @param event Create job {@link Event} to save, can be null in which case
+     *        no {@link Event} is saved
+     */
+    public JobCreatedTask(Job job,Event event){
+        if (job == null || job.getId() == null){
+            throw new IllegalArgumentException("Job and its id cannot be null");
+        }
+        _jobId = job.getId();
+        _outputWorkspaceFileId = ofy().factory().allocateId(WorkspaceFile.class).getId();
+        if (event != null && event.getId() == null){
+            event.setId(ofy().factory().allocateId(Event.class).getId());
+        }
+        _event = event;
+    }
+    
+    /**
+     * Gets the task name which is unique for the {@link Job}
+     * @return 
+     */
+    public String getTaskName(){
+        return TASK_NAME_PREFIX+Long.toString(_jobId);
+    }
+    
+    public long getJobId(){
+        return _jobId;
+    }
+    
+    public long getOutputWorkspaceFileId(){
+        return _outputWorkspaceFileId;
+    }
+    
+    @Override
+    public void run() {
+        try {
+            createDAOsIfNeeded();
+            registerOutputWorkspaceFile();
+            if (_event != null){
+                _eventDAO.insert(_event);
+            }
+        }
+        catch(Exception ex){
+            _log.log(Level.SEVERE, "Unable to finish creation of job "+
+                    _jobId, ex);
+            // throwing lets the task queue retry
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    private void registerOutputWorkspaceFile() throws Exception {
+        if (_workspaceFileDAO.getWorkspaceFileById(
+                Long.toString(_outputWorkspaceFileId), null) != null){
+            _log.log(Level.INFO, "Output WorkspaceFile {0} already registered",
+                    _outputWorkspaceFileId);
+            return;
+        }
+        if (!_workspaceFileDAO.getWorkspaceFilesBySourceJobId(_jobId).isEmpty()){
+            _log.log(Level.INFO, "Job {0} already has output WorkspaceFile",
+                    _jobId);
+            return;
+        }
+        Job job = _jobDAO.getJobById(Long.toString(_jobId));
+        if (job == null){
+            throw new Exception("Unable to load Job "+_jobId);
+        }
+        WorkspaceFile wsp = _workspaceFileUtil.createJobOutputWorkspaceFile(job, null);
+        wsp.setId(_outputWorkspaceFileId);
+        _workspaceFileDAO.insert(wsp, false);
+    }
+    
+    private void createDAOsIfNeeded(){
+        if (_jobDAO == null || _workspaceFileDAO == null){
+            InputWorkspaceFileLinkDAO inputDAO = new InputWorkspaceFileLinkObjectifyDAOImpl();
+            JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(inputDAO);
+            WorkspaceFileDAO workspaceFileDAO = new WorkspaceFileObjectifyDAOImpl(jobDAO,
+                    inputDAO);
+            jobDAO.setWorkspaceFileDAO(workspaceFileDAO);
+            if (_jobDAO == null){
+                _jobDAO = jobDAO;
+            }
+            if (_workspaceFileDAO == null){
+                _workspaceFileDAO = workspaceFileDAO;
+            }
+        }
+        if (_eventDAO == null){
+            _eventDAO = new EventObjectifyDAOImpl();
+        }
+        if (_workspaceFileUtil == null){
+            _workspaceFileUtil = new OutputWorkspaceFileUtilImpl(_workspaceFileDAO);
+        }
+    }
+}
@@ -33,14 +33,23 @@
 
 package edu.ucsd.crbs.cws.gae;
 
+import com.google.appengine.api.urlfetch.FetchOptions;
+import com.google.appengine.api.urlfetch.HTTPMethod;
+import com.google.appengine.api.urlfetch.HTTPRequest;
+import com.google.appengine.api.urlfetch.HTTPResponse;
+import com.google.appengine.api.urlfetch.URLFetchServiceFactory;
+import com.google.apphosting.api.ApiProxy;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.InputStreamReader;
 import java.io.StringReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -148,9 +157,7 @@ public class URLFetcherImpl implements WorkflowParameterDataFetcher {
         
         BufferedReader br = null;
         try {
-            if (parameter.getValue().startsWith(HTTP_PREFIX) || 
-                parameter.getValue().startsWith(HTTPS_PREFIX) ||
-                parameter.getValue().startsWith(FILE_PREFIX)){
+            if (isURL(parameter.getValue())){
                 _log.log(Level.INFO, 
                         "Found drop parameter with http URL fetching: {0}", 
                         parameter.getValue());
@@ -168,6 +175,84 @@ public class URLFetcherImpl implements WorkflowParameterDataFetcher {
         }
     }
     
+    /**
+     * Calls {@link #fetchAndUpdate(edu.ucsd.crbs.cws.workflow.WorkflowParameter, edu.ucsd.crbs.cws.auth.User) }
+     * on each {@link WorkflowParameter} in <b>parameters</b> one after 
+     * another
+     * @param parameters
+     * @param user
+     * @throws Exception 
+     */
+    @Override
+    public void fetchAndUpdateAll(List<WorkflowParameter> parameters,
+            User user) throws Exception {
+        if (parameters == null){
+            return;
+        }
+        for (WorkflowParameter param : parameters){
+            fetchAndUpdate(param,user);
+        }
+    }
+    
+    /**
+     * Starts an asynchronous fetch of the URL in <b>parameter</b> via the
+     * App Engine URL Fetch service.  The URL is updated as described in
+     * {@link #fetchAndUpdate(edu.ucsd.crbs.cws.workflow.WorkflowParameter, edu.ucsd.crbs.cws.auth.User) }
+     * and the response should be passed to 
+     * {@link #updateValueMap(com.google.appengine.api.urlfetch.HTTPResponse, edu.ucsd.crbs.cws.workflow.WorkflowParameter) }
+     * @param parameter
+     * @param user
+     * @return Future for the response or null if the value is not a 
+     *         {@link #HTTP_PREFIX} or {@link #HTTPS_PREFIX} URL or the code 
+     *         is not running on App Engine in which case 
+     *         {@link #fetchAndUpdate(edu.ucsd.crbs.cws.workflow.WorkflowParameter, edu.ucsd.crbs.cws.auth.User) }
+     *         should be used
+     * @throws Exception 
+     */
+    public Future<HTTPResponse> fetchAsync(WorkflowParameter parameter,
+            User user) throws Exception {
+        if (parameter == null || user == null || parameter.getValue() == null){
+            return null;
+        }
+        if (!parameter.getValue().startsWith(HTTP_PREFIX) &&
+            !parameter.getValue().startsWith(HTTPS_PREFIX)){
+            return null;
+        }
+        if (ApiProxy.getCurrentEnvironment() == null){
+            return null;
+        }
+        URL u = new URL(getUpdatedURL(parameter.getValue(),user));
+        _log.log(Level.INFO, "Fetching drop down URL asynchronously: {0}",
+                parameter.getValue());
+        HTTPRequest request = new HTTPRequest(u,HTTPMethod.GET,
+                FetchOptions.Builder.withDeadline(
+                        (double)(URL_CONNECT_TIMEOUT+URL_READ_TIMEOUT)/1000.0));
+        return URLFetchServiceFactory.getURLFetchService().fetchAsync(request);
+    }
+    
+    /**
+     * Updates value map in <b>parameter</b> with content of <b>response</b>
+     * obtained from {@link #fetchAsync(edu.ucsd.crbs.cws.workflow.WorkflowParameter, edu.ucsd.crbs.cws.auth.User) }
+     * @param response
+     * @param parameter
+     * @throws Exception if response code is not 200
+     */
+    public void updateValueMap(HTTPResponse response,
+            WorkflowParameter parameter) throws Exception {
+        if (response.getResponseCode() != 200){
+            throw new Exception("Unable to fetch "+parameter.getValue()+
+                    " received response code "+response.getResponseCode());
+        }
+        byte[] content = response.getContent();
+        if (content == null){
+            content = new byte[0];
+        }
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(content)))){
+            updateValueMap(br,parameter);
+        }
+    }
+    
     /**
      * Takes <b>br</b> and updates the <b>parameter</b> {@link WorkflowParameter}
      * value map with data extracted from <b>br</b>
@@ -213,21 +298,30 @@ public class URLFetcherImpl implements WorkflowParameterDataFetcher {
     }
     
     /**
-     * Examines url in <b>parameter</b> {@link WorkflowParameter#getValue()} and replaces
-     * any occurrences of {@link URLFetcherImpl#USER_KEYWORD},{@link URLFetcherImpl#USER_LOGIN_KEYWORD},
-     * {@link URLFetcherImpl#USER_TOKEN_KEYWORD} with values from <b>user</b> object. The
-     * code then attempts to open the url returning a bufferedreader to the output
-     * stream
-     * @param parameter
+     * Tells caller if <b>value</b> is a URL this class will retrieve
+     * @param value
+     * @return true if <b>value</b> starts with {@link #HTTP_PREFIX}, 
+     * {@link #HTTPS_PREFIX}, or {@link #FILE_PREFIX} otherwise false
+     */
+    public static boolean isURL(final String value){
+        if (value == null){
+            return false;
+        }
+        return value.startsWith(HTTP_PREFIX) || 
+               value.startsWith(HTTPS_PREFIX) ||
+               value.startsWith(FILE_PREFIX);
+    }
+    
+    /**
+     * Replaces any occurrences of {@link URLFetcherImpl#USER_KEYWORD},
+     * {@link URLFetcherImpl#USER_LOGIN_KEYWORD}, and 
+     * {@link URLFetcherImpl#USER_TOKEN_KEYWORD} in <b>url</b> with values 
+     * from <b>user</b> object.
+     * @param url
      * @param user
-     * @return open Stream to content of url
-     * @throws Exception 
+     * @return url with keywords replaced
      */
-    private BufferedReader getBufferedReaderForURL(WorkflowParameter parameter,User user) throws Exception {
-        
-        //need to find any occurrences of special variables and replace them with
-        //appropriate values
-        
+    public String getUpdatedURL(final String url,User user){
         String loginToRunAs = user.getLoginToRunJobAs();
         
         String updatedURL;
@@ -237,10 +331,10 @@ public class URLFetcherImpl implements WorkflowParameterDataFetcher {
             if (loginToRunAs == null){
                 loginToRunAs = user.getLogin();
             }
-            updatedURL = parameter.getValue().replace(URLFetcherImpl.USER_LOGIN_KEYWORD, user.getLogin());
+            updatedURL = url.replace(URLFetcherImpl.USER_LOGIN_KEYWORD, user.getLogin());
         }
         else {
-            updatedURL = parameter.getValue();
+            updatedURL = url;
         }
         
         if (user.getToken() != null){
@@ -249,8 +343,23 @@ public class URLFetcherImpl implements WorkflowParameterDataFetcher {
         if (loginToRunAs != null){
             updatedURL = updatedURL.replace(URLFetcherImpl.USER_KEYWORD, loginToRunAs);
         }
+        return updatedURL;
+    }
+    
+    /**
+     * Examines url in <b>parameter</b> {@link WorkflowParameter#getValue()} and replaces
+     * any occurrences of {@link URLFetcherImpl#USER_KEYWORD},{@link URLFetcherImpl#USER_LOGIN_KEYWORD},
+     * {@link URLFetcherImpl#USER_TOKEN_KEYWORD} with values from <b>user</b> object. The
+     * code then attempts to open the url returning a bufferedreader to the output
+     * stream
+     * @param parameter
+     * @param user
+     * @return open Stream to content of url
+     * @throws Exception 
+     */
+    private BufferedReader getBufferedReaderForURL(WorkflowParameter parameter,User user) throws Exception {
         
-        URL u = new URL(updatedURL);
+        URL u = new URL(getUpdatedURL(parameter.getValue(),user));
         URLConnection ucon = u.openConnection();
         ucon.setConnectTimeout(URL_CONNECT_TIMEOUT);
         ucon.setReadTimeout(URL_READ_TIMEOUT);
@@ -0,0 +1,108 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deletes chunks of a {@link edu.ucsd.crbs.cws.workflow.Workflow} upload 
+ * that was never assembled.  Submitted with a delay of 
+ * {@link #EXPIRY_MILLIS} when the first chunk is stored.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class WorkflowChunkExpiryTask implements DeferredTask {
+    
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger _log
+            = Logger.getLogger(WorkflowChunkExpiryTask.class.getName());
+    
+    /**
+     * Prefix for task name, the {@link edu.ucsd.crbs.cws.workflow.Workflow}
+     * id is appended to it
+     */
+    public static final String TASK_NAME_PREFIX = "workflowchunkexpiry-";
+    
+    /**
+     * How long chunks are kept before being deleted, 24 hours
+     */
+    public static final long EXPIRY_MILLIS = 24L * 60L * 60L * 1000L;
+    
+    private final long _workflowId;
+    
+    transient WorkflowChunkStore _chunkStore;
+    
+    /**
+     * Constructor
+     * @param workflowId Id of {@link edu.ucsd.crbs.cws.workflow.Workflow} 
+     *        whose chunks should be deleted
+     */
+    public WorkflowChunkExpiryTask(long workflowId){
+        _workflowId = workflowId;
+    }
+    
+    /**
+     * Gets the task name which is unique for the 
+     * {@link edu.ucsd.crbs.cws.workflow.Workflow}
+     * @return 
+     */
+    public String getTaskName(){
+        return TASK_NAME_PREFIX+Long.toString(_workflowId);
+    }
+    
+    public long getWorkflowId(){
+        return _workflowId;
+    }
+
+    @Override
+    public void run() {
+        if (_chunkStore == null){
+            _chunkStore = new GcsWorkflowChunkStoreImpl();
+        }
+        try {
+            int numDeleted = _chunkStore.deleteChunks(_workflowId);
+            _log.log(Level.INFO, "Deleted {0} expired chunks of workflow {1}",
+                    new Object[]{numDeleted,_workflowId});
+        }
+        catch(Exception ex){
+            _log.log(Level.SEVERE, "Unable to delete chunks of workflow "+
+                    _workflowId, ex);
+            // throwing lets the task queue retry
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import java.util.List;
+
+/**
+ * Stores chunks of Kepler .kar files uploaded for a 
+ * {@link edu.ucsd.crbs.cws.workflow.Workflow}.  Chunks are kept per 
+ * {@link edu.ucsd.crbs.cws.workflow.Workflow} and deleted once assembled.
+ * Chunks that match part of the previous version of the
+ * {@link edu.ucsd.crbs.cws.workflow.Workflow} do not need to be uploaded 
+ * since they are copied from its assembled file.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public interface WorkflowChunkStore {
+    
+    /**
+     * Gets the hashes in <b>hashes</b> that are neither stored for
+     * {@link edu.ucsd.crbs.cws.workflow.Workflow} <b>workflowId</b> nor 
+     * part of the assembled file of <b>previousWorkflowId</b>
+     * @param workflowId
+     * @param previousWorkflowId Id of previous version or <code>null</code>
+     * @param hashes
+     * @return List of missing hashes, empty if none are missing
+     * @throws Exception 
+     */
+    public List<String> getMissingChunks(long workflowId,Long previousWorkflowId,
+            List<String> hashes) throws Exception;
+    
+    /**
+     * Stores <b>data</b> as chunk with sha256 <b>hash</b> for 
+     * {@link edu.ucsd.crbs.cws.workflow.Workflow} <b>workflowId</b>.  Caller
+     * is expected to have verified <b>hash</b> matches <b>data</b>
+     * @param workflowId
+     * @param hash
+     * @param data
+     * @throws Exception 
+     */
+    public void saveChunk(long workflowId,final String hash,byte[] data) throws Exception;
+    
+    /**
+     * Concatenates chunks in <b>hashes</b> in order into the Kepler .kar file
+     * for {@link edu.ucsd.crbs.cws.workflow.Workflow} with id <b>workflowId</b>
+     * and then deletes the chunks stored for <b>workflowId</b>
+     * @param workflowId
+     * @param previousWorkflowId Id of previous version or <code>null</code>
+     * @param hashes
+     * @return Blob key of assembled file
+     * @throws Exception if any of the chunks are not stored
+     */
+    public String assemble(long workflowId,Long previousWorkflowId,
+            List<String> hashes) throws Exception;
+    
+    /**
+     * Deletes all chunks stored for {@link edu.ucsd.crbs.cws.workflow.Workflow}
+     * <b>workflowId</b>
+     * @param workflowId
+     * @return Number of chunks deleted
+     * @throws Exception 
+     */
+    public int deleteChunks(long workflowId) throws Exception;
+}
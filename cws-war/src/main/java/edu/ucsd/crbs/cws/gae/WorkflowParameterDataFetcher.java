@@ -35,6 +35,7 @@ package edu.ucsd.crbs.cws.gae;
 
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.util.List;
 
 /**
  * Fetches URL's set in {@link WorkflowParameter} value fields when the parameter
@@ -56,4 +57,16 @@ public interface WorkflowParameterDataFetcher {
     public void fetchAndUpdate(WorkflowParameter parameter,
             User user) throws Exception;
     
+
+    /**
+     * Performs {@link #fetchAndUpdate(edu.ucsd.crbs.cws.workflow.WorkflowParameter, edu.ucsd.crbs.cws.auth.User) }
+     * on every {@link WorkflowParameter} in <b>parameters</b>.  Implementing 
+     * classes are free to fetch the URLs in parallel.
+     * 
+     * @param parameters
+     * @param user
+     * @throws Exception 
+     */
+    public void fetchAndUpdateAll(List<WorkflowParameter> parameters,
+            User user) throws Exception;
 }
@@ -0,0 +1,156 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.io;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Splits files into chunks using content defined chunking.  A gear rolling
+ * hash is computed over the bytes and a chunk boundary is placed wherever 
+ * the top bits of the hash are all zero.  Since boundaries depend only on
+ * the nearby bytes, an insertion or deletion in one part of a file only 
+ * changes the chunks around it and the remaining chunks keep the same 
+ * hashes.  This lets a new version of a Kepler .kar file share most of its 
+ * chunks with the previous version.<p/>
+ * 
+ * Chunks are never smaller then the minimum size, except for the last one,
+ * and never larger then the maximum size.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class FileChunkerImpl implements FileChunker {
+    
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 64 * 1024;
+    
+    public static final int DEFAULT_AVERAGE_CHUNK_SIZE = 256 * 1024;
+    
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 1024 * 1024;
+    
+    static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * Gear table must be the same everywhere so the seed is fixed.  
+     * {@link Random} output is specified for a given seed so this
+     * is stable across JVMs
+     */
+    static final long[] GEAR = new long[256];
+    static {
+        Random random = new Random(0x4357534348554e4bL);
+        for (int i = 0; i < GEAR.length; i++){
+            GEAR[i] = random.nextLong();
+        }
+    }
+    
+    private final int _minChunkSize;
+    private final int _maxChunkSize;
+    private final int _boundaryShift;
+    
+    public FileChunkerImpl(){
+        this(DEFAULT_MIN_CHUNK_SIZE,DEFAULT_AVERAGE_CHUNK_SIZE,
+                DEFAULT_MAX_CHUNK_SIZE);
+    }
+    
+    /**
+     * Constructor
+     * @param minChunkSize Minimum size of a chunk in bytes
+     * @param averageChunkSize Expected number of bytes after the minimum
+     *        before a boundary is found, must be a power of 2
+     * @param maxChunkSize Maximum size of a chunk in bytes
+     */
+    public FileChunkerImpl(int minChunkSize,int averageChunkSize,
+            int maxChunkSize){
+        if (minChunkSize <= 0){
+            throw new IllegalArgumentException("Minimum chunk size must be larger then 0");
+        }
+        if (averageChunkSize < 2 || Integer.bitCount(averageChunkSize) != 1){
+            throw new IllegalArgumentException("Average chunk size must be a power of 2");
+        }
+        if (maxChunkSize < minChunkSize){
+            throw new IllegalArgumentException("Maximum chunk size must be at least minimum chunk size");
+        }
+        _minChunkSize = minChunkSize;
+        _maxChunkSize = maxChunkSize;
+        _boundaryShift = 64 - Integer.numberOfTrailingZeros(averageChunkSize);
+    }
+
+    @Override
+    public List<FileChunk> getChunks(File file) throws Exception {
+        if (file == null){
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        ArrayList<FileChunk> chunks = new ArrayList<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        Hasher hasher = Hashing.sha256().newHasher();
+        long chunkStart = 0;
+        int chunkLength = 0;
+        long fingerprint = 0;
+        int numRead;
+        
+        try (InputStream in = new FileInputStream(file)){
+            while ((numRead = in.read(buffer)) != -1){
+                int segmentStart = 0;
+                for (int i = 0; i < numRead; i++){
+                    fingerprint = (fingerprint << 1) + GEAR[buffer[i] & 0xff];
+                    chunkLength++;
+                    if (chunkLength < _minChunkSize){
+                        continue;
+                    }
+                    if ((fingerprint >>> _boundaryShift) == 0 || 
+                            chunkLength >= _maxChunkSize){
+                        hasher.putBytes(buffer, segmentStart, i + 1 - segmentStart);
+                        chunks.add(new FileChunk(chunkStart,chunkLength,
+                                hasher.hash().toString()));
+                        chunkStart += chunkLength;
+                        chunkLength = 0;
+                        fingerprint = 0;
+                        segmentStart = i + 1;
+                        hasher = Hashing.sha256().newHasher();
+                    }
+                }
+                hasher.putBytes(buffer, segmentStart, numRead - segmentStart);
+            }
+        }
+        if (chunkLength > 0){
+            chunks.add(new FileChunk(chunkStart,chunkLength,hasher.hash().toString()));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.io;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Computes md5 of a file by streaming it in fixed size chunks.  A separate
+ * thread reads the next chunks from disk while the current chunk is being 
+ * hashed so disk reads and hashing run in parallel.  Only a few 
+ * chunk buffers are ever allocated, so memory use does not depend on 
+ * the size of the file.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class FileDigesterImpl implements FileDigester {
+    
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    
+    public static final int DEFAULT_NUM_CHUNKS = 3;
+    
+    private final int _chunkSize;
+    private final int _numChunks;
+    
+    /**
+     * Holds a buffer filled by reader thread.  A negative length
+     * denotes end of file and a non null error denotes a read failure
+     */
+    static class Chunk {
+        final byte[] buffer;
+        final int length;
+        final IOException error;
+        
+        Chunk(byte[] buffer,int length,IOException error){
+            this.buffer = buffer;
+            this.length = length;
+            this.error = error;
+        }
+    }
+    
+    public FileDigesterImpl(){
+        this(DEFAULT_CHUNK_SIZE,DEFAULT_NUM_CHUNKS);
+    }
+    
+    /**
+     * Constructor
+     * @param chunkSize Size of each chunk in bytes
+     * @param numChunks Number of chunk buffers, must be at least 2 for reads
+     *        to overlap with hashing
+     */
+    public FileDigesterImpl(int chunkSize,int numChunks){
+        if (chunkSize <= 0){
+            throw new IllegalArgumentException("Chunk size must be larger then 0");
+        }
+        if (numChunks <= 0){
+            throw new IllegalArgumentException("Number of chunks must be larger then 0");
+        }
+        _chunkSize = chunkSize;
+        _numChunks = numChunks;
+    }
+
+    @Override
+    public String getMd5(File file) throws Exception {
+        if (file == null){
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        final InputStream in = new FileInputStream(file);
+        final BlockingQueue<byte[]> emptyBuffers = new ArrayBlockingQueue<>(_numChunks);
+        final BlockingQueue<Chunk> fullChunks = new ArrayBlockingQueue<>(_numChunks);
+        for (int i = 0; i < _numChunks; i++){
+            emptyBuffers.add(new byte[_chunkSize]);
+        }
+        
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    readChunks(in, emptyBuffers, fullChunks);
+                }
+                catch(InterruptedException ie){
+                    //hashing was aborted nothing more to do
+                }
+            }
+        },"md5-reader-"+file.getName());
+        reader.setDaemon(true);
+        reader.start();
+        
+        Hasher hasher = Hashing.md5().newHasher();
+        try {
+            while (true){
+                Chunk chunk = fullChunks.take();
+                if (chunk.error != null){
+                    throw chunk.error;
+                }
+                if (chunk.length < 0){
+                    break;
+                }
+                hasher.putBytes(chunk.buffer, 0, chunk.length);
+                emptyBuffers.put(chunk.buffer);
+            }
+        }
+        finally {
+            reader.interrupt();
+            reader.join();
+            in.close();
+        }
+        return hasher.hash().toString();
+    }
+    
+    /**
+     * Fills buffers from <b>emptyBuffers</b> with data from <b>in</b> and
+     * adds them to <b>fullChunks</b> until end of file or an error, either
+     * of which is also added as a {@link Chunk}
+     */
+    private void readChunks(InputStream in,BlockingQueue<byte[]> emptyBuffers,
+            BlockingQueue<Chunk> fullChunks) throws InterruptedException {
+        while (true){
+            byte[] buffer = emptyBuffers.take();
+            int length = 0;
+            try {
+                int numRead = 0;
+                while (length < buffer.length && 
+                        (numRead = in.read(buffer, length, buffer.length - length)) != -1){
+                    length += numRead;
+                }
+                if (length > 0){
+                    fullChunks.put(new Chunk(buffer,length,null));
+                }
+                if (numRead == -1){
+                    fullChunks.put(new Chunk(null,-1,null));
+                    return;
+                }
+            }
+            catch(IOException io){
+                fullChunks.put(new Chunk(null,-1,io));
+                return;
+            }
+        }
+    }
+}
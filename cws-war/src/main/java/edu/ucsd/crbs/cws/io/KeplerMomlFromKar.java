@@ -36,6 +36,8 @@ package edu.ucsd.crbs.cws.io;
 import static edu.ucsd.crbs.cws.App.XML_SUFFIX;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.jar.JarEntry;
@@ -48,6 +50,29 @@ import java.util.jar.JarFile;
  */
 public class KeplerMomlFromKar {
 
+    /**
+     * Stream of an entry in a {@link JarFile} that also closes the 
+     * {@link JarFile} when it is closed
+     */
+    static class JarEntryInputStream extends FilterInputStream {
+        
+        private final JarFile _jarFile;
+        
+        JarEntryInputStream(InputStream in, JarFile jarFile){
+            super(in);
+            _jarFile = jarFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            }
+            finally {
+                _jarFile.close();
+            }
+        }
+    }
     
     /**
      * Returns an input stream to moml file within path passed in. If the path
@@ -56,7 +81,8 @@ public class KeplerMomlFromKar {
      * opened as a zip file and the first entry within that is a file ending
      * with .xml and has a non zero size is assumed to be a moml file and an
      * inputstream is opened from that path. <br/>
-     * It is the responsibility of the caller to close the InputStream
+     * It is the responsibility of the caller to close the InputStream which
+     * also closes the underlying .kar file
      *
      * @param workflowFile
      * @return InputStream object pointing to start of moml file or null if no
@@ -79,23 +105,32 @@ public class KeplerMomlFromKar {
         //entries til we find a non zero size entry that is not a directory and
         //ends with .xml
         JarFile jf = new JarFile(workflowFile);
-        JarEntry je;
-        for (Enumeration<JarEntry> e = jf.entries(); e.hasMoreElements();) {
-            je = e.nextElement();
+        try {
+            JarEntry je;
+            for (Enumeration<JarEntry> e = jf.entries(); e.hasMoreElements();) {
+                je = e.nextElement();
+
+                if (je.isDirectory() == true) {
+                    continue;
+                }
+                if (je.getSize() == 0 || !je.getName().endsWith(XML_SUFFIX)) {
+                    continue;
+                }
 
-            if (je.isDirectory() == true) {
-                continue;
+                // if we arrived here we found an xml file open a stream to that
+                // file hehehe
+                InputStream in = new JarEntryInputStream(jf.getInputStream(je),jf);
+                jf = null;
+                return in;
             }
-            if (je.getSize() == 0 || !je.getName().endsWith(XML_SUFFIX)) {
-                continue;
+            //didn't find anything just return null
+            return null;
+        }
+        finally {
+            if (jf != null){
+                jf.close();
             }
-
-            // if we arrived here we found an xml file open a stream to that
-            // file hehehe
-            return jf.getInputStream(je);
         }
-        //didn't find anything just return null
-        return null;
     }
    
 }
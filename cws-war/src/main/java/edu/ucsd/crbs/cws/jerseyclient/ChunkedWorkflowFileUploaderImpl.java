@@ -0,0 +1,193 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.jerseyclient;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.WebResource;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.io.FileChunk;
+import edu.ucsd.crbs.cws.io.FileChunker;
+import edu.ucsd.crbs.cws.io.FileChunkerImpl;
+import edu.ucsd.crbs.cws.rest.Constants;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * Uploads Kepler .kar file in content defined chunks via the chunks
+ * path under the {@link Workflow} on the REST service.  The hashes of all
+ * the chunks are sent first and the service replies with the ones it does
+ * not already have, usually because they are not in a previous version
+ * of the {@link Workflow}.  Only those chunks are uploaded after which the
+ * hashes are sent again so the service can assemble the file.<p/>
+ * 
+ * If the service does not support chunked uploads the fallback
+ * {@link WorkflowFileUploader} passed in the constructor is used.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class ChunkedWorkflowFileUploaderImpl implements WorkflowFileUploader {
+
+    private static final Logger _log
+            = Logger.getLogger(ChunkedWorkflowFileUploaderImpl.class.getName());
+    
+    private static final TypeReference<List<String>> STRING_LIST_TYPE = 
+            new TypeReference<List<String>>() {};
+    
+    private final String _restURL;
+    private final User _user;
+    private final WorkflowFileUploader _fallbackUploader;
+    
+    FileChunker _fileChunker = new FileChunkerImpl();
+    MultivaluedMapFactory _multivaluedMapFactory = new MultivaluedMapFactoryImpl();
+    
+    /**
+     * Constructor
+     * @param restURL Base URL of REST service
+     * @param user User to authenticate as
+     * @param fallbackUploader Used if service does not support chunked 
+     *        uploads, can be <code>null</code>
+     */
+    public ChunkedWorkflowFileUploaderImpl(final String restURL,User user,
+            WorkflowFileUploader fallbackUploader){
+        _restURL = restURL;
+        _user = user;
+        _fallbackUploader = fallbackUploader;
+    }
+    
+    @Override
+    public String uploadWorkflowFile(Workflow w, File workflowFile) throws Exception {
+        if (w == null || w.getId() == null){
+            throw new IllegalArgumentException("Workflow and its id must be set");
+        }
+        
+        List<FileChunk> chunks = _fileChunker.getChunks(workflowFile);
+        if (chunks.isEmpty()){
+            return fallback(w,workflowFile,"file is empty");
+        }
+        ArrayList<String> hashes = new ArrayList<>(chunks.size());
+        HashMap<String,FileChunk> chunksByHash = new HashMap<>();
+        for (FileChunk chunk : chunks){
+            hashes.add(chunk.getHash());
+            chunksByHash.put(chunk.getHash(), chunk);
+        }
+        
+        WebResource resource = RestClientFactory.getWebResource(_restURL, _user)
+                .path(Constants.REST_PATH).path(Constants.WORKFLOWS_PATH)
+                .path(w.getId().toString()).path(Constants.CHUNKS_PATH);
+        MultivaluedMap queryParams = _multivaluedMapFactory.getMultivaluedMap(_user);
+        
+        List<String> missingHashes;
+        try {
+            missingHashes = postChunkHashes(resource, queryParams, hashes);
+        }
+        catch(UniformInterfaceException uie){
+            int status = uie.getResponse().getStatus();
+            if (status == ClientResponse.Status.NOT_FOUND.getStatusCode() ||
+                    status == 405){
+                return fallback(w,workflowFile,"service returned "+status);
+            }
+            throw uie;
+        }
+        
+        long bytesSent = 0;
+        if (missingHashes.isEmpty() == false){
+            try (RandomAccessFile raf = new RandomAccessFile(workflowFile,"r")){
+                for (String hash : missingHashes){
+                    FileChunk chunk = chunksByHash.get(hash);
+                    if (chunk == null){
+                        throw new Exception("Service requested unknown chunk "+hash);
+                    }
+                    byte[] data = new byte[chunk.getLength()];
+                    raf.seek(chunk.getOffset());
+                    raf.readFully(data);
+                    resource.path(hash).queryParams(queryParams)
+                            .type(MediaType.APPLICATION_OCTET_STREAM_TYPE)
+                            .put(data);
+                    bytesSent += data.length;
+                }
+            }
+            List<String> stillMissing = postChunkHashes(resource, queryParams, hashes);
+            if (stillMissing.isEmpty() == false){
+                throw new Exception(stillMissing.size()+" chunk(s) of "+
+                        workflowFile.getAbsolutePath()+" still missing after upload");
+            }
+        }
+        return "Uploaded "+missingHashes.size()+" of "+chunks.size()+
+                " chunks ("+bytesSent+" of "+workflowFile.length()+" bytes)";
+    }
+    
+    /**
+     * Sends <b>hashes</b> to service
+     * @return hashes of chunks the service does not have
+     */
+    private List<String> postChunkHashes(WebResource resource,
+            MultivaluedMap queryParams,List<String> hashes) throws Exception {
+        InputStream in = resource.queryParams(queryParams)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .accept(MediaType.APPLICATION_JSON_TYPE)
+                .post(InputStream.class,RestClientFactory.getWriter().writeValueAsString(hashes));
+        try {
+            List<String> missing = RestClientFactory.getReader(STRING_LIST_TYPE).readValue(in);
+            if (missing == null){
+                return new ArrayList<>();
+            }
+            return missing;
+        }
+        finally {
+            in.close();
+        }
+    }
+    
+    private String fallback(Workflow w,File workflowFile,final String reason) throws Exception {
+        if (_fallbackUploader == null){
+            throw new Exception("Unable to upload "+workflowFile.getAbsolutePath()+
+                    " in chunks: "+reason);
+        }
+        _log.log(Level.INFO,"Not using chunked upload for {0}: {1}",
+                new Object[]{workflowFile.getAbsolutePath(),reason});
+        return _fallbackUploader.uploadWorkflowFile(w, workflowFile);
+    }
+}
@@ -33,11 +33,8 @@
 
 package edu.ucsd.crbs.cws.jerseyclient;
 
-import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.config.ClientConfig;
-import com.sun.jersey.api.client.config.DefaultClientConfig;
 import edu.ucsd.crbs.cws.rest.Constants;
 import java.io.File;
 import java.util.logging.Level;
@@ -54,10 +51,7 @@ public class FileDownloaderImpl implements FileDownloader {
     
     @Override
     public File downloadFile(final String url, String idQueryParamName, String id, String userlogin, String usertoken) throws Exception {
-        ClientConfig cc = new DefaultClientConfig();
-        Client client = Client.create(cc);
-        client.setFollowRedirects(true);
-        WebResource resource = client.resource(url).
+        WebResource resource = RestClientFactory.getWebResource(url,null).
                 queryParam(idQueryParamName,id).
                 queryParam(Constants.USER_LOGIN_PARAM, userlogin).
                 queryParam(Constants.USER_TOKEN_PARAM,usertoken);
@@ -69,12 +63,15 @@ public class FileDownloaderImpl implements FileDownloader {
         // @TODO MOVE 200 to constant
         //try one more time
         if (cr.getStatus() != 200){
+            //release the connection so it can be reused by retry
+            cr.close();
             _log.log(Level.WARNING,"First request to service for file failed sleeping 2 seconds and trying again");
             Thread.sleep(2000);
             cr = resource.get(ClientResponse.class);
         }
         
         if (cr.getStatus() != 200){
+            cr.close();
             throw new Exception("Unable to request workspace file");
         }
        
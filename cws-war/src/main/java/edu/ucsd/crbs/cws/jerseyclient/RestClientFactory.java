@@ -0,0 +1,215 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.jerseyclient;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.googlecode.objectify.util.jackson.ObjectifyJacksonModule;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import com.sun.jersey.core.impl.provider.entity.StringProvider;
+import com.sun.jersey.multipart.impl.MultiPartWriter;
+import edu.ucsd.crbs.cws.auth.User;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Holds a single Jersey {@link Client} and Jackson {@link ObjectMapper} that
+ * are shared by all the REST DAOs and {@link FileDownloaderImpl}.  Creating
+ * a {@link Client} and {@link ObjectMapper} per call throws away the
+ * underlying keep-alive connections and the Jackson introspection caches so
+ * this class creates them once and hands out cached {@link ObjectReader} and
+ * {@link ObjectWriter} objects per type.<p/>
+ * 
+ * The {@link Client} returned is thread safe as long as callers do NOT 
+ * modify it.  Authentication is added per {@link WebResource} via
+ * {@link #getWebResource(java.lang.String, edu.ucsd.crbs.cws.auth.User)}
+ * <p/>
+ * 
+ * Connections are pooled by the JDK {@link java.net.HttpURLConnection} 
+ * keep-alive cache.  The size of that pool is set via the JVM wide 
+ * <b>http.maxConnections</b> system property which this class does NOT 
+ * touch on its own.  Command line entry points call 
+ * {@link #configureConnectionPool(java.lang.Integer)} to set it. 
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class RestClientFactory {
+    
+    /**
+     * System property used by JDK to enable HTTP keep-alive
+     */
+    public static final String HTTP_KEEP_ALIVE_PROPERTY = "http.keepAlive";
+    
+    /**
+     * System property used by JDK to set max number of idle keep-alive
+     * connections per destination
+     */
+    public static final String HTTP_MAX_CONNECTIONS_PROPERTY = "http.maxConnections";
+    
+    /**
+     * Default number of keep-alive connections to hold per destination
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+    
+    private static final Client _client;
+    
+    private static final ObjectMapper _mapper;
+    
+    private static final ObjectWriter _writer;
+    
+    private static final ConcurrentMap<JavaType,ObjectReader> _readers = 
+            new ConcurrentHashMap<>();
+    
+    static {
+        ClientConfig cc = new DefaultClientConfig();
+        cc.getClasses().add(StringProvider.class);
+        cc.getClasses().add(MultiPartWriter.class);
+        _client = Client.create(cc);
+        _client.setFollowRedirects(true);
+        
+        _mapper = new ObjectMapper();
+        _mapper.registerModule(new ObjectifyJacksonModule());
+        _writer = _mapper.writer();
+    }
+    
+    /**
+     * Sets the JVM wide keep-alive system properties used by the JDK 
+     * connection pool.  Must be called before the first HTTP connection is
+     * made since the JDK reads them only once.  <b>http.keepAlive</b> is 
+     * enabled unless already set.
+     * @param maxConnections Number of idle keep-alive connections to hold
+     *        per destination.  If null <b>http.maxConnections</b> is left
+     *        alone if already set otherwise it is set to 
+     *        {@link #DEFAULT_MAX_CONNECTIONS}
+     * @throws IllegalArgumentException if <b>maxConnections</b> is less 
+     *         than 1
+     */
+    public static void configureConnectionPool(Integer maxConnections){
+        if (maxConnections != null && maxConnections < 1){
+            throw new IllegalArgumentException("Max connections must be 1 or larger");
+        }
+        if (System.getProperty(HTTP_KEEP_ALIVE_PROPERTY) == null){
+            System.setProperty(HTTP_KEEP_ALIVE_PROPERTY, Boolean.TRUE.toString());
+        }
+        if (maxConnections != null){
+            System.setProperty(HTTP_MAX_CONNECTIONS_PROPERTY, 
+                    maxConnections.toString());
+        }
+        else if (System.getProperty(HTTP_MAX_CONNECTIONS_PROPERTY) == null){
+            System.setProperty(HTTP_MAX_CONNECTIONS_PROPERTY, 
+                    Integer.toString(DEFAULT_MAX_CONNECTIONS));
+        }
+    }
+    
+    /**
+     * Gets the shared {@link Client}.  Callers should NOT add filters or
+     * change properties on the returned object since it is shared
+     * @return 
+     */
+    public static Client getClient(){
+        return _client;
+    }
+    
+    /**
+     * Creates a {@link WebResource} off of the shared {@link Client} for the
+     * <b>url</b> passed in.  If <b>user</b> is non <code>null</code> a 
+     * {@link HTTPBasicAuthFilter} is added to the {@link WebResource} and not
+     * the {@link Client} so it only applies to requests made with the 
+     * returned object.
+     * @param url 
+     * @param user
+     * @return 
+     */
+    public static WebResource getWebResource(final String url,User user){
+        WebResource resource = _client.resource(url);
+        if (user != null){
+            resource.addFilter(new HTTPBasicAuthFilter(user.getLogin(),
+                    user.getToken()));
+        }
+        return resource;
+    }
+    
+    /**
+     * Gets shared {@link ObjectMapper} that has {@link ObjectifyJacksonModule}
+     * registered.  Do NOT change the configuration of the returned object.
+     * @return 
+     */
+    public static ObjectMapper getObjectMapper(){
+        return _mapper;
+    }
+    
+    /**
+     * Gets cached {@link ObjectWriter}
+     * @return 
+     */
+    public static ObjectWriter getWriter(){
+        return _writer;
+    }
+    
+    /**
+     * Gets cached {@link ObjectReader} for <b>type</b>
+     * @param type
+     * @return 
+     */
+    public static ObjectReader getReader(TypeReference<?> type){
+        return getReader(type.getType());
+    }
+    
+    /**
+     * Gets cached {@link ObjectReader} for <b>type</b>
+     * @param type
+     * @return 
+     */
+    public static ObjectReader getReader(Type type){
+        JavaType javaType = _mapper.getTypeFactory().constructType(type);
+        ObjectReader reader = _readers.get(javaType);
+        if (reader != null){
+            return reader;
+        }
+        reader = _mapper.reader(javaType);
+        ObjectReader existing = _readers.putIfAbsent(javaType, reader);
+        if (existing != null){
+            return existing;
+        }
+        return reader;
+    }
+}
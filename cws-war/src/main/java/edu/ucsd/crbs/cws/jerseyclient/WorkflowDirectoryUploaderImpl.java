@@ -0,0 +1,217 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.jerseyclient;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import edu.ucsd.crbs.cws.App;
+import edu.ucsd.crbs.cws.dao.WorkflowDAO;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parses and uploads all the Kepler .kar files in a directory in parallel.
+ * The md5 of each .kar file is compared to {@link Workflow#getMd5()} of the
+ * Workflows already registered and matching files are skipped, as are 
+ * duplicate files within the directory.  All requests go through the
+ * {@link WorkflowDAO} and {@link WorkflowFileUploader} passed in which
+ * are expected to share a single HTTP client.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class WorkflowDirectoryUploaderImpl implements WorkflowDirectoryUploader {
+
+    private static final Logger _log
+            = Logger.getLogger(WorkflowDirectoryUploaderImpl.class.getName());
+    
+    public static final String KAR_SUFFIX = ".kar";
+    
+    public static final int DEFAULT_NUMBER_OF_THREADS = 4;
+    
+    private final WorkflowDAO _workflowDAO;
+    private final WorkflowFileUploader _fileUploader;
+    private final String _owner;
+    private int _numThreads = DEFAULT_NUMBER_OF_THREADS;
+    
+    /**
+     * Constructor
+     * @param workflowDAO Used to get existing Workflows and to insert new ones
+     * @param fileUploader Used to upload .kar files
+     * @param owner If non null set as owner of each Workflow
+     */
+    public WorkflowDirectoryUploaderImpl(WorkflowDAO workflowDAO,
+            WorkflowFileUploader fileUploader,final String owner){
+        _workflowDAO = workflowDAO;
+        _fileUploader = fileUploader;
+        _owner = owner;
+    }
+    
+    /**
+     * Sets number of .kar files to process concurrently
+     * @param numThreads 
+     */
+    public void setNumberOfThreads(int numThreads){
+        if (numThreads < 1){
+            throw new IllegalArgumentException("Number of threads must be 1 or larger");
+        }
+        _numThreads = numThreads;
+    }
+    
+    @Override
+    public int uploadWorkflows(File directory) throws Exception {
+        if (directory == null || !directory.isDirectory()){
+            throw new IllegalArgumentException(directory+" is not a directory");
+        }
+        File[] kars = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.isFile() && f.getName().endsWith(KAR_SUFFIX);
+            }
+        });
+        if (kars == null || kars.length == 0){
+            _log.log(Level.INFO, "No {0} files found in {1}",
+                    new Object[]{KAR_SUFFIX,directory.getAbsolutePath()});
+            return 0;
+        }
+        Arrays.sort(kars);
+        
+        final Map<String,Long> registeredDigests = getRegisteredDigests();
+        final ConcurrentMap<String,File> seenDigests = new ConcurrentHashMap<>();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(_numThreads,kars.length));
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (final File kar : kars){
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return uploadWorkflow(kar,registeredDigests,seenDigests);
+                    }
+                }));
+            }
+            int numFailed = 0;
+            for (Future<Boolean> f : futures){
+                if (f.get() == false){
+                    numFailed++;
+                }
+            }
+            return numFailed;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Gets md5 of the .kar file for all Workflows registered with service
+     * that have one and whose file was uploaded.  A Workflow whose upload
+     * failed is left out so its .kar is tried again
+     * @return Map of md5 to Workflow id
+     * @throws Exception 
+     */
+    private Map<String,Long> getRegisteredDigests() throws Exception {
+        HashMap<String,Long> digests = new HashMap<>();
+        List<Workflow> workflows = _workflowDAO.getAllWorkflows(true, null);
+        if (workflows == null){
+            return digests;
+        }
+        for (Workflow w : workflows){
+            if (w.getMd5() != null && w.isFileUploaded()){
+                digests.put(w.getMd5(), w.getId());
+            }
+        }
+        return digests;
+    }
+    
+    /**
+     * Parses, registers, and uploads <b>kar</b> unless its md5 is in
+     * <b>registeredDigests</b> or another .kar with the same md5 was 
+     * already processed
+     * @return false if there was an error otherwise true
+     */
+    private boolean uploadWorkflow(File kar,Map<String,Long> registeredDigests,
+            ConcurrentMap<String,File> seenDigests){
+        try {
+            String md5 = Files.hash(kar, Hashing.md5()).toString();
+            
+            Long existingId = registeredDigests.get(md5);
+            if (existingId != null){
+                _log.log(Level.INFO, "Skipping {0} matches Workflow {1}",
+                        new Object[]{kar.getAbsolutePath(),existingId});
+                return true;
+            }
+            File duplicate = seenDigests.putIfAbsent(md5, kar);
+            if (duplicate != null){
+                _log.log(Level.INFO, "Skipping {0} same as {1}",
+                        new Object[]{kar.getAbsolutePath(),duplicate.getAbsolutePath()});
+                return true;
+            }
+            
+            Workflow w = App.getWorkflowFromFile(kar);
+            if (w == null){
+                _log.log(Level.SEVERE, "Unable to parse Workflow from {0}",
+                        kar.getAbsolutePath());
+                return false;
+            }
+            if (_owner != null){
+                w.setOwner(_owner);
+            }
+            w.setMd5(md5);
+            
+            Workflow insertedWorkflow = _workflowDAO.insert(w);
+            _fileUploader.uploadWorkflowFile(insertedWorkflow, kar);
+            _log.log(Level.INFO, "Uploaded {0} as Workflow {1}",
+                    new Object[]{kar.getAbsolutePath(),insertedWorkflow.getId()});
+            return true;
+        }
+        catch(Exception ex){
+            _log.log(Level.SEVERE, "Unable to upload "+kar.getAbsolutePath(), ex);
+            return false;
+        }
+    }
+}
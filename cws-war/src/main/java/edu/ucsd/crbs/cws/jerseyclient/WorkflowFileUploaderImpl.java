@@ -0,0 +1,79 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.jerseyclient;
+
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.multipart.FormDataMultiPart;
+import com.sun.jersey.multipart.file.FileDataBodyPart;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.io.File;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Uploads Kepler .kar file as a multipart form POST using the shared 
+ * {@link RestClientFactory#getClient()}.  The form field is named
+ * after the {@link Workflow#getId()}
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class WorkflowFileUploaderImpl implements WorkflowFileUploader {
+
+    @Override
+    public String uploadWorkflowFile(Workflow w, File workflowFile) throws Exception {
+        if (w == null || w.getId() == null){
+            throw new IllegalArgumentException("Workflow and its id must be set");
+        }
+        if (w.getWorkflowFileUploadURL() == null){
+            throw new Exception("No upload url found for workflow "+w.getId());
+        }
+        
+        FormDataMultiPart form = new FormDataMultiPart();
+        try {
+            form.bodyPart(new FileDataBodyPart(w.getId().toString(),workflowFile));
+            ClientResponse cr = RestClientFactory.getWebResource(w.getWorkflowFileUploadURL(),null)
+                    .type(MediaType.MULTIPART_FORM_DATA_TYPE)
+                    .post(ClientResponse.class,form);
+            
+            String res = cr.getEntity(String.class);
+            if (cr.getStatus() >= ClientResponse.Status.BAD_REQUEST.getStatusCode()){
+                throw new Exception("Upload of "+workflowFile.getAbsolutePath()
+                        +" failed with status "+cr.getStatus()+" : "+res);
+            }
+            return res;
+        }
+        finally {
+            form.cleanup();
+        }
+    }
+}
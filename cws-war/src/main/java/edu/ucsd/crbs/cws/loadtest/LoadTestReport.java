@@ -0,0 +1,171 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.loadtest;
+
+import edu.ucsd.crbs.cws.metrics.LatencyHistogram;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds per operation latency {@link LatencyHistogram}s and error counts
+ * gathered during a load test run.  Latencies are recorded in 
+ * microseconds.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class LoadTestReport {
+
+    /**
+     * Highest latency tracked, anything slower is recorded as this value
+     */
+    public static final long HIGHEST_TRACKABLE_MICROS = 3600L * 1000L * 1000L;
+    
+    /**
+     * Significant digits kept by the {@link LatencyHistogram}s
+     */
+    public static final int SIGNIFICANT_DIGITS = 3;
+    
+    /**
+     * Divisor to convert microseconds to milliseconds for output
+     */
+    public static final double MICROS_PER_MILLI = 1000.0;
+    
+    private final Map<String,LatencyHistogram> _histograms;
+    private final Map<String,AtomicLong> _errors;
+    private long _elapsedMillis;
+    
+    /**
+     * Constructor
+     * @param operations Names of operations to track, report output is in 
+     *        this order
+     */
+    public LoadTestReport(final String[] operations){
+        _histograms = new LinkedHashMap<>();
+        _errors = new LinkedHashMap<>();
+        for (String op : operations){
+            _histograms.put(op, new LatencyHistogram(HIGHEST_TRACKABLE_MICROS,
+                    SIGNIFICANT_DIGITS));
+            _errors.put(op, new AtomicLong(0));
+        }
+    }
+    
+    /**
+     * Records successful call to <b>operation</b>
+     * @param operation
+     * @param latencyMicros 
+     */
+    public void recordSuccess(final String operation,long latencyMicros){
+        _histograms.get(operation).recordValue(latencyMicros);
+    }
+    
+    /**
+     * Records failed call to <b>operation</b>.  Failures are not added to the
+     * latency histogram
+     * @param operation 
+     */
+    public void recordError(final String operation){
+        _errors.get(operation).incrementAndGet();
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        _elapsedMillis = elapsedMillis;
+    }
+
+    public long getElapsedMillis() {
+        return _elapsedMillis;
+    }
+    
+    public Map<String,LatencyHistogram> getHistograms(){
+        return Collections.unmodifiableMap(_histograms);
+    }
+    
+    public long getErrorCount(final String operation){
+        return _errors.get(operation).get();
+    }
+    
+    /**
+     * Gets successful calls per second for <b>operation</b>
+     * @param operation
+     * @return 
+     */
+    public double getThroughput(final String operation){
+        if (_elapsedMillis <= 0){
+            return 0;
+        }
+        return _histograms.get(operation).getTotalCount() / (_elapsedMillis / 1000.0);
+    }
+    
+    /**
+     * Writes a summary table with throughput and p50/p95/p99/max latency
+     * in milliseconds for each operation followed by the full percentile
+     * distribution of each operation in HdrHistogram format
+     * @param out 
+     */
+    public void write(PrintStream out){
+        long totalCount = 0;
+        long totalErrors = 0;
+        out.println(String.format("%-28s %10s %8s %10s %10s %10s %10s %10s",
+                "Operation","Count","Errors","Ops/sec","p50(ms)","p95(ms)",
+                "p99(ms)","max(ms)"));
+        for (Map.Entry<String,LatencyHistogram> entry : _histograms.entrySet()){
+            LatencyHistogram h = entry.getValue();
+            long errors = getErrorCount(entry.getKey());
+            totalCount += h.getTotalCount();
+            totalErrors += errors;
+            out.println(String.format("%-28s %10d %8d %10.1f %10.3f %10.3f %10.3f %10.3f",
+                    entry.getKey(),h.getTotalCount(),errors,
+                    getThroughput(entry.getKey()),
+                    h.getValueAtPercentile(50.0)/MICROS_PER_MILLI,
+                    h.getValueAtPercentile(95.0)/MICROS_PER_MILLI,
+                    h.getValueAtPercentile(99.0)/MICROS_PER_MILLI,
+                    h.getMaxValue()/MICROS_PER_MILLI));
+        }
+        double seconds = _elapsedMillis / 1000.0;
+        out.println(String.format("Total: %d calls, %d errors in %.1f seconds (%.1f calls/sec)",
+                totalCount, totalErrors, seconds, 
+                seconds > 0 ? totalCount / seconds : 0));
+        
+        for (Map.Entry<String,LatencyHistogram> entry : _histograms.entrySet()){
+            if (entry.getValue().getTotalCount() == 0){
+                continue;
+            }
+            out.println();
+            out.println("Latency distribution in milliseconds for "+entry.getKey());
+            entry.getValue().outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.loadtest;
+
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.WorkflowDAO;
+import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a mix of creates, lists, counts, and status updates against the
+ * {@link JobDAO}, {@link WorkflowDAO}, and {@link WorkspaceFileDAO} passed in
+ * from a pool of worker threads.  The mix approximates the calls made by the
+ * portal (listing and creating jobs and workspace files) and by the 
+ * cluster sync agent (listing not completed jobs and updating job status and
+ * workspace file paths).
+ * <p/>
+ * If an operations per second rate is set, calls are issued on a fixed
+ * schedule and latency is measured from the time the call was scheduled
+ * to start rather then when it actually started.  This way a slow service 
+ * shows up as higher latency instead of silently lowering the request rate.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class LoadTestRunnerImpl implements LoadTestRunner {
+
+    private static final Logger _log
+            = Logger.getLogger(LoadTestRunnerImpl.class.getName());
+    
+    public static final String CREATE_WORKFLOW = "POST workflows";
+    public static final String LIST_WORKFLOWS = "GET workflows";
+    public static final String CREATE_WORKSPACEFILE = "POST workspacefiles";
+    public static final String LIST_WORKSPACEFILES = "GET workspacefiles";
+    public static final String UPDATE_WORKSPACEFILE_PATH = "POST workspacefiles/{id}";
+    public static final String CREATE_JOB = "POST jobs";
+    public static final String LIST_JOBS = "GET jobs";
+    public static final String COUNT_JOBS = "GET jobs/count";
+    public static final String UPDATE_JOB_STATUS = "POST jobs/{id}";
+    
+    /**
+     * Operations in the order they appear in the report
+     */
+    public static final String[] OPERATIONS = {CREATE_WORKFLOW,LIST_WORKFLOWS,
+        CREATE_WORKSPACEFILE,LIST_WORKSPACEFILES,UPDATE_WORKSPACEFILE_PATH,
+        CREATE_JOB,LIST_JOBS,COUNT_JOBS,UPDATE_JOB_STATUS};
+    
+    /**
+     * Relative weight of each operation in {@link #OPERATIONS}
+     */
+    public static final int[] OPERATION_WEIGHTS = {2,5,10,10,8,15,20,10,20};
+    
+    /**
+     * Prefix for names of workflows, jobs, and workspace files created
+     */
+    public static final String NAME_PREFIX = "loadtest-";
+    
+    /**
+     * Type set on {@link WorkspaceFile}s created
+     */
+    public static final String WORKSPACEFILE_TYPE = "loadtest";
+    
+    /**
+     * Job statuses cycled through by {@link #UPDATE_JOB_STATUS} calls
+     */
+    static final String[] JOB_STATUSES = {Job.PENDING_STATUS,
+        Job.RUNNING_STATUS, Job.COMPLETED_STATUS};
+    
+    private final JobDAO _jobDAO;
+    private final WorkflowDAO _workflowDAO;
+    private final WorkspaceFileDAO _workspaceFileDAO;
+    private final String _owner;
+    
+    private int _numThreads = 4;
+    private double _operationsPerSecond = 0;
+    private long _durationInSeconds = 60;
+    private long _maxOperations = 0;
+    
+    private final List<Long> _workflowIds = new ArrayList<>();
+    private final List<Long> _jobIds = new ArrayList<>();
+    private final List<Long> _workspaceFileIds = new ArrayList<>();
+    private final AtomicLong _nameCounter = new AtomicLong(0);
+    
+    /**
+     * Constructor
+     * @param jobDAO
+     * @param workflowDAO
+     * @param workspaceFileDAO
+     * @param owner Owner set on objects created and used as filter on lists
+     */
+    public LoadTestRunnerImpl(JobDAO jobDAO,WorkflowDAO workflowDAO,
+            WorkspaceFileDAO workspaceFileDAO,final String owner){
+        _jobDAO = jobDAO;
+        _workflowDAO = workflowDAO;
+        _workspaceFileDAO = workspaceFileDAO;
+        _owner = owner;
+    }
+
+    /**
+     * Sets number of worker threads issuing calls.  Default is 4
+     * @param numThreads 
+     */
+    public void setNumberOfThreads(int numThreads) {
+        _numThreads = numThreads;
+    }
+
+    /**
+     * Sets target rate of calls across all threads.  A value of 0 or less
+     * means each thread issues calls as fast as it can.  Default is 0
+     * @param operationsPerSecond 
+     */
+    public void setOperationsPerSecond(double operationsPerSecond) {
+        _operationsPerSecond = operationsPerSecond;
+    }
+
+    /**
+     * Sets how long to run the load test.  Default is 60 seconds
+     * @param durationInSeconds 
+     */
+    public void setDurationInSeconds(long durationInSeconds) {
+        _durationInSeconds = durationInSeconds;
+    }
+
+    /**
+     * Sets maximum number of calls to make before stopping.  A value of 0
+     * means no limit.  Default is 0
+     * @param maxOperations 
+     */
+    public void setMaxOperations(long maxOperations) {
+        _maxOperations = maxOperations;
+    }
+    
+    /**
+     * Creates a seed {@link Workflow} and then runs the configured mix of
+     * operations until the duration elapses or the maximum number of 
+     * operations is reached
+     * @return 
+     * @throws Exception if there is a problem creating the seed workflow
+     */
+    @Override
+    public LoadTestReport run() throws Exception {
+        if (_numThreads < 1){
+            throw new IllegalArgumentException("Number of threads must be 1 or larger");
+        }
+        LoadTestReport report = new LoadTestReport(OPERATIONS);
+        
+        Workflow seed = _workflowDAO.insert(createWorkflow());
+        if (seed == null || seed.getId() == null){
+            throw new Exception("Unable to create seed workflow");
+        }
+        addId(_workflowIds,seed.getId());
+        
+        final long startNanos = System.nanoTime();
+        final long endNanos = startNanos + TimeUnit.SECONDS.toNanos(_durationInSeconds);
+        final long intervalNanos = _operationsPerSecond > 0 ? 
+                (long)(TimeUnit.SECONDS.toNanos(1) / _operationsPerSecond) : 0;
+        final AtomicLong nextStartNanos = new AtomicLong(startNanos);
+        final AtomicLong operationCount = new AtomicLong(0);
+        
+        ExecutorService es = Executors.newFixedThreadPool(_numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < _numThreads; i++){
+                futures.add(es.submit(new Worker(report,endNanos,intervalNanos,
+                        nextStartNanos,operationCount)));
+            }
+            for (Future<?> f : futures){
+                f.get();
+            }
+        }
+        finally {
+            es.shutdownNow();
+        }
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return report;
+    }
+    
+    /**
+     * Issues calls until time runs out or enough operations have been run
+     */
+    private class Worker implements Runnable {
+        private final LoadTestReport _report;
+        private final long _endNanos;
+        private final long _intervalNanos;
+        private final AtomicLong _nextStartNanos;
+        private final AtomicLong _operationCount;
+        private final Random _random = new Random();
+        
+        Worker(LoadTestReport report,long endNanos,long intervalNanos,
+                AtomicLong nextStartNanos,AtomicLong operationCount){
+            _report = report;
+            _endNanos = endNanos;
+            _intervalNanos = intervalNanos;
+            _nextStartNanos = nextStartNanos;
+            _operationCount = operationCount;
+        }
+        
+        @Override
+        public void run() {
+            while (true){
+                if (_maxOperations > 0 && _operationCount.incrementAndGet() > _maxOperations){
+                    return;
+                }
+                long scheduledNanos = System.nanoTime();
+                if (_intervalNanos > 0){
+                    scheduledNanos = _nextStartNanos.getAndAdd(_intervalNanos);
+                }
+                if (scheduledNanos >= _endNanos){
+                    return;
+                }
+                long sleepNanos = scheduledNanos - System.nanoTime();
+                if (sleepNanos > 0){
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                    }
+                    catch(InterruptedException ie){
+                        return;
+                    }
+                }
+                String operation = pickOperation(_random);
+                try {
+                    invoke(operation,_random);
+                    _report.recordSuccess(operation, 
+                            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledNanos));
+                }
+                catch(Exception ex){
+                    _log.log(Level.FINE, "Call to "+operation+" failed", ex);
+                    _report.recordError(operation);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Picks an operation from {@link #OPERATIONS} using {@link #OPERATION_WEIGHTS}
+     * @param random
+     * @return 
+     */
+    static String pickOperation(Random random){
+        int totalWeight = 0;
+        for (int weight : OPERATION_WEIGHTS){
+            totalWeight += weight;
+        }
+        int pick = random.nextInt(totalWeight);
+        for (int i = 0; i < OPERATIONS.length; i++){
+            pick -= OPERATION_WEIGHTS[i];
+            if (pick < 0){
+                return OPERATIONS[i];
+            }
+        }
+        return OPERATIONS[OPERATIONS.length - 1];
+    }
+    
+    /**
+     * Invokes <b>operation</b>.  Updates fall back to creates if nothing
+     * has been created yet to update
+     * @param operation
+     * @param random
+     * @throws Exception 
+     */
+    void invoke(final String operation,Random random) throws Exception {
+        switch (operation){
+            case CREATE_WORKFLOW:
+                Workflow w = _workflowDAO.insert(createWorkflow());
+                addId(_workflowIds,w.getId());
+                break;
+            case LIST_WORKFLOWS:
+                _workflowDAO.getAllWorkflows(true, Boolean.FALSE);
+                break;
+            case CREATE_WORKSPACEFILE:
+                WorkspaceFile wsf = _workspaceFileDAO.insert(createWorkspaceFile(), false);
+                addId(_workspaceFileIds,wsf.getId());
+                break;
+            case LIST_WORKSPACEFILES:
+                _workspaceFileDAO.getWorkspaceFiles(_owner, WORKSPACEFILE_TYPE,
+                        null, null, Boolean.FALSE);
+                break;
+            case UPDATE_WORKSPACEFILE_PATH:
+                Long wsfId = pickId(_workspaceFileIds,random);
+                if (wsfId == null){
+                    invoke(CREATE_WORKSPACEFILE,random);
+                    return;
+                }
+                _workspaceFileDAO.updatePathSizeAndFailStatus(wsfId, 
+                        "/tmp/"+NAME_PREFIX+wsfId, 
+                        Integer.toString(random.nextInt(1048576)), Boolean.FALSE);
+                break;
+            case CREATE_JOB:
+                Job j = _jobDAO.insert(createJob(pickId(_workflowIds,random)), false);
+                addId(_jobIds,j.getId());
+                break;
+            case LIST_JOBS:
+                _jobDAO.getJobs(_owner, null, null, true, true, Boolean.FALSE);
+                break;
+            case COUNT_JOBS:
+                _jobDAO.getJobsCount(_owner, null, null, Boolean.FALSE);
+                break;
+            case UPDATE_JOB_STATUS:
+                Long jobId = pickId(_jobIds,random);
+                if (jobId == null){
+                    invoke(CREATE_JOB,random);
+                    return;
+                }
+                _jobDAO.update(jobId, JOB_STATUSES[random.nextInt(JOB_STATUSES.length)],
+                        null, null, null, null, null, null, Boolean.TRUE, 
+                        Long.toString(jobId), null, null, null);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operation: "+operation);
+        }
+    }
+    
+    private void addId(List<Long> ids,Long id){
+        if (id == null){
+            return;
+        }
+        synchronized(ids){
+            ids.add(id);
+        }
+    }
+    
+    private Long pickId(List<Long> ids,Random random){
+        synchronized(ids){
+            if (ids.isEmpty()){
+                return null;
+            }
+            return ids.get(random.nextInt(ids.size()));
+        }
+    }
+    
+    private String getUniqueName(){
+        return NAME_PREFIX+_nameCounter.incrementAndGet();
+    }
+    
+    private Workflow createWorkflow(){
+        Workflow w = new Workflow();
+        w.setName(getUniqueName());
+        w.setDescription("Workflow created by load test");
+        w.setReleaseNotes("Created by load test");
+        w.setOwner(_owner);
+        w.setAuthor(_owner);
+        return w;
+    }
+    
+    private WorkspaceFile createWorkspaceFile(){
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setName(getUniqueName());
+        wsf.setType(WORKSPACEFILE_TYPE);
+        wsf.setOwner(_owner);
+        wsf.setDescription("Workspace file created by load test");
+        wsf.setCreateDate(new Date());
+        wsf.setDir(false);
+        return wsf;
+    }
+    
+    private Job createJob(Long workflowId){
+        Job j = new Job();
+        j.setName(getUniqueName());
+        j.setOwner(_owner);
+        Workflow w = new Workflow();
+        w.setId(workflowId);
+        j.setWorkflow(w);
+        return j;
+    }
+}
@@ -40,6 +40,7 @@ import com.googlecode.objectify.annotation.Index;
 import com.googlecode.objectify.condition.IfNotNull;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.io.Serializable;
 import java.util.Date;
 
 /**
@@ -50,7 +51,9 @@ import java.util.Date;
  */
 @Entity
 @Cache
-public class Event {
+public class Event implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
 
    
     
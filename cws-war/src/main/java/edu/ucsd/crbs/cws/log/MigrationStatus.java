@@ -0,0 +1,205 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.log;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import java.util.Date;
+
+/**
+ * Checkpoint and progress of a server side resave of every entity of a given
+ * kind.  There is one of these per kind keyed by the kind name.  The 
+ * <b>generation</b> identifies a run so restarting a migration lets slices 
+ * still queued from the previous run notice and stop.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@Entity
+@JsonPropertyOrder(value={ "kind","running","resavedCount","entitiesPerSecond"},alphabetic=true)
+public class MigrationStatus {
+    
+    @Id private String _kind;
+    private long _generation;
+    private String _cursor;
+    private int _batchSize;
+    private long _resavedCount;
+    private int _sliceCount;
+    private boolean _running;
+    private Date _startDate;
+    private Date _lastUpdateDate;
+    private Date _finishDate;
+    private String _error;
+    private int _schemaVersion;
+    
+    public MigrationStatus(){
+        
+    }
+    
+    public String getKind() {
+        return _kind;
+    }
+
+    public void setKind(final String kind) {
+        _kind = kind;
+    }
+
+    public long getGeneration() {
+        return _generation;
+    }
+
+    public void setGeneration(long generation) {
+        _generation = generation;
+    }
+
+    /**
+     * @return Web safe cursor of the last entity resaved or null if none
+     */
+    @JsonIgnore
+    public String getCursor() {
+        return _cursor;
+    }
+
+    @JsonIgnore
+    public void setCursor(final String cursor) {
+        _cursor = cursor;
+    }
+
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        _batchSize = batchSize;
+    }
+
+    public long getResavedCount() {
+        return _resavedCount;
+    }
+
+    public void setResavedCount(long resavedCount) {
+        _resavedCount = resavedCount;
+    }
+
+    public int getSliceCount() {
+        return _sliceCount;
+    }
+
+    public void setSliceCount(int sliceCount) {
+        _sliceCount = sliceCount;
+    }
+
+    public boolean isRunning() {
+        return _running;
+    }
+
+    public void setRunning(boolean running) {
+        _running = running;
+    }
+
+    public Date getStartDate() {
+        return _startDate;
+    }
+
+    public void setStartDate(final Date startDate) {
+        _startDate = startDate;
+    }
+
+    public Date getLastUpdateDate() {
+        return _lastUpdateDate;
+    }
+
+    public void setLastUpdateDate(final Date lastUpdateDate) {
+        _lastUpdateDate = lastUpdateDate;
+    }
+
+    public Date getFinishDate() {
+        return _finishDate;
+    }
+
+    public void setFinishDate(final Date finishDate) {
+        _finishDate = finishDate;
+    }
+
+    public String getError() {
+        return _error;
+    }
+
+    public void setError(final String error) {
+        _error = error;
+    }
+
+    /**
+     * Version of the stored representation entities of the kind are 
+     * brought up to by this migration.  Migrations started before this was
+     * recorded have a value of 0
+     * @return 
+     */
+    public int getSchemaVersion() {
+        return _schemaVersion;
+    }
+
+    public void setSchemaVersion(int schemaVersion) {
+        _schemaVersion = schemaVersion;
+    }
+    
+    /**
+     * Calculates throughput using time from start to finish or if not
+     * finished start to last update
+     * @return Number of entities resaved per second or 0 if unknown
+     */
+    public double getEntitiesPerSecond(){
+        if (_startDate == null){
+            return 0;
+        }
+        Date endDate = _finishDate != null ? _finishDate : _lastUpdateDate;
+        if (endDate == null){
+            return 0;
+        }
+        long elapsed = endDate.getTime() - _startDate.getTime();
+        if (elapsed <= 0){
+            return 0;
+        }
+        return (double)_resavedCount*1000.0/(double)elapsed;
+    }
+    
+    /**
+     * Jackson needs a setter for computed value so it can deserialize
+     * @param val ignored
+     */
+    public void setEntitiesPerSecond(double val){
+        
+    }
+}
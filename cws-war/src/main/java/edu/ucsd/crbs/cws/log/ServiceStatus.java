@@ -38,6 +38,7 @@ import com.google.appengine.api.capabilities.Capability;
 import com.google.appengine.api.capabilities.CapabilityState;
 import com.google.apphosting.api.ApiProxy;
 import com.google.apphosting.api.ApiProxy.Environment;
+import edu.ucsd.crbs.cws.dao.objectify.WorkflowCache;
 
 /**
  * Contains status of Google App Engine services
@@ -54,12 +55,29 @@ public class ServiceStatus {
     private String _applicationId;
     private String _applicationVersionId;
     
+    private long _workflowCacheHits;
+    private long _workflowCacheMisses;
+    private double _workflowCacheHitRate;
+    private int _workflowCacheSize;
+    
 
     public ServiceStatus(CapabilitiesService service){
         updateStatus(service);
         Environment env = ApiProxy.getCurrentEnvironment();
         _applicationId = env.getAppId();
         _applicationVersionId = env.getVersionId();
+        updateWorkflowCacheStats(WorkflowCache.getInstance());
+    }
+    
+    /**
+     * Updates internal variables with statistics from <b>cache</b>
+     * @param cache 
+     */
+    private void updateWorkflowCacheStats(WorkflowCache cache){
+        _workflowCacheHits = cache.getHits();
+        _workflowCacheMisses = cache.getMisses();
+        _workflowCacheHitRate = cache.getHitRate();
+        _workflowCacheSize = cache.getSize();
     }
     
     /**
@@ -129,4 +147,36 @@ public class ServiceStatus {
     public void setApplicationVersionId(String _applicationVersionId) {
         this._applicationVersionId = _applicationVersionId;
     }
+
+    public long getWorkflowCacheHits() {
+        return _workflowCacheHits;
+    }
+
+    public void setWorkflowCacheHits(long workflowCacheHits) {
+        _workflowCacheHits = workflowCacheHits;
+    }
+
+    public long getWorkflowCacheMisses() {
+        return _workflowCacheMisses;
+    }
+
+    public void setWorkflowCacheMisses(long workflowCacheMisses) {
+        _workflowCacheMisses = workflowCacheMisses;
+    }
+
+    public double getWorkflowCacheHitRate() {
+        return _workflowCacheHitRate;
+    }
+
+    public void setWorkflowCacheHitRate(double workflowCacheHitRate) {
+        _workflowCacheHitRate = workflowCacheHitRate;
+    }
+
+    public int getWorkflowCacheSize() {
+        return _workflowCacheSize;
+    }
+
+    public void setWorkflowCacheSize(int workflowCacheSize) {
+        _workflowCacheSize = workflowCacheSize;
+    }
 }
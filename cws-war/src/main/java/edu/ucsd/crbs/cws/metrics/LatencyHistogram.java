@@ -0,0 +1,305 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram of latency values that uses the same log/linear 
+ * bucketing as <a href="http://hdrhistogram.org">HdrHistogram</a>.  Values
+ * are stored in buckets whose width doubles every power of two, and each
+ * bucket is split into enough linear sub buckets to keep 
+ * <b>significantDigits</b> of precision.  Memory use is fixed at
+ * construction time no matter how many values are recorded.
+ * 
+ * {@link #outputPercentileDistribution(java.io.PrintStream, double) } 
+ * writes the same percentile distribution format HdrHistogram does so the
+ * output can be fed to the HdrHistogram plotter.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class LatencyHistogram {
+
+    /**
+     * Percentiles written by {@link #outputPercentileDistribution(java.io.PrintStream, double) }
+     */
+    public static final double[] OUTPUT_PERCENTILES = {0.0, 10.0, 20.0, 30.0, 
+        40.0, 50.0, 55.0, 60.0, 65.0, 70.0, 75.0, 80.0, 85.0, 90.0, 92.5, 95.0, 
+        97.5, 99.0, 99.5, 99.9, 99.99, 100.0};
+    
+    private final long _highestTrackableValue;
+    private final int _significantDigits;
+    private final int _subBucketCount;
+    private final int _subBucketHalfCount;
+    private final int _subBucketHalfCountMagnitude;
+    private final long _subBucketMask;
+    private final int _bucketCount;
+    private final AtomicLongArray _counts;
+    private final AtomicLong _totalCount = new AtomicLong(0);
+    private final AtomicLong _sum = new AtomicLong(0);
+    private final AtomicLong _max = new AtomicLong(0);
+    
+    /**
+     * Constructor
+     * @param highestTrackableValue Largest value that can be recorded, larger 
+     *        values are recorded as this value
+     * @param significantDigits Number of significant decimal digits to keep
+     *        must be between 1 and 5
+     * @throws IllegalArgumentException if <b>highestTrackableValue</b> is 
+     *         less then 2 or if <b>significantDigits</b> is out of range
+     */
+    public LatencyHistogram(long highestTrackableValue,int significantDigits){
+        if (highestTrackableValue < 2){
+            throw new IllegalArgumentException("highestTrackableValue must be 2 or larger");
+        }
+        if (significantDigits < 1 || significantDigits > 5){
+            throw new IllegalArgumentException("significantDigits must be between 1 and 5");
+        }
+        _highestTrackableValue = highestTrackableValue;
+        _significantDigits = significantDigits;
+        
+        long largestValueWithSingleUnitResolution = 2 * (long)Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int)Math.ceil(Math.log(largestValueWithSingleUnitResolution)/Math.log(2));
+        _subBucketHalfCountMagnitude = (subBucketCountMagnitude > 1 ? subBucketCountMagnitude : 1) - 1;
+        _subBucketCount = 1 << (_subBucketHalfCountMagnitude + 1);
+        _subBucketHalfCount = _subBucketCount / 2;
+        _subBucketMask = _subBucketCount - 1;
+        
+        long smallestUntrackableValue = _subBucketCount;
+        int bucketsNeeded = 1;
+        while (smallestUntrackableValue <= highestTrackableValue){
+            if (smallestUntrackableValue > (Long.MAX_VALUE / 2)){
+                bucketsNeeded++;
+                break;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketsNeeded++;
+        }
+        _bucketCount = bucketsNeeded;
+        _counts = new AtomicLongArray((_bucketCount + 1) * _subBucketHalfCount);
+    }
+    
+    /**
+     * Records <b>value</b> in the histogram.  Negative values are recorded as
+     * 0 and values larger then highest trackable value are recorded as
+     * the highest trackable value
+     * @param value 
+     */
+    public void recordValue(long value){
+        if (value < 0){
+            value = 0;
+        }
+        if (value > _highestTrackableValue){
+            value = _highestTrackableValue;
+        }
+        _counts.incrementAndGet(getCountsIndex(value));
+        _totalCount.incrementAndGet();
+        _sum.addAndGet(value);
+        long curMax = _max.get();
+        while (value > curMax && !_max.compareAndSet(curMax, value)){
+            curMax = _max.get();
+        }
+    }
+    
+    /**
+     * Gets number of values recorded
+     * @return 
+     */
+    public long getTotalCount(){
+        return _totalCount.get();
+    }
+    
+    /**
+     * Gets largest value recorded
+     * @return largest value recorded or 0 if no values recorded
+     */
+    public long getMaxValue(){
+        return _max.get();
+    }
+    
+    /**
+     * Gets mean of recorded values
+     * @return mean or 0 if no values recorded
+     */
+    public double getMean(){
+        long count = _totalCount.get();
+        if (count == 0){
+            return 0;
+        }
+        return (double)_sum.get() / (double)count;
+    }
+    
+    /**
+     * Gets value at <b>percentile</b> in the same manner as HdrHistogram
+     * which means the highest value that is equivalent, given the precision
+     * of the histogram, to the value at that percentile
+     * @param percentile percentile between 0 and 100
+     * @return value or 0 if no values recorded
+     */
+    public long getValueAtPercentile(double percentile){
+        long total = _totalCount.get();
+        if (total == 0){
+            return 0;
+        }
+        double requestedPercentile = Math.min(Math.max(percentile, 0.0),100.0);
+        long countAtPercentile = (long)Math.ceil((requestedPercentile / 100.0) * total);
+        if (countAtPercentile < 1){
+            countAtPercentile = 1;
+        }
+        long totalToCurrentIndex = 0;
+        for (int i = 0; i < _counts.length(); i++){
+            totalToCurrentIndex += _counts.get(i);
+            if (totalToCurrentIndex >= countAtPercentile){
+                return Math.min(highestEquivalentValue(valueFromIndex(i)),_max.get());
+            }
+        }
+        return _max.get();
+    }
+    
+    /**
+     * Writes percentile distribution in HdrHistogram text format
+     * @param out Where to write the output
+     * @param outputValueUnitScalingRatio recorded values are divided by this
+     *        value before being written ie 1000.0 to convert microseconds
+     *        to milliseconds
+     */
+    public void outputPercentileDistribution(PrintStream out,
+            double outputValueUnitScalingRatio){
+        out.println(String.format("%12s %14s %10s %14s", "Value", "Percentile",
+                "TotalCount", "1/(1-Percentile)"));
+        out.println();
+        long total = _totalCount.get();
+        for (double percentile : OUTPUT_PERCENTILES){
+            long value = getValueAtPercentile(percentile);
+            long countToValue = getCountAtOrBelow(value);
+            if (percentile < 100.0){
+                out.println(String.format("%12.3f %2.12f %10d %14.2f",
+                        value / outputValueUnitScalingRatio, percentile / 100.0,
+                        countToValue, 1.0 / (1.0 - (percentile / 100.0))));
+            }
+            else {
+                out.println(String.format("%12.3f %2.12f %10d",
+                        value / outputValueUnitScalingRatio, percentile / 100.0,
+                        countToValue));
+            }
+        }
+        out.println(String.format("#[Mean    = %12.3f, StdDeviation   = %12.3f]",
+                getMean() / outputValueUnitScalingRatio,
+                getStdDeviation() / outputValueUnitScalingRatio));
+        out.println(String.format("#[Max     = %12.3f, Total count    = %12d]",
+                getMaxValue() / outputValueUnitScalingRatio, total));
+        out.println(String.format("#[Buckets = %12d, SubBuckets     = %12d]",
+                _bucketCount, _subBucketCount));
+    }
+    
+    /**
+     * Gets standard deviation of recorded values using the median equivalent
+     * value of each populated sub bucket
+     * @return standard deviation or 0 if no values recorded
+     */
+    public double getStdDeviation(){
+        long total = _totalCount.get();
+        if (total == 0){
+            return 0;
+        }
+        double mean = getMean();
+        double geometricDeviationTotal = 0.0;
+        for (int i = 0; i < _counts.length(); i++){
+            long count = _counts.get(i);
+            if (count == 0){
+                continue;
+            }
+            long lowest = valueFromIndex(i);
+            double deviation = (lowest + (highestEquivalentValue(lowest) - lowest) / 2.0) - mean;
+            geometricDeviationTotal += (deviation * deviation) * count;
+        }
+        return Math.sqrt(geometricDeviationTotal / total);
+    }
+    
+    /**
+     * Gets number of values recorded in buckets at or below <b>value</b>
+     */
+    long getCountAtOrBelow(long value){
+        int targetIndex = getCountsIndex(Math.min(value, _highestTrackableValue));
+        long count = 0;
+        for (int i = 0; i <= targetIndex; i++){
+            count += _counts.get(i);
+        }
+        return count;
+    }
+    
+    int getCountsIndex(long value){
+        int bucketIndex = getBucketIndex(value);
+        int subBucketIndex = (int)(value >>> bucketIndex);
+        int bucketBaseIndex = (bucketIndex + 1) << _subBucketHalfCountMagnitude;
+        return bucketBaseIndex + (subBucketIndex - _subBucketHalfCount);
+    }
+    
+    private int getBucketIndex(long value){
+        int leadingZeroCountBase = 64 - _subBucketHalfCountMagnitude - 1;
+        return leadingZeroCountBase - Long.numberOfLeadingZeros(value | _subBucketMask);
+    }
+    
+    /**
+     * Gets lowest value stored in bucket at <b>index</b> of counts array
+     */
+    long valueFromIndex(int index){
+        int bucketIndex = (index >> _subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (_subBucketHalfCount - 1)) + _subBucketHalfCount;
+        if (bucketIndex < 0){
+            subBucketIndex -= _subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return ((long)subBucketIndex) << bucketIndex;
+    }
+    
+    /**
+     * Gets largest value that lands in the same bucket as <b>value</b>
+     */
+    long highestEquivalentValue(long value){
+        int bucketIndex = getBucketIndex(value);
+        long lowest = (value >>> bucketIndex) << bucketIndex;
+        return lowest + (1L << bucketIndex) - 1;
+    }
+    
+    public int getSignificantDigits(){
+        return _significantDigits;
+    }
+    
+    public long getHighestTrackableValue(){
+        return _highestTrackableValue;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Base class for a named value tracked by {@link MetricsRegistry}.  Names
+ * and labels follow the Prometheus conventions so they can be written
+ * as is by {@link PrometheusTextFormatter}.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public abstract class Metric {
+    
+    public static final String COUNTER_TYPE = "counter";
+    public static final String GAUGE_TYPE = "gauge";
+    public static final String SUMMARY_TYPE = "summary";
+
+    private final String _name;
+    private final String _help;
+    private final Map<String,String> _labels;
+    private final String _key;
+    
+    /**
+     * Constructor
+     * @param name Name of metric ie cws_rest_requests_total
+     * @param help Description of metric
+     * @param labels Alternating label name and value pairs
+     * @throws IllegalArgumentException if <b>name</b> is null or if there
+     *         is an odd number of <b>labels</b>
+     */
+    protected Metric(final String name,final String help,final String... labels){
+        if (name == null){
+            throw new IllegalArgumentException("name cannot be null");
+        }
+        if (labels != null && labels.length % 2 != 0){
+            throw new IllegalArgumentException("labels must be name value pairs");
+        }
+        _name = name;
+        _help = help;
+        LinkedHashMap<String,String> labelMap = new LinkedHashMap<>();
+        if (labels != null){
+            for (int i = 0; i < labels.length; i+=2){
+                labelMap.put(labels[i], labels[i+1]);
+            }
+        }
+        _labels = Collections.unmodifiableMap(labelMap);
+        _key = createKey(name,labels);
+    }
+    
+    /**
+     * Creates unique key for metric with <b>name</b> and <b>labels</b> which
+     * matches the Prometheus sample format ie name{label="value"}
+     * @param name
+     * @param labels
+     * @return 
+     */
+    public static String createKey(final String name,final String... labels){
+        if (labels == null || labels.length == 0){
+            return name;
+        }
+        StringBuilder sb = new StringBuilder(name);
+        sb.append('{');
+        for (int i = 0; i + 1 < labels.length; i+=2){
+            if (i > 0){
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"")
+              .append(escapeLabelValue(labels[i+1])).append('"');
+        }
+        sb.append('}');
+        return sb.toString();
+    }
+    
+    /**
+     * Escapes backslash, double quote, and new line characters in 
+     * <b>value</b> per Prometheus text format
+     * @param value
+     * @return 
+     */
+    public static String escapeLabelValue(final String value){
+        if (value == null){
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public String getHelp() {
+        return _help;
+    }
+
+    public Map<String, String> getLabels() {
+        return _labels;
+    }
+    
+    /**
+     * Gets name with labels ie cws_rest_requests_total{resource="JobRestService.getJobs"}
+     * @return 
+     */
+    public String getKey(){
+        return _key;
+    }
+    
+    /**
+     * Gets Prometheus type of metric
+     * @return {@link #COUNTER_TYPE}, {@link #GAUGE_TYPE}, or {@link #SUMMARY_TYPE}
+     */
+    public abstract String getType();
+}
@@ -0,0 +1,168 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.Map;
+
+/**
+ * Point in time value of a {@link Metric} returned by the
+ * metrics REST endpoint.  Durations are in seconds.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MetricSnapshot {
+    
+    private String _name;
+    private String _type;
+    private Map<String,String> _labels;
+    private Double _value;
+    private Long _count;
+    private Double _sum;
+    private Double _p50;
+    private Double _p95;
+    private Double _p99;
+    private Double _max;
+    
+    public MetricSnapshot(){
+    }
+    
+    /**
+     * Creates snapshot of <b>metric</b> 
+     * @param metric
+     */
+    public MetricSnapshot(Metric metric){
+        _name = metric.getName();
+        _type = metric.getType();
+        if (!metric.getLabels().isEmpty()){
+            _labels = metric.getLabels();
+        }
+        if (metric instanceof Counter){
+            _count = ((Counter)metric).getCount();
+        }
+        else if (metric instanceof Gauge){
+            _value = ((Gauge)metric).getValue();
+        }
+        else if (metric instanceof Timer){
+            Timer t = (Timer)metric;
+            _count = t.getCount();
+            _sum = t.getSumSeconds();
+            _p50 = t.getPercentileSeconds(50.0);
+            _p95 = t.getPercentileSeconds(95.0);
+            _p99 = t.getPercentileSeconds(99.0);
+            _max = t.getMaxSeconds();
+        }
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    public String getType() {
+        return _type;
+    }
+
+    public void setType(String type) {
+        _type = type;
+    }
+
+    public Map<String, String> getLabels() {
+        return _labels;
+    }
+
+    public void setLabels(Map<String, String> labels) {
+        _labels = labels;
+    }
+
+    public Double getValue() {
+        return _value;
+    }
+
+    public void setValue(Double value) {
+        _value = value;
+    }
+
+    public Long getCount() {
+        return _count;
+    }
+
+    public void setCount(Long count) {
+        _count = count;
+    }
+
+    public Double getSum() {
+        return _sum;
+    }
+
+    public void setSum(Double sum) {
+        _sum = sum;
+    }
+
+    public Double getP50() {
+        return _p50;
+    }
+
+    public void setP50(Double p50) {
+        _p50 = p50;
+    }
+
+    public Double getP95() {
+        return _p95;
+    }
+
+    public void setP95(Double p95) {
+        _p95 = p95;
+    }
+
+    public Double getP99() {
+        return _p99;
+    }
+
+    public void setP99(Double p99) {
+        _p99 = p99;
+    }
+
+    public Double getMax() {
+        return _max;
+    }
+
+    public void setMax(Double max) {
+        _max = max;
+    }
+}
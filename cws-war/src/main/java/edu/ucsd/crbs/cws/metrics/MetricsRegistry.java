@@ -0,0 +1,186 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holds {@link Counter}, {@link Gauge}, and {@link Timer} metrics keyed by 
+ * name and labels.  Metrics are created on first use and live for the 
+ * life of the JVM so on App Engine the values are per instance and reset
+ * when an instance is restarted.  Code should use {@link #getDefault()} 
+ * unless it is a test that needs an isolated registry.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class MetricsRegistry {
+
+    private static final Logger _log
+            = Logger.getLogger(MetricsRegistry.class.getName());
+    
+    private static final MetricsRegistry _default = new MetricsRegistry();
+    
+    private final ConcurrentMap<String,Metric> _metrics = new ConcurrentHashMap<>();
+    private final List<MetricsCollector> _collectors = new CopyOnWriteArrayList<>();
+    
+    /**
+     * Gets the registry shared by the whole application
+     * @return 
+     */
+    public static MetricsRegistry getDefault(){
+        return _default;
+    }
+    
+    /**
+     * Gets or creates {@link Counter}
+     * @param name
+     * @param help
+     * @param labels Alternating label name and value pairs
+     * @return 
+     * @throws IllegalStateException if a different type of metric is already
+     *         registered with same name and labels
+     */
+    public Counter counter(final String name,final String help,final String... labels){
+        Metric m = _metrics.get(Metric.createKey(name, labels));
+        if (m == null){
+            m = register(new Counter(name,help,labels));
+        }
+        return cast(m,Counter.class);
+    }
+    
+    /**
+     * Gets or creates {@link Timer}
+     * @param name
+     * @param help
+     * @param labels Alternating label name and value pairs
+     * @return 
+     * @throws IllegalStateException if a different type of metric is already
+     *         registered with same name and labels
+     */
+    public Timer timer(final String name,final String help,final String... labels){
+        Metric m = _metrics.get(Metric.createKey(name, labels));
+        if (m == null){
+            m = register(new Timer(name,help,labels));
+        }
+        return cast(m,Timer.class);
+    }
+    
+    /**
+     * Gets or creates {@link Gauge}
+     * @param name
+     * @param help
+     * @param labels Alternating label name and value pairs
+     * @return 
+     * @throws IllegalStateException if a different type of metric is already
+     *         registered with same name and labels
+     */
+    public Gauge gauge(final String name,final String help,final String... labels){
+        Metric m = _metrics.get(Metric.createKey(name, labels));
+        if (m == null){
+            m = register(new Gauge(name,help,labels));
+        }
+        return cast(m,Gauge.class);
+    }
+    
+    /**
+     * Adds <b>metric</b> unless one with the same key is already registered
+     * @param metric
+     * @return <b>metric</b> or the one already registered
+     */
+    public Metric register(Metric metric){
+        Metric existing = _metrics.putIfAbsent(metric.getKey(), metric);
+        if (existing != null){
+            return existing;
+        }
+        return metric;
+    }
+    
+    /**
+     * Adds <b>collector</b> that will be invoked each time 
+     * {@link #getMetrics()} is called
+     * @param collector 
+     */
+    public void addCollector(MetricsCollector collector){
+        _collectors.add(collector);
+    }
+    
+    /**
+     * Runs all {@link MetricsCollector}s and then returns all the metrics
+     * sorted by key
+     * @return 
+     */
+    public List<Metric> getMetrics(){
+        for (MetricsCollector collector : _collectors){
+            try {
+                collector.collect(this);
+            }
+            catch(Exception ex){
+                _log.log(Level.WARNING,"Caught exception running collector "+
+                        collector.getClass().getName(),ex);
+            }
+        }
+        List<Metric> metrics = new ArrayList<>(_metrics.values());
+        Collections.sort(metrics, new Comparator<Metric>(){
+            @Override
+            public int compare(Metric o1, Metric o2) {
+                return o1.getKey().compareTo(o2.getKey());
+            }
+        });
+        return metrics;
+    }
+    
+    /**
+     * Removes all metrics and collectors
+     */
+    public void clear(){
+        _metrics.clear();
+        _collectors.clear();
+    }
+    
+    private <T extends Metric> T cast(Metric m,Class<T> type){
+        if (!type.isInstance(m)){
+            throw new IllegalStateException(m.getKey()+" is already registered as "+
+                    m.getType());
+        }
+        return type.cast(m);
+    }
+}
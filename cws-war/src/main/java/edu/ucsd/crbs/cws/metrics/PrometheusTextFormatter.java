@@ -0,0 +1,157 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@link Metric}s in the Prometheus text exposition format.  
+ * {@link Timer}s are written as summaries with 0.5, 0.95, and 0.99 
+ * quantiles in seconds.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class PrometheusTextFormatter {
+
+    /**
+     * Content type of the Prometheus text format
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+    
+    /**
+     * Quantiles written for {@link Timer}s
+     */
+    public static final double[] QUANTILES = {0.5, 0.95, 0.99};
+    
+    static final String TMP_SUFFIX = ".tmp";
+    
+    /**
+     * Formats <b>metrics</b> 
+     * @param metrics
+     * @return 
+     */
+    public String format(List<Metric> metrics){
+        //group by name since HELP and TYPE lines can only appear once per name
+        Map<String,List<Metric>> byName = new LinkedHashMap<>();
+        for (Metric m : metrics){
+            List<Metric> group = byName.get(m.getName());
+            if (group == null){
+                group = new ArrayList<>();
+                byName.put(m.getName(), group);
+            }
+            group.add(m);
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String,List<Metric>> entry : byName.entrySet()){
+            Metric first = entry.getValue().get(0);
+            if (first.getHelp() != null){
+                sb.append("# HELP ").append(entry.getKey()).append(' ')
+                  .append(first.getHelp().replace("\\", "\\\\").replace("\n", "\\n"))
+                  .append('\n');
+            }
+            sb.append("# TYPE ").append(entry.getKey()).append(' ')
+              .append(first.getType()).append('\n');
+            for (Metric m : entry.getValue()){
+                appendSamples(sb,m);
+            }
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Writes <b>metrics</b> to <b>file</b> for the node exporter textfile
+     * collector.  Output is written to a temporary file that is then renamed
+     * so the collector never reads a partial file
+     * @param file
+     * @param metrics
+     * @throws Exception 
+     */
+    public void writeTextFile(File file,List<Metric> metrics) throws Exception {
+        File tmpFile = new File(file.getAbsolutePath()+TMP_SUFFIX);
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(tmpFile),StandardCharsets.UTF_8))){
+            w.write(format(metrics));
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), 
+                StandardCopyOption.REPLACE_EXISTING, 
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private void appendSamples(StringBuilder sb,Metric m){
+        if (m instanceof Counter){
+            appendSample(sb,m.getName(),m,null,Long.toString(((Counter)m).getCount()));
+            return;
+        }
+        if (m instanceof Gauge){
+            appendSample(sb,m.getName(),m,null,Double.toString(((Gauge)m).getValue()));
+            return;
+        }
+        if (m instanceof Timer){
+            Timer t = (Timer)m;
+            for (double q : QUANTILES){
+                appendSample(sb,m.getName(),m,Double.toString(q),
+                        Double.toString(t.getPercentileSeconds(q*100.0)));
+            }
+            appendSample(sb,m.getName()+"_sum",m,null,Double.toString(t.getSumSeconds()));
+            appendSample(sb,m.getName()+"_count",m,null,Long.toString(t.getCount()));
+        }
+    }
+    
+    private void appendSample(StringBuilder sb,final String name,Metric m,
+            final String quantile,final String value){
+        List<String> labels = new ArrayList<>();
+        for (Map.Entry<String,String> entry : m.getLabels().entrySet()){
+            labels.add(entry.getKey());
+            labels.add(entry.getValue());
+        }
+        if (quantile != null){
+            labels.add("quantile");
+            labels.add(quantile);
+        }
+        sb.append(Metric.createKey(name, labels.toArray(new String[labels.size()])))
+          .append(' ').append(value).append('\n');
+    }
+}
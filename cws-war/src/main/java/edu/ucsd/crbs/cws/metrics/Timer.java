@@ -0,0 +1,118 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Metric} that tracks count, total, and distribution of durations
+ * using a {@link LatencyHistogram}.  Durations are stored in microseconds
+ * and anything longer then an hour is recorded as an hour.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class Timer extends Metric {
+
+    /**
+     * Longest duration tracked by histogram in microseconds
+     */
+    public static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    
+    /**
+     * Significant digits kept by histogram
+     */
+    public static final int SIGNIFICANT_DIGITS = 2;
+    
+    private final LatencyHistogram _histogram = 
+            new LatencyHistogram(HIGHEST_TRACKABLE_MICROS,SIGNIFICANT_DIGITS);
+    private final AtomicLong _sumMicros = new AtomicLong(0);
+    
+    public Timer(final String name,final String help,final String... labels){
+        super(name,help,labels);
+    }
+    
+    /**
+     * Records a duration
+     * @param durationNanos duration in nanoseconds
+     */
+    public void record(long durationNanos){
+        long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+        _histogram.recordValue(micros);
+        _sumMicros.addAndGet(micros);
+    }
+    
+    /**
+     * Records duration from <b>startNanos</b> until now
+     * @param startNanos value from {@link System#nanoTime()} when the 
+     *        timed operation started
+     */
+    public void recordSince(long startNanos){
+        record(System.nanoTime() - startNanos);
+    }
+    
+    public long getCount(){
+        return _histogram.getTotalCount();
+    }
+    
+    /**
+     * Gets sum of all durations recorded in seconds
+     * @return 
+     */
+    public double getSumSeconds(){
+        return _sumMicros.get() / 1000000.0;
+    }
+    
+    /**
+     * Gets duration at <b>percentile</b> in seconds
+     * @param percentile between 0 and 100
+     * @return 
+     */
+    public double getPercentileSeconds(double percentile){
+        return _histogram.getValueAtPercentile(percentile) / 1000000.0;
+    }
+    
+    /**
+     * Gets longest duration recorded in seconds
+     * @return 
+     */
+    public double getMaxSeconds(){
+        return _histogram.getMaxValue() / 1000000.0;
+    }
+
+    @Override
+    public String getType() {
+        return SUMMARY_TYPE;
+    }
+}
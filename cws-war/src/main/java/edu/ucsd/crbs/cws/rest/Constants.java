@@ -67,6 +67,12 @@ public class Constants {
     public static final String WORKFLOW_ID_PATH_PARAM = "wfid";
     public static final String WORKFLOW_ID_REST_PATH = SLASH+"{"+WORKFLOW_ID_PATH_PARAM+"}";
     
+    public static final String WORKFLOW_CHUNK_HASH_PATH_PARAM = "chunkhash";
+    public static final String WORKFLOW_CHUNK_HASH_REST_PATH = SLASH+"{"+WORKFLOW_CHUNK_HASH_PATH_PARAM+"}";
+    
+    public static final String KIND_PATH_PARAM = "kind";
+    public static final String KIND_REST_PATH = SLASH+"{"+KIND_PATH_PARAM+"}";
+    
     /**
      * REST URL path for Users
      */
@@ -89,6 +95,16 @@ public class Constants {
     
     public static final String WORKSPACEFILES_AS_LIST_REST_PATH = SLASH+"aslist";
     
+    /**
+     * REST URL path for Migrations
+     */
+    public static final String MIGRATIONS_PATH = "migrations";
+    
+    /**
+     * REST path under a Workflow for chunks of its Kepler .kar file
+     */
+    public static final String CHUNKS_PATH = "chunks";
+    
     /**
      * REST path added at end of address like so:  IE https://blah.com/rest/
      */
@@ -99,11 +115,37 @@ public class Constants {
      */
     public static final String COUNT_PATH = "count";
     
+    /**
+     * REST path added to denote a summary of counts is desired
+     */
+    public static final String SUMMARY_PATH = "summary";
+    
+    /**
+     * REST path added to denote a batch of objects is being passed in
+     */
+    public static final String BATCH_PATH = "batch";
+    
     /**
      * REST URL path for status
      */
     public static final String STATUS_PATH = "status";
     
+    /**
+     * REST path added to denote job latency and backlog report is desired
+     */
+    public static final String LATENCY_PATH = "latency";
+    
+    /**
+     * REST path added to denote {@link edu.ucsd.crbs.cws.workflow.Job}s 
+     * created after {@link #SINCE_QUERY_PARAM} are desired
+     */
+    public static final String CREATED_SINCE_PATH = "createdsince";
+    
+    /**
+     * REST path under status for application metrics
+     */
+    public static final String METRICS_PATH = "metrics";
+    
     /**
      * User login query parameter name.  This should be passed to all
      * rest calls
@@ -157,6 +199,12 @@ public class Constants {
     
     public static final String SHOW_DELETED_QUERY_PARAM = "showdeleted";
     
+    /**
+     * Tells REST service to only return the latest version of each 
+     * Workflow
+     */
+    public static final String LATEST_ONLY_QUERY_PARAM = "latestonly";
+    
     
     public static final String ERROR_QUERY_PARAM = "error";
      
@@ -173,6 +221,19 @@ public class Constants {
     
     public static final String ADD_UPLOAD_URL_PARAM = "adduploadurl";
     
+    /**
+     * Tells REST service to reuse the blob of an existing non deleted 
+     * WorkspaceFile with the same md5 instead of generating an upload url.
+     * true for yes false for no
+     */
+    public static final String DEDUPLICATE_QUERY_PARAM = "dedup";
+    
+    /**
+     * Limits WorkspaceFile listing to the non deleted WorkspaceFile with
+     * this md5 and a blob that is owned by the owner query parameter
+     */
+    public static final String MD5_QUERY_PARAM = "md5";
+    
     public static final String SOURCE_JOB_ID_QUERY_PARAM = "sourcejobid";
     
     /**
@@ -187,6 +248,36 @@ public class Constants {
      */
     public static final String RESAVE_QUERY_PARAM = "resave";
     
+    /**
+     * Tells REST service to recalculate summary counts from data store
+     */
+    public static final String REBUILD_QUERY_PARAM = "rebuild";
+    
+    /**
+     * Number of days back to look for Jobs
+     */
+    public static final String DAYS_QUERY_PARAM = "days";
+    
+    /**
+     * Default value for {@link #DAYS_QUERY_PARAM}
+     */
+    public static final int DEFAULT_DAYS = 7;
+    
+    /**
+     * Largest value allowed for {@link #DAYS_QUERY_PARAM}
+     */
+    public static final int MAX_DAYS = 31;
+    
+    /**
+     * Time in milliseconds since epoch
+     */
+    public static final String SINCE_QUERY_PARAM = "since";
+    
+    /**
+     * Number of objects to process at a time
+     */
+    public static final String BATCH_SIZE_QUERY_PARAM = "batchsize";
+    
     /**
      * Tells REST service to permanently delete object (no undo)
      */
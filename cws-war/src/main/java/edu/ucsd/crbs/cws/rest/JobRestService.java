@@ -33,6 +33,7 @@
 
 package edu.ucsd.crbs.cws.rest;
 
+import edu.ucsd.crbs.cws.App;
 import edu.ucsd.crbs.cws.auth.Authenticator;
 import edu.ucsd.crbs.cws.auth.AuthenticatorImpl;
 import edu.ucsd.crbs.cws.auth.Permission;
@@ -42,21 +43,36 @@ import edu.ucsd.crbs.cws.cluster.OutputWorkspaceFileUtilImpl;
 import edu.ucsd.crbs.cws.dao.EventDAO;
 import edu.ucsd.crbs.cws.dao.InputWorkspaceFileLinkDAO;
 import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.VersionConflictException;
+import edu.ucsd.crbs.cws.dao.JobSummaryDAO;
 import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
 import edu.ucsd.crbs.cws.dao.objectify.EventObjectifyDAOImpl;
 import edu.ucsd.crbs.cws.dao.objectify.InputWorkspaceFileLinkObjectifyDAOImpl;
 import edu.ucsd.crbs.cws.dao.objectify.JobObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.dao.objectify.JobSummaryObjectifyDAOImpl;
 import edu.ucsd.crbs.cws.dao.objectify.WorkspaceFileObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitterImpl;
+import edu.ucsd.crbs.cws.gae.JobCreatedTask;
 import edu.ucsd.crbs.cws.log.Event;
 import edu.ucsd.crbs.cws.log.EventBuilder;
 import edu.ucsd.crbs.cws.log.EventBuilderImpl;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import edu.ucsd.crbs.cws.workflow.report.JobLatencyReport;
+import edu.ucsd.crbs.cws.workflow.report.JobLatencyReportFactory;
+import edu.ucsd.crbs.cws.workflow.report.JobLatencyReportFactoryImpl;
+import edu.ucsd.crbs.cws.workflow.report.JobSummary;
 import edu.ucsd.crbs.cws.workflow.validate.JobValidator;
 import edu.ucsd.crbs.cws.workflow.validate.JobValidatorImpl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
@@ -103,6 +119,8 @@ public class JobRestService {
     }
     
     static EventDAO _eventDAO = new EventObjectifyDAOImpl();
+    
+    static JobSummaryDAO _jobSummaryDAO = new JobSummaryObjectifyDAOImpl();
 
     static Authenticator _authenticator = new AuthenticatorImpl();
 
@@ -111,6 +129,10 @@ public class JobRestService {
     static JobValidator _validator = new JobValidatorImpl();
     
     static OutputWorkspaceFileUtil _workspaceFileUtil = new OutputWorkspaceFileUtilImpl(_workspaceFileDAO);
+    
+    static DeferredTaskSubmitter _taskSubmitter = new DeferredTaskSubmitterImpl();
+    
+    static JobLatencyReportFactory _latencyReportFactory = new JobLatencyReportFactoryImpl();
 
     public void setAuthenticator(Authenticator auth){
         _authenticator = auth;
@@ -120,6 +142,20 @@ public class JobRestService {
         _validator = validator;
     }
     
+    public void setJobSummaryDAO(JobSummaryDAO jobSummaryDAO){
+        _jobSummaryDAO = jobSummaryDAO;
+    }
+    
+    /**
+     * Sets {@link DeferredTaskSubmitter} used to run work that follows 
+     * creation of a {@link Job}.  If set to null, as is done when there is
+     * no task queue, the work is done within the request
+     * @param taskSubmitter 
+     */
+    public void setDeferredTaskSubmitter(DeferredTaskSubmitter taskSubmitter){
+        _taskSubmitter = taskSubmitter;
+    }
+    
     /**
      * HTTP GET call that gets a list of all jobs. The list can be filtered
      * with various query parameters (ie parameters that are in the end of the
@@ -272,6 +308,189 @@ public class JobRestService {
         
     }
         
+    /**
+     * Gets number of {@link Job}s by owner and status along with total size
+     * of output {@link WorkspaceFile}s by owner.  Unlike {@link #getJobsCount}
+     * these values are read from counters kept up to date as {@link Job}s 
+     * and {@link WorkspaceFile}s are changed so no query over {@link Job}s 
+     * is needed.
+     * <p/>
+     * If the {@link User} has {@link Permission#LIST_ALL_JOBS} then the 
+     * summary for <b>owner</b> or everyone if <b>owner</b> is null is
+     * returned.  If the {@link User} only has {@link Permission#LIST_THEIR_JOBS}
+     * then only their summary is returned.  Setting <b>rebuild</b> to true
+     * starts a recalculation of all counts and requires {@link Permission#UPDATE_ALL_JOBS}
+     * 
+     * @param owner
+     * @param rebuild
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return 
+     */
+    @GET
+    @Path(Constants.SUMMARY_PATH)
+    @Produces(MediaType.APPLICATION_JSON)
+    public JobSummary getJobSummary(@QueryParam(Constants.OWNER_QUERY_PARAM) final String owner,
+            @QueryParam(Constants.REBUILD_QUERY_PARAM) final Boolean rebuild,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            User user = _authenticator.authenticate(request);
+            Event event = _eventBuilder.createEvent(request, user);
+            _log.info(event.getStringOfLocationData());
+            
+            if (rebuild != null && rebuild == true){
+                if (!user.isAuthorizedTo(Permission.UPDATE_ALL_JOBS)){
+                    throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+                }
+                _jobSummaryDAO.rebuild();
+            }
+            
+            if (user.isAuthorizedTo(Permission.LIST_ALL_JOBS)) {
+                return _jobSummaryDAO.getJobSummary(owner);
+            }
+            
+            if (user.isAuthorizedTo(Permission.LIST_THEIR_JOBS)){
+                if (owner != null && !owner.equals(user.getLoginToRunJobAs())){
+                    throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+                }
+                return _jobSummaryDAO.getJobSummary(user.getLoginToRunJobAs());
+            }
+            throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+        
+    /**
+     * Gets queue wait and run time percentiles by {@link Workflow} and 
+     * owner for {@link Job}s created in the last <b>days</b> days along with
+     * the number of {@link Job}s that have not completed by status and the
+     * age of the oldest {@link Job} not yet completed and not yet submitted
+     * to the scheduler.  Durations are calculated from the status timeline
+     * recorded by the data store for each {@link Job}.
+     * <p/>
+     * If the {@link User} has {@link Permission#LIST_ALL_JOBS} then the 
+     * report covers <b>owner</b> or everyone if <b>owner</b> is null.  If
+     * the {@link User} only has {@link Permission#LIST_THEIR_JOBS} then the 
+     * report only covers their {@link Job}s.
+     * 
+     * @param owner
+     * @param days Number of days back to look, default is 
+     * {@link Constants#DEFAULT_DAYS} and cannot exceed {@link Constants#MAX_DAYS}
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return 
+     */
+    @GET
+    @Path(Constants.LATENCY_PATH)
+    @Produces(MediaType.APPLICATION_JSON)
+    public JobLatencyReport getJobLatencyReport(@QueryParam(Constants.OWNER_QUERY_PARAM) final String owner,
+            @QueryParam(Constants.DAYS_QUERY_PARAM) final Integer days,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            User user = _authenticator.authenticate(request);
+            Event event = _eventBuilder.createEvent(request, user);
+            _log.info(event.getStringOfLocationData());
+            
+            String reportOwner = owner;
+            if (!user.isAuthorizedTo(Permission.LIST_ALL_JOBS)) {
+                if (!user.isAuthorizedTo(Permission.LIST_THEIR_JOBS)){
+                    throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+                }
+                if (owner != null && !owner.equals(user.getLoginToRunJobAs())){
+                    throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+                }
+                reportOwner = user.getLoginToRunJobAs();
+            }
+            int numDays = days == null ? Constants.DEFAULT_DAYS : days;
+            if (numDays <= 0 || numDays > Constants.MAX_DAYS){
+                throw new WebApplicationException(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            Date now = new Date();
+            Date since = new Date(now.getTime() - TimeUnit.DAYS.toMillis(numDays));
+            
+            List<Job> recentJobs = _jobDAO.getJobsCreatedSince(reportOwner,since);
+            List<Job> activeJobs = _jobDAO.getJobs(reportOwner, 
+                    App.NOT_COMPLETED_STATUSES, null, true, true, false);
+            
+            return _latencyReportFactory.getJobLatencyReport(recentJobs,
+                    activeJobs, since, now);
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+        
+    /**
+     * Gets {@link Job}s that are not deleted and were created on or after
+     * <b>since</b> which cannot be more then {@link Constants#MAX_DAYS} days
+     * ago.  {@link Job#getParameters()} are not returned.  Permissions are
+     * handled as in {@link #getJobLatencyReport(java.lang.String, java.lang.Integer, java.lang.String, java.lang.String, java.lang.String, javax.servlet.http.HttpServletRequest)}
+     * 
+     * @param owner
+     * @param since Time in milliseconds since epoch
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return 
+     */
+    @GET
+    @Path(Constants.CREATED_SINCE_PATH)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<Job> getJobsCreatedSince(@QueryParam(Constants.OWNER_QUERY_PARAM) final String owner,
+            @QueryParam(Constants.SINCE_QUERY_PARAM) final Long since,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            User user = _authenticator.authenticate(request);
+            Event event = _eventBuilder.createEvent(request, user);
+            _log.info(event.getStringOfLocationData());
+            
+            String jobOwner = owner;
+            if (!user.isAuthorizedTo(Permission.LIST_ALL_JOBS)) {
+                if (!user.isAuthorizedTo(Permission.LIST_THEIR_JOBS)){
+                    throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+                }
+                if (owner != null && !owner.equals(user.getLoginToRunJobAs())){
+                    throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+                }
+                jobOwner = user.getLoginToRunJobAs();
+            }
+            long earliest = System.currentTimeMillis() - 
+                    TimeUnit.DAYS.toMillis(Constants.MAX_DAYS);
+            if (since == null || since < earliest){
+                throw new WebApplicationException(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            return _jobDAO.getJobsCreatedSince(jobOwner, new Date(since));
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+        
     /**
      * Gets a specific {@link Job} by id.  Return value of this method
      * is dependent on permissions set for <b>userLogin</b> and <b>userToken</b>
@@ -386,7 +605,8 @@ public class JobRestService {
                     return _jobDAO.resave(jobId);
             }
             
-            return _jobDAO.update(jobId, status, estCpu, estRunTime, estDisk,
+            // pass the Job loaded above so it is not loaded again
+            return _jobDAO.update(job, status, estCpu, estRunTime, estDisk,
                         submitDate, startDate, finishDate, submittedToScheduler,
                         schedulerJobId,deleted,error,detailedError);
     
@@ -433,6 +653,8 @@ public class JobRestService {
      * @param resave
      * @param request
      * @return 
+     * @throws WebApplicationException 409 if version of <b>job</b> does not
+     *         match the version in the data store
      */
     @PUT
     @Path(Constants.JOB_ID_REST_PATH)
@@ -467,6 +689,9 @@ public class JobRestService {
         }catch(WebApplicationException wae){
             _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
             throw wae;
+        } catch (VersionConflictException vce){
+            _log.log(Level.WARNING,vce.getMessage());
+            throw new WebApplicationException(HttpServletResponse.SC_CONFLICT);
         } catch (Exception ex) {
             _log.log(Level.SEVERE,"Caught Exception",ex);
             throw new WebApplicationException(ex);
@@ -508,23 +733,21 @@ public class JobRestService {
                 
                 //do insert, but skip the workflow checks cause validation did it 
                 //already
-                
-                //clear start submit and finish dates also set status in queue
-                //and make sure submitted to scheduler is set to false
-                // @TODO should this be put in validator?
-                j.setHasJobBeenSubmittedToScheduler(false);
-                j.setStartDate(null);
-                j.setSubmitDate(null);
-                j.setDownloadURL(null);
-                j.setFinishDate(null);
-                j.setStatus(Job.IN_QUEUE_STATUS);
+                resetJobForInsert(j);
                 
                 Job job = _jobDAO.insert(j,true);
                 
-                _eventDAO.neverComplainInsert(_eventBuilder.setAsCreateJobEvent(event, job));
-                
-                //register workspace file for output of job.
-                _workspaceFileUtil.createAndRegisterJobOutputAsWorkspaceFile(job,null);
+                //save event and register workspace file for output of job
+                //in a task since the caller does not need to wait for them
+                if (_taskSubmitter == null){
+                    _eventDAO.neverComplainInsert(_eventBuilder.setAsCreateJobEvent(event, job));
+                    _workspaceFileUtil.createAndRegisterJobOutputsAsWorkspaceFiles(
+                            Arrays.asList(job));
+                }
+                else {
+                    submitJobCreatedTask(new JobCreatedTask(job,
+                            _eventBuilder.setAsCreateJobEvent(event, job)));
+                }
                 
                 return job;
             }
@@ -538,6 +761,140 @@ public class JobRestService {
         }
     }
     
+    /**
+     * Creates many {@link Job}s by consuming JSON list of {@link Job} objects.
+     * Each {@link Job} is validated, but every distinct {@link Workflow} is
+     * only loaded once.  {@link Job}s that pass validation are inserted along
+     * with their output {@link WorkspaceFile}s in batches.  {@link Job}s that 
+     * fail validation are not inserted and are returned with their errors set.
+     * Once the {@link Job}s are inserted errors saving events or registering
+     * output {@link WorkspaceFile}s are logged and do not fail the request.
+     *
+     * @param jobs
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return <b>jobs</b> in the order passed in with ids set for {@link Job}s
+     *         that were created and errors set for those that were not
+     */
+    @POST
+    @Path(Constants.BATCH_PATH)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<Job> createJobs(List<Job> jobs,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            User user = _authenticator.authenticate(request);
+            Event event = _eventBuilder.createEvent(request, user);
+            _log.info(event.getStringOfLocationData());
+            
+            if (user.isAuthorizedTo(Permission.CREATE_JOB)) {
+                if (jobs == null){
+                    throw new Exception("Jobs passed in is null");
+                }
+                jobs = _validator.validateAll(jobs, user);
+                
+                List<Job> validJobs = new ArrayList<>();
+                for (Job j : jobs){
+                    if (j.getError() != null || j.getParametersWithErrors() != null){
+                        _log.log(Level.WARNING,"Validation of Job failed: {0}",
+                            j.getSummaryOfErrors());
+                        _eventDAO.neverComplainInsert(_eventBuilder.setAsFailedCreateJobEvent(
+                                _eventBuilder.createEvent(request, user), j));
+                        continue;
+                    }
+                    resetJobForInsert(j);
+                    validJobs.add(j);
+                }
+                _log.log(Level.INFO,"{0} of {1} Jobs passed validation",
+                        new Object[]{validJobs.size(),jobs.size()});
+                if (validJobs.isEmpty()){
+                    return jobs;
+                }
+                
+                _jobDAO.insertAll(validJobs,true);
+                
+                // the jobs are saved so nothing below can fail the request
+                // otherwise a retry by the caller would create them again
+                for (Job job : validJobs){
+                    _eventDAO.neverComplainInsert(_eventBuilder.setAsCreateJobEvent(
+                            _eventBuilder.createEvent(request, user), job));
+                }
+                registerJobOutputs(validJobs);
+                
+                return jobs;
+            }
+            throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+    
+    /**
+     * Registers output {@link WorkspaceFile}s for <b>jobs</b> in one batch.
+     * If that fails a {@link JobCreatedTask} is queued for each {@link Job}
+     * to register its output later.  Any errors are logged and not thrown.
+     * @param jobs {@link Job}s already saved in data store
+     */
+    private void registerJobOutputs(List<Job> jobs){
+        try {
+            _workspaceFileUtil.createAndRegisterJobOutputsAsWorkspaceFiles(jobs);
+            return;
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING,"Unable to register output WorkspaceFiles "
+                    + "for "+jobs.size()+" Jobs, queuing a task for each",ex);
+        }
+        for (Job job : jobs){
+            try {
+                submitJobCreatedTask(new JobCreatedTask(job,null));
+            }
+            catch(Exception ex){
+                _log.log(Level.SEVERE,"Unable to register output WorkspaceFile "
+                        + "for Job "+job.getId(),ex);
+            }
+        }
+    }
+    
+    /**
+     * Submits <b>task</b> via {@link DeferredTaskSubmitter} and if that fails
+     * runs <b>task</b> in the current request so the work is not lost
+     * @param task 
+     */
+    private void submitJobCreatedTask(JobCreatedTask task){
+        try {
+            _taskSubmitter.submit(task.getTaskName(), task);
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING,"Unable to submit task, running it now",ex);
+            task.run();
+        }
+    }
+    
+    /**
+     * Clears start, submit and finish dates along with download URL, sets 
+     * status to {@link Job#IN_QUEUE_STATUS} and makes sure submitted to 
+     * scheduler is set to false
+     * @param j 
+     */
+    private void resetJobForInsert(Job j){
+        // @TODO should this be put in validator?
+        j.setHasJobBeenSubmittedToScheduler(false);
+        j.setStartDate(null);
+        j.setSubmitDate(null);
+        j.setDownloadURL(null);
+        j.setFinishDate(null);
+        j.setStatus(Job.IN_QUEUE_STATUS);
+    }
+    
     @DELETE
     @Path(Constants.JOB_ID_REST_PATH)
     @Produces(MediaType.APPLICATION_JSON)
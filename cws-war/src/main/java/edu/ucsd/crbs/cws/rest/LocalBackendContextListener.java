@@ -0,0 +1,145 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.rest;
+
+import edu.ucsd.crbs.cws.auth.AuthenticatorImpl;
+import edu.ucsd.crbs.cws.cluster.OutputWorkspaceFileUtilImpl;
+import edu.ucsd.crbs.cws.dao.local.LocalBackend;
+import edu.ucsd.crbs.cws.workflow.validate.JobValidatorImpl;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Lets the REST services run in any servlet container, without Google App
+ * Engine, by switching them over to a {@link LocalBackend}.  This is only
+ * done if the {@link #DATA_DIR_PARAM} system property or context parameter
+ * is set to the directory the {@link LocalBackend} should store data in,
+ * otherwise this listener does nothing.<p/>
+ * 
+ * Only the REST services under /rest are switched over, the servlets that
+ * upload and download files still need the App Engine blob store.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class LocalBackendContextListener implements ServletContextListener {
+
+    private static final Logger _log
+            = Logger.getLogger(LocalBackendContextListener.class.getName());
+    
+    /**
+     * Name of system property or context parameter that sets the directory
+     * for the {@link LocalBackend}
+     */
+    public static final String DATA_DIR_PARAM = "cws.local.datadir";
+    
+    private LocalBackend _backend;
+    
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        String dataDir = System.getProperty(DATA_DIR_PARAM);
+        if (dataDir == null){
+            dataDir = sce.getServletContext().getInitParameter(DATA_DIR_PARAM);
+        }
+        if (dataDir == null){
+            _log.log(Level.INFO,"{0} not set, using App Engine datastore",
+                    DATA_DIR_PARAM);
+            return;
+        }
+        _backend = new LocalBackend(new File(dataDir));
+        try {
+            _backend.open();
+        }
+        catch(IOException ex){
+            throw new RuntimeException("Unable to open local backend in "+
+                    dataDir,ex);
+        }
+        install(_backend);
+        _log.log(Level.INFO,"REST services using local backend in {0}",dataDir);
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        if (_backend == null){
+            return;
+        }
+        try {
+            _backend.close();
+        }
+        catch(IOException ex){
+            _log.log(Level.WARNING,"Unable to close local backend",ex);
+        }
+        _backend = null;
+    }
+    
+    /**
+     * Points the REST services at the DAOs in <b>backend</b>
+     * @param backend 
+     */
+    static void install(LocalBackend backend){
+        AuthenticatorImpl authenticator = new AuthenticatorImpl();
+        authenticator.setUserDAO(backend.getUserDAO());
+        
+        JobValidatorImpl validator = new JobValidatorImpl();
+        validator.setWorkflowDAO(backend.getWorkflowDAO());
+        
+        JobRestService._inputWorkspaceFileLinkDAO = backend.getInputWorkspaceFileLinkDAO();
+        JobRestService._jobDAO = backend.getJobDAO();
+        JobRestService._workspaceFileDAO = backend.getWorkspaceFileDAO();
+        JobRestService._eventDAO = backend.getEventDAO();
+        JobRestService._jobSummaryDAO = backend.getJobSummaryDAO();
+        JobRestService._authenticator = authenticator;
+        JobRestService._validator = validator;
+        JobRestService._workspaceFileUtil = new OutputWorkspaceFileUtilImpl(
+                backend.getWorkspaceFileDAO());
+        JobRestService._taskSubmitter = null;
+        
+        WorkspaceFileRestService._inputWorkspaceFileLinkDAO = backend.getInputWorkspaceFileLinkDAO();
+        WorkspaceFileRestService._jobDAO = backend.getJobDAO();
+        WorkspaceFileRestService._workspaceFileDAO = backend.getWorkspaceFileDAO();
+        WorkspaceFileRestService._eventDAO = backend.getEventDAO();
+        WorkspaceFileRestService._authenticator = authenticator;
+        
+        UserRestService._userDAO = backend.getUserDAO();
+        UserRestService._eventDAO = backend.getEventDAO();
+        UserRestService._authenticator = authenticator;
+        
+        WorkflowRestService._defaultAuthenticator = authenticator;
+        WorkflowRestService._defaultEventDAO = backend.getEventDAO();
+        WorkflowRestService._defaultWorkflowDAO = backend.getWorkflowDAO();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.rest;
+
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import edu.ucsd.crbs.cws.metrics.Timer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Jersey {@link ResourceFilterFactory} that counts requests and records 
+ * latency for every REST resource method.  Enabled via the 
+ * <b>com.sun.jersey.spi.container.ResourceFilters</b> init parameter in 
+ * web.xml
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class MetricsResourceFilterFactory implements ResourceFilterFactory {
+
+    public static final String REQUEST_SECONDS = "cws_rest_request_seconds";
+    public static final String REQUESTS_TOTAL = "cws_rest_requests_total";
+    public static final String RESOURCE_LABEL = "resource";
+    public static final String STATUS_LABEL = "status";
+    
+    /**
+     * Request property holding {@link System#nanoTime()} when request 
+     * was received
+     */
+    static final String START_PROPERTY = MetricsResourceFilterFactory.class.getName()+".start";
+    
+    private final MetricsRegistry _registry;
+    
+    public MetricsResourceFilterFactory(){
+        this(MetricsRegistry.getDefault());
+    }
+    
+    public MetricsResourceFilterFactory(MetricsRegistry registry){
+        _registry = registry;
+    }
+    
+    @Override
+    public List<ResourceFilter> create(AbstractMethod am) {
+        String resource = am.getResource().getResourceClass().getSimpleName();
+        if (am.getMethod() != null){
+            resource = resource+"."+am.getMethod().getName();
+        }
+        return Collections.<ResourceFilter>singletonList(new MetricsFilter(resource));
+    }
+    
+    /**
+     * Filter created for a single resource method
+     */
+    class MetricsFilter implements ResourceFilter, ContainerRequestFilter, 
+            ContainerResponseFilter {
+        
+        private final String _resource;
+        private final Timer _timer;
+        
+        MetricsFilter(final String resource){
+            _resource = resource;
+            _timer = _registry.timer(REQUEST_SECONDS, 
+                    "Time to handle REST request",RESOURCE_LABEL,resource);
+        }
+        
+        @Override
+        public ContainerRequestFilter getRequestFilter() {
+            return this;
+        }
+
+        @Override
+        public ContainerResponseFilter getResponseFilter() {
+            return this;
+        }
+
+        @Override
+        public ContainerRequest filter(ContainerRequest request) {
+            request.getProperties().put(START_PROPERTY, System.nanoTime());
+            return request;
+        }
+
+        @Override
+        public ContainerResponse filter(ContainerRequest request, 
+                ContainerResponse response) {
+            Object start = request.getProperties().get(START_PROPERTY);
+            if (start instanceof Long){
+                _timer.recordSince((Long)start);
+            }
+            _registry.counter(REQUESTS_TOTAL,"Number of REST requests",
+                    RESOURCE_LABEL,_resource,
+                    STATUS_LABEL,Integer.toString(response.getStatus())).inc();
+            return response;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.rest;
+
+import edu.ucsd.crbs.cws.auth.Authenticator;
+import edu.ucsd.crbs.cws.auth.AuthenticatorImpl;
+import edu.ucsd.crbs.cws.auth.Permission;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.MigrationDAO;
+import edu.ucsd.crbs.cws.dao.objectify.MigrationObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.log.Event;
+import edu.ucsd.crbs.cws.log.EventBuilder;
+import edu.ucsd.crbs.cws.log.EventBuilderImpl;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Rest end point to start and monitor server side resaves of all entities
+ * of a kind.  All calls require a {@link User} with {@link Permission#ALL}
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@Path(Constants.SLASH+Constants.MIGRATIONS_PATH)
+public class MigrationRestService {
+    
+    private static final Logger _log
+            = Logger.getLogger(MigrationRestService.class.getName());
+    
+    static MigrationDAO _migrationDAO = new MigrationObjectifyDAOImpl();
+    
+    static Authenticator _authenticator = new AuthenticatorImpl();
+
+    static EventBuilder _eventBuilder = new EventBuilderImpl();
+    
+    public void setAuthenticator(Authenticator auth){
+        _authenticator = auth;
+    }
+    
+    public void setMigrationDAO(MigrationDAO migrationDAO){
+        _migrationDAO = migrationDAO;
+    }
+    
+    /**
+     * Gets status of all migrations ever started
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return 
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<MigrationStatus> getMigrationStatuses(
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            authenticateAdmin(request);
+            return _migrationDAO.getMigrationStatuses();
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+    
+    /**
+     * Gets status of migration of <b>kind</b>
+     * @param kind
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return 
+     */
+    @GET
+    @Path(Constants.KIND_REST_PATH)
+    @Produces(MediaType.APPLICATION_JSON)
+    public MigrationStatus getMigrationStatus(@PathParam(Constants.KIND_PATH_PARAM) final String kind,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            authenticateAdmin(request);
+            MigrationStatus status = _migrationDAO.getMigrationStatus(kind);
+            if (status == null){
+                throw new WebApplicationException(HttpServletResponse.SC_NOT_FOUND);
+            }
+            return status;
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+    
+    /**
+     * Starts resave of all entities of <b>kind</b> on the server.  Call 
+     * returns right away, use {@link #getMigrationStatus} to follow progress.
+     * @param kind
+     * @param batchSize Number of entities to resave at a time (?batchsize=)
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return 
+     */
+    @POST
+    @Path(Constants.KIND_REST_PATH)
+    @Produces(MediaType.APPLICATION_JSON)
+    public MigrationStatus startMigration(@PathParam(Constants.KIND_PATH_PARAM) final String kind,
+            @QueryParam(Constants.BATCH_SIZE_QUERY_PARAM) final Integer batchSize,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            authenticateAdmin(request);
+            return _migrationDAO.start(kind, batchSize);
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+    
+    private User authenticateAdmin(HttpServletRequest request) throws Exception {
+        User user = _authenticator.authenticate(request);
+        Event event = _eventBuilder.createEvent(request, user);
+        _log.info(event.getStringOfLocationData());
+        if (!user.isAuthorizedTo(Permission.ALL)){
+            throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+        }
+        return user;
+    }
+}
@@ -35,11 +35,25 @@ package edu.ucsd.crbs.cws.rest;
 
 import com.google.appengine.api.capabilities.CapabilitiesService;
 import com.google.appengine.api.capabilities.CapabilitiesServiceFactory;
+import edu.ucsd.crbs.cws.auth.Authenticator;
+import edu.ucsd.crbs.cws.auth.AuthenticatorImpl;
+import edu.ucsd.crbs.cws.auth.Permission;
+import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.log.ServiceStatus;
+import edu.ucsd.crbs.cws.metrics.Metric;
+import edu.ucsd.crbs.cws.metrics.MetricSnapshot;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import edu.ucsd.crbs.cws.metrics.PrometheusTextFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 
@@ -51,6 +65,15 @@ import javax.ws.rs.core.MediaType;
 @Path(Constants.SLASH+Constants.STATUS_PATH)
 public class StatusRestService {
     
+    private static final Logger _log
+            = Logger.getLogger(StatusRestService.class.getName());
+    
+    static Authenticator _authenticator = new AuthenticatorImpl();
+    
+    void setAuthenticator(Authenticator auth){
+        _authenticator = auth;
+    }
+    
     /**
      * Returns {@link ServiceStatus} which contains information about
      * application
@@ -67,5 +90,58 @@ public class StatusRestService {
         
         return new ServiceStatus(service);
     }
-
+    
+    /**
+     * Returns the metrics collected by this instance of the application
+     * such as request counts and latencies, datastore calls, and memcache
+     * hit rates.  Values are per instance and reset on restart.  Requires
+     * {@link Permission#VIEW_METRICS}
+     * @param request
+     * @return List of {@link MetricSnapshot} objects
+     */
+    @GET
+    @Path(Constants.SLASH+Constants.METRICS_PATH)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<MetricSnapshot> getMetrics(@Context HttpServletRequest request) {
+        checkCanViewMetrics(request);
+        List<MetricSnapshot> snapshots = new ArrayList<>();
+        for (Metric m : MetricsRegistry.getDefault().getMetrics()){
+            snapshots.add(new MetricSnapshot(m));
+        }
+        return snapshots;
+    }
+    
+    /**
+     * Returns the same metrics as {@link #getMetrics(javax.servlet.http.HttpServletRequest) }
+     * in Prometheus text format.  Requires {@link Permission#VIEW_METRICS}
+     * @param request
+     * @return 
+     */
+    @GET
+    @Path(Constants.SLASH+Constants.METRICS_PATH)
+    @Produces(MediaType.TEXT_PLAIN)
+    public String getMetricsAsText(@Context HttpServletRequest request) {
+        checkCanViewMetrics(request);
+        return new PrometheusTextFormatter().format(MetricsRegistry.getDefault().getMetrics());
+    }
+    
+    /**
+     * Authenticates caller and verifies they have 
+     * {@link Permission#VIEW_METRICS}
+     * @param request
+     * @throws WebApplicationException with status 401 if caller cannot
+     *         be authenticated or lacks the permission
+     */
+    private void checkCanViewMetrics(HttpServletRequest request) throws WebApplicationException {
+        try {
+            User user = _authenticator.authenticate(request);
+            if (user != null && user.isAuthorizedTo(Permission.VIEW_METRICS)){
+                return;
+            }
+        }
+        catch(Exception ex){
+            _log.log(Level.WARNING, "Unable to authenticate metrics request", ex);
+        }
+        throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+    }
 }
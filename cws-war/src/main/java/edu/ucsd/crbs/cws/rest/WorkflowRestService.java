@@ -37,6 +37,7 @@ import com.google.appengine.api.appidentity.AppIdentityServiceFactory;
 import com.google.appengine.api.blobstore.BlobstoreService;
 import com.google.appengine.api.blobstore.BlobstoreServiceFactory;
 import com.google.appengine.api.blobstore.UploadOptions.Builder;
+import com.google.common.hash.Hashing;
 import edu.ucsd.crbs.cws.auth.Authenticator;
 import edu.ucsd.crbs.cws.auth.AuthenticatorImpl;
 import edu.ucsd.crbs.cws.auth.Permission;
@@ -48,6 +49,12 @@ import edu.ucsd.crbs.cws.dao.objectify.EventObjectifyDAOImpl;
 import edu.ucsd.crbs.cws.dao.objectify.InputWorkspaceFileLinkObjectifyDAOImpl;
 import edu.ucsd.crbs.cws.dao.objectify.JobObjectifyDAOImpl;
 import edu.ucsd.crbs.cws.dao.objectify.WorkflowObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitterImpl;
+import edu.ucsd.crbs.cws.gae.GcsWorkflowChunkStoreImpl;
+import edu.ucsd.crbs.cws.gae.WorkflowChunkExpiryTask;
+import edu.ucsd.crbs.cws.gae.WorkflowChunkStore;
+import edu.ucsd.crbs.cws.io.FileChunkerImpl;
 import edu.ucsd.crbs.cws.log.Event;
 import edu.ucsd.crbs.cws.log.EventBuilder;
 import edu.ucsd.crbs.cws.log.EventBuilderImpl;
@@ -65,6 +72,7 @@ import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
@@ -89,10 +97,27 @@ public class WorkflowRestService {
      EventBuilder _eventBuilder;
      EventDAO _eventDAO;
      WorkflowDAO _workflowDAO;
+     WorkflowChunkStore _workflowChunkStore = new GcsWorkflowChunkStoreImpl();
+     DeferredTaskSubmitter _taskSubmitter = new DeferredTaskSubmitterImpl();
+     
+     /**
+      * If set these are used by new instances in place of the Objectify 
+      * backed ones
+      */
+     static Authenticator _defaultAuthenticator;
+     static EventDAO _defaultEventDAO;
+     static WorkflowDAO _defaultWorkflowDAO;
      
     public WorkflowRestService(){
-        _authenticator = new AuthenticatorImpl();
         _eventBuilder = new EventBuilderImpl();
+        if (_defaultAuthenticator != null && _defaultEventDAO != null &&
+                _defaultWorkflowDAO != null){
+            _authenticator = _defaultAuthenticator;
+            _eventDAO = _defaultEventDAO;
+            _workflowDAO = _defaultWorkflowDAO;
+            return;
+        }
+        _authenticator = new AuthenticatorImpl();
         _eventDAO = new EventObjectifyDAOImpl();
         _workflowDAO = new WorkflowObjectifyDAOImpl((JobDAO)new JobObjectifyDAOImpl(new InputWorkspaceFileLinkObjectifyDAOImpl()));
     }
@@ -116,6 +141,19 @@ public class WorkflowRestService {
         _workflowDAO = wd;
     }
     
+    void setWorkflowChunkStore(WorkflowChunkStore store){
+        _workflowChunkStore = store;
+    }
+    
+    /**
+     * Sets {@link DeferredTaskSubmitter} used to schedule deletion of 
+     * chunks that are never assembled
+     * @param taskSubmitter 
+     */
+    void setDeferredTaskSubmitter(DeferredTaskSubmitter taskSubmitter){
+        _taskSubmitter = taskSubmitter;
+    }
+    
     /**
      * URL path to workflow file servlet
      */
@@ -127,6 +165,7 @@ public class WorkflowRestService {
      * there is an error a 500 response is returned
      *
      * @param showDeleted
+     * @param latestOnly If true only the latest version of each Workflow is returned
      * @param userLogin
      * @param userToken
      * @param userLoginToRunAs
@@ -137,6 +176,7 @@ public class WorkflowRestService {
     @Produces(MediaType.APPLICATION_JSON)
     public List<Workflow> getWorkflows(
             @QueryParam(Constants.SHOW_DELETED_QUERY_PARAM)final Boolean showDeleted,
+            @QueryParam(Constants.LATEST_ONLY_QUERY_PARAM)final Boolean latestOnly,
             @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
             @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
             @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
@@ -147,6 +187,9 @@ public class WorkflowRestService {
             _log.info(event.getStringOfLocationData());
             
             if (user.isAuthorizedTo(Permission.LIST_ALL_WORKFLOWS)) {
+                if (latestOnly != null && latestOnly == true){
+                    return _workflowDAO.getLatestWorkflows(true,showDeleted);
+                }
                 return _workflowDAO.getAllWorkflows(true,showDeleted);
             }
             throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
@@ -375,4 +418,157 @@ public class WorkflowRestService {
         
         
     }
+    
+    /**
+     * Stores a chunk of a Kepler .kar file.  The sha256 of <b>data</b> must
+     * match <b>chunkHash</b> and the chunk cannot be larger then 
+     * {@link FileChunkerImpl#DEFAULT_MAX_CHUNK_SIZE}.  Caller must own the
+     * {@link Workflow}, or be allowed to update all {@link Workflow}s, and 
+     * the {@link Workflow} cannot already have a file.  Chunks not assembled
+     * within {@link WorkflowChunkExpiryTask#EXPIRY_MILLIS} are deleted.
+     * 
+     * @param workflowId
+     * @param chunkHash
+     * @param data
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request 
+     */
+    @PUT
+    @Path(Constants.WORKFLOW_ID_REST_PATH+Constants.SLASH+Constants.CHUNKS_PATH+
+            Constants.WORKFLOW_CHUNK_HASH_REST_PATH)
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public void addWorkflowFileChunk(@PathParam(Constants.WORKFLOW_ID_PATH_PARAM)final Long workflowId,
+            @PathParam(Constants.WORKFLOW_CHUNK_HASH_PATH_PARAM)final String chunkHash,
+            byte[] data,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            User user = _authenticator.authenticate(request);
+            Event event = _eventBuilder.createEvent(request, user);
+            _log.info(event.getStringOfLocationData());
+            
+            if (!user.isAuthorizedTo(Permission.CREATE_WORKFLOW)) {
+                throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+            }
+            if (data == null || data.length == 0 || 
+                    data.length > FileChunkerImpl.DEFAULT_MAX_CHUNK_SIZE){
+                _log.log(Level.WARNING,"Chunk {0} has invalid size",chunkHash);
+                throw new WebApplicationException(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            if (!Hashing.sha256().hashBytes(data).toString().equals(chunkHash)){
+                _log.log(Level.WARNING,"Chunk {0} does not match its hash",chunkHash);
+                throw new WebApplicationException(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            getWorkflowAcceptingChunks(workflowId, user);
+            _workflowChunkStore.saveChunk(workflowId, chunkHash, data);
+            WorkflowChunkExpiryTask task = new WorkflowChunkExpiryTask(workflowId);
+            _taskSubmitter.submit(task.getTaskName(), task,
+                    WorkflowChunkExpiryTask.EXPIRY_MILLIS);
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch(Exception ex){
+             _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+    
+    /**
+     * Takes list of sha256 hashes of the chunks that make up the Kepler .kar 
+     * file for {@link Workflow} in file order.  If any of the chunks have not
+     * been stored, via {@link #addWorkflowFileChunk}, and are not part of the
+     * file of the parent {@link Workflow} their hashes are returned and 
+     * nothing else is done.  Otherwise the chunks are assembled into the 
+     * Kepler .kar file for the {@link Workflow}, its blob key is updated, 
+     * and an empty list is returned.  Same ownership and existing file 
+     * checks as {@link #addWorkflowFileChunk} apply.
+     * 
+     * @param workflowId
+     * @param chunkHashes
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return hashes of chunks that still need to be uploaded
+     */
+    @POST
+    @Path(Constants.WORKFLOW_ID_REST_PATH+Constants.SLASH+Constants.CHUNKS_PATH)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<String> assembleWorkflowFile(@PathParam(Constants.WORKFLOW_ID_PATH_PARAM)final Long workflowId,
+            List<String> chunkHashes,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+        try {
+            User user = _authenticator.authenticate(request);
+            Event event = _eventBuilder.createEvent(request, user);
+            _log.info(event.getStringOfLocationData());
+            
+            if (!user.isAuthorizedTo(Permission.CREATE_WORKFLOW)) {
+                throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+            }
+            if (chunkHashes == null || chunkHashes.isEmpty()){
+                throw new WebApplicationException(HttpServletResponse.SC_BAD_REQUEST);
+            }
+            Workflow w = getWorkflowAcceptingChunks(workflowId, user);
+            
+            List<String> missingHashes = _workflowChunkStore.getMissingChunks(workflowId,
+                    w.getParentWorkflowId(), chunkHashes);
+            if (missingHashes.isEmpty() == false){
+                _log.log(Level.INFO,"{0} of {1} chunks missing for workflow {2}",
+                        new Object[]{missingHashes.size(),chunkHashes.size(),
+                            workflowId});
+                return missingHashes;
+            }
+            String blobKey = _workflowChunkStore.assemble(workflowId, 
+                    w.getParentWorkflowId(), chunkHashes);
+            _workflowDAO.updateBlobKey(workflowId, blobKey);
+            return missingHashes;
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch(Exception ex){
+             _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+    
+    /**
+     * Loads {@link Workflow} <b>workflowId</b> without fetching drop down 
+     * values and verifies <b>user</b> can upload its file
+     * @return Workflow
+     * @throws WebApplicationException 404 if not found, 401 if <b>user</b> 
+     *         does not own the {@link Workflow} and lacks 
+     *         {@link Permission#UPDATE_ALL_WORKFLOWS}, 409 if the 
+     *         {@link Workflow} already has a file
+     */
+    private Workflow getWorkflowAcceptingChunks(final Long workflowId,
+            User user) throws Exception {
+        if (workflowId == null){
+            throw new WebApplicationException(HttpServletResponse.SC_BAD_REQUEST);
+        }
+        Workflow w = _workflowDAO.getWorkflowByIdWithoutDropDownFetch(workflowId);
+        if (w == null){
+            throw new WebApplicationException(HttpServletResponse.SC_NOT_FOUND);
+        }
+        if (!user.isAuthorizedTo(Permission.UPDATE_ALL_WORKFLOWS)){
+            if (w.getOwner() == null || 
+                    !w.getOwner().equals(user.getLoginToRunJobAs())){
+                _log.log(Level.WARNING,"{0} does not own workflow {1}",
+                        new Object[]{user.getLoginToRunJobAs(),workflowId});
+                throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+            }
+        }
+        if (w.getBlobKey() != null){
+            _log.log(Level.WARNING,"Workflow {0} already has a file",workflowId);
+            throw new WebApplicationException(HttpServletResponse.SC_CONFLICT);
+        }
+        return w;
+    }
 }
@@ -54,6 +54,7 @@ import edu.ucsd.crbs.cws.log.EventBuilderImpl;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -145,13 +146,14 @@ public class WorkspaceFileRestService {
             @QueryParam(Constants.WS_FAILED_QUERY_PARAM)final Boolean isFailed,
             @QueryParam(Constants.SYNCED_QUERY_PARAM) final Boolean synced,
             @QueryParam(Constants.SHOW_DELETED_QUERY_PARAM) final Boolean showDeleted,
+            @QueryParam(Constants.MD5_QUERY_PARAM) final String md5,
             @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
             @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
             @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
             @Context HttpServletRequest request) {
         
         return getWorkspaceFileList(owner,workspaceFileIdList,sourceJobId,type,isFailed,synced,showDeleted,
-                userLogin,userToken,userLoginToRunAs,request);
+                md5,userLogin,userToken,userLoginToRunAs,request);
     }
     
     private List<WorkspaceFile> getWorkspaceFileList(final String owner,
@@ -161,6 +163,7 @@ public class WorkspaceFileRestService {
             final Boolean isFailed,
             final Boolean synced,
             final Boolean showDeleted,
+            final String md5,
             final String userLogin,
             final String userToken,
             final String userLoginToRunAs,
@@ -172,6 +175,9 @@ public class WorkspaceFileRestService {
 
             
             if (user.isAuthorizedTo(Permission.LIST_ALL_WORKSPACEFILES)) {
+                if (md5 != null){
+                    return getWorkspaceFileWithBlobByMd5(md5,owner);
+                }
                 if (sourceJobId != null){
                     return _workspaceFileDAO.getWorkspaceFilesBySourceJobId(sourceJobId);
                 }
@@ -189,6 +195,10 @@ public class WorkspaceFileRestService {
                 if (owner != null && !owner.equals(user.getLoginToRunJobAs())){
                     throw new Exception(user.getLoginToRunJobAs()+" cannot list workspace files owned by "+owner);
                 }
+                if (md5 != null){
+                    return getWorkspaceFileWithBlobByMd5(md5,
+                            user.getLoginToRunJobAs());
+                }
                 
                 if (workspaceFileIdList == null){
                     _log.log(Level.INFO,"calling getWorkspaceFiles");
@@ -225,7 +235,7 @@ public class WorkspaceFileRestService {
         
         List<WorkspaceFile> workspaceFileList = getWorkspaceFileList(owner,
                 workspaceFileIdList,sourceJobId,type,isFailed,synced,showDeleted,
-                userLogin,userToken,userLoginToRunAs,request);
+                null,userLogin,userToken,userLoginToRunAs,request);
         if (workspaceFileList == null || workspaceFileList.isEmpty()){
             return "";
         }
@@ -316,9 +326,15 @@ public class WorkspaceFileRestService {
     }
     
     /**
-     * Creates a new {@link WorkspaceFile} in the data store
+     * Creates a new {@link WorkspaceFile} in the data store.  If <b>dedup</b>
+     * is <code>true</code> and {@link WorkspaceFile#getMd5()} is set then
+     * the blob of an existing non deleted {@link WorkspaceFile} with the same
+     * md5 is reused.  In that case {@link WorkspaceFile#getBlobKey()} is set 
+     * in the result and no upload url is generated since there is nothing 
+     * to upload.
      * @param workspaceFile
      * @param addUploadURL
+     * @param dedup
      * @param userLogin
      * @param userToken
      * @param userLoginToRunAs
@@ -330,6 +346,7 @@ public class WorkspaceFileRestService {
     @Produces(MediaType.APPLICATION_JSON)
     public WorkspaceFile createWorkspaceFile(WorkspaceFile workspaceFile,
             @QueryParam(Constants.ADD_UPLOAD_URL_PARAM) final Boolean addUploadURL,
+            @QueryParam(Constants.DEDUPLICATE_QUERY_PARAM) final Boolean dedup,
             @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
             @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
             @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
@@ -347,8 +364,13 @@ public class WorkspaceFileRestService {
                 if (!user.isAuthorizedTo(Permission.CREATE_ANY_WORKSPACEFILE)){
                     workspaceFile.setOwner(user.getLoginToRunJobAs());
                 }
+                boolean reusedBlob = false;
+                if (dedup != null && dedup == true){
+                    reusedBlob = setBlobKeyFromWorkspaceFileWithSameMd5(workspaceFile);
+                }
                 WorkspaceFile resWorkspaceFile = _workspaceFileDAO.insert(workspaceFile,false);
-                if (addUploadURL == null || addUploadURL == true){
+                if (reusedBlob == false && 
+                        (addUploadURL == null || addUploadURL == true)){
                     resWorkspaceFile = setFileUploadURL(resWorkspaceFile);
                 }
                 _eventDAO.neverComplainInsert(_eventBuilder.setAsCreateWorkspaceFileEvent(event, 
@@ -366,6 +388,59 @@ public class WorkspaceFileRestService {
         }
     }
     
+    /**
+     * Creates all the {@link WorkspaceFile}s passed in with a single batch
+     * insert.  No upload urls are generated.  If the {@link User} lacks
+     * {@link Permission#CREATE_ANY_WORKSPACEFILE} the owner of every 
+     * {@link WorkspaceFile} is set to the {@link User}
+     * @param workspaceFiles
+     * @param userLogin
+     * @param userToken
+     * @param userLoginToRunAs
+     * @param request
+     * @return <b>workspaceFiles</b> with ids set
+     */
+    @POST
+    @Path(Constants.BATCH_PATH)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<WorkspaceFile> createWorkspaceFiles(List<WorkspaceFile> workspaceFiles,
+            @QueryParam(Constants.USER_LOGIN_PARAM) final String userLogin,
+            @QueryParam(Constants.USER_TOKEN_PARAM) final String userToken,
+            @QueryParam(Constants.USER_LOGIN_TO_RUN_AS_PARAM) final String userLoginToRunAs,
+            @Context HttpServletRequest request) {
+
+         try {
+            User user = _authenticator.authenticate(request);
+            Event event = _eventBuilder.createEvent(request, user);
+            _log.info(event.getStringOfLocationData());
+            if (user.isAuthorizedTo(Permission.CREATE_WORKSPACEFILE) ||
+                user.isAuthorizedTo(Permission.CREATE_ANY_WORKSPACEFILE)) {
+                if (workspaceFiles == null){
+                    throw new Exception("WorkspaceFiles passed in is null");
+                }
+                if (!user.isAuthorizedTo(Permission.CREATE_ANY_WORKSPACEFILE)){
+                    for (WorkspaceFile wsf : workspaceFiles){
+                        wsf.setOwner(user.getLoginToRunJobAs());
+                    }
+                }
+                List<WorkspaceFile> resWorkspaceFiles = _workspaceFileDAO.insertAll(workspaceFiles);
+                for (WorkspaceFile wsf : resWorkspaceFiles){
+                    _eventDAO.neverComplainInsert(_eventBuilder.setAsCreateWorkspaceFileEvent(
+                            _eventBuilder.createEvent(request, user), wsf));
+                }
+                return resWorkspaceFiles;
+            }
+            throw new WebApplicationException(HttpServletResponse.SC_UNAUTHORIZED);
+        }catch(WebApplicationException wae){
+            _log.log(Level.SEVERE,"Caught WebApplicationException",wae);
+            throw wae;
+        } catch (Exception ex) {
+            _log.log(Level.SEVERE,"Caught Exception",ex);
+            throw new WebApplicationException(ex);
+        }
+    }
+    
     /**
      * Updates an existing {@link WorkspaceFile} with id of <b>workspaceFileId</b>
      * 
@@ -567,6 +642,52 @@ public class WorkspaceFileRestService {
         }
     }
     
+    /**
+     * Gets non deleted {@link WorkspaceFile} owned by <b>owner</b> with
+     * <b>md5</b> whose contents are in the blob store
+     * @param md5
+     * @param owner
+     * @return List with matching {@link WorkspaceFile} or empty list if none
+     * @throws Exception 
+     */
+    private List<WorkspaceFile> getWorkspaceFileWithBlobByMd5(final String md5,
+            final String owner) throws Exception {
+        List<WorkspaceFile> wsfList = new ArrayList<>();
+        WorkspaceFile wsf = _workspaceFileDAO.getWorkspaceFileWithBlobByMd5(md5, owner);
+        if (wsf != null){
+            wsfList.add(wsf);
+        }
+        return wsfList;
+    }
+    
+    /**
+     * Looks for a non deleted {@link WorkspaceFile} with the same md5 and 
+     * owner as <b>wsf</b> whose contents are in the blob store and if found 
+     * sets the blob key and size of <b>wsf</b> to match.  Blobs are never
+     * shared between owners since the md5 comes from the client.
+     * @param wsf
+     * @return <code>true</code> if a matching blob was found otherwise 
+     *         <code>false</code>
+     * @throws Exception 
+     */
+    private boolean setBlobKeyFromWorkspaceFileWithSameMd5(WorkspaceFile wsf) throws Exception {
+        if (wsf.getMd5() == null || wsf.getOwner() == null || wsf.getDir() == true){
+            return false;
+        }
+        WorkspaceFile existing = _workspaceFileDAO.getWorkspaceFileWithBlobByMd5(wsf.getMd5(),
+                wsf.getOwner());
+        if (existing == null){
+            return false;
+        }
+        _log.log(Level.INFO, "Reusing blob of WorkspaceFile {0} with md5 {1}",
+                new Object[]{existing.getId(),wsf.getMd5()});
+        wsf.setBlobKey(existing.getBlobKey());
+        if (existing.getSize() != null){
+            wsf.setSize(existing.getSize());
+        }
+        return true;
+    }
+    
     /**
      * Generates and sets an upload url in <b>wsf</b> passed in
      * @param wsf
@@ -39,15 +39,22 @@ import com.googlecode.objectify.annotation.Cache;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
 import com.googlecode.objectify.annotation.Ignore;
+import com.googlecode.objectify.annotation.IgnoreSave;
 import com.googlecode.objectify.annotation.Index;
 import com.googlecode.objectify.annotation.Load;
+import com.googlecode.objectify.annotation.OnLoad;
+import com.googlecode.objectify.annotation.OnSave;
 import com.googlecode.objectify.condition.IfFalse;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
 /**
- * Represents an invocation of a given {@link Workflow}
+ * Represents an invocation of a given {@link Workflow}.  Parameters, 
+ * detailed error, help text, and phase list are stored separately in 
+ * {@link JobDetails} by the data store.
  *
  * @author Christopher Churas <churas@ncmir.ucsd.edu>
  */
@@ -96,6 +103,23 @@ public class Job {
      */
     public static final String PAUSED_STATUS = "Paused";
 
+    /**
+     * Statuses of a {@link Job} that has not completed or failed.  
+     * {@link Job}s in one of these statuses are flagged as active, see 
+     * {@link #isActive()}
+     */
+    public static final List<String> ACTIVE_STATUSES = 
+            Collections.unmodifiableList(Arrays.asList(IN_QUEUE_STATUS, 
+                    PAUSED_STATUS, PENDING_STATUS, RUNNING_STATUS,
+                    WORKSPACE_SYNC_STATUS));
+
+    /**
+     * Version of the stored representation of a {@link Job}.  Bumped 
+     * whenever all {@link Job}s need to be resaved.  Version 1 adds the
+     * {@link #isActive()} flag
+     */
+    public static final int SCHEMA_VERSION = 1;
+
     /**
      * Empty class that is used with Objectify queries to skip retrieval of the
      * Workflow object associated with this Job
@@ -106,30 +130,33 @@ public class Job {
     @Id private Long _id;
     @Index @Load(Job.Everything.class) private Ref<Workflow> _workflow;
     @Ignore private Workflow _rawWorkflow;
+    private WorkflowSummary _workflowSummary;
+    @Ignore private boolean _workflowSummaryOnly;
 
     private String _name;
     
     @Index private String _owner;
     @Index private String _status;
+    @Index private boolean _active;
     @Index({IfFalse.class})
     
     private boolean _hasJobBeenSubmittedToScheduler;
     private String _schedulerJobId;
     
     private long _estimatedCpuInSeconds;
-    private String _estimatedCpuInSecondsHelp;
+    @IgnoreSave private String _estimatedCpuInSecondsHelp;
     
     private long _estimatedDiskInBytes;
-    private String _estimatedDiskInBytesHelp;
+    @IgnoreSave private String _estimatedDiskInBytesHelp;
     
     private long _estimatedWallTimeInSeconds;
-    private String _estimatedWallTimeInSecondsHelp;
+    @IgnoreSave private String _estimatedWallTimeInSecondsHelp;
     
     private long _diskSpaceInBytes;
-    private String _diskSpaceInBytesHelp;
+    @IgnoreSave private String _diskSpaceInBytesHelp;
     
     private String _cpuSecondsPerCluster;
-    private String _cpuSecondsPerClusterHelp;
+    @IgnoreSave private String _cpuSecondsPerClusterHelp;
     
     @Index private Date _createDate;
     private Date _submitDate;
@@ -138,16 +165,20 @@ public class Job {
     
     @Index private boolean _deleted;
     private String _downloadURL;
-    private List<Parameter> _parameters;
+    @IgnoreSave private List<Parameter> _parameters;
     private String _error;
-    private String _detailedError;
+    @IgnoreSave private String _detailedError;
     
     private String _phase;
-    private String _phaseHelp;
-    private String _phaseList;
-    private String _phaseListHelp;
+    @IgnoreSave private String _phaseHelp;
+    @IgnoreSave private String _phaseList;
+    @IgnoreSave private String _phaseListHelp;
+    
+    private List<JobStatusChange> _statusTimeline;
+    private long _version;
     
     @Ignore private List<ParameterWithError> _parametersWithErrors;
+    @Ignore private boolean _legacyDetails;
 
     /**
      * This will eventually hold a summary of compute and disk consumed by this
@@ -167,6 +198,7 @@ public class Job {
     }
 
     public void setWorkflow(Workflow workflow) {
+        _workflowSummaryOnly = false;
         if (workflow == null) {
             _workflow = null;
             _rawWorkflow = null;
@@ -178,7 +210,22 @@ public class Job {
         _rawWorkflow = workflow;
     }
 
+    /**
+     * Gets the {@link Workflow} for this {@link Job}.  If 
+     * {@link #setWorkflowSummaryOnly(boolean)} was set to <code>true</code> 
+     * a {@link Workflow} with only id, name, and version from 
+     * {@link #getWorkflowSummary()} is returned and nothing is loaded from 
+     * the data store
+     * @return 
+     */
     public Workflow getWorkflow() {
+        if (_workflowSummaryOnly == true && _workflowSummary != null){
+            Workflow stub = new Workflow();
+            stub.setId(_workflowSummary.getId());
+            stub.setName(_workflowSummary.getName());
+            stub.setVersion(_workflowSummary.getVersion());
+            return stub;
+        }
         if (REFS_ENABLED == false) {
             return _rawWorkflow;
         }
@@ -188,6 +235,53 @@ public class Job {
         return _workflow.get();
     }
 
+    /**
+     * Gets id of {@link Workflow} for this {@link Job} without loading
+     * the {@link Workflow} from the data store
+     * @return id or null if no {@link Workflow} is set
+     */
+    @JsonIgnore
+    public Long getWorkflowId() {
+        if (REFS_ENABLED == false) {
+            return _rawWorkflow == null ? null : _rawWorkflow.getId();
+        }
+        if (_workflow == null) {
+            return null;
+        }
+        return _workflow.getKey().getId();
+    }
+
+    /**
+     * Gets id, name, and version of {@link Workflow} for this {@link Job} as
+     * it was when the {@link Job} was inserted into the data store
+     * @return {@link WorkflowSummary} or null if not set
+     */
+    public WorkflowSummary getWorkflowSummary() {
+        return _workflowSummary;
+    }
+
+    public void setWorkflowSummary(WorkflowSummary workflowSummary) {
+        _workflowSummary = workflowSummary;
+    }
+
+    /**
+     * Tells {@link #getWorkflow()} to return a {@link Workflow} built from
+     * {@link #getWorkflowSummary()} instead of loading the full 
+     * {@link Workflow}.  Used for listings of {@link Job}s.  This is reset
+     * by {@link #setWorkflow(edu.ucsd.crbs.cws.workflow.Workflow)} and 
+     * has no effect if there is no {@link WorkflowSummary}
+     * @param workflowSummaryOnly 
+     */
+    @JsonIgnore
+    public void setWorkflowSummaryOnly(boolean workflowSummaryOnly) {
+        _workflowSummaryOnly = workflowSummaryOnly;
+    }
+
+    @JsonIgnore
+    public boolean isWorkflowSummaryOnly() {
+        return _workflowSummaryOnly;
+    }
+
     public void setName(final String name) {
         _name = name;
     }
@@ -206,12 +300,67 @@ public class Job {
 
     public void setStatus(final String status) {
         _status = status;
+        _active = isActiveStatus(status);
     }
 
     public String getStatus() {
         return _status;
     }
 
+    /**
+     * Denotes whether {@link #getStatus()} is in {@link #ACTIVE_STATUSES}.
+     * This is stored as an indexed property so queries for {@link Job}s 
+     * that have not completed can use a single equality filter instead of
+     * an <b>in</b> filter on status.  The value is set by 
+     * {@link #setStatus(java.lang.String)} and recomputed every time the
+     * {@link Job} is saved so resaving existing {@link Job}s populates it.
+     * @return true if {@link Job} has not completed or failed
+     */
+    @JsonIgnore
+    public boolean isActive() {
+        return _active;
+    }
+
+    /**
+     * @param status
+     * @return true if <b>status</b> is in {@link #ACTIVE_STATUSES}
+     */
+    public static boolean isActiveStatus(final String status) {
+        return status != null && ACTIVE_STATUSES.contains(status);
+    }
+
+    /**
+     * Denotes whether this {@link Job} was loaded from an entity saved 
+     * before parameters, detailed error, help text, and phase list were 
+     * moved to {@link JobDetails}.  These fields are still loaded from 
+     * such entities but never saved in the {@link Job} entity so the 
+     * data store should save a {@link JobDetails} along with this 
+     * {@link Job} when this is true.
+     * @return true if fields stored in {@link JobDetails} were loaded 
+     * from the {@link Job} entity
+     */
+    @JsonIgnore
+    public boolean hasLegacyDetails() {
+        return _legacyDetails;
+    }
+
+    @OnLoad
+    void checkForLegacyDetails() {
+        _legacyDetails = _parameters != null || _detailedError != null ||
+                _estimatedCpuInSecondsHelp != null || 
+                _estimatedDiskInBytesHelp != null ||
+                _estimatedWallTimeInSecondsHelp != null ||
+                _diskSpaceInBytesHelp != null || 
+                _cpuSecondsPerClusterHelp != null ||
+                _phaseHelp != null || _phaseList != null || 
+                _phaseListHelp != null;
+    }
+
+    @OnSave
+    void updateActive() {
+        _active = isActiveStatus(_status);
+    }
+
     public void setSchedulerJobId(final String jobId) {
         _schedulerJobId = jobId;
     }
@@ -438,6 +587,184 @@ public class Job {
         this._phaseListHelp = _phaseListHelp;
     }
     
+    /**
+     * Gets list of status changes for this {@link Job} in the order they 
+     * occurred.  This list is maintained by the data store and any value
+     * set by a client is ignored.
+     * @return List of {@link JobStatusChange} objects or null if none
+     */
+    public List<JobStatusChange> getStatusTimeline() {
+        return _statusTimeline;
+    }
+
+    public void setStatusTimeline(List<JobStatusChange> statusTimeline) {
+        _statusTimeline = statusTimeline;
+    }
+    
+    /**
+     * Gets number of times this {@link Job} has been saved to the data store.
+     * This is maintained by the data store and used to detect when a 
+     * {@link Job} passed to an update was changed by someone else after it 
+     * was loaded.  A {@link Job} passed to 
+     * {@link edu.ucsd.crbs.cws.dao.JobDAO#update(edu.ucsd.crbs.cws.workflow.Job)}
+     * must have the version it was loaded with or the update is rejected.
+     * @return version
+     */
+    public long getVersion() {
+        return _version;
+    }
+
+    public void setVersion(long version) {
+        _version = version;
+    }
+    
+    /**
+     * Updates <b>this</b> {@link Job} with any of the values passed in that 
+     * are <b>non</b> <code>null</code> and differ from the current values.
+     * Dates are in milliseconds since epoch.
+     * @param status
+     * @param estCpu
+     * @param estWallTime
+     * @param estDisk
+     * @param submitDate
+     * @param startDate
+     * @param finishDate
+     * @param submittedToScheduler
+     * @param schedulerJobId
+     * @param deleted
+     * @param error
+     * @param detailedError
+     * @return <b><code>true</code></b> if <b><code>this</code></b> object 
+     * was changed otherwise <b><code>false</code></b>
+     */
+    @JsonIgnore
+    public boolean updateWithChanges(final String status, final Long estCpu,
+            final Long estWallTime, final Long estDisk, final Long submitDate,
+            final Long startDate, final Long finishDate,
+            final Boolean submittedToScheduler,
+            final String schedulerJobId,
+            final Boolean deleted,
+            final String error,
+            final String detailedError){
+        boolean updated = false;
+        if (status != null && !status.equals(getStatus())){
+            setStatus(status);
+            updated = true;
+        }
+        if (estCpu != null && estCpu != getEstimatedCpuInSeconds()){
+            setEstimatedCpuInSeconds(estCpu);
+            updated = true;
+        }
+        if (estWallTime != null && 
+                estWallTime != getEstimatedWallTimeInSeconds()){
+            setEstimatedWallTimeInSeconds(estWallTime);
+            updated = true;
+        }
+        if (estDisk != null && estDisk != getEstimatedDiskInBytes()){
+            setEstimatedDiskInBytes(estDisk);
+            updated = true;
+        }
+        if (submitDate != null && !isSameTime(getSubmitDate(),submitDate)){
+            setSubmitDate(new Date(submitDate));
+            updated = true;
+        }
+        if (startDate != null && !isSameTime(getStartDate(),startDate)){
+            setStartDate(new Date(startDate));
+            updated = true;
+        }
+        if (finishDate != null && !isSameTime(getFinishDate(),finishDate)){
+            setFinishDate(new Date(finishDate));
+            updated = true;
+        }
+        if (submittedToScheduler != null && 
+                submittedToScheduler != getHasJobBeenSubmittedToScheduler()){
+            setHasJobBeenSubmittedToScheduler(submittedToScheduler);
+            updated = true;
+        }
+        if (schedulerJobId != null && 
+                !schedulerJobId.equals(getSchedulerJobId())){
+            setSchedulerJobId(schedulerJobId);
+            updated = true;
+        }
+        if (deleted != null && deleted != isDeleted()){
+            setDeleted(deleted);
+            updated = true;
+        }
+        if (error != null && !error.equals(getError())){
+            setError(error);
+            updated = true;
+        }
+        if (detailedError != null && 
+                !detailedError.equals(getDetailedError())){
+            setDetailedError(detailedError);
+            updated = true;
+        }
+        return updated;
+    }
+    
+    private boolean isSameTime(final Date date,final long time){
+        return date != null && date.getTime() == time;
+    }
+    
+    /**
+     * Appends a {@link JobStatusChange} to the status timeline unless 
+     * <b>status</b> is null or matches the last status in the timeline
+     * @param status
+     * @param date 
+     */
+    @JsonIgnore
+    public void addStatusChange(final String status,final Date date){
+        if (status == null){
+            return;
+        }
+        if (_statusTimeline == null){
+            _statusTimeline = new ArrayList<>();
+        }
+        else if (!_statusTimeline.isEmpty() && 
+                status.equals(_statusTimeline.get(_statusTimeline.size()-1).getStatus())){
+            return;
+        }
+        _statusTimeline.add(new JobStatusChange(status,date));
+    }
+    
+    /**
+     * Replaces the status timeline of this {@link Job} with a copy of the
+     * one in <b>previousJob</b> and then adds the current status via
+     * {@link #addStatusChange(java.lang.String, java.util.Date)}
+     * @param previousJob {@link Job} as it is in the data store or null
+     * if this {@link Job} is new
+     * @param date 
+     */
+    @JsonIgnore
+    public void updateStatusTimeline(Job previousJob,final Date date){
+        if (previousJob == null || previousJob.getStatusTimeline() == null){
+            _statusTimeline = null;
+        }
+        else {
+            _statusTimeline = new ArrayList<>(previousJob.getStatusTimeline());
+        }
+        addStatusChange(_status,date);
+    }
+    
+    /**
+     * Gets date this {@link Job} first entered <b>status</b> by looking at 
+     * status timeline
+     * @param status
+     * @return Date or null if not found
+     */
+    @JsonIgnore
+    public Date getDateStatusEntered(final String status){
+        if (_statusTimeline == null || status == null){
+            return null;
+        }
+        for (JobStatusChange change : _statusTimeline){
+            if (status.equals(change.getStatus())){
+                return change.getDate();
+            }
+        }
+        return null;
+    }
+    
     /**
      * Adds a {@link ParameterWithError} to error list. If list is null a new
      * one is created
@@ -0,0 +1,186 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+package edu.ucsd.crbs.cws.workflow;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Cache;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Parent;
+import com.googlecode.objectify.annotation.Serialize;
+import java.util.List;
+
+/**
+ * Holds the large, rarely changing fields of a {@link Job}, namely
+ * parameters, detailed error, help text, and phase list.  These are 
+ * stored in a child entity of the {@link Job} so status updates and 
+ * listings only read and write the small {@link Job} entity.  Only the
+ * parameters, detailed error, and phase list, which can be large, are
+ * compressed.  The short help text is stored as is.
+ * The details are loaded only when needed, such as for a single 
+ * {@link Job} view or submission of the {@link Job}.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@Entity
+@Cache
+public class JobDetails {
+    
+    /**
+     * Id of the only {@link JobDetails} under each {@link Job}
+     */
+    public static final long DETAILS_ID = 1L;
+    
+    @Parent private Key<Job> _job;
+    @Id private Long _id;
+    
+    @Serialize(zip=true) private List<Parameter> _parameters;
+    @Serialize(zip=true) private String _detailedError;
+    private String _estimatedCpuInSecondsHelp;
+    private String _estimatedDiskInBytesHelp;
+    private String _estimatedWallTimeInSecondsHelp;
+    private String _diskSpaceInBytesHelp;
+    private String _cpuSecondsPerClusterHelp;
+    private String _phaseHelp;
+    @Serialize(zip=true) private String _phaseList;
+    private String _phaseListHelp;
+    
+    public JobDetails(){
+        
+    }
+    
+    /**
+     * Creates {@link JobDetails} for <b>job</b> copying over the fields
+     * stored in this entity
+     * @param job {@link Job} which must have an id
+     * @throws NullPointerException if <b>job</b> or its id is null
+     */
+    public JobDetails(Job job){
+        if (job == null || job.getId() == null){
+            throw new NullPointerException("Job and its id cannot be null");
+        }
+        _job = Key.create(Job.class, job.getId());
+        _id = DETAILS_ID;
+        _parameters = job.getParameters();
+        _detailedError = job.getDetailedError();
+        _estimatedCpuInSecondsHelp = job.getEstimatedCpuInSecondsHelp();
+        _estimatedDiskInBytesHelp = job.getEstimatedDiskInBytesHelp();
+        _estimatedWallTimeInSecondsHelp = job.getEstimatedWallTimeInSecondsHelp();
+        _diskSpaceInBytesHelp = job.getDiskSpaceInBytesHelp();
+        _cpuSecondsPerClusterHelp = job.getCpuSecondsPerClusterHelp();
+        _phaseHelp = job.getPhaseHelp();
+        _phaseList = job.getPhaseList();
+        _phaseListHelp = job.getPhaseListHelp();
+    }
+    
+    /**
+     * Gets key of {@link JobDetails} for {@link Job} with id <b>jobId</b>
+     * @param jobId
+     * @return 
+     */
+    public static Key<JobDetails> createKey(long jobId){
+        return Key.create(Key.create(Job.class, jobId),JobDetails.class,
+                DETAILS_ID);
+    }
+    
+    /**
+     * Copies the fields in this object into <b>job</b>
+     * @param job 
+     */
+    public void copyTo(Job job){
+        job.setParameters(_parameters);
+        job.setDetailedError(_detailedError);
+        job.setEstimatedCpuInSecondsHelp(_estimatedCpuInSecondsHelp);
+        job.setEstimatedDiskInBytesHelp(_estimatedDiskInBytesHelp);
+        job.setEstimatedWallTimeInSecondsHelp(_estimatedWallTimeInSecondsHelp);
+        job.setDiskSpaceInBytesHelp(_diskSpaceInBytesHelp);
+        job.setCpuSecondsPerClusterHelp(_cpuSecondsPerClusterHelp);
+        job.setPhaseHelp(_phaseHelp);
+        job.setPhaseList(_phaseList);
+        job.setPhaseListHelp(_phaseListHelp);
+    }
+
+    /**
+     * Sets any field that is <b>null</b> in this object to the value in 
+     * <b>storedDetails</b>.  Used so a {@link Job} loaded without its 
+     * details, or sent without them, does not erase the stored values
+     * @param storedDetails {@link JobDetails} in the data store, can be null
+     */
+    public void fillMissingFrom(JobDetails storedDetails){
+        if (storedDetails == null){
+            return;
+        }
+        if (_parameters == null){
+            _parameters = storedDetails._parameters;
+        }
+        if (_detailedError == null){
+            _detailedError = storedDetails._detailedError;
+        }
+        if (_estimatedCpuInSecondsHelp == null){
+            _estimatedCpuInSecondsHelp = storedDetails._estimatedCpuInSecondsHelp;
+        }
+        if (_estimatedDiskInBytesHelp == null){
+            _estimatedDiskInBytesHelp = storedDetails._estimatedDiskInBytesHelp;
+        }
+        if (_estimatedWallTimeInSecondsHelp == null){
+            _estimatedWallTimeInSecondsHelp = storedDetails._estimatedWallTimeInSecondsHelp;
+        }
+        if (_diskSpaceInBytesHelp == null){
+            _diskSpaceInBytesHelp = storedDetails._diskSpaceInBytesHelp;
+        }
+        if (_cpuSecondsPerClusterHelp == null){
+            _cpuSecondsPerClusterHelp = storedDetails._cpuSecondsPerClusterHelp;
+        }
+        if (_phaseHelp == null){
+            _phaseHelp = storedDetails._phaseHelp;
+        }
+        if (_phaseList == null){
+            _phaseList = storedDetails._phaseList;
+        }
+        if (_phaseListHelp == null){
+            _phaseListHelp = storedDetails._phaseListHelp;
+        }
+    }
+
+    public Key<Job> getJob() {
+        return _job;
+    }
+
+    public List<Parameter> getParameters() {
+        return _parameters;
+    }
+
+    public String getDetailedError() {
+        return _detailedError;
+    }
+}
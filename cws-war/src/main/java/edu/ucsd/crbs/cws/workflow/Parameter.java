@@ -34,6 +34,7 @@
 package edu.ucsd.crbs.cws.workflow;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
 
 
 /**
@@ -41,7 +42,10 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  * Parameters have a name and a value
  * @author Christopher Churas <churas@ncmir.ucsd.edu>
  */
-public class Parameter {
+public class Parameter implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
     protected String _name;
     protected String _value;
     protected boolean _isWorkspaceId;
@@ -34,28 +34,62 @@
 package edu.ucsd.crbs.cws.workflow;
 
 import java.io.Writer;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 /**
  * Writes a given {@link Workflow} as 1.x Kepler xml to writer passed in to 
  * {@link #write(java.io.Writer, edu.ucsd.crbs.cws.workflow.Workflow) }
  * method.  <b>NOTE: XML is NOT loadable by Kepler, but is intended to be consumed
- * by CAMERA Portal</b>
+ * by CAMERA Portal</b><p/>
+ * 
+ * Output is streamed to the writer through a {@link XMLStreamWriter} which
+ * also escapes the attribute values.  This class holds no per call state so
+ * a single instance can be shared by multiple threads.
  * 
  * @author Christopher Churas <churas@ncmir.ucsd.edu>
  */
 public class VersionOneWorkflowXmlWriter implements WorkflowWriter {
 
+    /**
+     * {@link XMLStreamWriter} cannot write the standalone pseudo attribute 
+     * so the declaration is written directly to the writer
+     */
+    public static final String XML_DECLARATION = "<?xml version=\"1.0\" standalone=\"no\"?>\n";
+    
+    public static final String ENTITY_ELEMENT = "entity";
+    
+    public static final String PROPERTY_ELEMENT = "property";
+    
+    public static final String DISPLAY_ELEMENT = "display";
+    
+    public static final String NAME_ATTRIBUTE = "name";
+    
+    public static final String CLASS_ATTRIBUTE = "class";
+    
+    public static final String VALUE_ATTRIBUTE = "value";
+    
+    public static final String COMPOSITE_ACTOR_CLASS = "ptolemy.actor.TypedCompositeActor";
+    
+    public static final String STRING_PARAMETER_CLASS = "ptolemy.data.expr.StringParameter";
+    
+    public static final String WORKFLOW_ID_PROPERTY = "WORKFLOWID";
     
-    private static final String SLASH_LESS_THEN = "/>";
+    private static final String NEW_LINE = "\n";
     
-    private static final String LESS_THEN = ">";
+    private static final String TAB = "\t";
+    
+    private static final String TRUE = "true";
+    
+    private static final XMLOutputFactory _xmlOutputFactory = XMLOutputFactory.newInstance();
     
     /**
      * Writes {@link Workflow} <b>w</b> to <b>writer</b> in 1.x Kepler moml 
      * xml format.  This output will <b>NOT</b> properly load in Kepler!!!
      * 
      * This method will write out the parameters in a format that can be consumed
-     * by the CAMERA portal.  
+     * by the CAMERA portal.  The <b>writer</b> is flushed, but not closed.
      * 
      * @param writer
      * @param w
@@ -69,135 +103,161 @@ public class VersionOneWorkflowXmlWriter implements WorkflowWriter {
         if (w == null){
             throw new IllegalArgumentException("Workflow is null");
         }
-        writeHeader(writer,w);
-        writeHiddenCAMERAParameters(writer);
-        for (WorkflowParameter param : w.getParameters()){
-            writeParameter(writer,param);
+        writer.write(XML_DECLARATION);
+        XMLStreamWriter xsw = _xmlOutputFactory.createXMLStreamWriter(writer);
+        try {
+            writeHeader(xsw,w);
+            writeHiddenCAMERAParameters(xsw);
+            if (w.getParameters() != null){
+                for (WorkflowParameter param : w.getParameters()){
+                    writeParameter(xsw,param);
+                }
+            }
+            writeFooter(xsw,w);
+            xsw.flush();
+        }
+        finally {
+            xsw.close();
         }
-        
-        writeFooter(writer,w);
+        writer.flush();
     }
     
-    private void writeParameter(Writer writer,WorkflowParameter param) throws Exception {
+    private void writeParameter(XMLStreamWriter xsw,WorkflowParameter param) throws Exception {
         
-        if (param.getType() != null && param.getType().equals("file")){
-            writeParameter(writer,param.getName(),param.getValue().replace("/workspacefiles", "/workspacefiles/aslist").replaceAll("&","&amp;"),false);
+        boolean isFile = param.getType() != null && param.getType().equals("file");
+        xsw.writeCharacters(TAB);
+        xsw.writeStartElement(PROPERTY_ELEMENT);
+        if (isFile){
+            writeParameterAttributes(xsw,param.getName(),
+                    param.getValue().replace("/workspacefiles", "/workspacefiles/aslist"));
         }
         else {
-            writeParameter(writer,param.getName(),param.getValue(),false);
+            writeParameterAttributes(xsw,param.getName(),param.getValue());
         }
+        xsw.writeCharacters(NEW_LINE);
         
-        writer.write("\t\t<display name=\""+param.getDisplayName()+"\"/>\n");
+        xsw.writeCharacters(TAB+TAB);
+        xsw.writeEmptyElement(DISPLAY_ELEMENT);
+        xsw.writeAttribute(NAME_ATTRIBUTE, String.valueOf(param.getDisplayName()));
+        xsw.writeCharacters(NEW_LINE);
         
         if (param.getHelp() != null){
-            writeParameterAttribute(writer,"tooltip",getPrettyTooltip(param.getHelp()));
+            writeParameterAttribute(xsw,"tooltip",getPrettyTooltip(param.getHelp()));
         }
         if (param.getIsAdvanced() == true){
-            writeParameterAttribute(writer,"advanced","true");
+            writeParameterAttribute(xsw,"advanced",TRUE);
         }
         
         if (param.getValidationType() != null){
-            writeParameterAttribute(writer,"inputtype",param.getValidationType());
+            writeParameterAttribute(xsw,"inputtype",param.getValidationType());
         }
         if (param.getValidationHelp() != null){
-            writeParameterAttribute(writer,"inputtypehelp",param.getValidationHelp());
+            writeParameterAttribute(xsw,"inputtypehelp",param.getValidationHelp());
         }
         if (param.getValidationRegex() != null){
-            writeParameterAttribute(writer,"stringregex",param.getValidationRegex());
+            writeParameterAttribute(xsw,"stringregex",param.getValidationRegex());
         }
         if (param.getType() != null){
             if (param.getType().equals("dropdown")){
-                writeParameterAttribute(writer,"displaytype",param.getType());
+                writeParameterAttribute(xsw,"displaytype",param.getType());
             }
             else if (param.getType().equals("hidden")){
-                writeParameterAttribute(writer,"hidden","true");
+                writeParameterAttribute(xsw,"hidden",TRUE);
             }
             else if (param.getType().equals("checkbox")){
-                writeParameterAttribute(writer,"displaytype","checkbox");
+                writeParameterAttribute(xsw,"displaytype","checkbox");
             }
-            else if (param.getType().equals("file")){
-                writeParameterAttribute(writer,"displaytype","dropdown");
-                writeParameterAttribute(writer,"delimitervalue","==");
-                param.setNameValueDelimiter(null);
+            else if (isFile){
+                writeParameterAttribute(xsw,"displaytype","dropdown");
+                writeParameterAttribute(xsw,"delimitervalue","==");
             }
         }
         
-        if (param.getNameValueDelimiter() != null){
-            writeParameterAttribute(writer,"delimitervalue",param.getNameValueDelimiter());
+        //file parameters always use == delimiter which was written above
+        if (isFile == false && param.getNameValueDelimiter() != null){
+            writeParameterAttribute(xsw,"delimitervalue",param.getNameValueDelimiter());
         }
         if (param.getIsRequired() == true){
-            writeParameterAttribute(writer,"required","true");
+            writeParameterAttribute(xsw,"required",TRUE);
         }
         
-        writer.write("\t</property>\n");
-        
+        xsw.writeCharacters(TAB);
+        xsw.writeEndElement();
+        xsw.writeCharacters(NEW_LINE);
     }
     
     /**
      * This crude implementation just adds a <br/> tag when 77 characters is
-     * hit without any consideration to splitting at spaces.  
+     * hit without any consideration to splitting at spaces.  The tags are
+     * escaped by the {@link XMLStreamWriter}
      * @param tooltip
      * @return 
      */
     private String getPrettyTooltip(final String tooltip){
         StringBuilder sb = new StringBuilder();
-        sb.append("&lt;pre&gt;");
+        sb.append("<pre>");
         int charCount = 0;
         int charsPerLine = 77;
         for (char c : tooltip.toCharArray()){
             if (c == '\n'){
                 charCount = 0;
-                sb.append("&lt;br/&gt;");
+                sb.append("<br/>");
                 continue;
             }
             else if (charCount >= charsPerLine){
-                sb.append("&lt;br/&gt;");
+                sb.append("<br/>");
                 charCount = 0;
             }
             sb.append(c);
             charCount++;
         }
-        sb.append("&lt;/pre&gt;");
+        sb.append("</pre>");
         return sb.toString();
     }
     
-    private void writeHeader(Writer writer,Workflow w) throws Exception{
-        writer.write("<?xml version=\"1.0\" standalone=\"no\"?>\n");
-        writer.write("<entity name=\""+w.getName()+
-                "\" class=\"ptolemy.actor.TypedCompositeActor\">\n");
-        writer.write("\t<property name=\"WORKFLOWID\" value=\""+w.getId()+
-                "\"/>\n");
+    private void writeHeader(XMLStreamWriter xsw,Workflow w) throws XMLStreamException {
+        xsw.writeStartElement(ENTITY_ELEMENT);
+        xsw.writeAttribute(NAME_ATTRIBUTE, String.valueOf(w.getName()));
+        xsw.writeAttribute(CLASS_ATTRIBUTE, COMPOSITE_ACTOR_CLASS);
+        xsw.writeCharacters(NEW_LINE+TAB);
+        xsw.writeEmptyElement(PROPERTY_ELEMENT);
+        xsw.writeAttribute(NAME_ATTRIBUTE, WORKFLOW_ID_PROPERTY);
+        xsw.writeAttribute(VALUE_ATTRIBUTE, String.valueOf(w.getId()));
+        xsw.writeCharacters(NEW_LINE);
     }
     
-    private void writeFooter(Writer writer,Workflow w) throws Exception{
-        writer.write("</entity>\n");
+    private void writeFooter(XMLStreamWriter xsw,Workflow w) throws XMLStreamException {
+        xsw.writeEndElement();
+        xsw.writeCharacters(NEW_LINE);
     }
     
-    private void writeParameter(Writer writer, final String name,
-            final String value,boolean addCloseSlash) throws Exception {
-        
-        String endTag = LESS_THEN;
-        if (addCloseSlash == true){
-            endTag = SLASH_LESS_THEN;
-        }
-        
-        writer.write("\t<property name=\"" + name
-                + "\" class=\"ptolemy.data.expr.StringParameter\" value=\""
-                + value + "\""+endTag+"\n");
+    /**
+     * Writes name, class, and value attributes of a top level parameter
+     * <b>property</b> element
+     */
+    private void writeParameterAttributes(XMLStreamWriter xsw, final String name,
+            final String value) throws XMLStreamException {
+        xsw.writeAttribute(NAME_ATTRIBUTE, String.valueOf(name));
+        xsw.writeAttribute(CLASS_ATTRIBUTE, STRING_PARAMETER_CLASS);
+        xsw.writeAttribute(VALUE_ATTRIBUTE, String.valueOf(value));
     }
     
-    private void writeParameterAttribute(Writer writer,final String name,
-            final String value) throws Exception {        
-        writer.write("\t\t<property name=\""+name+
-                "\" class=\"ptolemy.data.expr.StringParameter\" value=\""+
-                value+"\"/>\n");
+    private void writeParameterAttribute(XMLStreamWriter xsw,final String name,
+            final String value) throws XMLStreamException {
+        xsw.writeCharacters(TAB+TAB);
+        xsw.writeEmptyElement(PROPERTY_ELEMENT);
+        writeParameterAttributes(xsw,name,value);
+        xsw.writeCharacters(NEW_LINE);
     }
     
-    private void writeHiddenCAMERAParameters(Writer writer) throws Exception {
-        writeParameter(writer,"CAMERA_outputdir","",true);
-        writeParameter(writer,"CAMERA_userid","",true);
-        writeParameter(writer,"CAMERA_taskid","",true);
-        writeParameter(writer,"CAMERA_taskname","",true);
+    private void writeHiddenCAMERAParameters(XMLStreamWriter xsw) throws XMLStreamException {
+        for (String name : new String[] {"CAMERA_outputdir","CAMERA_userid",
+                                         "CAMERA_taskid","CAMERA_taskname"}){
+            xsw.writeCharacters(TAB);
+            xsw.writeEmptyElement(PROPERTY_ELEMENT);
+            writeParameterAttributes(xsw,name,"");
+            xsw.writeCharacters(NEW_LINE);
+        }
     }
 
 }
@@ -76,6 +76,8 @@ public class Workflow {
     @Ignore private Workflow _rawParent;
     @Ignore private String _workflowFileUploadURL;
     private String _blobKey;
+    @Ignore private boolean _fileUploaded;
+    private String _md5;
     
     public Workflow(){
         
@@ -128,6 +130,24 @@ public class Workflow {
         return _parent.get();
     }
     
+    /**
+     * Gets id of parent {@link Workflow} without loading it
+     * @return id of parent or null if there is no parent
+     */
+    @JsonIgnore
+    public Long getParentWorkflowId(){
+        if (REFS_ENABLED == false){
+            if (_rawParent == null){
+                return null;
+            }
+            return _rawParent.getId();
+        }
+        if (_parent == null){
+            return null;
+        }
+        return _parent.getKey().getId();
+    }
+    
     public void setCreateDate(final Date date){
         _createDate = date;
     }
@@ -186,6 +206,25 @@ public class Workflow {
         return _blobKey;
     }
     
+    /**
+     * Denotes whether the Kepler .kar file for this {@link Workflow} has 
+     * been uploaded.  Since {@link #getBlobKey()} is not sent to clients 
+     * this is how they can tell.
+     * @return true if {@link #getBlobKey()} is set or this was set to true 
+     *         via {@link #setFileUploaded(boolean)}
+     */
+    public boolean isFileUploaded(){
+        return _blobKey != null || _fileUploaded;
+    }
+    
+    /**
+     * Used when creating this object from JSON
+     * @param fileUploaded 
+     */
+    public void setFileUploaded(boolean fileUploaded){
+        _fileUploaded = fileUploaded;
+    }
+    
     /**
      * Iterates through {@link WorkflowParameter} objects and removes/returns the first one
      * whose {@link WorkflowParameter#getName()} matches <b>name</b> passed in
@@ -212,6 +251,22 @@ public class Workflow {
         return null;
     }
     
+    /**
+     * @return md5 checksum of the Kepler .kar file for this {@link Workflow} 
+     *         if set
+     */
+    public String getMd5() {
+        return _md5;
+    }
+
+    /**
+     * Sets md5 checksum of the Kepler .kar file for this {@link Workflow}
+     * @param md5 
+     */
+    public void setMd5(String md5) {
+        _md5 = md5;
+    }
+    
     public String getOwner() {
         return _owner;
     }
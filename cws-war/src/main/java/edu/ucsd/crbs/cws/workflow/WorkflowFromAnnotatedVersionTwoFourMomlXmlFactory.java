@@ -38,41 +38,57 @@ import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
 import edu.ucsd.crbs.cws.workflow.kepler.ParameterAttribute;
 import edu.ucsd.crbs.cws.workflow.kepler.RectangleAttribute;
 import edu.ucsd.crbs.cws.workflow.kepler.TextAttribute;
+import edu.ucsd.crbs.cws.workflow.kepler.Attribute;
+import edu.ucsd.crbs.cws.workflow.kepler.RectangleAttributeIndex;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.jdom2.Document;
-import org.jdom2.Element;
-import org.jdom2.filter.Filters;
-import org.jdom2.input.SAXBuilder;
-import org.jdom2.xpath.XPathExpression;
-import org.jdom2.xpath.XPathFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * Creates Workflow object from Kepler 2.4 XML document.  This factory
  * uses the new annotation markup for describing UI mapping for Kepler
- * parameters
- * 
- * 
+ * parameters.<p/>
+ * The document is read in a single pass with a StAX {@link XMLStreamReader}
+ * and only the top level <b>property</b> elements matching 
+ * {@link #MOML_CANVAS_PARAMETER}, {@link #MOML_RECTANGLE_ATTRIBUTE}, and
+ * {@link #MOML_TEXT_ATTRIBUTE} are kept so memory use does not grow with
+ * the number of actors in the workflow.
  * 
  * @author Christopher Churas <churas@ncmir.ucsd.edu>
  */
 public class WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory {
 
-    // Query to find all Parameters
+    // Query describing the Parameters that are parsed
     public static final String MOML_CANVAS_PARAMETER = "/entity/property[@class='ptolemy.data.expr.StringParameter' or @class='ptolemy.data.expr.Parameter' or @class='ptolemy.data.expr.FileParameter']";
 
-    // Query to find all RectangleAttributes
+    // Query describing the RectangleAttributes that are parsed
     public static final String MOML_RECTANGLE_ATTRIBUTE = "/entity/property[@class='ptolemy.vergil.kernel.attributes.RectangleAttribute']";
     
-    // Query to find all TextAttributes
+    // Query describing the TextAttributes that are parsed
     public static final String MOML_TEXT_ATTRIBUTE = "/entity/property[@class='ptolemy.vergil.kernel.attributes.TextAttribute']";
     
+    public static final String STRING_PARAMETER_CLASS = "ptolemy.data.expr.StringParameter";
+    
+    public static final String PARAMETER_CLASS = "ptolemy.data.expr.Parameter";
+    
+    public static final String FILE_PARAMETER_CLASS = "ptolemy.data.expr.FileParameter";
+    
+    public static final String RECTANGLE_ATTRIBUTE_CLASS = "ptolemy.vergil.kernel.attributes.RectangleAttribute";
+    
+    public static final String TEXT_ATTRIBUTE_CLASS = "ptolemy.vergil.kernel.attributes.TextAttribute";
+    
+    public static final String ENTITY_ELEMENT = "entity";
+    
+    public static final String PROPERTY_ELEMENT = "property";
+    
     public static final String NAME_ATTRIBUTE = "name";
 
     public static final String VALUE_ATTRIBUTE = "value";
@@ -119,6 +135,34 @@ public class WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory {
 
     public static final Logger log = Logger.getLogger(WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory.class.getName());
 
+    /**
+     * Depth of the root <b>entity</b> element
+     */
+    private static final int ROOT_DEPTH = 1;
+    
+    /**
+     * Depth of <b>property</b> elements that are children of root element
+     */
+    private static final int TOP_LEVEL_PROPERTY_DEPTH = 2;
+    
+    /**
+     * Depth of child elements of top level <b>property</b> elements
+     */
+    private static final int PROPERTY_CHILD_DEPTH = 3;
+    
+    /**
+     * Factory is thread safe once configured so it is shared.  DTD
+     * processing is disabled which also prevents the external MoML DTD
+     * from being loaded
+     */
+    private static final XMLInputFactory _xmlInputFactory;
+    
+    static {
+        _xmlInputFactory = XMLInputFactory.newInstance();
+        _xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        _xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     /**
      * Input Stream set via {@link #setWorkflowXml(java.io.InputStream)} 
      */
@@ -139,81 +183,232 @@ public class WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory {
      * @return @throws Exception
      */
     public Workflow getWorkflow() throws Exception {
-
-        Document doc;
-        try {
-            doc = getDocument(_in);
-        } catch (Exception ex) {
-            log.log(Level.SEVERE, "There was a problem parsing the workflow xml {0}", ex.getMessage());
+        if (_in == null){
+            log.warning("Workflow xml input stream is null");
             return null;
         }
-        if (doc == null) {
-            log.warning("getDocument(Workflow xml input stream) returned null");
+        TopLevelAttributes attributes = new TopLevelAttributes();
+        try {
+            readTopLevelAttributes(_in,attributes);
+        } catch (XMLStreamException ex) {
+            log.log(Level.SEVERE, "There was a problem parsing the workflow xml {0}", ex.getMessage());
             return null;
         }
-        return getWorkflowFromDocument(doc);
+        return getWorkflowFromAttributes(attributes);
     }
 
     /**
-     * Returns the root element of parsed XML document
-     *
+     * Holds the top level attributes found in the document
+     */
+    static class TopLevelAttributes {
+        final List<RectangleAttribute> rectangles = new ArrayList<>();
+        final List<ParameterAttribute> parameters = new ArrayList<>();
+        final List<TextAttribute> textAttributes = new ArrayList<>();
+    }
+    
+    /**
+     * Reads <b>in</b> once adding a {@link RectangleAttribute}, 
+     * {@link ParameterAttribute}, or {@link TextAttribute} to <b>attributes</b>
+     * for each child <b>property</b> element of the root <b>entity</b> 
+     * element with a matching <b>class</b>.  Everything else in the document 
+     * is skipped.
+     * 
      * @param in XML document to parse
-     * @return Root element of document
-     * @throws Exception If there is a problem parsing the document
+     * @param attributes 
+     * @throws XMLStreamException If there is a problem parsing the document
+     * @throws Exception If there is a problem with the values of the 
+     *         attributes
+     */
+    private void readTopLevelAttributes(InputStream in,
+            TopLevelAttributes attributes) throws Exception {
+        XMLStreamReader reader = _xmlInputFactory.createXMLStreamReader(in);
+        try {
+            int depth = 0;
+            Attribute current = null;
+            boolean centered = false;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == ROOT_DEPTH) {
+                        if (!reader.getLocalName().equals(ENTITY_ELEMENT)) {
+                            return;
+                        }
+                    } else if (depth == TOP_LEVEL_PROPERTY_DEPTH) {
+                        current = createAttribute(reader);
+                        centered = false;
+                    } else if (depth == PROPERTY_CHILD_DEPTH && current != null) {
+                        if (current instanceof RectangleAttribute) {
+                            Boolean isCentered = readRectangleChild(reader,
+                                    (RectangleAttribute) current);
+                            if (isCentered != null) {
+                                centered = isCentered;
+                            }
+                        } else if (current instanceof ParameterAttribute) {
+                            readParameterChild(reader, (ParameterAttribute) current);
+                        } else {
+                            readTextChild(reader, (TextAttribute) current);
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == TOP_LEVEL_PROPERTY_DEPTH && current != null) {
+                        addAttribute(attributes, current, centered);
+                        current = null;
+                    }
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Creates {@link Attribute} for the <b>property</b> element <b>reader</b>
+     * is on based on value of {@link #CLASS} attribute
+     * @param reader
+     * @return {@link Attribute} or null if element is not of interest
+     */
+    private Attribute createAttribute(XMLStreamReader reader) {
+        if (!reader.getLocalName().equals(PROPERTY_ELEMENT)) {
+            return null;
+        }
+        String theClass = reader.getAttributeValue(null, CLASS);
+        if (theClass == null) {
+            return null;
+        }
+        String name = reader.getAttributeValue(null, NAME_ATTRIBUTE);
+        switch (theClass) {
+            case RECTANGLE_ATTRIBUTE_CLASS:
+                RectangleAttribute ra = new RectangleAttribute();
+                ra.setName(name);
+                return ra;
+            case TEXT_ATTRIBUTE_CLASS:
+                TextAttribute ta = new TextAttribute();
+                ta.setName(name);
+                return ta;
+            case STRING_PARAMETER_CLASS:
+            case PARAMETER_CLASS:
+            case FILE_PARAMETER_CLASS:
+                ParameterAttribute pa = new ParameterAttribute();
+                pa.setName(name);
+                pa.setType(theClass);
+                pa.setValue(reader.getAttributeValue(null, VALUE_ATTRIBUTE));
+                return pa;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Adds <b>attribute</b> to the appropriate list in <b>attributes</b> 
+     * after setting display name to name if it was not set
+     */
+    private void addAttribute(TopLevelAttributes attributes, Attribute attribute,
+            boolean centered) {
+        if (attribute instanceof TextAttribute) {
+            attributes.textAttributes.add((TextAttribute) attribute);
+            return;
+        }
+        if (attribute.getDisplayName() == null) {
+            attribute.setDisplayName(attribute.getName());
+        }
+        if (attribute instanceof ParameterAttribute) {
+            attributes.parameters.add((ParameterAttribute) attribute);
+            return;
+        }
+        //if centered we need to adjust x and y coordinate to be upper left corner
+        if (centered == true) {
+            ((RectangleAttribute) attribute).moveCoordinatesToUpperLeftCornerFromCenter();
+        }
+        attributes.rectangles.add((RectangleAttribute) attribute);
+    }
+    
+    /**
+     * Parses display name, width, height, location, and centered flag from 
+     * child element of RectangleAttribute <b>property</b> element
+     * @return value of centered flag if child is the {@link #CENTERED_ATTRIBUTE}
+     *         element otherwise null
      */
-    private Document getDocument(InputStream in) throws Exception {
-        SAXBuilder builder = new SAXBuilder();
-        builder.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        return builder.build(in);
+    private Boolean readRectangleChild(XMLStreamReader reader,
+            RectangleAttribute ra) throws Exception {
+        if (reader.getLocalName().equals(DISPLAY_ELEMENT)) {
+            ra.setDisplayName(reader.getAttributeValue(null, NAME_ATTRIBUTE));
+            return null;
+        }
+        String name = reader.getAttributeValue(null, NAME_ATTRIBUTE);
+        String value = reader.getAttributeValue(null, VALUE_ATTRIBUTE);
+        if (WIDTH.equalsIgnoreCase(name)) {
+            ra.setWidth(Double.parseDouble(value));
+        } else if (HEIGHT.equalsIgnoreCase(name)) {
+            ra.setHeight(Double.parseDouble(value));
+        } else if (LOCATION_ATTRIBUTE.equalsIgnoreCase(name)) {
+            ra.setCoordinatesViaString(value);
+        } else if (CENTERED_ATTRIBUTE.equalsIgnoreCase(name)) {
+            return Boolean.parseBoolean(value);
+        }
+        return null;
+    }
+    
+    /**
+     * Parses display name and location from child element of parameter
+     * <b>property</b> element
+     */
+    private void readParameterChild(XMLStreamReader reader,
+            ParameterAttribute pa) throws Exception {
+        if (reader.getLocalName().equals(DISPLAY_ELEMENT)) {
+            pa.setDisplayName(reader.getAttributeValue(null, NAME_ATTRIBUTE));
+            return;
+        }
+        if (LOCATION_ATTRIBUTE.equalsIgnoreCase(reader.getAttributeValue(null, NAME_ATTRIBUTE))) {
+            pa.setCoordinatesViaString(reader.getAttributeValue(null, VALUE_ATTRIBUTE));
+        }
+    }
+    
+    /**
+     * Parses location and text from child element of TextAttribute 
+     * <b>property</b> element
+     */
+    private void readTextChild(XMLStreamReader reader,
+            TextAttribute ta) throws Exception {
+        String name = reader.getAttributeValue(null, NAME_ATTRIBUTE);
+        if (LOCATION_ATTRIBUTE.equalsIgnoreCase(name)) {
+            ta.setCoordinatesViaString(reader.getAttributeValue(null, VALUE_ATTRIBUTE));
+        } else if (TEXT.equalsIgnoreCase(name)) {
+            ta.setText(reader.getAttributeValue(null, VALUE_ATTRIBUTE));
+        }
     }
 
     /**
-     * Using Xpath queries parses MOML to create Workflow object
+     * Matches {@link ParameterAttribute}s and {@link TextAttribute}s to the
+     * {@link RectangleAttribute} they are in to create Workflow object
      *
-     * @param doc Document to parse
-     * @return Workflow object upon success or null if none found
-     * @throws Exception If there is a parsing error or format error
+     * @param attributes Top level attributes read from document
+     * @return Workflow object 
+     * @throws Exception If there is a format error
      */
-    private Workflow getWorkflowFromDocument(Document doc) throws Exception {
+    private Workflow getWorkflowFromAttributes(TopLevelAttributes attributes) throws Exception {
 
         // create the workflow object and set basic information
         Workflow workflow = new Workflow();
 
-        // find all RectangleAttributes and get name, display name, and locations
-        List<RectangleAttribute> rectangles = getRectangleAttributes(doc);
-        if (rectangles == null || rectangles.isEmpty()) {
+        // RectangleAttributes with name, display name, and locations
+        List<RectangleAttribute> rectangles = attributes.rectangles;
+        if (rectangles.isEmpty()) {
            return workflow;
         }
         
-        // find all parameters and record type, name, display name, value, and location
-        List<ParameterAttribute> parameters = getParameterAttributes(doc);
-        
-        // find all annotations and record name, display name, text, and location
-        List<TextAttribute> textAttributes = getTextAttributes(doc);
-
-        //attach Text Attributes to Rectangles
-        if (textAttributes != null && textAttributes.isEmpty() == false) {
-            for (RectangleAttribute rectangle : rectangles) {
-                Iterator textIterator = textAttributes.iterator();
-                for (; textIterator.hasNext();) {
-                    TextAttribute ta = (TextAttribute) textIterator.next();
-                    rectangle.addTextAttributeIfIntersecting(ta);
-                }
-
-            }
-        }
+        // parameters with type, name, display name, value, and location
+        List<ParameterAttribute> parameters = attributes.parameters;
         
-        //attach all parameters to Rectangles
-        if (parameters != null && parameters.isEmpty() == false) {
-            for (RectangleAttribute rectangle : rectangles) {
+        // annotations with name, display name, text, and location
+        List<TextAttribute> textAttributes = attributes.textAttributes;
 
-                Iterator paramIterator = parameters.iterator();
-                for (; paramIterator.hasNext();) {
-                    ParameterAttribute pa = (ParameterAttribute) paramIterator.next();
-                    rectangle.addParameterAttributeIfIntersecting(pa);
-                }
-            }
-        }
+        //attach Text Attributes and parameters to Rectangles using a grid
+        //so each attribute is only compared to nearby Rectangles
+        RectangleAttributeIndex rectangleIndex = new RectangleAttributeIndex(rectangles);
+        rectangleIndex.addTextAttributesToIntersectingRectangles(textAttributes);
+        rectangleIndex.addParameterAttributesToIntersectingRectangles(parameters);
         
         ArrayList<WorkflowParameter> paramList = new ArrayList<>();
         //loop through RectangleAttributes and update workflow object with parameters etc
@@ -363,109 +558,4 @@ public class WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory {
         }
         return params;
     }
-    
-    /**
-     * Runs xpath query {@link #MOML_TEXT_ATTRIBUTE} to get TextAttribute 
-     * elements from document.  The code then parses out the <b>name</b>, 
-     * <b>coordinates<b/>, and <b>text</b> to generate {@link TextAttribute} 
-     * objects.<p/>
-     * The <b>name</b> is the value from the {@link #NAME_ATTRIBUTE} attribute 
-     * in the element returned from the xpath query<br/>
-     * The <b>coordinates</b> is the value obtained from the 
-     * {@link #VALUE_ATTRIBUTE} in the  child element whose value from the 
-     * {@link #NAME_ATTRIBUTE} matches {@link #LOCATION_ATTRIBUTE}<br/>
-     * The <b>text</b> is the value from the {@link #VALUE_ATTRIBUTE} attribute 
-     * in the child element whose value from the {@link #NAME_ATTRIBUTE} matches 
-     * {@link #TEXT}
-     * 
-     * @param doc
-     * @return List of {@link TextAttribute} objects if found
-     * @throws Exception 
-     */
-    private List<TextAttribute> getTextAttributes(Document doc) throws Exception {
-        XPathExpression<Element> xpath = XPathFactory.instance().compile(MOML_TEXT_ATTRIBUTE, Filters.element());
-
-        List<Element> elements = xpath.evaluate(doc);
-        ArrayList<TextAttribute> textAttributes = new ArrayList<>();
-        for (Element e : elements) {
-            TextAttribute ta = new TextAttribute();
-
-            ta.setName(e.getAttributeValue(NAME_ATTRIBUTE));
-            List<Element> children = e.getChildren();
-            for (Element child : children) {
-                if (child.getAttributeValue(NAME_ATTRIBUTE).equalsIgnoreCase(LOCATION_ATTRIBUTE)) {
-                    ta.setCoordinatesViaString(child.getAttributeValue(VALUE_ATTRIBUTE));
-                }
-                else if (child.getAttributeValue(NAME_ATTRIBUTE).equalsIgnoreCase(TEXT)){
-                    ta.setText(child.getAttributeValue(VALUE_ATTRIBUTE));
-                }
-            }
-            textAttributes.add(ta);
-        }
-        return textAttributes;
-    }
-
-    private List<ParameterAttribute> getParameterAttributes(Document doc) throws Exception {
-        XPathExpression<Element> xpath = XPathFactory.instance().compile(MOML_CANVAS_PARAMETER, Filters.element());
-        List<Element> elements = xpath.evaluate(doc);
-        ArrayList<ParameterAttribute> parameters = new ArrayList<>();
-        for (Element e : elements) {
-            ParameterAttribute pa = new ParameterAttribute();
-            pa.setName(e.getAttributeValue(NAME_ATTRIBUTE));
-            pa.setType(e.getAttributeValue(CLASS));
-            pa.setValue(e.getAttributeValue(VALUE_ATTRIBUTE));
-
-            List<Element> children = e.getChildren();
-            for (Element child : children) {
-                if (child.getName().equals(DISPLAY_ELEMENT)) {
-                    pa.setDisplayName(child.getAttributeValue(NAME_ATTRIBUTE));
-                } else if (child.getAttributeValue(NAME_ATTRIBUTE).equalsIgnoreCase(LOCATION_ATTRIBUTE)) {
-                    pa.setCoordinatesViaString(child.getAttributeValue(VALUE_ATTRIBUTE));
-                }
-
-            }
-            if (pa.getDisplayName() == null) {
-                pa.setDisplayName(pa.getName());
-            }
-            parameters.add(pa);
-        }
-        return parameters;
-    }
-
-    private List<RectangleAttribute> getRectangleAttributes(Document doc) throws Exception {
-        XPathExpression<Element> xpath = XPathFactory.instance().compile(MOML_RECTANGLE_ATTRIBUTE, Filters.element());
-
-        List<Element> elements = xpath.evaluate(doc);
-        ArrayList<RectangleAttribute> rectangles = new ArrayList<>();
-        for (Element e : elements) {
-            RectangleAttribute ra = new RectangleAttribute();
-            boolean centered = false;
-            ra.setName(e.getAttributeValue(NAME_ATTRIBUTE));
-            List<Element> children = e.getChildren();
-            for (Element child : children) {
-                if (child.getName().equals(DISPLAY_ELEMENT)) {
-                    ra.setDisplayName(child.getAttributeValue(NAME_ATTRIBUTE));
-                } else if (child.getAttributeValue(NAME_ATTRIBUTE).equalsIgnoreCase(WIDTH)) {
-                    ra.setWidth(Double.parseDouble(child.getAttributeValue(VALUE_ATTRIBUTE)));
-                } else if (child.getAttributeValue(NAME_ATTRIBUTE).equalsIgnoreCase(HEIGHT)) {
-                    ra.setHeight(Double.parseDouble(child.getAttributeValue(VALUE_ATTRIBUTE)));
-                } else if (child.getAttributeValue(NAME_ATTRIBUTE).equalsIgnoreCase(LOCATION_ATTRIBUTE)) {
-                    ra.setCoordinatesViaString(child.getAttributeValue(VALUE_ATTRIBUTE));
-                } else if (child.getAttributeValue(NAME_ATTRIBUTE).equalsIgnoreCase(CENTERED_ATTRIBUTE)){
-                    centered = Boolean.parseBoolean(child.getAttributeValue(VALUE_ATTRIBUTE));
-                }
-            }
-            if (ra.getDisplayName() == null) {
-                ra.setDisplayName(ra.getName());
-            }
-            
-            //if centered we need to adjust x and y coordinate to be upper left corner
-            if (centered == true){
-                ra.moveCoordinatesToUpperLeftCornerFromCenter();
-            }
-            
-            rectangles.add(ra);
-        }
-        return rectangles;
-    }
-};
+}
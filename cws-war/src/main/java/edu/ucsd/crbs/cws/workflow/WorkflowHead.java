@@ -0,0 +1,97 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow;
+
+import com.googlecode.objectify.annotation.Cache;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+
+/**
+ * Tracks the latest version of all {@link Workflow}s sharing the same 
+ * {@link Workflow#getName()}.  There is one of these per name keyed by 
+ * the name which lets the latest {@link Workflow} be found without querying
+ * every version and gives a single entity group to transact on when 
+ * assigning new version numbers.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@Entity
+@Cache
+public class WorkflowHead {
+    
+    @Id private String _name;
+    private Long _latestWorkflowId;
+    private int _latestVersion;
+    
+    public WorkflowHead(){
+        
+    }
+    
+    public WorkflowHead(final String name,Long latestWorkflowId,
+            int latestVersion){
+        _name = name;
+        _latestWorkflowId = latestWorkflowId;
+        _latestVersion = latestVersion;
+    }
+
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(String name) {
+        _name = name;
+    }
+
+    /**
+     * @return Id of {@link Workflow} with highest version
+     */
+    public Long getLatestWorkflowId() {
+        return _latestWorkflowId;
+    }
+
+    public void setLatestWorkflowId(Long latestWorkflowId) {
+        _latestWorkflowId = latestWorkflowId;
+    }
+
+    /**
+     * @return Highest version assigned to a {@link Workflow} with this name
+     */
+    public int getLatestVersion() {
+        return _latestVersion;
+    }
+
+    public void setLatestVersion(int latestVersion) {
+        _latestVersion = latestVersion;
+    }
+}
@@ -33,6 +33,7 @@
 
 package edu.ucsd.crbs.cws.workflow;
 
+import java.io.Serializable;
 import java.util.Map;
 import org.codehaus.jackson.annotate.JsonPropertyOrder;
 
@@ -42,7 +43,10 @@ import org.codehaus.jackson.annotate.JsonPropertyOrder;
  */
 
 @JsonPropertyOrder(value={ "name","displayName","type","value"}, alphabetic=true)
-public class WorkflowParameter {
+public class WorkflowParameter implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
     
     /**
      * Contains list of supported WorkflowParameter types.  The current type
@@ -66,7 +66,7 @@ public class WorkspaceFile {
     private String _description;
     private Date _createDate;
     private Long _size;
-    private String _md5;
+    @Index private String _md5;
     @Index @AlsoLoad("_Deleted") private boolean _deleted = false;
     @Index @AlsoLoad("_Dir") private boolean _dir;
     @Index private String _path;
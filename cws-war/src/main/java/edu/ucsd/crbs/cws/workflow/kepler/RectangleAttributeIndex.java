@@ -0,0 +1,251 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.kepler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over a set of {@link RectangleAttribute} objects that finds
+ * the rectangles an {@link Attribute} lies in without comparing the 
+ * {@link Attribute} against every rectangle on the canvas.<p/>
+ * 
+ * Each rectangle is registered in every grid cell its bounds overlap.  A 
+ * lookup computes the single cell the {@link Attribute} coordinate falls in
+ * and runs {@link RectangleAttribute#doesIntersect(Attribute)} only on the 
+ * rectangles registered in that cell.  Cell size is the average of the 
+ * larger dimension of the rectangles.  Rectangles whose bounds are not 
+ * finite or that would cover more than {@link #MAX_CELLS_PER_RECTANGLE} 
+ * cells are kept in a separate list that is checked on every lookup, so
+ * results always match a brute force comparison.<p/>
+ * 
+ * The rectangle coordinates must not change after the index is created.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class RectangleAttributeIndex {
+
+    /**
+     * Rectangles spanning more cells than this are checked on every lookup
+     * instead of being registered in the grid
+     */
+    public static final int MAX_CELLS_PER_RECTANGLE = 1024;
+    
+    private final List<RectangleAttribute> _rectangles;
+    private final List<RectangleAttribute> _alwaysChecked;
+    private final Map<Long,List<RectangleAttribute>> _cells;
+    private double _minX;
+    private double _minY;
+    private double _cellSize;
+    
+    /**
+     * Constructor that builds the grid
+     * @param rectangles Rectangles to index, null entries are ignored
+     */
+    public RectangleAttributeIndex(List<RectangleAttribute> rectangles){
+        _rectangles = new ArrayList<>();
+        _alwaysChecked = new ArrayList<>();
+        _cells = new HashMap<>();
+        if (rectangles != null){
+            for (RectangleAttribute ra : rectangles){
+                if (ra != null){
+                    _rectangles.add(ra);
+                }
+            }
+        }
+        buildGrid();
+    }
+    
+    /**
+     * Finds all the rectangles that <b>attrib</b> lies in
+     * @param attrib
+     * @return List of {@link RectangleAttribute} objects where 
+     *         {@link RectangleAttribute#doesIntersect(Attribute)} is true, 
+     *         in no particular order.  An empty list is returned if none are
+     *         found or <b>attrib</b> is null
+     */
+    public List<RectangleAttribute> getIntersectingRectangles(Attribute attrib){
+        if (attrib == null){
+            return Collections.emptyList();
+        }
+        List<RectangleAttribute> candidates = _rectangles;
+        if (isFinite(attrib.getXCoordinate()) && isFinite(attrib.getYCoordinate())){
+            double cellX = getCell(attrib.getXCoordinate(), _minX);
+            double cellY = getCell(attrib.getYCoordinate(), _minY);
+            if (isCellInRange(cellX) == false || isCellInRange(cellY) == false){
+                candidates = _alwaysChecked;
+            }
+            else {
+                candidates = _cells.get(getCellKey((int)cellX, (int)cellY));
+                if (candidates == null){
+                    candidates = _alwaysChecked;
+                }
+                else if (_alwaysChecked.isEmpty() == false){
+                    candidates = new ArrayList<>(candidates);
+                    candidates.addAll(_alwaysChecked);
+                }
+            }
+        }
+        
+        ArrayList<RectangleAttribute> matches = new ArrayList<>();
+        for (RectangleAttribute ra : candidates){
+            if (ra.doesIntersect(attrib)){
+                matches.add(ra);
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * Adds each {@link TextAttribute} in <b>textAttributes</b> to the 
+     * rectangles it lies in via 
+     * {@link RectangleAttribute#addTextAttributeIfIntersecting(TextAttribute)}.
+     * The order of <b>textAttributes</b> is preserved in each rectangle.
+     * @param textAttributes 
+     */
+    public void addTextAttributesToIntersectingRectangles(List<TextAttribute> textAttributes){
+        if (textAttributes == null){
+            return;
+        }
+        for (TextAttribute ta : textAttributes){
+            for (RectangleAttribute ra : getIntersectingRectangles(ta)){
+                ra.addTextAttributeIfIntersecting(ta);
+            }
+        }
+    }
+    
+    /**
+     * Adds each {@link ParameterAttribute} in <b>parameters</b> to the 
+     * rectangles it lies in via 
+     * {@link RectangleAttribute#addParameterAttributeIfIntersecting(ParameterAttribute)}.
+     * The order of <b>parameters</b> is preserved in each rectangle.
+     * @param parameters 
+     */
+    public void addParameterAttributesToIntersectingRectangles(List<ParameterAttribute> parameters){
+        if (parameters == null){
+            return;
+        }
+        for (ParameterAttribute pa : parameters){
+            for (RectangleAttribute ra : getIntersectingRectangles(pa)){
+                ra.addParameterAttributeIfIntersecting(pa);
+            }
+        }
+    }
+    
+    /**
+     * Sets grid origin and cell size then registers rectangles in the cells
+     * they overlap
+     */
+    private void buildGrid(){
+        _minX = Double.MAX_VALUE;
+        _minY = Double.MAX_VALUE;
+        double sizeSum = 0;
+        int numFinite = 0;
+        for (RectangleAttribute ra : _rectangles){
+            if (hasFiniteBounds(ra) == false){
+                continue;
+            }
+            _minX = Math.min(_minX, ra.getXCoordinate());
+            _minY = Math.min(_minY, ra.getYCoordinate());
+            sizeSum += Math.max(ra.getWidth(), ra.getHeight());
+            numFinite++;
+        }
+        _cellSize = 1;
+        if (numFinite > 0 && sizeSum > 0 && isFinite(sizeSum)){
+            _cellSize = sizeSum / numFinite;
+        }
+        if (numFinite == 0){
+            _minX = 0;
+            _minY = 0;
+        }
+        
+        for (RectangleAttribute ra : _rectangles){
+            
+            //a negative width or height means the rectangle can
+            //never contain a point
+            if (ra.getWidth() < 0 || ra.getHeight() < 0){
+                continue;
+            }
+            if (hasFiniteBounds(ra) == false){
+                _alwaysChecked.add(ra);
+                continue;
+            }
+            double startX = getCell(ra.getXCoordinate(), _minX);
+            double endX = getCell(ra.getXCoordinate() + ra.getWidth(), _minX);
+            double startY = getCell(ra.getYCoordinate(), _minY);
+            double endY = getCell(ra.getYCoordinate() + ra.getHeight(), _minY);
+            if (isCellInRange(endX) == false || isCellInRange(endY) == false ||
+                (endX - startX + 1) * (endY - startY + 1) > MAX_CELLS_PER_RECTANGLE){
+                _alwaysChecked.add(ra);
+                continue;
+            }
+            for (int x = (int)startX; x <= (int)endX; x++){
+                for (int y = (int)startY; y <= (int)endY; y++){
+                    Long key = getCellKey(x, y);
+                    List<RectangleAttribute> cell = _cells.get(key);
+                    if (cell == null){
+                        cell = new ArrayList<>();
+                        _cells.put(key, cell);
+                    }
+                    cell.add(ra);
+                }
+            }
+        }
+    }
+    
+    private double getCell(double coordinate, double min){
+        return Math.floor((coordinate - min) / _cellSize);
+    }
+    
+    private boolean isCellInRange(double cell){
+        return cell >= Integer.MIN_VALUE && cell <= Integer.MAX_VALUE;
+    }
+    
+    private Long getCellKey(int x, int y){
+        return (((long)x) << 32) | (y & 0xffffffffL);
+    }
+    
+    private boolean hasFiniteBounds(RectangleAttribute ra){
+        return isFinite(ra.getXCoordinate()) && isFinite(ra.getYCoordinate()) &&
+               isFinite(ra.getXCoordinate() + ra.getWidth()) &&
+               isFinite(ra.getYCoordinate() + ra.getHeight());
+    }
+    
+    private static boolean isFinite(double val){
+        return !Double.isNaN(val) && !Double.isInfinite(val);
+    }
+}
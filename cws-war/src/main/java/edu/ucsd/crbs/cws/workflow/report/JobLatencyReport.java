@@ -0,0 +1,165 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.report;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Report of how long {@link edu.ucsd.crbs.cws.workflow.Job}s wait and run
+ * broken down by {@link edu.ucsd.crbs.cws.workflow.Workflow} and owner along
+ * with the current backlog of {@link edu.ucsd.crbs.cws.workflow.Job}s that
+ * have not completed.  Durations are in seconds.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobLatencyReport {
+    
+    private Date _since;
+    private Date _createDate;
+    private JobLatencyStats _overall;
+    private Map<String,JobLatencyStats> _byWorkflow = new TreeMap<>();
+    private Map<String,JobLatencyStats> _byOwner = new TreeMap<>();
+    private Map<String,Long> _backlog = new TreeMap<>();
+    private Long _oldestActiveJobId;
+    private Long _oldestActiveJobAgeInSeconds;
+    private Long _oldestUnsubmittedJobId;
+    private Long _oldestUnsubmittedJobAgeInSeconds;
+
+    /**
+     * @return Only {@link edu.ucsd.crbs.cws.workflow.Job}s created on or 
+     * after this date are included in latency stats
+     */
+    public Date getSince() {
+        return _since;
+    }
+
+    public void setSince(Date since) {
+        _since = since;
+    }
+
+    /**
+     * @return Date report was generated, ages are relative to this date
+     */
+    public Date getCreateDate() {
+        return _createDate;
+    }
+
+    public void setCreateDate(Date createDate) {
+        _createDate = createDate;
+    }
+
+    public JobLatencyStats getOverall() {
+        return _overall;
+    }
+
+    public void setOverall(JobLatencyStats overall) {
+        _overall = overall;
+    }
+
+    /**
+     * @return Map of {@link edu.ucsd.crbs.cws.workflow.Workflow} id to stats
+     */
+    public Map<String,JobLatencyStats> getByWorkflow() {
+        return _byWorkflow;
+    }
+
+    public void setByWorkflow(Map<String,JobLatencyStats> byWorkflow) {
+        _byWorkflow = byWorkflow;
+    }
+
+    /**
+     * @return Map of owner to stats
+     */
+    public Map<String,JobLatencyStats> getByOwner() {
+        return _byOwner;
+    }
+
+    public void setByOwner(Map<String,JobLatencyStats> byOwner) {
+        _byOwner = byOwner;
+    }
+
+    /**
+     * @return Map of status to number of {@link edu.ucsd.crbs.cws.workflow.Job}s
+     * currently in that status that have not completed
+     */
+    public Map<String,Long> getBacklog() {
+        return _backlog;
+    }
+
+    public void setBacklog(Map<String,Long> backlog) {
+        _backlog = backlog;
+    }
+
+    public Long getOldestActiveJobId() {
+        return _oldestActiveJobId;
+    }
+
+    public void setOldestActiveJobId(Long oldestActiveJobId) {
+        _oldestActiveJobId = oldestActiveJobId;
+    }
+
+    /**
+     * @return Age of oldest {@link edu.ucsd.crbs.cws.workflow.Job} that has
+     * not completed or null if there are none
+     */
+    public Long getOldestActiveJobAgeInSeconds() {
+        return _oldestActiveJobAgeInSeconds;
+    }
+
+    public void setOldestActiveJobAgeInSeconds(Long oldestActiveJobAgeInSeconds) {
+        _oldestActiveJobAgeInSeconds = oldestActiveJobAgeInSeconds;
+    }
+
+    public Long getOldestUnsubmittedJobId() {
+        return _oldestUnsubmittedJobId;
+    }
+
+    public void setOldestUnsubmittedJobId(Long oldestUnsubmittedJobId) {
+        _oldestUnsubmittedJobId = oldestUnsubmittedJobId;
+    }
+
+    /**
+     * @return Age of oldest {@link edu.ucsd.crbs.cws.workflow.Job} that has
+     * not been submitted to the scheduler or null if there are none
+     */
+    public Long getOldestUnsubmittedJobAgeInSeconds() {
+        return _oldestUnsubmittedJobAgeInSeconds;
+    }
+
+    public void setOldestUnsubmittedJobAgeInSeconds(Long oldestUnsubmittedJobAgeInSeconds) {
+        _oldestUnsubmittedJobAgeInSeconds = oldestUnsubmittedJobAgeInSeconds;
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.report;
+
+import edu.ucsd.crbs.cws.metrics.LatencyHistogram;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.JobStatusChange;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates queue wait and run time of {@link Job}s from their status
+ * timeline.  For {@link Job}s created before the status timeline was
+ * recorded {@link Job#getStartDate()} and {@link Job#getFinishDate()}
+ * are used instead.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobLatencyReportFactoryImpl implements JobLatencyReportFactory {
+
+    /**
+     * Longest duration tracked, anything longer is recorded as this value
+     */
+    public static final long HIGHEST_TRACKABLE_MILLIS = TimeUnit.DAYS.toMillis(365);
+    
+    public static final int SIGNIFICANT_DIGITS = 2;
+    
+    @Override
+    public JobLatencyReport getJobLatencyReport(List<Job> recentJobs, 
+            List<Job> activeJobs, final Date since, final Date now) {
+        JobLatencyReport report = new JobLatencyReport();
+        report.setSince(since);
+        report.setCreateDate(now);
+        
+        StatsAccumulator overall = new StatsAccumulator();
+        Map<String,StatsAccumulator> byWorkflow = new HashMap<>();
+        Map<String,StatsAccumulator> byOwner = new HashMap<>();
+        if (recentJobs != null){
+            for (Job j : recentJobs){
+                overall.add(j);
+                String workflowKey = j.getWorkflowId() == null ? "" : 
+                        j.getWorkflowId().toString();
+                getAccumulator(byWorkflow,workflowKey).add(j);
+                getAccumulator(byOwner,j.getOwner() == null ? "" : j.getOwner()).add(j);
+            }
+        }
+        report.setOverall(overall.getStats());
+        for (Map.Entry<String,StatsAccumulator> entry : byWorkflow.entrySet()){
+            report.getByWorkflow().put(entry.getKey(), entry.getValue().getStats());
+        }
+        for (Map.Entry<String,StatsAccumulator> entry : byOwner.entrySet()){
+            report.getByOwner().put(entry.getKey(), entry.getValue().getStats());
+        }
+        
+        if (activeJobs != null){
+            setBacklog(report,activeJobs,now);
+        }
+        return report;
+    }
+    
+    private void setBacklog(JobLatencyReport report,List<Job> activeJobs,
+            final Date now){
+        Job oldestActive = null;
+        Job oldestUnsubmitted = null;
+        for (Job j : activeJobs){
+            String status = j.getStatus() == null ? "" : j.getStatus();
+            Long count = report.getBacklog().get(status);
+            report.getBacklog().put(status, count == null ? 1 : count + 1);
+            if (j.getCreateDate() == null){
+                continue;
+            }
+            if (oldestActive == null || 
+                    j.getCreateDate().before(oldestActive.getCreateDate())){
+                oldestActive = j;
+            }
+            if (j.getHasJobBeenSubmittedToScheduler() == false &&
+                    (oldestUnsubmitted == null || 
+                     j.getCreateDate().before(oldestUnsubmitted.getCreateDate()))){
+                oldestUnsubmitted = j;
+            }
+        }
+        if (oldestActive != null){
+            report.setOldestActiveJobId(oldestActive.getId());
+            report.setOldestActiveJobAgeInSeconds(getAgeInSeconds(oldestActive,now));
+        }
+        if (oldestUnsubmitted != null){
+            report.setOldestUnsubmittedJobId(oldestUnsubmitted.getId());
+            report.setOldestUnsubmittedJobAgeInSeconds(getAgeInSeconds(oldestUnsubmitted,now));
+        }
+    }
+    
+    private long getAgeInSeconds(Job j,final Date now){
+        return Math.max(0, TimeUnit.MILLISECONDS.toSeconds(now.getTime() - 
+                j.getCreateDate().getTime()));
+    }
+    
+    private StatsAccumulator getAccumulator(Map<String,StatsAccumulator> map,
+            final String key){
+        StatsAccumulator acc = map.get(key);
+        if (acc == null){
+            acc = new StatsAccumulator();
+            map.put(key, acc);
+        }
+        return acc;
+    }
+    
+    /**
+     * Gets date <b>j</b> started running 
+     * @param j
+     * @return 
+     */
+    static Date getStartDate(Job j){
+        Date start = j.getDateStatusEntered(Job.RUNNING_STATUS);
+        if (start != null){
+            return start;
+        }
+        return j.getStartDate();
+    }
+    
+    /**
+     * Gets date <b>j</b> completed or failed
+     * @param j
+     * @return 
+     */
+    static Date getFinishDate(Job j){
+        Date finish = j.getDateStatusEntered(Job.COMPLETED_STATUS);
+        if (finish != null){
+            return finish;
+        }
+        finish = j.getDateStatusEntered(Job.ERROR_STATUS);
+        if (finish != null){
+            return finish;
+        }
+        return j.getFinishDate();
+    }
+    
+    static LatencySummary getLatencySummary(LatencyHistogram histogram){
+        LatencySummary summary = new LatencySummary();
+        summary.setCount(histogram.getTotalCount());
+        if (histogram.getTotalCount() == 0){
+            return summary;
+        }
+        summary.setP50(toSeconds(histogram.getValueAtPercentile(50.0)));
+        summary.setP95(toSeconds(histogram.getValueAtPercentile(95.0)));
+        summary.setP99(toSeconds(histogram.getValueAtPercentile(99.0)));
+        summary.setMax(toSeconds(histogram.getMaxValue()));
+        return summary;
+    }
+    
+    private static double toSeconds(long millis){
+        return (double)millis/1000.0;
+    }
+    
+    private static LatencyHistogram createHistogram(){
+        return new LatencyHistogram(HIGHEST_TRACKABLE_MILLIS,SIGNIFICANT_DIGITS);
+    }
+    
+    private static void record(LatencyHistogram histogram,final Date start,
+            final Date end){
+        if (start == null || end == null){
+            return;
+        }
+        long duration = Math.max(0, end.getTime() - start.getTime());
+        histogram.recordValue(Math.min(duration, HIGHEST_TRACKABLE_MILLIS));
+    }
+    
+    /**
+     * Collects durations for a group of {@link Job}s
+     */
+    static class StatsAccumulator {
+        private long _jobCount;
+        private final LatencyHistogram _queueWait = createHistogram();
+        private final LatencyHistogram _runTime = createHistogram();
+        private final Map<String,LatencyHistogram> _timeInStatus = new TreeMap<>();
+        
+        void add(Job j){
+            _jobCount++;
+            Date start = getStartDate(j);
+            record(_queueWait,j.getCreateDate(),start);
+            record(_runTime,start,getFinishDate(j));
+            
+            List<JobStatusChange> timeline = j.getStatusTimeline();
+            if (timeline == null){
+                return;
+            }
+            for (int i = 0; i < timeline.size() - 1; i++){
+                JobStatusChange change = timeline.get(i);
+                LatencyHistogram h = _timeInStatus.get(change.getStatus());
+                if (h == null){
+                    h = createHistogram();
+                    _timeInStatus.put(change.getStatus(), h);
+                }
+                record(h,change.getDate(),timeline.get(i+1).getDate());
+            }
+        }
+        
+        JobLatencyStats getStats(){
+            JobLatencyStats stats = new JobLatencyStats();
+            stats.setJobCount(_jobCount);
+            stats.setQueueWait(getLatencySummary(_queueWait));
+            stats.setRunTime(getLatencySummary(_runTime));
+            for (Map.Entry<String,LatencyHistogram> entry : _timeInStatus.entrySet()){
+                stats.getTimeInStatus().put(entry.getKey(), 
+                        getLatencySummary(entry.getValue()));
+            }
+            return stats;
+        }
+    }
+}
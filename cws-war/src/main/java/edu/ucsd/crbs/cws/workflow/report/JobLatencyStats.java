@@ -0,0 +1,101 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.report;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Queue wait, run time, and time spent in each status for a group of
+ * {@link edu.ucsd.crbs.cws.workflow.Job}s such as all the 
+ * {@link edu.ucsd.crbs.cws.workflow.Job}s of a given owner.  
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobLatencyStats {
+    
+    private long _jobCount;
+    private LatencySummary _queueWait;
+    private LatencySummary _runTime;
+    private Map<String,LatencySummary> _timeInStatus = new TreeMap<>();
+
+    /**
+     * @return Number of {@link edu.ucsd.crbs.cws.workflow.Job}s in group
+     */
+    public long getJobCount() {
+        return _jobCount;
+    }
+
+    public void setJobCount(long jobCount) {
+        _jobCount = jobCount;
+    }
+
+    /**
+     * @return Time from creation until {@link edu.ucsd.crbs.cws.workflow.Job}
+     * started running for {@link edu.ucsd.crbs.cws.workflow.Job}s that
+     * have started
+     */
+    public LatencySummary getQueueWait() {
+        return _queueWait;
+    }
+
+    public void setQueueWait(LatencySummary queueWait) {
+        _queueWait = queueWait;
+    }
+
+    /**
+     * @return Time from start until {@link edu.ucsd.crbs.cws.workflow.Job}
+     * completed or failed for {@link edu.ucsd.crbs.cws.workflow.Job}s that 
+     * have finished
+     */
+    public LatencySummary getRunTime() {
+        return _runTime;
+    }
+
+    public void setRunTime(LatencySummary runTime) {
+        _runTime = runTime;
+    }
+
+    /**
+     * @return Map of status to time spent in that status taken from the
+     * status timeline of each {@link edu.ucsd.crbs.cws.workflow.Job}
+     */
+    public Map<String,LatencySummary> getTimeInStatus() {
+        return _timeInStatus;
+    }
+
+    public void setTimeInStatus(Map<String,LatencySummary> timeInStatus) {
+        _timeInStatus = timeInStatus;
+    }
+}
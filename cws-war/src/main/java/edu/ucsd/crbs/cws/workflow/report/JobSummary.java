@@ -0,0 +1,131 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.report;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Summary of number of {@link edu.ucsd.crbs.cws.workflow.Job}s by owner and
+ * status along with total size in bytes of output 
+ * {@link edu.ucsd.crbs.cws.workflow.WorkspaceFile}s by owner.  Deleted 
+ * objects are not included.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class JobSummary implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private Map<String,Map<String,Long>> _jobCounts = new TreeMap<>();
+    private Map<String,Long> _outputBytes = new TreeMap<>();
+    
+    /**
+     * @return Map of owner to map of status to number of jobs
+     */
+    public Map<String,Map<String,Long>> getJobCounts() {
+        return _jobCounts;
+    }
+
+    public void setJobCounts(Map<String,Map<String,Long>> jobCounts) {
+        _jobCounts = jobCounts;
+    }
+
+    /**
+     * @return Map of owner to total size in bytes of output workspace files 
+     */
+    public Map<String,Long> getOutputBytes() {
+        return _outputBytes;
+    }
+
+    public void setOutputBytes(Map<String,Long> outputBytes) {
+        _outputBytes = outputBytes;
+    }
+    
+    /**
+     * Adds <b>count</b> to number of jobs for <b>owner</b> and <b>status</b>
+     * @param owner null is stored as empty string
+     * @param status null is stored as empty string
+     * @param count 
+     */
+    public void addJobCount(final String owner,final String status,long count){
+        String ownerKey = owner == null ? "" : owner;
+        Map<String,Long> statusMap = _jobCounts.get(ownerKey);
+        if (statusMap == null){
+            statusMap = new TreeMap<>();
+            _jobCounts.put(ownerKey, statusMap);
+        }
+        String statusKey = status == null ? "" : status;
+        Long curCount = statusMap.get(statusKey);
+        statusMap.put(statusKey, curCount == null ? count : curCount + count);
+    }
+    
+    /**
+     * Adds <b>bytes</b> to output bytes for <b>owner</b>
+     * @param owner null is stored as empty string
+     * @param bytes 
+     */
+    public void addOutputBytes(final String owner,long bytes){
+        String ownerKey = owner == null ? "" : owner;
+        Long curBytes = _outputBytes.get(ownerKey);
+        _outputBytes.put(ownerKey, curBytes == null ? bytes : curBytes + bytes);
+    }
+    
+    /**
+     * @param owner
+     * @param status
+     * @return number of jobs for <b>owner</b> with <b>status</b>
+     */
+    @JsonIgnore
+    public long getJobCount(final String owner,final String status){
+        Map<String,Long> statusMap = _jobCounts.get(owner == null ? "" : owner);
+        if (statusMap == null){
+            return 0;
+        }
+        Long count = statusMap.get(status == null ? "" : status);
+        return count == null ? 0 : count;
+    }
+    
+    /**
+     * @param owner
+     * @return total size in bytes of output workspace files for <b>owner</b>
+     */
+    @JsonIgnore
+    public long getOutputBytes(final String owner){
+        Long bytes = _outputBytes.get(owner == null ? "" : owner);
+        return bytes == null ? 0 : bytes;
+    }
+}
@@ -35,6 +35,7 @@ package edu.ucsd.crbs.cws.workflow.validate;
 
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.workflow.Job;
+import java.util.List;
 
 /**
  * Defines interface for classes that link and validate @{link Parameter} objects in
@@ -53,4 +54,16 @@ public interface JobValidator {
      */
     public Job validate(Job job,User user) throws Exception;
     
+    /**
+     * Examines all <b>jobs</b> and verifies each meets all requirements.  Each
+     * distinct {@link edu.ucsd.crbs.cws.workflow.Workflow} referenced by 
+     * <b>jobs</b> is only loaded once.  Problems are set in the error methods
+     * of the individual {@link Job} objects.
+     * @param jobs
+     * @param user
+     * @return <b>jobs</b> passed in with errors set as appropriate
+     * @throws Exception 
+     */
+    public List<Job> validateAll(List<Job> jobs,User user) throws Exception;
+    
 }
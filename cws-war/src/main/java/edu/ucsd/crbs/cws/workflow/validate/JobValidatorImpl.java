@@ -43,9 +43,15 @@ import edu.ucsd.crbs.cws.workflow.ParameterWithError;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.Workflow;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * Validates {@link Job} by examining all the parameters and verifying they
@@ -64,6 +70,15 @@ public class JobValidatorImpl implements JobValidator {
     JobParametersChecker _jobParamNullChecker = new JobParametersNullNameChecker();
     JobParametersChecker _jobParamDuplicateChecker = new JobParametersDuplicateChecker();
     ParameterValidator _parameterValidator = new ParameterValidatorImpl();
+    ValidationPlanCache _validationPlanCache = new ValidationPlanCache();
+
+    /**
+     * Sets {@link WorkflowDAO} used to load {@link Workflow} for {@link Job}
+     * @param workflowDAO 
+     */
+    public void setWorkflowDAO(WorkflowDAO workflowDAO){
+        _workflowDAO = workflowDAO;
+    }
 
     @Override
     public Job validate(Job job, User user) throws Exception {
@@ -71,7 +86,75 @@ public class JobValidatorImpl implements JobValidator {
         if (job == null) {
             throw new Exception("Job cannot be null");
         }
+        checkUser(user);
+        checkOwner(job, user);
+        return validateParameters(job, user);
+    }
+    
+    /**
+     * Validates all <b>jobs</b> in the same way as {@link #validate}, but 
+     * each distinct {@link Workflow} is only loaded once.  Every {@link Job}
+     * is given its own shallow copy of the loaded {@link Workflow} so 
+     * later changes to one {@link Job}'s {@link Workflow} do not affect the
+     * others
+     * @param jobs
+     * @param user
+     * @return <b>jobs</b> passed in with errors set as appropriate
+     * @throws Exception If <b>jobs</b> or any {@link Job} in it is null
+     */
+    @Override
+    public List<Job> validateAll(List<Job> jobs, User user) throws Exception {
+        if (jobs == null) {
+            throw new Exception("Jobs cannot be null");
+        }
+        checkUser(user);
         
+        Map<Long,Workflow> workflows = new HashMap<>();
+        Map<Long,String> workflowErrors = new HashMap<>();
+        for (Job job : jobs){
+            if (job == null) {
+                throw new Exception("Job cannot be null");
+            }
+            checkOwner(job, user);
+            checkParameters(job);
+            
+            Long workflowId = null;
+            if (job.getWorkflow() != null){
+                workflowId = job.getWorkflow().getId();
+            }
+            Workflow w = workflows.get(workflowId);
+            String error = workflowErrors.get(workflowId);
+            if (w == null && error == null){
+                try {
+                    w = _workflowDAO.getWorkflowForJob(job, user);
+                    if (w == null){
+                        _log.log(Level.WARNING, "Unable to load workflow for job {0}",
+                                workflowId);
+                        error = "Unable to load workflow for job";
+                    }
+                } catch (Exception ex) {
+                    _log.log(Level.SEVERE, "caught exception", ex);
+                    error = ex.getMessage();
+                }
+                // a job without a workflow id always fails the load so there
+                // is no need to remember the result
+                if (workflowId != null){
+                    workflows.put(workflowId, w);
+                    if (error != null){
+                        workflowErrors.put(workflowId, error);
+                    }
+                }
+            }
+            if (error != null){
+                job.setError(error);
+                continue;
+            }
+            validateParametersAgainstWorkflow(job, copyWorkflow(w));
+        }
+        return jobs;
+    }
+    
+    private void checkUser(User user) throws Exception {
         if (user == null){ 
            throw new Exception("User cannot be null");
         }
@@ -79,7 +162,9 @@ public class JobValidatorImpl implements JobValidator {
         if (user.getLoginToRunJobAs() == null){
             throw new Exception("User.getLoginToRunJobAs() cannot be null");
         }
-
+    }
+    
+    private void checkOwner(Job job, User user){
         // If the owner of the job is not set, use the user.getLoginToRunAs() 
         // If owner is set verify it matches the user.getLoginToRunAs() otherwise
         // its an error
@@ -91,8 +176,41 @@ public class JobValidatorImpl implements JobValidator {
                     + user.getLoginToRunJobAs());
 
         }
-        
-        return validateParameters(job, user);
+    }
+    
+    private void checkParameters(Job job) throws Exception {
+        _log.log(Level.INFO, "Checking for null parameters");
+        _jobParamNullChecker.check(job);
+
+        _log.log(Level.INFO, "Duplicate parameter check");
+        //iterate through all the Parameters of the job and verify there are
+        // no duplicates first if there are set error
+        _jobParamDuplicateChecker.check(job);
+    }
+    
+    /**
+     * Creates a shallow copy of <b>w</b> with its own list of 
+     * {@link WorkflowParameter} objects
+     */
+    private Workflow copyWorkflow(Workflow w){
+        Workflow copy = new Workflow();
+        copy.setId(w.getId());
+        copy.setName(w.getName());
+        copy.setVersion(w.getVersion());
+        copy.setDescription(w.getDescription());
+        copy.setCreateDate(w.getCreateDate());
+        copy.setReleaseNotes(w.getReleaseNotes());
+        copy.setOwner(w.getOwner());
+        copy.setAuthor(w.getAuthor());
+        copy.setDeleted(w.isDeleted());
+        copy.setBlobKey(w.getBlobKey());
+        copy.setMd5(w.getMd5());
+        copy.setWorkflowFileUploadURL(w.getWorkflowFileUploadURL());
+        copy.setParentWorkflow(w.getParentWorkflow());
+        if (w.getParameters() != null){
+            copy.setParameters(new ArrayList<>(w.getParameters()));
+        }
+        return copy;
     }
     
     /**
@@ -109,13 +227,7 @@ public class JobValidatorImpl implements JobValidator {
     
     private Job validateParameters(Job job, User user) throws Exception {
         
-        _log.log(Level.INFO, "Checking for null parameters");
-        _jobParamNullChecker.check(job);
-
-        _log.log(Level.INFO, "Duplicate parameter check");
-        //iterate through all the Parameters of the job and verify there are
-        // no duplicates first if there are set error
-        _jobParamDuplicateChecker.check(job);
+        checkParameters(job);
 
         //load Workflow For Job and if this has problems bail cause we need the
         // Workflow object to do anything else
@@ -123,7 +235,7 @@ public class JobValidatorImpl implements JobValidator {
             Workflow w = _workflowDAO.getWorkflowForJob(job, user);
             if (w != null) {
                 _log.log(Level.INFO, "Found workflow setting in job");
-                job.setWorkflow(w);
+                return validateParametersAgainstWorkflow(job, w);
             } else {
                 if (job.getWorkflow() != null && job.getWorkflow().getId() != null) {
                     _log.log(Level.WARNING, "Unable to load workflow for job",
@@ -139,10 +251,30 @@ public class JobValidatorImpl implements JobValidator {
             job.setError(ex.getMessage());
             return job;
         }
-
+    }
+    
+    /**
+     * Sets <b>w</b> as the {@link Workflow} of <b>job</b> and links and 
+     * validates the {@link Parameter}s of <b>job</b> against the 
+     * {@link WorkflowParameter}s in <b>w</b> using the cached 
+     * {@link ValidationPlan} for <b>w</b>.  <b>w</b> is not modified.
+     */
+    private Job validateParametersAgainstWorkflow(Job job, Workflow w) throws Exception {
+        job.setWorkflow(w);
+        
+        if (job.getParameters() == null) {
+            _log.log(Level.INFO, "No parameters linked with WorkflowParameters");
+            return job;
+        }
+        
+        ValidationPlan plan = _validationPlanCache.getValidationPlan(w);
+        
+        // position of matching WorkflowParameter for each job Parameter or -1
+        int[] linkedIndexes = new int[job.getParameters().size()];
+        
         // iterate again through all parameters and find corresponding workflowparameter
         // if no match set error
-        if (linkJobParametersWithWorkflowParameters(job) == 0) {
+        if (linkJobParametersWithWorkflowParameters(job, w, plan, linkedIndexes) == 0) {
             _log.log(Level.INFO, "No parameters linked with WorkflowParameters");
             return job;
         }
@@ -151,10 +283,15 @@ public class JobValidatorImpl implements JobValidator {
         // keep track of workflow parameters already covered and if there are
         // any extra note those in the error
         Parameter param;
+        int paramIndex = 0;
         Iterator pIterator = job.getParameters().iterator();
-        for (; pIterator.hasNext();) {
+        for (; pIterator.hasNext(); paramIndex++) {
             param = (Parameter) pIterator.next();
-            String res = _parameterValidator.validate(param);
+            Pattern pattern = null;
+            if (linkedIndexes[paramIndex] >= 0){
+                pattern = plan.getValidationPattern(linkedIndexes[paramIndex]);
+            }
+            String res = _parameterValidator.validate(param,pattern);
             if (res != null) {
                 job.addParameterWithError(new ParameterWithError(param, res));
                 pIterator.remove();
@@ -166,8 +303,8 @@ public class JobValidatorImpl implements JobValidator {
 
     /**
      * Iterates through {@link Job#getParameters()} for <b>job</b> and links
-     * up {@link Parameter} objects with {@link WorkflowParameter} objects into
-     * a map that is returned.<p/>
+     * up {@link Parameter} objects with {@link WorkflowParameter} objects 
+     * in <b>w</b> found via <b>plan</b>.<p/>
      * This method will fail if any of the following occurs:
      * <p/>
      * If any <b>job</b> {@link Parameter} objects don't have a matching
@@ -182,37 +319,36 @@ public class JobValidatorImpl implements JobValidator {
      * {@link WorkflowParameter} objects are not <b>required</b>
      *
      * @param job Job to examine
-     * @return Map with {@link WorkflowParameter} as key and {@link Parameter}
-     * as value
+     * @param w {@link Workflow} whose parameters are linked to <b>job</b>
+     * @param plan {@link ValidationPlan} built from <b>w</b>
+     * @param linkedIndexes Set to position of {@link WorkflowParameter} in
+     *        <b>w</b> matching {@link Parameter} at the same position in 
+     *        <b>job</b> or -1 if there is no match
+     * @return Number of {@link Parameter}s linked
      */
-    private int linkJobParametersWithWorkflowParameters(Job job) {
+    private int linkJobParametersWithWorkflowParameters(Job job, Workflow w,
+            ValidationPlan plan,int[] linkedIndexes) {
 
-        WorkflowParameter wParam;
         int count = 0;
-
-        if (job.getParameters() == null) {
-            return 0;
-        }
-
-        for (Parameter p : job.getParameters()) {
-
-            wParam = job.getWorkflow().removeWorkflowParameterMatchingName(p.getName());
-            if (wParam == null) {
+        BitSet used = new BitSet(plan.getNumberOfParameters());
+        List<Parameter> params = job.getParameters();
+        for (int i = 0; i < params.size(); i++) {
+            Parameter p = params.get(i);
+            int index = plan.getIndexOfUnusedParameter(p.getName(), used);
+            linkedIndexes[i] = index;
+            if (index < 0) {
                 job.addParameterWithError(new ParameterWithError(p, "No matching WorkflowParameter"));
             } else {
-                p.setWorkflowParameter(wParam);
+                used.set(index);
+                p.setWorkflowParameter(w.getParameters().get(index));
                 count++;
             }
         }
 
-        if (job.getWorkflow().getParameters().isEmpty() == true) {
-            return count;
-        }
-
-        for (WorkflowParameter wParameter : job.getWorkflow().getParameters()) {
-            if (wParameter.getIsRequired()) {
-                job.addParameterWithError(new ParameterWithError(wParameter.getName(), null, "Required parameter not found"));
-            }
+        for (int index = plan.getNextMissingRequiredIndex(used, 0); index >= 0;
+                index = plan.getNextMissingRequiredIndex(used, index+1)) {
+            job.addParameterWithError(new ParameterWithError(w.getParameters().get(index).getName(),
+                    null, "Required parameter not found"));
         }
         return count;
     }
@@ -34,6 +34,7 @@
 package edu.ucsd.crbs.cws.workflow.validate;
 
 import edu.ucsd.crbs.cws.workflow.Parameter;
+import java.util.regex.Pattern;
 
 /**
  * Verifies {@link Parameter} meets constrains of {@link WorkflowParameter} set within
@@ -50,4 +51,15 @@ public interface ParameterValidator {
      * @return 
      */
     public String validate(Parameter param);
+    
+    /**
+     * Same as {@link #validate(edu.ucsd.crbs.cws.workflow.Parameter)} except
+     * <b>validationPattern</b> is used instead of compiling 
+     * {@link WorkflowParameter#getValidationRegex()}
+     * @param param
+     * @param validationPattern Compiled regex of {@link WorkflowParameter} 
+     *        in <b>param</b> or null to compile regex as needed
+     * @return 
+     */
+    public String validate(Parameter param,Pattern validationPattern);
 }
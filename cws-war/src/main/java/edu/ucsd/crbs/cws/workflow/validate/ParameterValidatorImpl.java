@@ -46,6 +46,8 @@ public class ParameterValidatorImpl implements ParameterValidator {
 
     public static final String EMAIL_REGEX_PATTERN = "^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,64}$";
     
+    private static final Pattern EMAIL_PATTERN = Pattern.compile(EMAIL_REGEX_PATTERN);
+    
     /**
      * Validates <b>param</b> that have
      * {@link WorkflowParameter#getValidationType()} set
@@ -56,6 +58,21 @@ public class ParameterValidatorImpl implements ParameterValidator {
      */
     @Override
     public String validate(Parameter param) {
+        return validate(param,null);
+    }
+    
+    /**
+     * Validates <b>param</b> that have
+     * {@link WorkflowParameter#getValidationType()} set
+     *
+     * @param param Parameter to examine
+     * @param validationPattern Compiled {@link WorkflowParameter#getValidationRegex()}
+     *        or null in which case the regex is compiled if needed
+     * @return null if parameter is valid otherwise will contain a string with
+     * the error
+     */
+    @Override
+    public String validate(Parameter param,Pattern validationPattern) {
         if (param == null) {
             return "Cannot perform validation, Parameter cannot be null";
         }
@@ -96,7 +113,7 @@ public class ParameterValidatorImpl implements ParameterValidator {
         } else if (param.getWorkflowParameter().getValidationType().equalsIgnoreCase(WorkflowParameter.ValidationType.DIGITS)) {
             return validateDigitsParameter(param);
         } else if (param.getWorkflowParameter().getValidationType().equalsIgnoreCase(WorkflowParameter.ValidationType.STRING)) {
-            return validateStringParameter(param);
+            return validateStringParameter(param,validationPattern);
         } else if (param.getWorkflowParameter().getValidationType().equalsIgnoreCase(WorkflowParameter.ValidationType.EMAIL)) {
             return validateEmailParameter(param);
         } 
@@ -117,8 +134,7 @@ public class ParameterValidatorImpl implements ParameterValidator {
             return null;
         }
         
-        if (Pattern.matches(EMAIL_REGEX_PATTERN,
-                param.getValue()) == false) {
+        if (EMAIL_PATTERN.matcher(param.getValue()).matches() == false) {
             return "Invalid email address";
         }
         
@@ -166,9 +182,10 @@ public class ParameterValidatorImpl implements ParameterValidator {
      * equal or less then {@link WorkflowParameter#getMaxLength() } and matches
      * any regular expression set in {@link WorkflowParameter}
      * @param param
+     * @param validationPattern Compiled regex or null to compile regex
      * @return null if valid otherwise a String with message for invalid values
      */
-    private String validateStringParameter(Parameter param) {
+    private String validateStringParameter(Parameter param,Pattern validationPattern) {
         if (param.getWorkflowParameter().getMaxLength() > 0) {
             if (param.getValue().length() > param.getWorkflowParameter().getMaxLength()) {
                 return "Parameter value length: " + param.getValue().length()
@@ -181,8 +198,11 @@ public class ParameterValidatorImpl implements ParameterValidator {
             return null;
         }
 
-        if (Pattern.matches(param.getWorkflowParameter().getValidationRegex(),
-                param.getValue()) == true) {
+        if (validationPattern == null){
+            validationPattern = Pattern.compile(param.getWorkflowParameter().getValidationRegex());
+        }
+        
+        if (validationPattern.matcher(param.getValue()).matches() == true) {
             return null;
         }
         
@@ -0,0 +1,178 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.validate;
+
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable summary of the {@link WorkflowParameter}s of a {@link Workflow}
+ * used to validate {@link edu.ucsd.crbs.cws.workflow.Job}s without 
+ * modifying the {@link Workflow}.  The plan maps parameter names to their
+ * position in {@link Workflow#getParameters()}, holds the compiled
+ * {@link WorkflowParameter#getValidationRegex()} of each parameter and
+ * the positions of the required parameters as a {@link BitSet}.<p/>
+ * 
+ * Callers track which parameters have been matched with their own 
+ * {@link BitSet} so a single plan can be shared by many threads.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class ValidationPlan {
+    
+    private final Long _workflowId;
+    private final int _numParameters;
+    private final Map<String,int[]> _indexesByName;
+    private final Pattern[] _patterns;
+    private final BitSet _required;
+    
+    /**
+     * Builds plan from {@link Workflow#getParameters()} of <b>w</b>
+     * @param w 
+     * @throws IllegalArgumentException if <b>w</b> is null
+     */
+    public ValidationPlan(Workflow w){
+        if (w == null){
+            throw new IllegalArgumentException("Workflow cannot be null");
+        }
+        _workflowId = w.getId();
+        List<WorkflowParameter> params = w.getParameters();
+        _numParameters = params == null ? 0 : params.size();
+        _indexesByName = new HashMap<>();
+        _patterns = new Pattern[_numParameters];
+        _required = new BitSet(_numParameters);
+        
+        for (int i = 0; i < _numParameters; i++){
+            WorkflowParameter wp = params.get(i);
+            if (wp == null){
+                continue;
+            }
+            if (wp.getName() != null){
+                int[] indexes = _indexesByName.get(wp.getName());
+                if (indexes == null){
+                    indexes = new int[] {i};
+                }
+                else {
+                    int[] grown = new int[indexes.length+1];
+                    System.arraycopy(indexes, 0, grown, 0, indexes.length);
+                    grown[indexes.length] = i;
+                    indexes = grown;
+                }
+                _indexesByName.put(wp.getName(), indexes);
+            }
+            if (wp.getValidationRegex() != null){
+                try {
+                    _patterns[i] = Pattern.compile(wp.getValidationRegex());
+                }
+                catch(PatternSyntaxException pse){
+                    //left null so the error is reported when the regex
+                    //is compiled during validation
+                }
+            }
+            if (wp.getIsRequired() == true){
+                _required.set(i);
+            }
+        }
+    }
+    
+    /**
+     * @return Id of {@link Workflow} this plan was built from
+     */
+    public Long getWorkflowId(){
+        return _workflowId;
+    }
+    
+    /**
+     * @return Number of parameters in {@link Workflow} this plan was built from
+     */
+    public int getNumberOfParameters(){
+        return _numParameters;
+    }
+    
+    /**
+     * Finds position of first parameter named <b>name</b> that is not set
+     * in <b>used</b>
+     * @param name
+     * @param used Positions of parameters already matched
+     * @return position in {@link Workflow#getParameters()} or -1 if none found
+     */
+    public int getIndexOfUnusedParameter(final String name,BitSet used){
+        if (name == null){
+            return -1;
+        }
+        int[] indexes = _indexesByName.get(name);
+        if (indexes == null){
+            return -1;
+        }
+        for (int index : indexes){
+            if (used.get(index) == false){
+                return index;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Gets compiled {@link WorkflowParameter#getValidationRegex()} of the
+     * parameter at <b>index</b>
+     * @param index
+     * @return Pattern or null if parameter has no regex or the regex is 
+     *         not valid
+     */
+    public Pattern getValidationPattern(int index){
+        return _patterns[index];
+    }
+    
+    /**
+     * Finds next required parameter at or after <b>fromIndex</b> that is not
+     * set in <b>used</b>
+     * @param used Positions of parameters already matched
+     * @param fromIndex 
+     * @return position in {@link Workflow#getParameters()} or -1 if none found
+     */
+    public int getNextMissingRequiredIndex(BitSet used,int fromIndex){
+        for (int i = _required.nextSetBit(fromIndex); i >= 0; i = _required.nextSetBit(i+1)){
+            if (used.get(i) == false){
+                return i;
+            }
+        }
+        return -1;
+    }
+}
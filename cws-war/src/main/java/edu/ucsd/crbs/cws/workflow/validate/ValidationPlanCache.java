@@ -0,0 +1,117 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.validate;
+
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded least recently used cache of {@link ValidationPlan} objects
+ * keyed by {@link Workflow#getId()}.  The {@link edu.ucsd.crbs.cws.workflow.WorkflowParameter}s
+ * of a {@link Workflow} do not change once it is created, new versions get a
+ * new id, so entries do not expire.  As a safeguard a plan is rebuilt if
+ * the number of parameters in the {@link Workflow} passed in differs from
+ * the cached plan.
+ * 
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+public class ValidationPlanCache {
+    
+    /**
+     * Maximum number of {@link ValidationPlan}s to keep
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 200;
+    
+    private final LinkedHashMap<Long,ValidationPlan> _map;
+    private final AtomicLong _hits = new AtomicLong(0);
+    private final AtomicLong _misses = new AtomicLong(0);
+    
+    public ValidationPlanCache(){
+        this(DEFAULT_MAX_ENTRIES);
+    }
+    
+    public ValidationPlanCache(final int maxEntries){
+        _map = new LinkedHashMap<Long,ValidationPlan>(16,0.75f,true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long,ValidationPlan> eldest){
+                return size() > maxEntries;
+            }
+        };
+    }
+    
+    /**
+     * Gets {@link ValidationPlan} for <b>w</b> building and caching a new 
+     * one if needed.  {@link Workflow}s without an id are never cached.
+     * @param w
+     * @return 
+     */
+    public ValidationPlan getValidationPlan(Workflow w){
+        if (w == null){
+            throw new IllegalArgumentException("Workflow cannot be null");
+        }
+        int numParams = w.getParameters() == null ? 0 : w.getParameters().size();
+        if (w.getId() != null){
+            ValidationPlan plan;
+            synchronized(this){
+                plan = _map.get(w.getId());
+            }
+            if (plan != null && plan.getNumberOfParameters() == numParams){
+                _hits.incrementAndGet();
+                return plan;
+            }
+        }
+        _misses.incrementAndGet();
+        ValidationPlan plan = new ValidationPlan(w);
+        if (w.getId() != null){
+            synchronized(this){
+                _map.put(w.getId(), plan);
+            }
+        }
+        return plan;
+    }
+    
+    public synchronized int getSize(){
+        return _map.size();
+    }
+    
+    public long getHits(){
+        return _hits.get();
+    }
+    
+    public long getMisses(){
+        return _misses.get();
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.WorkflowDAO;
+import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Parameter;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
+import edu.ucsd.crbs.cws.workflow.report.JobSummary;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestLocalBackend {
+
+    @Rule
+    public TemporaryFolder Folder = new TemporaryFolder();
+    
+    public TestLocalBackend() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(LocalBackend.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+        Job.REFS_ENABLED = true;
+        Workflow.REFS_ENABLED = true;
+        InputWorkspaceFileLink.REFS_ENABLED = true;
+    }
+    
+    private Workflow createWorkflow(final String name){
+        Workflow w = new Workflow();
+        w.setName(name);
+        List<WorkflowParameter> params = new ArrayList<>();
+        WorkflowParameter wp = new WorkflowParameter();
+        wp.setName("foo");
+        wp.setType(WorkflowParameter.Type.TEXT);
+        params.add(wp);
+        w.setParameters(params);
+        return w;
+    }
+    
+    private Job createJob(Workflow w,final String owner,final String status){
+        Job j = new Job();
+        j.setWorkflow(w);
+        j.setOwner(owner);
+        j.setStatus(status);
+        return j;
+    }
+
+    @Test
+    public void testWorkflowVersionsAndParent() throws Exception {
+        LocalBackend backend = new LocalBackend(null);
+        backend.open();
+        WorkflowDAO workflowDAO = backend.getWorkflowDAO();
+        
+        Workflow first = workflowDAO.insert(createWorkflow("wf"));
+        assertTrue(first.getId() != null);
+        assertTrue(first.getVersion() == 1);
+        assertTrue(first.getCreateDate() != null);
+        
+        Workflow second = workflowDAO.insert(createWorkflow("wf"));
+        assertTrue(second.getVersion() == 2);
+        assertTrue(second.getParentWorkflow().getId().equals(first.getId()));
+        
+        workflowDAO.insert(createWorkflow("other"));
+        
+        Workflow loaded = workflowDAO.getWorkflowById(second.getId().toString(), null);
+        assertTrue(loaded.getName().equals("wf"));
+        assertTrue(loaded.getParameters().size() == 1);
+        assertTrue(loaded.getParentWorkflow().getName().equals("wf"));
+        assertTrue(loaded.getParentWorkflow().getVersion() == 1);
+        
+        List<Workflow> latest = workflowDAO.getLatestWorkflows(true, null);
+        assertTrue(latest.size() == 2);
+        for (Workflow w : latest){
+            assertTrue(w.getParameters() == null);
+            if (w.getName().equals("wf")){
+                assertTrue(w.getVersion() == 2);
+            }
+        }
+        
+        workflowDAO.updateDeletedAndVersion(second.getId(), true, null);
+        assertTrue(workflowDAO.getAllWorkflows(false, null).size() == 2);
+        assertTrue(workflowDAO.getAllWorkflows(false, true).size() == 3);
+        assertTrue(workflowDAO.getLatestWorkflows(false, null).size() == 1);
+    }
+    
+    @Test
+    public void testJobQueriesAndInputLinks() throws Exception {
+        LocalBackend backend = new LocalBackend(null);
+        backend.open();
+        JobDAO jobDAO = backend.getJobDAO();
+        Workflow w = backend.getWorkflowDAO().insert(createWorkflow("wf"));
+        
+        try {
+            Workflow missing = new Workflow();
+            missing.setId(w.getId()+100);
+            jobDAO.insert(createJob(missing,"bob",Job.IN_QUEUE_STATUS), false);
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().startsWith("Unable to load Workflow"));
+        }
+        
+        Job j = createJob(w,"bob",Job.IN_QUEUE_STATUS);
+        List<Parameter> params = new ArrayList<>();
+        Parameter p = new Parameter();
+        p.setName("input");
+        p.setValue("5");
+        p.setIsWorkspaceId(true);
+        params.add(p);
+        j.setParameters(params);
+        jobDAO.insert(j, false);
+        assertTrue(j.getId() != null);
+        assertTrue(j.getCreateDate() != null);
+        
+        Job running = createJob(w,"joe",Job.RUNNING_STATUS);
+        running.setHasJobBeenSubmittedToScheduler(true);
+        jobDAO.insert(running, false);
+        jobDAO.insert(createJob(w,"bob",Job.COMPLETED_STATUS), true);
+        
+        Job loaded = jobDAO.getJobById(j.getId().toString());
+        assertTrue(loaded.getOwner().equals("bob"));
+        assertTrue(loaded.getWorkflow().getName().equals("wf"));
+        assertTrue(loaded.getWorkflow().getParameters().size() == 1);
+        assertTrue(jobDAO.getJobByIdAndUser(j.getId().toString(), "joe") == null);
+        
+        assertTrue(jobDAO.getJobs(null, null, null, false, false, null).size() == 3);
+        assertTrue(jobDAO.getJobs("bob", null, null, false, false, null).size() == 2);
+        assertTrue(jobDAO.getJobsCount(null, Job.IN_QUEUE_STATUS+","+
+                Job.RUNNING_STATUS, null, null) == 2);
+        assertTrue(jobDAO.getJobsCount(null, null, true, null) == 2);
+        
+        List<Job> jobs = jobDAO.getJobs("joe", null, null, true, true, null);
+        assertTrue(jobs.size() == 1);
+        assertTrue(jobs.get(0).getParameters() == null);
+        assertTrue(jobs.get(0).getWorkflow().getParameters() == null);
+        
+        assertTrue(jobDAO.getJobsWithWorkflowIdCount(w.getId()) == 3);
+        
+        List<InputWorkspaceFileLink> links = backend.getInputWorkspaceFileLinkDAO()
+                .getByWorkspaceFileId(5L, null);
+        assertTrue(links.size() == 1);
+        assertTrue(links.get(0).getJob().getId().equals(j.getId()));
+        assertTrue(links.get(0).getParameterName().equals("input"));
+        
+        //update moves job between indexes
+        loaded.setStatus(Job.COMPLETED_STATUS);
+        jobDAO.update(loaded);
+        assertTrue(jobDAO.getJobsCount(null, Job.IN_QUEUE_STATUS, null, null) == 0);
+        assertTrue(jobDAO.getJobsCount(null, Job.COMPLETED_STATUS, null, null) == 2);
+        
+        //workflow with jobs cannot be deleted
+        DeleteReport dr = backend.getWorkflowDAO().delete(w.getId(), true);
+        assertFalse(dr.isSuccessful());
+        
+        dr = jobDAO.delete(running.getId(), null);
+        assertTrue(dr.isSuccessful());
+        assertTrue(jobDAO.getJobsCount(null, null, null, null) == 2);
+        assertTrue(jobDAO.getJobsCount(null, null, null, true) == 3);
+    }
+    
+    @Test
+    public void testWorkspaceFilesAndJobSummary() throws Exception {
+        LocalBackend backend = new LocalBackend(null);
+        backend.open();
+        WorkspaceFileDAO workspaceFileDAO = backend.getWorkspaceFileDAO();
+        Job j = backend.getJobDAO().insert(createJob(null,"bob",
+                Job.IN_QUEUE_STATUS), true);
+        
+        WorkspaceFile output = new WorkspaceFile();
+        output.setOwner("bob");
+        output.setSourceJobId(j.getId());
+        output.setSize(100L);
+        output.setType("txt");
+        workspaceFileDAO.insert(output, false);
+        
+        WorkspaceFile other = new WorkspaceFile();
+        other.setOwner("joe");
+        other.setType("png");
+        other.setPath("/foo");
+        workspaceFileDAO.insert(other, false);
+        
+        assertTrue(workspaceFileDAO.getWorkspaceFiles(null, null, null, null, null).size() == 2);
+        assertTrue(workspaceFileDAO.getWorkspaceFiles("bob,joe", "png", null, null, null).size() == 1);
+        assertTrue(workspaceFileDAO.getWorkspaceFiles(null, null, null, true, null).size() == 1);
+        assertTrue(workspaceFileDAO.getWorkspaceFiles(null, null, false, false, null).size() == 1);
+        assertTrue(workspaceFileDAO.getWorkspaceFilesBySourceJobId(j.getId()).size() == 1);
+        assertTrue(workspaceFileDAO.getWorkspaceFilesById(output.getId()+","+
+                other.getId(), null).size() == 2);
+        
+        //output of job cannot be deleted unless parent job is ignored
+        DeleteReport dr = workspaceFileDAO.delete(output.getId(), null, false);
+        assertFalse(dr.isSuccessful());
+        
+        JobSummary summary = backend.getJobSummaryDAO().getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.IN_QUEUE_STATUS) == 1);
+        assertTrue(summary.getOutputBytes("bob") == 100);
+        assertTrue(backend.getJobSummaryDAO().getJobSummary("joe")
+                .getJobCount("bob", Job.IN_QUEUE_STATUS) == 0);
+        
+        dr = backend.getJobDAO().delete(j.getId(), null);
+        assertTrue(dr.isSuccessful());
+        assertTrue(workspaceFileDAO.getWorkspaceFiles(null, null, null, null, null).size() == 1);
+        summary = backend.getJobSummaryDAO().getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.IN_QUEUE_STATUS) == 0);
+        assertTrue(summary.getOutputBytes("bob") == 0);
+    }
+    
+    @Test
+    public void testDataKeptAcrossReopen() throws Exception {
+        LocalBackend backend = new LocalBackend(Folder.getRoot());
+        backend.open();
+        Workflow w = createWorkflow("wf");
+        w.setBlobKey("blob");
+        backend.getWorkflowDAO().insert(w);
+        Job j = backend.getJobDAO().insert(createJob(w,"bob",
+                Job.IN_QUEUE_STATUS), false);
+        User u = new User();
+        u.setLogin("bob");
+        u.setToken("secret");
+        backend.getUserDAO().insert(u);
+        backend.close();
+        
+        backend = new LocalBackend(Folder.getRoot());
+        backend.open();
+        Job loaded = backend.getJobDAO().getJobById(j.getId().toString());
+        assertTrue(loaded.getOwner().equals("bob"));
+        assertTrue(loaded.getWorkflow().getId().equals(w.getId()));
+        assertTrue(loaded.getWorkflow().getBlobKey().equals("blob"));
+        assertTrue(backend.getUserDAO().getUserByLoginAndToken("bob", "secret")
+                .getId().equals(u.getId()));
+        assertTrue(backend.getUserDAO().getUserByLoginAndToken("bob", "wrong") == null);
+        
+        //new ids do not collide with ones already used
+        Workflow w2 = backend.getWorkflowDAO().insert(createWorkflow("wf"));
+        assertTrue(w2.getId() > w.getId());
+        assertTrue(w2.getVersion() == 2);
+        backend.close();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.local;
+
+import edu.ucsd.crbs.cws.auth.User;
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestLocalEntityStore {
+
+    @Rule
+    public TemporaryFolder Folder = new TemporaryFolder();
+    
+    public TestLocalEntityStore() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(LocalEntityStore.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+    
+    private LocalEntityStore<User> getUserStore(File journalFile) throws Exception {
+        LocalEntityStore<User> store = new LocalEntityStore<>(User.class,
+                LocalBackend.createObjectMapper(),journalFile);
+        store.addIndex(LocalBackend.LOGIN_INDEX, new LocalEntityStore.Indexer<User>() {
+            @Override
+            public Object getIndexValue(User u) {
+                return u.getLogin();
+            }
+        });
+        store.open();
+        return store;
+    }
+    
+    private User createUser(long id,final String login){
+        User u = new User();
+        u.setId(id);
+        u.setLogin(login);
+        u.setToken("token"+id);
+        return u;
+    }
+
+    @Test
+    public void testPutGetAndDeleteInMemory() throws Exception {
+        LocalEntityStore<User> store = getUserStore(null);
+        assertTrue(store.get(1) == null);
+        assertTrue(store.delete(1) == false);
+        
+        User u = createUser(1,"bob");
+        u.setIpAddress("1.2.3.4");
+        store.put(1, u);
+        assertTrue(store.size() == 1);
+        
+        User loaded = store.get(1);
+        assertTrue(loaded != u);
+        assertTrue(loaded.getLogin().equals("bob"));
+        assertTrue(loaded.getToken().equals("token1"));
+        //ignored by objectify so not stored
+        assertTrue(loaded.getIpAddress() == null);
+        
+        //changing what was returned does not change store
+        loaded.setLogin("joe");
+        assertTrue(store.get(1).getLogin().equals("bob"));
+        
+        assertTrue(store.delete(1));
+        assertTrue(store.get(1) == null);
+        assertTrue(store.size() == 0);
+    }
+    
+    @Test
+    public void testIndexes() throws Exception {
+        LocalEntityStore<User> store = getUserStore(null);
+        store.put(1, createUser(1,"bob"));
+        store.put(2, createUser(2,"joe"));
+        store.put(3, createUser(3,"bob"));
+        store.put(4, createUser(4,null));
+        
+        Set<Long> ids = store.getIds(LocalBackend.LOGIN_INDEX, "bob");
+        assertTrue(ids.size() == 2);
+        assertTrue(ids.contains(1L) && ids.contains(3L));
+        
+        ids = store.getIds(LocalBackend.LOGIN_INDEX, Arrays.asList("bob","joe"));
+        assertTrue(ids.size() == 3);
+        
+        ids = store.getIds(LocalBackend.LOGIN_INDEX, (Object)null);
+        assertTrue(ids.size() == 1 && ids.contains(4L));
+        
+        //change login and make sure index is updated
+        store.put(3, createUser(3,"joe"));
+        ids = store.getIds(LocalBackend.LOGIN_INDEX, "bob");
+        assertTrue(ids.size() == 1 && ids.contains(1L));
+        
+        store.delete(1);
+        assertTrue(store.getIds(LocalBackend.LOGIN_INDEX, "bob").isEmpty());
+        
+        //returned set is a copy
+        store.getIds(LocalBackend.LOGIN_INDEX, "joe").clear();
+        assertTrue(store.getIds(LocalBackend.LOGIN_INDEX, "joe").size() == 2);
+        
+        try {
+            store.getIds("foo", "bob");
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("No index named foo"));
+        }
+    }
+    
+    @Test
+    public void testAllocateId() throws Exception {
+        LocalEntityStore<User> store = getUserStore(null);
+        assertTrue(store.allocateId() == 1);
+        store.put(10, createUser(10,"bob"));
+        assertTrue(store.allocateId() == 11);
+        assertTrue(store.allocateId() == 12);
+    }
+    
+    @Test
+    public void testJournalReplayedAndCompacted() throws Exception {
+        File journal = new File(Folder.getRoot(),"User"+
+                LocalEntityStore.JOURNAL_SUFFIX);
+        LocalEntityStore<User> store = getUserStore(journal);
+        store.put(1, createUser(1,"bob"));
+        store.put(2, createUser(2,"joe"));
+        store.put(3, createUser(3,"sue"));
+        store.put(2, createUser(2,"ann"));
+        store.delete(3);
+        store.close();
+        
+        assertTrue(Files.readAllLines(journal.toPath(),
+                Charset.forName("UTF-8")).size() == 6);
+        
+        store = getUserStore(journal);
+        assertTrue(store.size() == 2);
+        assertTrue(store.get(1).getLogin().equals("bob"));
+        assertTrue(store.get(2).getLogin().equals("ann"));
+        assertTrue(store.get(3) == null);
+        assertTrue(store.getIds(LocalBackend.LOGIN_INDEX,"ann").contains(2L));
+        //id of deleted entity is not reused
+        assertTrue(store.allocateId() == 4);
+        store.close();
+        
+        assertTrue(Files.readAllLines(journal.toPath(),
+                Charset.forName("UTF-8")).size() == 3);
+        
+        store = getUserStore(journal);
+        assertTrue(store.allocateId() == 4);
+        store.close();
+    }
+    
+    @Test
+    public void testPartialLineInJournalIsSkipped() throws Exception {
+        File journal = new File(Folder.getRoot(),"User"+
+                LocalEntityStore.JOURNAL_SUFFIX);
+        LocalEntityStore<User> store = getUserStore(journal);
+        store.put(1, createUser(1,"bob"));
+        store.close();
+        
+        try (FileWriter fw = new FileWriter(journal,true)){
+            fw.write(LocalEntityStore.PUT+LocalEntityStore.TAB+"2"+
+                    LocalEntityStore.TAB+"{\"_login\":\"jo");
+        }
+        store = getUserStore(journal);
+        assertTrue(store.size() == 1);
+        assertTrue(store.get(1).getLogin().equals("bob"));
+        store.close();
+    }
+}
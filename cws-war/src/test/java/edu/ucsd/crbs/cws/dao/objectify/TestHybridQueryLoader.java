@@ -0,0 +1,143 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.memcache.MemcacheServiceFactory;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.googlecode.objectify.cmd.Query;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestHybridQueryLoader {
+
+    private final LocalServiceTestHelper _helper =
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
+                new LocalMemcacheServiceTestConfig());
+    
+    public TestHybridQueryLoader() {
+    }
+    
+    @Before
+    public void setUp() {
+        _helper.setUp();
+        ofy().clear();
+    }
+
+    @After
+    public void tearDown() {
+        _helper.tearDown();
+    }
+    
+    private long getCount(final String name){
+        return MetricsRegistry.getDefault().counter(name,"",
+                MetricsObjectifyFactory.KIND_LABEL,"WorkspaceFile").getCount();
+    }
+    
+    private WorkspaceFile createWorkspaceFile(final String name,final String owner){
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setName(name);
+        wsf.setOwner(owner);
+        ofy().save().entity(wsf).now();
+        return wsf;
+    }
+
+    @Test
+    public void testListNoMatches() {
+        Query<WorkspaceFile> q = ofy().load().type(WorkspaceFile.class)
+                .filter("_owner", "nobody");
+        assertTrue(HybridQueryLoader.list(q).isEmpty());
+    }
+    
+    @Test
+    public void testListWithInFilterReadsFromCacheOnSecondCall() {
+        createWorkspaceFile("a","bob");
+        createWorkspaceFile("b","joe");
+        createWorkspaceFile("c","sue");
+        MemcacheServiceFactory.getMemcacheService().clearAll();
+        ofy().clear();
+        
+        long keys = getCount(HybridQueryLoader.QUERY_KEYS_TOTAL);
+        long reads = getCount(MetricsObjectifyFactory.DATASTORE_ENTITY_READS_TOTAL);
+        
+        List<WorkspaceFile> res = HybridQueryLoader.list(
+                ofy().load().type(WorkspaceFile.class)
+                        .filter("_owner in ", Arrays.asList("bob","sue")));
+        assertEquals(2,res.size());
+        assertEquals("a",res.get(0).getName());
+        assertEquals("c",res.get(1).getName());
+        assertEquals(keys+2,getCount(HybridQueryLoader.QUERY_KEYS_TOTAL));
+        assertEquals(reads+2,
+                getCount(MetricsObjectifyFactory.DATASTORE_ENTITY_READS_TOTAL));
+        
+        //second call, with session cleared, is served from memcache
+        ofy().clear();
+        res = HybridQueryLoader.list(ofy().load().type(WorkspaceFile.class)
+                        .filter("_owner in ", Arrays.asList("bob","sue")));
+        assertEquals(2,res.size());
+        assertEquals(keys+4,getCount(HybridQueryLoader.QUERY_KEYS_TOTAL));
+        assertEquals(reads+2,
+                getCount(MetricsObjectifyFactory.DATASTORE_ENTITY_READS_TOTAL));
+    }
+    
+    @Test
+    public void testListWithNotEqualFilter() {
+        WorkspaceFile wsf = createWorkspaceFile("a","bob");
+        wsf.setPath("/foo");
+        ofy().save().entity(wsf).now();
+        createWorkspaceFile("b","bob");
+        ofy().clear();
+        List<WorkspaceFile> res = HybridQueryLoader.list(
+                ofy().load().type(WorkspaceFile.class)
+                        .filter("_owner in ", Arrays.asList("bob","sue"))
+                        .filter("_path !=", null));
+        assertEquals(1,res.size());
+        assertEquals("a",res.get(0).getName());
+    }
+}
@@ -65,7 +65,8 @@ public class TestInputWorkspaceFileLinkObjectifyDAOImpl {
 
     
     private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
         new LocalBlobstoreServiceTestConfig());
     
     public TestInputWorkspaceFileLinkObjectifyDAOImpl() {
@@ -32,13 +32,23 @@
  */
 package edu.ucsd.crbs.cws.dao.objectify;
 
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.KeyFactory;
 import com.google.appengine.tools.development.testing.LocalBlobstoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import edu.ucsd.crbs.cws.App;
+import edu.ucsd.crbs.cws.dao.MigrationDAO;
+import edu.ucsd.crbs.cws.dao.VersionConflictException;
 import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
 import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
 import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
 import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.JobDetails;
 import edu.ucsd.crbs.cws.workflow.Parameter;
 import edu.ucsd.crbs.cws.workflow.Workflow;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
@@ -52,6 +62,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.junit.After;
 import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -72,7 +84,8 @@ import static org.mockito.Mockito.when;
 public class TestJobObjectifyDAOImpl {
 
     private final LocalServiceTestHelper _helper
-            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
                     new LocalBlobstoreServiceTestConfig());
 
     public TestJobObjectifyDAOImpl() {
@@ -92,6 +105,7 @@ public class TestJobObjectifyDAOImpl {
     public void setUp() {
         _helper.setUp();
         ofy().clear();
+        JobObjectifyDAOImpl.resetActiveFlagBackfilled();
     }
 
     @After
@@ -250,6 +264,7 @@ public class TestJobObjectifyDAOImpl {
         assertTrue(j == null);
         wsf = workspaceDAO.getWorkspaceFileById(wsf.getId().toString(), null);
         assertTrue(wsf == null);
+        assertTrue(ofy().load().key(JobDetails.createKey(dr.getId())).now() == null);
     }
     
     //test permanent delete no workspace file
@@ -730,6 +745,336 @@ public class TestJobObjectifyDAOImpl {
         assertTrue(resJob.getWorkflow().getId() == w.getId().longValue());
     }
 
+    @Test
+    public void testInsertSetsWorkflowSummaryUsedByListings() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        Workflow w = new Workflow();
+        w.setName("name");
+        w = workflowDAO.insert(w);
+        int version = w.getVersion();
+        Job j = new Job();
+        j.setWorkflow(w);
+        jobDAO.insert(j, false);
+        assertTrue(j.getWorkflowSummary().getId() == w.getId().longValue());
+        assertTrue(j.getWorkflowSummary().getName().equals("name"));
+        assertTrue(j.getWorkflowSummary().getVersion() == version);
+        
+        //rename workflow in data store so we can tell if it was loaded
+        w.setName("renamed");
+        ofy().save().entity(w).now();
+        ofy().clear();
+        
+        List<Job> jobs = jobDAO.getJobs(null, null, null, true, true, null);
+        assertTrue(jobs.size() == 1);
+        assertTrue(jobs.get(0).isWorkflowSummaryOnly());
+        assertTrue(jobs.get(0).getWorkflow().getId() == w.getId().longValue());
+        assertTrue(jobs.get(0).getWorkflow().getName().equals("name"));
+        assertTrue(jobs.get(0).getWorkflow().getVersion() == version);
+        
+        ofy().clear();
+        jobs = jobDAO.getJobs(null, null, null, false, false, null);
+        assertTrue(jobs.get(0).getWorkflow().getName().equals("renamed"));
+        
+        Job detail = jobDAO.getJobById(j.getId().toString());
+        assertTrue(detail.getWorkflow().getName().equals("renamed"));
+        
+        //summary survives update of job that lacks one
+        detail.setWorkflowSummary(null);
+        jobDAO.update(detail);
+        ofy().clear();
+        detail = jobDAO.getJobById(j.getId().toString());
+        assertTrue(detail.getWorkflowSummary().getName().equals("name"));
+    }
+
+    /**
+     * Saves a finished {@link MigrationStatus} for {@link Job}s
+     */
+    private void saveCompletedJobMigration(){
+        MigrationStatus status = new MigrationStatus();
+        status.setKind(MigrationDAO.JOB_KIND);
+        status.setRunning(false);
+        status.setStartDate(new Date());
+        status.setFinishDate(new Date());
+        status.setSchemaVersion(Job.SCHEMA_VERSION);
+        ofy().save().entity(status).now();
+    }
+    
+    @Test
+    public void testGetJobsWithNotCompletedStatusesUsesActiveFlag() throws Exception {
+        saveCompletedJobMigration();
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        assertTrue(jobDAO.isActiveFlagBackfilled());
+        String[] statuses = {Job.IN_QUEUE_STATUS, Job.PAUSED_STATUS,
+            Job.PENDING_STATUS, Job.RUNNING_STATUS, Job.WORKSPACE_SYNC_STATUS,
+            Job.COMPLETED_STATUS, Job.ERROR_STATUS};
+        for (String status : statuses){
+            Job j = new Job();
+            j.setName(status);
+            j.setOwner("bob");
+            j.setStatus(status);
+            jobDAO.insert(j, true);
+        }
+        List<Job> jobs = jobDAO.getJobs(null, App.NOT_COMPLETED_STATUSES, 
+                null, true, true, null);
+        assertTrue(jobs.size() == 5);
+        for (Job j : jobs){
+            assertTrue(j.isActive());
+        }
+        
+        //same set of statuses in a different order with an empty entry
+        jobs = jobDAO.getJobs("bob", Job.WORKSPACE_SYNC_STATUS+",,"+
+                Job.RUNNING_STATUS+","+Job.PENDING_STATUS+","+
+                Job.PAUSED_STATUS+","+Job.IN_QUEUE_STATUS, null, true, true, null);
+        assertTrue(jobs.size() == 5);
+        
+        //single status uses equality filter
+        jobs = jobDAO.getJobs(null, Job.RUNNING_STATUS, null, true, true, null);
+        assertTrue(jobs.size() == 1);
+        
+        //subset of active statuses still works
+        jobs = jobDAO.getJobs(null, Job.RUNNING_STATUS+","+Job.ERROR_STATUS, 
+                null, true, true, null);
+        assertTrue(jobs.size() == 2);
+        
+        //changing status to completed clears flag
+        Job running = jobDAO.getJobs(null, Job.RUNNING_STATUS, null, true, 
+                true, null).get(0);
+        jobDAO.update(running.getId(), Job.COMPLETED_STATUS, null, null, null, 
+                null, null, null, true, null, null, null, null);
+        ofy().clear();
+        jobs = jobDAO.getJobs(null, App.NOT_COMPLETED_STATUSES, 
+                null, true, true, null);
+        assertTrue(jobs.size() == 4);
+        assertTrue(jobDAO.getJobsCount(null, App.NOT_COMPLETED_STATUSES, 
+                null, null) == 4);
+    }
+
+    @Test
+    public void testGetJobsWithNotCompletedStatusesFindsJobsWithoutActiveFlag() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = new Job();
+        j.setOwner("bob");
+        j.setStatus(Job.RUNNING_STATUS);
+        jobDAO.insert(j, true);
+        
+        //make job look like one saved before the active flag existed
+        Entity entity = DatastoreServiceFactory.getDatastoreService()
+                .get(KeyFactory.createKey("Job", j.getId()));
+        entity.removeProperty("_active");
+        DatastoreServiceFactory.getDatastoreService().put(entity);
+        ofy().clear();
+        
+        //no migration yet so status query is used
+        assertFalse(jobDAO.isActiveFlagBackfilled());
+        List<Job> jobs = jobDAO.getJobs(null, App.NOT_COMPLETED_STATUSES, 
+                null, true, true, null);
+        assertTrue(jobs.size() == 1);
+        
+        //migration still running or failed
+        MigrationStatus status = new MigrationStatus();
+        status.setKind(MigrationDAO.JOB_KIND);
+        status.setRunning(true);
+        status.setSchemaVersion(Job.SCHEMA_VERSION);
+        ofy().save().entity(status).now();
+        JobObjectifyDAOImpl.resetActiveFlagBackfilled();
+        assertFalse(jobDAO.isActiveFlagBackfilled());
+        status.setRunning(false);
+        status.setFinishDate(new Date());
+        status.setError("failed");
+        ofy().save().entity(status).now();
+        JobObjectifyDAOImpl.resetActiveFlagBackfilled();
+        assertFalse(jobDAO.isActiveFlagBackfilled());
+        
+        //migration finished before the active flag was added
+        status.setError(null);
+        status.setSchemaVersion(0);
+        ofy().save().entity(status).now();
+        JobObjectifyDAOImpl.resetActiveFlagBackfilled();
+        assertFalse(jobDAO.isActiveFlagBackfilled());
+        
+        //negative result is not rechecked right away
+        saveCompletedJobMigration();
+        assertFalse(jobDAO.isActiveFlagBackfilled());
+        
+        //once migration finishes the active flag is queried
+        JobObjectifyDAOImpl.resetActiveFlagBackfilled();
+        assertTrue(jobDAO.isActiveFlagBackfilled());
+        
+        //positive result is shared and kept
+        ofy().delete().type(MigrationStatus.class).id(MigrationDAO.JOB_KIND).now();
+        assertTrue(new JobObjectifyDAOImpl(null).isActiveFlagBackfilled());
+        jobs = jobDAO.getJobs(null, App.NOT_COMPLETED_STATUSES, 
+                null, true, true, null);
+        assertTrue(jobs.isEmpty());
+    }
+
+    private Job createJobWithDetails(){
+        Job j = new Job();
+        j.setName("hi");
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        ArrayList<Parameter> params = new ArrayList<>();
+        Parameter p = new Parameter("param","value");
+        WorkflowParameter wp = new WorkflowParameter();
+        wp.setName("param");
+        wp.setHelp("some help");
+        p.setWorkflowParameter(wp);
+        params.add(p);
+        j.setParameters(params);
+        j.setDetailedError("detailed");
+        j.setEstimatedCpuInSecondsHelp("cpuhelp");
+        j.setEstimatedDiskInBytesHelp("diskhelp");
+        j.setEstimatedWallTimeInSecondsHelp("wallhelp");
+        j.setDiskSpaceInBytesHelp("diskspacehelp");
+        j.setCpuSecondsPerClusterHelp("clusterhelp");
+        j.setPhaseHelp("phasehelp");
+        j.setPhaseList("a,b");
+        j.setPhaseListHelp("phaselisthelp");
+        return j;
+    }
+    
+    @Test
+    public void testDetailsStoredInJobDetails() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = jobDAO.insert(createJobWithDetails(), true);
+        ofy().clear();
+        
+        Entity rawJob = DatastoreServiceFactory.getDatastoreService().get(
+                KeyFactory.createKey("Job", j.getId()));
+        assertFalse(rawJob.hasProperty("_parameters"));
+        assertFalse(rawJob.hasProperty("_detailedError"));
+        assertFalse(rawJob.hasProperty("_phaseList"));
+        
+        //only the large fields are compressed
+        Entity rawDetails = DatastoreServiceFactory.getDatastoreService().get(
+                KeyFactory.createKey(rawJob.getKey(),"JobDetails",
+                        JobDetails.DETAILS_ID));
+        assertTrue(rawDetails.getProperty("_parameters") instanceof Blob);
+        assertTrue(rawDetails.getProperty("_detailedError") instanceof Blob);
+        assertTrue(rawDetails.getProperty("_phaseList") instanceof Blob);
+        assertEquals("cpuhelp",rawDetails.getProperty("_estimatedCpuInSecondsHelp"));
+        assertEquals("phaselisthelp",rawDetails.getProperty("_phaseListHelp"));
+        
+        JobDetails jd = ofy().load().key(JobDetails.createKey(j.getId())).now();
+        assertEquals("detailed",jd.getDetailedError());
+        assertEquals(1,jd.getParameters().size());
+        
+        Job res = jobDAO.getJobById(j.getId().toString());
+        assertFalse(res.hasLegacyDetails());
+        assertEquals("value",res.getParameters().get(0).getValue());
+        assertEquals("some help",
+                res.getParameters().get(0).getWorkflowParameter().getHelp());
+        assertEquals("detailed",res.getDetailedError());
+        assertEquals("cpuhelp",res.getEstimatedCpuInSecondsHelp());
+        assertEquals("diskhelp",res.getEstimatedDiskInBytesHelp());
+        assertEquals("wallhelp",res.getEstimatedWallTimeInSecondsHelp());
+        assertEquals("diskspacehelp",res.getDiskSpaceInBytesHelp());
+        assertEquals("clusterhelp",res.getCpuSecondsPerClusterHelp());
+        assertEquals("phasehelp",res.getPhaseHelp());
+        assertEquals("a,b",res.getPhaseList());
+        assertEquals("phaselisthelp",res.getPhaseListHelp());
+        
+        ofy().clear();
+        List<Job> jobs = jobDAO.getJobs(null, null, null, false, false, null);
+        assertEquals("value",jobs.get(0).getParameters().get(0).getValue());
+        assertEquals("detailed",jobs.get(0).getDetailedError());
+        
+        ofy().clear();
+        jobs = jobDAO.getJobs(null, null, null, true, true, null);
+        assertNull(jobs.get(0).getParameters());
+        assertNull(jobs.get(0).getDetailedError());
+        assertNull(jobs.get(0).getPhaseHelp());
+        assertEquals("hi",jobs.get(0).getName());
+    }
+    
+    @Test
+    public void testUpdateJobLoadedWithoutDetailsKeepsDetails() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = jobDAO.insert(createJobWithDetails(), true);
+        
+        ofy().clear();
+        Job summary = jobDAO.getJobs(null, null, null, true, true, null).get(0);
+        assertNull(summary.getParameters());
+        summary.setStatus(Job.RUNNING_STATUS);
+        Job resJob = jobDAO.update(summary);
+        assertEquals("value",resJob.getParameters().get(0).getValue());
+        
+        //job sent without details but with a new detailed error
+        ofy().clear();
+        Job sent = new Job();
+        sent.setId(j.getId());
+        sent.setVersion(resJob.getVersion());
+        sent.setStatus(Job.ERROR_STATUS);
+        sent.setDetailedError("new detailed");
+        jobDAO.update(sent);
+        
+        ofy().clear();
+        resJob = jobDAO.getJobById(j.getId().toString());
+        assertEquals(Job.ERROR_STATUS,resJob.getStatus());
+        assertEquals(1,resJob.getParameters().size());
+        assertEquals("value",resJob.getParameters().get(0).getValue());
+        assertEquals("new detailed",resJob.getDetailedError());
+        assertEquals("cpuhelp",resJob.getEstimatedCpuInSecondsHelp());
+        assertEquals("a,b",resJob.getPhaseList());
+        assertEquals("phaselisthelp",resJob.getPhaseListHelp());
+    }
+    
+    @Test
+    public void testUpdateMultiArgOnlyTouchesDetailsWhenNeeded() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = jobDAO.insert(createJobWithDetails(), true);
+        
+        //remove details so we can tell if they are saved again
+        ofy().delete().key(JobDetails.createKey(j.getId())).now();
+        ofy().clear();
+        Job res = jobDAO.update(j.getId(), Job.RUNNING_STATUS, null, null, 
+                null, null, null, null, null, null, null, null, null);
+        assertEquals(Job.RUNNING_STATUS,res.getStatus());
+        ofy().clear();
+        assertNull(ofy().load().key(JobDetails.createKey(j.getId())).now());
+        
+        res = jobDAO.update(j.getId(), null, null, null, null, null, null, 
+                null, null, null, null, "error", "new detailed");
+        ofy().clear();
+        JobDetails jd = ofy().load().key(JobDetails.createKey(j.getId())).now();
+        assertEquals("new detailed",jd.getDetailedError());
+        res = jobDAO.getJobById(j.getId().toString());
+        assertEquals(Job.RUNNING_STATUS,res.getStatus());
+        assertEquals("error",res.getError());
+        assertEquals("new detailed",res.getDetailedError());
+    }
+    
+    @Test
+    public void testLegacyJobDetailsMovedOnUpdate() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Entity rawJob = new Entity("Job",5L);
+        rawJob.setProperty("_name", "legacy");
+        rawJob.setProperty("_status", Job.IN_QUEUE_STATUS);
+        rawJob.setProperty("_deleted", false);
+        rawJob.setProperty("_detailedError", "old detailed");
+        rawJob.setProperty("_phaseHelp", "old phase help");
+        DatastoreServiceFactory.getDatastoreService().put(rawJob);
+        
+        Job res = jobDAO.getJobById("5");
+        assertTrue(res.hasLegacyDetails());
+        assertEquals("old detailed",res.getDetailedError());
+        assertEquals("old phase help",res.getPhaseHelp());
+        
+        ofy().clear();
+        jobDAO.update(5L, Job.RUNNING_STATUS, null, null, null, null, null, 
+                null, null, null, null, null, null);
+        ofy().clear();
+        rawJob = DatastoreServiceFactory.getDatastoreService().get(
+                KeyFactory.createKey("Job", 5L));
+        assertFalse(rawJob.hasProperty("_detailedError"));
+        assertFalse(rawJob.hasProperty("_phaseHelp"));
+        res = jobDAO.getJobById("5");
+        assertFalse(res.hasLegacyDetails());
+        assertEquals(Job.RUNNING_STATUS,res.getStatus());
+        assertEquals("old detailed",res.getDetailedError());
+        assertEquals("old phase help",res.getPhaseHelp());
+    }
+
     //test insert job with parameters and skip workflow true, no params are file
     @Test
     public void testInsertWhereNoParamsAreFileParams() throws Exception {
@@ -838,6 +1183,101 @@ public class TestJobObjectifyDAOImpl {
     }
 
     //test job not found
+    @Test
+    public void testInsertAllWithNullJobs() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        try {
+            jobDAO.insertAll(null, true);
+            fail("Expected exception");
+        } catch (NullPointerException npe) {
+            assertTrue(npe.getMessage().equals("Job list is null"));
+        }
+    }
+    
+    @Test
+    public void testInsertAllWithMissingWorkflow() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        Workflow w = new Workflow();
+        w.setName("name");
+        w = workflowDAO.insert(w);
+        
+        ArrayList<Job> jobs = new ArrayList<>();
+        Job j = new Job();
+        j.setWorkflow(w);
+        jobs.add(j);
+        
+        Workflow missing = new Workflow();
+        missing.setId(w.getId()+1000);
+        j = new Job();
+        j.setWorkflow(missing);
+        jobs.add(j);
+        try {
+            jobDAO.insertAll(jobs, false);
+            fail("Expected exception");
+        } catch (Exception ex) {
+            //with refs enabled the missing workflow comes back as null
+            assertTrue(ex.getMessage().equals("Job Workflow cannot be null") ||
+                    ex.getMessage().startsWith("Unable to load Workflow ("));
+        }
+        assertTrue(jobs.get(0).getId() == null);
+        assertTrue(jobDAO.getJobs(null, null, null, true, true, null).isEmpty());
+    }
+    
+    @Test
+    public void testInsertAllWithFileParams() throws Exception {
+        InputWorkspaceFileLinkObjectifyDAOImpl inputDAO = new InputWorkspaceFileLinkObjectifyDAOImpl();
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(inputDAO);
+        WorkspaceFileObjectifyDAOImpl workspaceDAO = new WorkspaceFileObjectifyDAOImpl(jobDAO, inputDAO);
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        Workflow w = new Workflow();
+        w.setName("name");
+        w = workflowDAO.insert(w);
+
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setName("bob");
+        workspaceDAO.insert(wsf, false);
+
+        ArrayList<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 3; i++){
+            Job j = new Job();
+            j.setName("job"+i);
+            j.setOwner("joe");
+            j.setStatus(Job.IN_QUEUE_STATUS);
+            j.setWorkflow(w);
+            ArrayList<Parameter> params = new ArrayList<>();
+            Parameter p = new Parameter();
+            p.setName("foo");
+            p.setValue(wsf.getId().toString());
+            p.setIsWorkspaceId(true);
+            params.add(p);
+            j.setParameters(params);
+            jobs.add(j);
+        }
+        Job preset = jobs.get(1);
+        preset.setId(123456L);
+        
+        List<Job> resJobs = jobDAO.insertAll(jobs, false);
+        assertTrue(resJobs == jobs);
+        assertTrue(preset.getId() == 123456L);
+        for (Job j : resJobs){
+            assertTrue(j.getId() != null);
+            assertTrue(j.getCreateDate() != null);
+            assertTrue(jobDAO.getJobById(j.getId().toString()) != null);
+        }
+        assertTrue(resJobs.get(0).getId().longValue() != resJobs.get(2).getId().longValue());
+        
+        List<InputWorkspaceFileLink> linkList = inputDAO.getInputWorkspaceFileLinks(null);
+        assertTrue(linkList.size() == 3);
+        for (InputWorkspaceFileLink link : linkList){
+            assertTrue(link.getWorkspaceFile().getId() == wsf.getId().longValue());
+            assertTrue(link.getParameterName().equals("foo"));
+        }
+        
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        assertTrue(summaryDAO.getJobSummary("joe").getJobCount("joe",Job.IN_QUEUE_STATUS) == 3);
+    }
+
     @Test
     public void testUpdateMultiArgJobNotFound() throws Exception {
         JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
@@ -1248,4 +1688,217 @@ public class TestJobObjectifyDAOImpl {
         assertTrue(j.getName() == null);
 
     }
+
+    @Test
+    public void testStatusTimelineRecordedOnInsertAndUpdate() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = new Job();
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        j.setCreateDate(new Date(1000L));
+        
+        //timeline set by caller should be ignored
+        j.addStatusChange(Job.RUNNING_STATUS, new Date(5L));
+        j = jobDAO.insert(j, true);
+        assertTrue(j.getStatusTimeline().size() == 1);
+        assertTrue(j.getStatusTimeline().get(0).getStatus().equals(Job.IN_QUEUE_STATUS));
+        assertTrue(j.getStatusTimeline().get(0).getDate().getTime() == 1000L);
+        
+        //no change in status
+        j = jobDAO.update(j.getId(), null, 1L, null, null, null, null, null,
+                null, null, null, null, null);
+        assertTrue(j.getStatusTimeline().size() == 1);
+        
+        j = jobDAO.update(j.getId(), Job.PENDING_STATUS, null, null, null, 
+                null, null, null, null, null, null, null, null);
+        
+        //pass in job with no timeline, stored timeline should be kept
+        Job updateJob = jobDAO.getJobById(j.getId().toString());
+        updateJob.setStatusTimeline(null);
+        updateJob.setStatus(Job.RUNNING_STATUS);
+        jobDAO.update(updateJob);
+        
+        ofy().clear();
+        Job resJob = jobDAO.getJobById(j.getId().toString());
+        assertTrue(resJob.getStatusTimeline().size() == 3);
+        assertTrue(resJob.getStatusTimeline().get(1).getStatus().equals(Job.PENDING_STATUS));
+        assertTrue(resJob.getStatusTimeline().get(2).getStatus().equals(Job.RUNNING_STATUS));
+        assertTrue(resJob.getDateStatusEntered(Job.RUNNING_STATUS).getTime() >= 
+                resJob.getDateStatusEntered(Job.PENDING_STATUS).getTime());
+    }
+    
+    @Test
+    public void testGetJobsCreatedSince() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(
+                new InputWorkspaceFileLinkObjectifyDAOImpl());
+        List<Job> jobs = new ArrayList<>();
+        for (long createTime : new long[] {1000L, 2000L, 3000L}){
+            Job j = new Job();
+            j.setName(Long.toString(createTime));
+            j.setCreateDate(new Date(createTime));
+            j.setParameters(new ArrayList<Parameter>());
+            j.getParameters().add(new Parameter("foo","bar"));
+            j.setOwner("bob");
+            jobs.add(j);
+        }
+        jobs.get(2).setDeleted(true);
+        jobs.get(0).setOwner("joe");
+        jobDAO.insertAll(jobs, true);
+        
+        List<Job> res = jobDAO.getJobsCreatedSince(null,new Date(1500L));
+        assertTrue(res.size() == 1);
+        assertTrue(res.get(0).getName().equals("2000"));
+        assertNull(res.get(0).getParameters());
+        
+        assertTrue(jobDAO.getJobsCreatedSince(null,new Date(1000L)).size() == 2);
+        assertTrue(jobDAO.getJobsCreatedSince(null,new Date(5000L)).isEmpty());
+        
+        res = jobDAO.getJobsCreatedSince("joe",new Date(1000L));
+        assertTrue(res.size() == 1);
+        assertTrue(res.get(0).getName().equals("1000"));
+        assertTrue(jobDAO.getJobsCreatedSince("bob",new Date(1000L)).size() == 1);
+        assertTrue(jobDAO.getJobsCreatedSince("sue",new Date(1000L)).isEmpty());
+    }
+    
+    private long getJobWriteCount(final String name){
+        return MetricsRegistry.getDefault().counter(name,"",
+                MetricsObjectifyFactory.KIND_LABEL,"Job").getCount();
+    }
+    
+    @Test
+    public void testUpdateLoadedJobOnlyWritesChanges() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = new Job();
+        j.setOwner("bob");
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        j = jobDAO.insert(j, true);
+        assertTrue(j.getVersion() == 0L);
+        
+        long written = getJobWriteCount(EntityWrites.ENTITY_WRITES_TOTAL);
+        long skipped = getJobWriteCount(EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL);
+        
+        //same status sent again nothing is written
+        Job loaded = jobDAO.getJobById(j.getId().toString());
+        Job resJob = jobDAO.update(loaded, Job.IN_QUEUE_STATUS, null, null, 
+                null, null, null, null, null, null, null, null, null);
+        assertTrue(resJob == loaded);
+        assertTrue(getJobWriteCount(EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL) == skipped+1);
+        assertTrue(getJobWriteCount(EntityWrites.ENTITY_WRITES_TOTAL) == written);
+        
+        resJob = jobDAO.update(loaded, Job.RUNNING_STATUS, 5L, null, 
+                null, null, null, null, null, null, null, null, null);
+        assertTrue(resJob.getVersion() == 1L);
+        assertTrue(getJobWriteCount(EntityWrites.ENTITY_WRITES_TOTAL) == written+1);
+        
+        ofy().clear();
+        resJob = jobDAO.getJobById(j.getId().toString());
+        assertTrue(resJob.getVersion() == 1L);
+        assertTrue(resJob.getStatus().equals(Job.RUNNING_STATUS));
+        assertTrue(resJob.getEstimatedCpuInSeconds() == 5L);
+        assertTrue(resJob.getStatusTimeline().size() == 2);
+        
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        assertTrue(summaryDAO.getJobSummary("bob").getJobCount("bob",Job.IN_QUEUE_STATUS) == 0);
+        assertTrue(summaryDAO.getJobSummary("bob").getJobCount("bob",Job.RUNNING_STATUS) == 1);
+    }
+    
+    @Test
+    public void testUpdateStaleJobAppliesChangesToStoredJob() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = new Job();
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        j = jobDAO.insert(j, true);
+        
+        ofy().clear();
+        Job stale = jobDAO.getJobById(j.getId().toString());
+        ofy().clear();
+        Job loaded = jobDAO.getJobById(j.getId().toString());
+        jobDAO.update(loaded, Job.RUNNING_STATUS, null, null, null, null, 
+                null, null, null, null, null, null, null);
+        
+        long conflicts = getJobWriteCount(EntityWrites.ENTITY_VERSION_CONFLICTS_TOTAL);
+        long skipped = getJobWriteCount(EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL);
+        
+        //change already made by someone else so nothing is written
+        Job resJob = jobDAO.update(stale, Job.RUNNING_STATUS, null, null, 
+                null, null, null, null, null, null, null, null, null);
+        assertTrue(resJob.getVersion() == 1L);
+        assertTrue(getJobWriteCount(EntityWrites.ENTITY_VERSION_CONFLICTS_TOTAL) == conflicts+1);
+        assertTrue(getJobWriteCount(EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL) == skipped+1);
+        
+        //stale job must not revert status set by someone else
+        ofy().clear();
+        stale = jobDAO.getJobById(j.getId().toString());
+        stale.setVersion(0L);
+        resJob = jobDAO.update(stale, null, 5L, null, null, null, null, null, 
+                null, null, null, null, "detailed");
+        assertTrue(resJob.getVersion() == 2L);
+        
+        ofy().clear();
+        resJob = jobDAO.getJobById(j.getId().toString());
+        assertTrue(resJob.getStatus().equals(Job.RUNNING_STATUS));
+        assertTrue(resJob.getEstimatedCpuInSeconds() == 5L);
+        assertTrue(resJob.getDetailedError().equals("detailed"));
+        assertTrue(resJob.getVersion() == 2L);
+    }
+    
+    @Test
+    public void testUpdateStaleJobIsRejected() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = new Job();
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        j = jobDAO.insert(j, true);
+        
+        ofy().clear();
+        Job stale = jobDAO.getJobById(j.getId().toString());
+        ofy().clear();
+        jobDAO.update(j.getId(), Job.RUNNING_STATUS, null, null, null, null, 
+                null, null, null, null, null, null, null);
+        
+        long conflicts = getJobWriteCount(EntityWrites.ENTITY_VERSION_CONFLICTS_TOTAL);
+        stale.setStatus(Job.COMPLETED_STATUS);
+        try {
+            jobDAO.update(stale);
+            fail("Expected VersionConflictException");
+        }
+        catch(VersionConflictException vce){
+            assertTrue(vce.getExpectedVersion() == 0L);
+            assertTrue(vce.getStoredVersion() == 1L);
+        }
+        assertTrue(getJobWriteCount(EntityWrites.ENTITY_VERSION_CONFLICTS_TOTAL) == conflicts+1);
+        
+        ofy().clear();
+        Job resJob = jobDAO.getJobById(j.getId().toString());
+        assertTrue(resJob.getStatus().equals(Job.RUNNING_STATUS));
+        assertTrue(resJob.getVersion() == 1L);
+        
+        //reloaded job can be updated
+        resJob.setStatus(Job.COMPLETED_STATUS);
+        resJob = jobDAO.update(resJob);
+        assertTrue(resJob.getVersion() == 2L);
+    }
+    
+    @Test
+    public void testUpdateJobSkipsWriteWhenUnchanged() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = createJobWithDetails();
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        j = jobDAO.insert(j, true);
+        
+        long skipped = getJobWriteCount(EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL);
+        ofy().clear();
+        Job loaded = jobDAO.getJobById(j.getId().toString());
+        loaded = jobDAO.update(loaded);
+        assertTrue(loaded.getVersion() == 0L);
+        assertTrue(getJobWriteCount(EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL) == skipped+1);
+        
+        //change only in JobDetails is written
+        loaded.setDetailedError("changed");
+        loaded = jobDAO.update(loaded);
+        assertTrue(loaded.getVersion() == 1L);
+        
+        ofy().clear();
+        Job resJob = jobDAO.getJobById(j.getId().toString());
+        assertTrue(resJob.getDetailedError().equals("changed"));
+        assertTrue(resJob.getVersion() == 1L);
+    }
 }
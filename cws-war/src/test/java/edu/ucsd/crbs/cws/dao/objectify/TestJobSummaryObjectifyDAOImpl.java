@@ -0,0 +1,353 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import com.google.appengine.tools.development.testing.LocalBlobstoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.googlecode.objectify.VoidWork;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import edu.ucsd.crbs.cws.workflow.report.JobSummary;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestJobSummaryObjectifyDAOImpl {
+
+    private final LocalServiceTestHelper _helper
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
+                    new LocalBlobstoreServiceTestConfig());
+
+    public TestJobSummaryObjectifyDAOImpl() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(JobObjectifyDAOImpl.class.getName()).setLevel(Level.OFF);
+        Logger.getLogger(WorkspaceFileObjectifyDAOImpl.class.getName()).setLevel(Level.OFF);
+        Logger.getLogger(JobSummaryObjectifyDAOImpl.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        _helper.setUp();
+        ofy().clear();
+    }
+
+    @After
+    public void tearDown() {
+        _helper.tearDown();
+    }
+    
+    private Job getJob(final String owner,final String status){
+        Job j = new Job();
+        j.setOwner(owner);
+        j.setStatus(status);
+        return j;
+    }
+    
+    /**
+     * Creates {@link DeferredTaskSubmitter} that runs tasks right away
+     */
+    private DeferredTaskSubmitter getInlineSubmitter() throws Exception {
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((DeferredTask)invocation.getArguments()[1]).run();
+                return null;
+            }
+        }).when(submitter).submit(anyString(), any(DeferredTask.class));
+        return submitter;
+    }
+    
+    private WorkspaceFile getOutputWorkspaceFile(final String owner,Long size){
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setOwner(owner);
+        wsf.setSourceJobId(1L);
+        wsf.setSize(size);
+        return wsf;
+    }
+
+    @Test
+    public void testGetJobSummaryNoCounters() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        JobSummary summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCounts().isEmpty());
+        assertTrue(summary.getOutputBytes().isEmpty());
+    }
+    
+    @Test
+    public void testIncrementAndGetJobSummary() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        for (int i = 0; i < 25; i++){
+            summaryDAO.incrementJobCount("bob", Job.PENDING_STATUS, 1);
+        }
+        summaryDAO.incrementJobCount("bob", Job.PENDING_STATUS, -5);
+        summaryDAO.incrementJobCount("bob", Job.RUNNING_STATUS, 0);
+        summaryDAO.incrementJobCount("joe", Job.COMPLETED_STATUS, 2);
+        summaryDAO.incrementJobCount(null, null, 1);
+        summaryDAO.incrementOutputBytes("bob", 100);
+        summaryDAO.incrementOutputBytes("bob", 50);
+        
+        JobSummary summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.PENDING_STATUS) == 20);
+        assertTrue(summary.getJobCount("bob", Job.RUNNING_STATUS) == 0);
+        assertTrue(summary.getJobCount("joe", Job.COMPLETED_STATUS) == 2);
+        assertTrue(summary.getJobCount(null, null) == 1);
+        assertTrue(summary.getOutputBytes("bob") == 150);
+        
+        summary = summaryDAO.getJobSummary("joe");
+        assertTrue(summary.getJobCounts().size() == 1);
+        assertTrue(summary.getJobCount("joe", Job.COMPLETED_STATUS) == 2);
+        assertTrue(summary.getOutputBytes().isEmpty());
+    }
+    
+    @Test
+    public void testIncrementWithinTransactionThatFails() throws Exception {
+        final JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        try {
+            ofy().transact(new VoidWork() {
+                @Override
+                public void vrun() {
+                    summaryDAO.incrementJobCount("bob", Job.PENDING_STATUS, 1);
+                    throw new IllegalStateException("fail");
+                }
+            });
+            fail("Expected IllegalStateException");
+        }
+        catch(IllegalStateException ise){
+            assertTrue(ise.getMessage().equals("fail"));
+        }
+        assertTrue(summaryDAO.getJobSummary(null).getJobCounts().isEmpty());
+    }
+    
+    @Test
+    public void testJobDAOInsertAllUpdatesCounts() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(
+                new InputWorkspaceFileLinkObjectifyDAOImpl());
+        jobDAO.setJobSummaryDAO(summaryDAO);
+        
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < JobObjectifyDAOImpl.MAX_JOBS_PER_TRANSACTION+6; i++){
+            jobs.add(getJob("bob",Job.PENDING_STATUS));
+        }
+        jobs.add(getJob("joe",Job.PENDING_STATUS));
+        Job deleted = getJob("joe",Job.PENDING_STATUS);
+        deleted.setDeleted(true);
+        jobs.add(deleted);
+        jobDAO.insertAll(jobs, true);
+        
+        JobSummary summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.PENDING_STATUS) == 
+                JobObjectifyDAOImpl.MAX_JOBS_PER_TRANSACTION+6);
+        assertTrue(summary.getJobCount("joe", Job.PENDING_STATUS) == 1);
+        assertTrue(ofy().load().type(Job.class).count() == jobs.size());
+    }
+    
+    @Test
+    public void testJobDAOUpdatesCounts() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        InputWorkspaceFileLinkObjectifyDAOImpl inputDAO = new InputWorkspaceFileLinkObjectifyDAOImpl();
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(inputDAO);
+        WorkspaceFileObjectifyDAOImpl workspaceDAO = new WorkspaceFileObjectifyDAOImpl(jobDAO, inputDAO);
+        jobDAO.setWorkspaceFileDAO(workspaceDAO);
+        jobDAO.setJobSummaryDAO(summaryDAO);
+        
+        Job j = jobDAO.insert(getJob("bob",Job.PENDING_STATUS), true);
+        Job jTwo = jobDAO.insert(getJob("bob",Job.PENDING_STATUS), true);
+        JobSummary summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.PENDING_STATUS) == 2);
+        
+        jobDAO.update(j.getId(), Job.RUNNING_STATUS, null, null, null, null, 
+                null, null, null, null, null, null, null);
+        summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.PENDING_STATUS) == 1);
+        assertTrue(summary.getJobCount("bob", Job.RUNNING_STATUS) == 1);
+        
+        //update with no status change leaves counts alone
+        jobDAO.update(j.getId(), null, 5L, null, null, null, 
+                null, null, null, null, null, null, null);
+        summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.RUNNING_STATUS) == 1);
+        
+        //logical delete
+        jobDAO.delete(j.getId(), null);
+        summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.RUNNING_STATUS) == 0);
+        
+        //permanent delete
+        jobDAO.delete(jTwo.getId(), Boolean.TRUE);
+        summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("bob", Job.PENDING_STATUS) == 0);
+    }
+    
+    @Test
+    public void testWorkspaceFileDAOUpdatesOutputBytes() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        InputWorkspaceFileLinkObjectifyDAOImpl inputDAO = new InputWorkspaceFileLinkObjectifyDAOImpl();
+        WorkspaceFileObjectifyDAOImpl workspaceDAO = new WorkspaceFileObjectifyDAOImpl(null, inputDAO);
+        workspaceDAO.setJobSummaryDAO(summaryDAO);
+        
+        WorkspaceFile wsf = workspaceDAO.insert(getOutputWorkspaceFile("bob",null), false);
+        WorkspaceFile notOutput = getOutputWorkspaceFile("bob",1000L);
+        notOutput.setSourceJobId(null);
+        workspaceDAO.insert(notOutput, false);
+        assertTrue(summaryDAO.getJobSummary(null).getOutputBytes("bob") == 0);
+        
+        workspaceDAO.updatePathSizeAndFailStatus(wsf.getId(), "/foo", "100", null);
+        assertTrue(summaryDAO.getJobSummary(null).getOutputBytes("bob") == 100);
+        
+        wsf = workspaceDAO.getWorkspaceFileById(wsf.getId().toString(), null);
+        wsf.setSize(250L);
+        workspaceDAO.update(wsf);
+        assertTrue(summaryDAO.getJobSummary(null).getOutputBytes("bob") == 250);
+        
+        workspaceDAO.delete(wsf.getId(), null, true);
+        assertTrue(summaryDAO.getJobSummary(null).getOutputBytes("bob") == 0);
+    }
+    
+    @Test
+    public void testRebuild() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        DeferredTaskSubmitter submitter = getInlineSubmitter();
+        summaryDAO.setDeferredTaskSubmitter(submitter);
+        summaryDAO.setBatchSize(1);
+        summaryDAO.setBatchesPerSlice(2);
+        summaryDAO.incrementJobCount("old", Job.PENDING_STATUS, 5);
+        summaryDAO.incrementJobCount("joe", Job.COMPLETED_STATUS, 1);
+        
+        ofy().save().entity(getJob("bob",Job.PENDING_STATUS)).now();
+        ofy().save().entity(getJob("bob",Job.PENDING_STATUS)).now();
+        Job deleted = getJob("bob",Job.RUNNING_STATUS);
+        deleted.setDeleted(true);
+        ofy().save().entity(deleted).now();
+        ofy().save().entity(getJob("joe",Job.COMPLETED_STATUS)).now();
+        ofy().save().entity(getOutputWorkspaceFile("joe",10L)).now();
+        ofy().save().entity(getOutputWorkspaceFile("joe",20L)).now();
+        
+        summaryDAO.rebuild();
+        // 3 jobs and 2 workspace files in batches of 1 with 2 batches per 
+        // slice take 2 slices each
+        verify(submitter, times(4)).submit(anyString(), any(DeferredTask.class));
+        
+        JobSummary summary = summaryDAO.getJobSummary(null);
+        assertTrue(summary.getJobCount("old", Job.PENDING_STATUS) == 0);
+        assertTrue(summary.getJobCount("bob", Job.PENDING_STATUS) == 2);
+        assertTrue(summary.getJobCount("bob", Job.RUNNING_STATUS) == 0);
+        assertTrue(summary.getJobCount("joe", Job.COMPLETED_STATUS) == 1);
+        assertTrue(summary.getOutputBytes("joe") == 30);
+        
+        // counts saved by slices are removed when rebuild finishes
+        assertTrue(ofy().load().type(JobSummaryRebuildSlice.class).count() == 0);
+    }
+    
+    @Test
+    public void testRebuildSliceRetriedDoesNotCountTwice() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        summaryDAO.setDeferredTaskSubmitter(submitter);
+        summaryDAO.setBatchSize(1);
+        summaryDAO.setBatchesPerSlice(1);
+        ofy().save().entity(getJob("bob",Job.PENDING_STATUS)).now();
+        ofy().save().entity(getJob("bob",Job.PENDING_STATUS)).now();
+        
+        summaryDAO.runRebuildSlice(1L, 0, 
+                JobSummaryObjectifyDAOImpl.JOB_COUNT_TYPE, null);
+        summaryDAO.runRebuildSlice(1L, 0, 
+                JobSummaryObjectifyDAOImpl.JOB_COUNT_TYPE, null);
+        verify(submitter, times(2)).submit(eq(
+                JobSummaryRebuildTask.TASK_NAME_PREFIX+"1-1"), 
+                any(DeferredTask.class));
+        
+        ofy().clear();
+        JobSummaryRebuildSlice saved = ofy().load()
+                .type(JobSummaryRebuildSlice.class)
+                .id(JobSummaryRebuildSlice.getId(1L, 0)).now();
+        assertTrue(saved.getCounts().getJobCount("bob", Job.PENDING_STATUS) == 1);
+        assertTrue(ofy().load().type(JobSummaryRebuildSlice.class).count() == 1);
+    }
+    
+    @Test
+    public void testLastRebuildSliceFailsIfEarlierCountsMissing() throws Exception {
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        summaryDAO.setDeferredTaskSubmitter(mock(DeferredTaskSubmitter.class));
+        summaryDAO.incrementJobCount("bob", Job.PENDING_STATUS, 3);
+        try {
+            summaryDAO.runRebuildSlice(1L, 1, 
+                    JobSummaryObjectifyDAOImpl.OUTPUT_BYTES_TYPE, null);
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().equals("Counts for slice 1-0 of job "
+                    + "summary rebuild not found"));
+        }
+        assertTrue(summaryDAO.getJobSummary(null)
+                .getJobCount("bob", Job.PENDING_STATUS) == 3);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import edu.ucsd.crbs.cws.dao.MigrationDAO;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.log.MigrationStatus;
+import edu.ucsd.crbs.cws.workflow.Job;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestMigrationObjectifyDAOImpl {
+
+    private final LocalServiceTestHelper _helper
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy());
+
+    public TestMigrationObjectifyDAOImpl() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(MigrationObjectifyDAOImpl.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        _helper.setUp();
+        ofy().clear();
+    }
+
+    @After
+    public void tearDown() {
+        _helper.tearDown();
+    }
+    
+    /**
+     * Creates {@link DeferredTaskSubmitter} that runs tasks right away
+     */
+    private DeferredTaskSubmitter getInlineSubmitter() throws Exception {
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((DeferredTask)invocation.getArguments()[1]).run();
+                return null;
+            }
+        }).when(submitter).submit(anyString(), any(DeferredTask.class));
+        return submitter;
+    }
+    
+    private void insertJobs(int count){
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < count; i++){
+            Job j = new Job();
+            j.setName("job"+i);
+            jobs.add(j);
+        }
+        ofy().save().entities(jobs).now();
+        ofy().clear();
+    }
+
+    @Test
+    public void testStartWithInvalidArgs() throws Exception {
+        MigrationObjectifyDAOImpl dao = new MigrationObjectifyDAOImpl();
+        dao.setDeferredTaskSubmitter(mock(DeferredTaskSubmitter.class));
+        try {
+            dao.start(null, null);
+            fail("Expected exception");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("Kind cannot be null"));
+        }
+        try {
+            dao.start("foo", null);
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().startsWith("Unknown kind foo"));
+        }
+        try {
+            dao.start(MigrationDAO.JOB_KIND, 0);
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().equals("Batch size must be larger then 0"));
+        }
+        assertTrue(dao.getMigrationStatuses().isEmpty());
+    }
+    
+    @Test
+    public void testStartQueuesFirstSlice() throws Exception {
+        MigrationObjectifyDAOImpl dao = new MigrationObjectifyDAOImpl();
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        dao.setDeferredTaskSubmitter(submitter);
+        MigrationStatus status = dao.start(MigrationDAO.JOB_KIND, 5000);
+        assertTrue(status.isRunning());
+        assertTrue(status.getBatchSize() == MigrationObjectifyDAOImpl.MAX_BATCH_SIZE);
+        assertTrue(status.getResavedCount() == 0);
+        verify(submitter).submit(eq(MigrationSliceTask.TASK_NAME_PREFIX+"Job-"+
+                status.getGeneration()+"-0"), any(DeferredTask.class));
+        
+        MigrationStatus loaded = dao.getMigrationStatus(MigrationDAO.JOB_KIND);
+        assertTrue(loaded.getGeneration() == status.getGeneration());
+        assertTrue(loaded.getSchemaVersion() == Job.SCHEMA_VERSION);
+        assertTrue(dao.getMigrationStatuses().size() == 1);
+        
+        status = dao.start(MigrationDAO.USER_KIND, null);
+        assertTrue(status.getSchemaVersion() == 0);
+    }
+    
+    @Test
+    public void testResaveAllJobsAcrossSlices() throws Exception {
+        insertJobs(25);
+        MigrationObjectifyDAOImpl dao = new MigrationObjectifyDAOImpl();
+        DeferredTaskSubmitter submitter = getInlineSubmitter();
+        dao.setDeferredTaskSubmitter(submitter);
+        dao.setBatchesPerSlice(2);
+        
+        dao.start(MigrationDAO.JOB_KIND, 10);
+        
+        MigrationStatus status = dao.getMigrationStatus(MigrationDAO.JOB_KIND);
+        assertTrue(status.isRunning() == false);
+        assertTrue(status.getError() == null);
+        assertTrue(status.getResavedCount() == 25);
+        assertTrue(status.getSliceCount() == 2);
+        assertTrue(status.getFinishDate() != null);
+        assertTrue(status.getSchemaVersion() == Job.SCHEMA_VERSION);
+        assertTrue(status.getEntitiesPerSecond() >= 0);
+        verify(submitter, times(2)).submit(anyString(), any(DeferredTask.class));
+        assertTrue(ofy().load().type(Job.class).count() == 25);
+    }
+    
+    @Test
+    public void testResaveWithNoEntities() throws Exception {
+        MigrationObjectifyDAOImpl dao = new MigrationObjectifyDAOImpl();
+        dao.setDeferredTaskSubmitter(getInlineSubmitter());
+        dao.start(MigrationDAO.WORKFLOW_KIND, null);
+        MigrationStatus status = dao.getMigrationStatus(MigrationDAO.WORKFLOW_KIND);
+        assertTrue(status.isRunning() == false);
+        assertTrue(status.getResavedCount() == 0);
+        assertTrue(status.getBatchSize() == MigrationObjectifyDAOImpl.DEFAULT_BATCH_SIZE);
+    }
+    
+    @Test
+    public void testSliceFromRestartedMigrationDoesNothing() throws Exception {
+        insertJobs(3);
+        MigrationObjectifyDAOImpl dao = new MigrationObjectifyDAOImpl();
+        dao.setDeferredTaskSubmitter(mock(DeferredTaskSubmitter.class));
+        MigrationStatus first = dao.start(MigrationDAO.JOB_KIND, null);
+        MigrationStatus second = dao.start(MigrationDAO.JOB_KIND, null);
+        assertTrue(second.getGeneration() > first.getGeneration());
+        
+        MigrationStatus status = dao.runSlice(MigrationDAO.JOB_KIND, 
+                first.getGeneration(), 0);
+        assertTrue(status.getGeneration() == second.getGeneration());
+        assertTrue(status.getResavedCount() == 0);
+        assertTrue(status.isRunning());
+        
+        status = dao.runSlice(MigrationDAO.JOB_KIND, second.getGeneration(), 0);
+        assertTrue(status.getResavedCount() == 3);
+        assertTrue(status.isRunning() == false);
+    }
+}
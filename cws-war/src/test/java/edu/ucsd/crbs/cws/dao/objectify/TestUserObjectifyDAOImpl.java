@@ -62,7 +62,8 @@ import org.junit.runners.JUnit4;
 public class TestUserObjectifyDAOImpl {
 
     private final LocalServiceTestHelper _helper
-            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
                     new LocalBlobstoreServiceTestConfig());
     
     public TestUserObjectifyDAOImpl() {
@@ -0,0 +1,210 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.dao.objectify;
+
+import com.google.appengine.tools.development.testing.LocalBlobstoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestWorkflowCache {
+
+    private final LocalServiceTestHelper _helper =
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
+        new LocalBlobstoreServiceTestConfig());
+
+    public TestWorkflowCache() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(WorkflowObjectifyDAOImpl.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        _helper.setUp();
+        ofy().clear();
+    }
+
+    @After
+    public void tearDown() {
+        _helper.tearDown();
+    }
+    
+    private Workflow getWorkflow(long id,final String name){
+        Workflow w = new Workflow();
+        w.setId(id);
+        w.setName(name);
+        w.setBlobKey("blob");
+        ArrayList<WorkflowParameter> params = new ArrayList<>();
+        WorkflowParameter param = new WorkflowParameter();
+        param.setName("param");
+        params.add(param);
+        w.setParameters(params);
+        return w;
+    }
+
+    @Test
+    public void testGetOnEmptyCache() {
+        WorkflowCache cache = new WorkflowCache(10,100000);
+        assertTrue(cache.get(1) == null);
+        assertTrue(cache.getMisses() == 1);
+        assertTrue(cache.getHits() == 0);
+        assertTrue(cache.getHitRate() == 0);
+    }
+    
+    @Test
+    public void testPutAndGetReturnsCopy() {
+        WorkflowCache cache = new WorkflowCache(10,100000);
+        cache.put(getWorkflow(1,"foo"),cache.getStamp());
+        
+        Workflow w = cache.get(1);
+        assertTrue(w.getId() == 1);
+        assertTrue(w.getName().equals("foo"));
+        assertTrue(w.getBlobKey().equals("blob"));
+        assertTrue(w.getParameters().size() == 1);
+        w.getParameters().clear();
+        w.setName("changed");
+        
+        Workflow wTwo = cache.get(1);
+        assertTrue(wTwo != w);
+        assertTrue(wTwo.getName().equals("foo"));
+        assertTrue(wTwo.getParameters().size() == 1);
+        assertTrue(cache.getHits() == 2);
+        assertTrue(cache.getHitRate() == 1.0);
+    }
+    
+    @Test
+    public void testPutIgnoredIfInvalidatedSinceStamp() {
+        WorkflowCache cache = new WorkflowCache(10,100000);
+        long stamp = cache.getStamp();
+        cache.invalidate(1L);
+        cache.put(getWorkflow(1,"foo"),stamp);
+        assertTrue(cache.getSize() == 0);
+        cache.put(null, cache.getStamp());
+        cache.put(new Workflow(), cache.getStamp());
+        assertTrue(cache.getSize() == 0);
+    }
+    
+    @Test
+    public void testInvalidateAndClear() {
+        WorkflowCache cache = new WorkflowCache(10,100000);
+        cache.put(getWorkflow(1,"foo"),cache.getStamp());
+        cache.put(getWorkflow(2,"bar"),cache.getStamp());
+        cache.invalidate(1L);
+        assertTrue(cache.get(1) == null);
+        assertTrue(cache.get(2) != null);
+        cache.invalidate(null);
+        cache.clear();
+        assertTrue(cache.getSize() == 0);
+    }
+    
+    @Test
+    public void testEviction() {
+        WorkflowCache cache = new WorkflowCache(2,100000);
+        cache.put(getWorkflow(1,"foo"),cache.getStamp());
+        cache.put(getWorkflow(2,"bar"),cache.getStamp());
+        cache.get(1);
+        cache.put(getWorkflow(3,"joe"),cache.getStamp());
+        assertTrue(cache.getSize() == 2);
+        assertTrue(cache.getEvictions() == 1);
+        assertTrue(cache.get(1) != null);
+        assertTrue(cache.get(2) == null);
+    }
+    
+    @Test
+    public void testExpiredEntry() {
+        WorkflowCache cache = new WorkflowCache(10,-1);
+        cache.put(getWorkflow(1,"foo"),cache.getStamp());
+        assertTrue(cache.get(1) == null);
+        assertTrue(cache.getSize() == 0);
+    }
+    
+    @Test
+    public void testDAOUsesCacheAndInvalidatesOnUpdate() throws Exception {
+        WorkflowCache cache = new WorkflowCache(10,100000);
+        JobDAO jobDAO = mock(JobDAO.class);
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        workflowDAO.setWorkflowCache(cache);
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w = workflowDAO.insert(w);
+        
+        Workflow res = workflowDAO.getWorkflowById(w.getId().toString(), null);
+        assertTrue(res.getBlobKey() == null);
+        assertTrue(cache.getMisses() == 1);
+        res = workflowDAO.getWorkflowById(w.getId().toString(), null);
+        assertTrue(cache.getHits() == 1);
+        
+        workflowDAO.updateBlobKey(w.getId(), "key");
+        res = workflowDAO.getWorkflowById(w.getId().toString(), null);
+        assertTrue(res.getBlobKey().equals("key"));
+        
+        workflowDAO.updateDeletedAndVersion(w.getId(), true, null);
+        res = workflowDAO.getWorkflowById(w.getId().toString(), null);
+        assertTrue(res.isDeleted());
+        
+        when(jobDAO.getJobsWithWorkflowIdCount(w.getId())).thenReturn(0);
+        workflowDAO.getWorkflowById(w.getId().toString(), null);
+        assertTrue(cache.getSize() == 1);
+        workflowDAO.delete(w.getId(), Boolean.TRUE);
+        assertTrue(cache.getSize() == 0);
+    }
+}
@@ -40,6 +40,7 @@ import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
 
 import edu.ucsd.crbs.cws.dao.JobDAO;
 import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowHead;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import java.util.ArrayList;
@@ -69,7 +70,8 @@ import static org.mockito.Mockito.*;
 public class TestWorkflowObjectifyDAOImpl {
 
       private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
         new LocalBlobstoreServiceTestConfig());
 
     
@@ -89,6 +91,7 @@ public class TestWorkflowObjectifyDAOImpl {
     public void setUp() {
         _helper.setUp();
         ofy().clear();
+        WorkflowCache.getInstance().clear();
     }
 
     @After
@@ -425,4 +428,159 @@ public class TestWorkflowObjectifyDAOImpl {
         
     }
     
-}
\ No newline at end of file
+    @Test
+    public void testInsertUpdatesWorkflowHead() throws Exception {
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(null);
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w = workflowDAO.insert(w);
+        WorkflowHead head = ofy().load().type(WorkflowHead.class).id("foo").now();
+        assertTrue(head != null);
+        assertTrue(head.getLatestWorkflowId().equals(w.getId()));
+        assertTrue(head.getLatestVersion() == 1);
+        
+        Workflow wTwo = new Workflow();
+        wTwo.setName("foo");
+        wTwo = workflowDAO.insert(wTwo);
+        assertTrue(wTwo.getVersion() == 2);
+        assertTrue(wTwo.getParentWorkflow().getId().equals(w.getId()));
+        head = ofy().load().type(WorkflowHead.class).id("foo").now();
+        assertTrue(head.getLatestWorkflowId().equals(wTwo.getId()));
+        assertTrue(head.getLatestVersion() == 2);
+    }
+    
+    @Test
+    public void testInsertIgnoresIdSetByCaller() throws Exception {
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(null);
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w.setDescription("first");
+        w = workflowDAO.insert(w);
+        long firstId = w.getId();
+        
+        Workflow wTwo = new Workflow();
+        wTwo.setName("bar");
+        wTwo.setId(firstId);
+        wTwo = workflowDAO.insert(wTwo);
+        assertTrue(wTwo.getId() != firstId);
+        assertTrue(wTwo.getVersion() == 1);
+        
+        ofy().clear();
+        Workflow first = ofy().load().type(Workflow.class).id(firstId).now();
+        assertTrue(first.getName().equals("foo"));
+        assertTrue(first.getDescription().equals("first"));
+    }
+    
+    @Test
+    public void testInsertWhereWorkflowHeadIsMissing() throws Exception {
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(null);
+        
+        //simulate workflows saved before WorkflowHead existed
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w.setVersion(1);
+        ofy().save().entity(w).now();
+        Workflow wTwo = new Workflow();
+        wTwo.setName("foo");
+        wTwo.setVersion(5);
+        ofy().save().entity(wTwo).now();
+        
+        Workflow wThree = new Workflow();
+        wThree.setName("foo");
+        wThree = workflowDAO.insert(wThree);
+        assertTrue(wThree.getVersion() == 6);
+        assertTrue(wThree.getParentWorkflow().getId().equals(wTwo.getId()));
+        WorkflowHead head = ofy().load().type(WorkflowHead.class).id("foo").now();
+        assertTrue(head.getLatestWorkflowId().equals(wThree.getId()));
+        assertTrue(head.getLatestVersion() == 6);
+    }
+    
+    @Test
+    public void testResaveCreatesMissingWorkflowHead() throws Exception {
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(null);
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w.setVersion(3);
+        ofy().save().entity(w).now();
+        assertTrue(ofy().load().type(WorkflowHead.class).id("foo").now() == null);
+        
+        workflowDAO.resave(w.getId());
+        WorkflowHead head = ofy().load().type(WorkflowHead.class).id("foo").now();
+        assertTrue(head.getLatestWorkflowId().equals(w.getId()));
+        assertTrue(head.getLatestVersion() == 3);
+    }
+    
+    @Test
+    public void testGetLatestWorkflows() throws Exception {
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(null);
+        List<Workflow> wfList = workflowDAO.getLatestWorkflows(false, null);
+        assertTrue(wfList.isEmpty());
+        
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w.setParameters(new ArrayList<WorkflowParameter>());
+        w.getParameters().add(new WorkflowParameter());
+        workflowDAO.insert(w);
+        w = new Workflow();
+        w.setName("foo");
+        w.setParameters(new ArrayList<WorkflowParameter>());
+        w.getParameters().add(new WorkflowParameter());
+        Workflow latestFoo = workflowDAO.insert(w);
+        w = new Workflow();
+        w.setName("bar");
+        Workflow latestBar = workflowDAO.insert(w);
+        workflowDAO.updateDeletedAndVersion(latestBar.getId(), true, null);
+        
+        wfList = workflowDAO.getLatestWorkflows(false, null);
+        assertTrue(wfList.size() == 1);
+        assertTrue(wfList.get(0).getId().equals(latestFoo.getId()));
+        assertTrue(wfList.get(0).getParameters().size() == 1);
+        
+        wfList = workflowDAO.getLatestWorkflows(true, Boolean.TRUE);
+        assertTrue(wfList.size() == 2);
+        for (Workflow wf : wfList){
+            assertTrue(wf.getParameters() == null);
+            assertTrue(wf.getId().equals(latestFoo.getId()) ||
+                    wf.getId().equals(latestBar.getId()));
+        }
+    }
+    
+    @Test
+    public void testUpdateVersionUpdatesWorkflowHead() throws Exception {
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(null);
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w = workflowDAO.insert(w);
+        workflowDAO.updateDeletedAndVersion(w.getId(), null, 10);
+        
+        Workflow wTwo = new Workflow();
+        wTwo.setName("foo");
+        wTwo = workflowDAO.insert(wTwo);
+        assertTrue(wTwo.getVersion() == 11);
+    }
+    
+    @Test
+    public void testPermanentDeleteOfLatestRebuildsWorkflowHead() throws Exception {
+        JobDAO jobDAO = mock(JobDAO.class);
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        Workflow w = new Workflow();
+        w.setName("foo");
+        w = workflowDAO.insert(w);
+        Workflow wTwo = new Workflow();
+        wTwo.setName("foo");
+        wTwo = workflowDAO.insert(wTwo);
+        
+        when(jobDAO.getJobsWithWorkflowIdCount(wTwo.getId())).thenReturn(0);
+        DeleteReport dwr = workflowDAO.delete(wTwo.getId(),Boolean.TRUE);
+        assertTrue(dwr.isSuccessful());
+        
+        WorkflowHead head = ofy().load().type(WorkflowHead.class).id("foo").now();
+        assertTrue(head.getLatestWorkflowId().equals(w.getId()));
+        assertTrue(head.getLatestVersion() == 2);
+        
+        when(jobDAO.getJobsWithWorkflowIdCount(w.getId())).thenReturn(0);
+        dwr = workflowDAO.delete(w.getId(),Boolean.TRUE);
+        assertTrue(dwr.isSuccessful());
+        assertTrue(ofy().load().type(WorkflowHead.class).id("foo").now() == null);
+    }
+}
@@ -37,6 +37,7 @@ import com.google.appengine.tools.development.testing.LocalBlobstoreServiceTestC
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.metrics.MetricsRegistry;
 import edu.ucsd.crbs.cws.workflow.InputWorkspaceFileLink;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
@@ -65,7 +66,8 @@ public class TestWorkspaceFileObjectifyDAOImpl {
 
     
       private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
         new LocalBlobstoreServiceTestConfig());
     
     public TestWorkspaceFileObjectifyDAOImpl() {
@@ -323,5 +325,133 @@ public class TestWorkspaceFileObjectifyDAOImpl {
         assertTrue(wsf == null);
     }
     
-
-}
\ No newline at end of file
+    @Test
+    public void testGetWorkspaceFileWithBlobByMd5() throws Exception {
+        WorkspaceFileObjectifyDAOImpl workspaceFileDAO = new WorkspaceFileObjectifyDAOImpl(null,
+                null);
+        assertTrue(workspaceFileDAO.getWorkspaceFileWithBlobByMd5(null,"bob") == null);
+        assertTrue(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc",null) == null);
+        assertTrue(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob") == null);
+        
+        //no blob key
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setName("noblob");
+        wsf.setOwner("bob");
+        wsf.setMd5("abc");
+        workspaceFileDAO.insert(wsf, false);
+        assertTrue(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob") == null);
+        
+        //deleted
+        wsf = new WorkspaceFile();
+        wsf.setName("deleted");
+        wsf.setOwner("bob");
+        wsf.setMd5("abc");
+        wsf.setBlobKey("key1");
+        wsf.setDeleted(true);
+        workspaceFileDAO.insert(wsf, false);
+        assertTrue(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob") == null);
+        
+        //owned by someone else
+        wsf = new WorkspaceFile();
+        wsf.setName("joes");
+        wsf.setOwner("joe");
+        wsf.setMd5("abc");
+        wsf.setBlobKey("joeskey");
+        workspaceFileDAO.insert(wsf, false);
+        assertTrue(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob") == null);
+        
+        wsf = new WorkspaceFile();
+        wsf.setName("good");
+        wsf.setOwner("bob");
+        wsf.setMd5("abc");
+        wsf.setBlobKey("key2");
+        workspaceFileDAO.insert(wsf, false);
+        WorkspaceFile res = workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob");
+        assertTrue(res != null);
+        assertTrue(res.getId().equals(wsf.getId()));
+        assertTrue(res.getBlobKey().equals("key2"));
+        assertTrue(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("def","bob") == null);
+        res = workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","joe");
+        assertTrue(res.getBlobKey().equals("joeskey"));
+    }
+    
+    @Test
+    public void testDeleteWithSharedBlobKey() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        InputWorkspaceFileLinkObjectifyDAOImpl inputWorkspaceDAO = new InputWorkspaceFileLinkObjectifyDAOImpl();
+        WorkspaceFileObjectifyDAOImpl workspaceFileDAO = new WorkspaceFileObjectifyDAOImpl(jobDAO,
+                inputWorkspaceDAO);
+        
+        WorkspaceFile first = new WorkspaceFile();
+        first.setName("first");
+        first.setOwner("bob");
+        first.setMd5("abc");
+        first.setBlobKey("sharedkey");
+        workspaceFileDAO.insert(first, false);
+        
+        WorkspaceFile second = new WorkspaceFile();
+        second.setName("second");
+        second.setOwner("bob");
+        second.setMd5("abc");
+        second.setBlobKey("sharedkey");
+        workspaceFileDAO.insert(second, false);
+        
+        //blob is still referenced by second so it is left alone
+        DeleteReport dwr = workspaceFileDAO.delete(first.getId(), Boolean.TRUE, false);
+        assertTrue(dwr.getReason(),dwr.isSuccessful() == true);
+        assertTrue(workspaceFileDAO.getWorkspaceFileById(first.getId().toString(),
+                null) == null);
+        WorkspaceFile res = workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob");
+        assertTrue(res.getId().equals(second.getId()));
+        
+        //last reference, blob store lookup finds nothing for fake key
+        dwr = workspaceFileDAO.delete(second.getId(), Boolean.TRUE, false);
+        assertTrue(dwr.getReason(),dwr.isSuccessful() == true);
+        assertTrue(workspaceFileDAO.getWorkspaceFileById(second.getId().toString(),
+                null) == null);
+    }
+    
+    @Test
+    public void testUpdateSkipsWriteWhenUnchanged() throws Exception {
+        WorkspaceFileObjectifyDAOImpl workspaceFileDAO = new WorkspaceFileObjectifyDAOImpl(null,null);
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setName("foo");
+        wsf.setOwner("bob");
+        wsf.setSize(10L);
+        wsf.setSourceJobId(1L);
+        wsf = workspaceFileDAO.insert(wsf, false);
+        
+        long written = MetricsRegistry.getDefault().counter(
+                EntityWrites.ENTITY_WRITES_TOTAL,"",
+                MetricsObjectifyFactory.KIND_LABEL,"WorkspaceFile").getCount();
+        long skipped = MetricsRegistry.getDefault().counter(
+                EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL,"",
+                MetricsObjectifyFactory.KIND_LABEL,"WorkspaceFile").getCount();
+        
+        ofy().clear();
+        WorkspaceFile loaded = workspaceFileDAO.getWorkspaceFileById(wsf.getId().toString(), null);
+        workspaceFileDAO.update(loaded);
+        
+        WorkspaceFile partial = new WorkspaceFile();
+        partial.setId(wsf.getId());
+        partial.setName("foo");
+        workspaceFileDAO.update(partial, null, Boolean.FALSE, null);
+        assertTrue(MetricsRegistry.getDefault().counter(
+                EntityWrites.ENTITY_WRITES_SKIPPED_TOTAL,"",
+                MetricsObjectifyFactory.KIND_LABEL,"WorkspaceFile").getCount() == skipped+2);
+        
+        loaded.setName("bar");
+        workspaceFileDAO.update(loaded);
+        partial.setName("foo");
+        workspaceFileDAO.update(partial, null, null, null);
+        assertTrue(MetricsRegistry.getDefault().counter(
+                EntityWrites.ENTITY_WRITES_TOTAL,"",
+                MetricsObjectifyFactory.KIND_LABEL,"WorkspaceFile").getCount() == written+2);
+        
+        ofy().clear();
+        WorkspaceFile res = workspaceFileDAO.getWorkspaceFileById(wsf.getId().toString(), null);
+        assertTrue(res.getName().equals("foo"));
+        JobSummaryObjectifyDAOImpl summaryDAO = new JobSummaryObjectifyDAOImpl();
+        assertTrue(summaryDAO.getJobSummary("bob").getOutputBytes("bob") == 10L);
+    }
+}
@@ -0,0 +1,447 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.api.taskqueue.DeferredTask;
+import com.google.appengine.api.urlfetch.HTTPResponse;
+import com.google.appengine.tools.development.testing.LocalMemcacheServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import com.google.common.util.concurrent.Futures;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestCachingURLFetcherImpl {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+    
+    private final LocalServiceTestHelper _helper
+            = new LocalServiceTestHelper(new LocalMemcacheServiceTestConfig());
+
+    public TestCachingURLFetcherImpl() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(URLFetcherImpl.class.getName()).setLevel(Level.OFF);
+        Logger.getLogger(CachingURLFetcherImpl.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        _helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        _helper.tearDown();
+    }
+
+    private CachingURLFetcherImpl getFetcher(){
+        CachingURLFetcherImpl fetcher = new CachingURLFetcherImpl();
+        fetcher.setCache(new CachingURLFetcherImpl.DropDownValueCache(10));
+        fetcher.setDeferredTaskSubmitter(mock(DeferredTaskSubmitter.class));
+        return fetcher;
+    }
+    
+    private HTTPResponse getResponse(int code,final String data){
+        HTTPResponse response = mock(HTTPResponse.class);
+        when(response.getResponseCode()).thenReturn(code);
+        when(response.getContent()).thenReturn(data == null ? null : data.getBytes());
+        return response;
+    }
+    
+    private File writeFile(final String name,final String data) throws Exception {
+        File f = new File(_folder.getRoot().getAbsolutePath()+File.separator+name);
+        FileWriter fw = new FileWriter(f);
+        fw.write(data);
+        fw.flush();
+        fw.close();
+        return f;
+    }
+    
+    private WorkflowParameter getDropDown(final String value){
+        WorkflowParameter wp = new WorkflowParameter();
+        wp.setType(WorkflowParameter.Type.DROP_DOWN);
+        wp.setNameValueDelimiter("==");
+        wp.setValue(value);
+        return wp;
+    }
+    
+    private User getUser(final String login){
+        User u = new User();
+        u.setLogin(login);
+        return u;
+    }
+    
+    @Test
+    public void testFetchAndUpdateWithNullParameter() throws Exception {
+        CachingURLFetcherImpl fetcher = getFetcher();
+        WorkflowParameter wp = null;
+        fetcher.fetchAndUpdate(wp, null);
+        fetcher.fetchAndUpdateAll(null, null);
+    }
+    
+    @Test
+    public void testFetchAndUpdateWhereParameterTypeIsNull() throws Exception {
+        CachingURLFetcherImpl fetcher = getFetcher();
+        try {
+            fetcher.fetchAndUpdate(new WorkflowParameter(), null);
+            fail("Expected exception");
+        } catch (Exception ex) {
+            assertTrue(ex.getMessage().startsWith("Parameter's type is null"));
+        }
+    }
+    
+    @Test
+    public void testFetchAndUpdateNonURLValueIsNotCached() throws Exception {
+        CachingURLFetcherImpl.DropDownValueCache cache = 
+                new CachingURLFetcherImpl.DropDownValueCache(10);
+        CachingURLFetcherImpl fetcher = getFetcher();
+        fetcher.setCache(cache);
+        WorkflowParameter wp = getDropDown("a==1");
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().size() == 1);
+        assertTrue(cache.size() == 0);
+    }
+    
+    @Test
+    public void testFetchAndUpdateUsesCacheOnSecondCall() throws Exception {
+        File f = writeFile("bob","a==1\nb==2\n");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        WorkflowParameter wp = getDropDown("file://"+f.getAbsolutePath());
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().size() == 2);
+        assertTrue(wp.getValueMap().get("a").equals("1"));
+        
+        //change file, cached value should still be returned
+        writeFile("bob","c==3\n");
+        WorkflowParameter wpTwo = getDropDown("file://"+f.getAbsolutePath());
+        fetcher.fetchAndUpdate(wpTwo, getUser("bob"));
+        assertTrue(wpTwo.getValueMap().size() == 2);
+        assertTrue(wpTwo.getValueMap().get("b").equals("2"));
+        
+        //make sure each parameter gets its own copy
+        wpTwo.getValueMap().clear();
+        assertTrue(wp.getValueMap().size() == 2);
+    }
+    
+    @Test
+    public void testFetchAndUpdateCacheKeyIncludesUser() throws Exception {
+        writeFile("bob","a==1\n");
+        writeFile("joe","x==9\ny==8\n");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        String url = "file://"+_folder.getRoot().getAbsolutePath()+File.separator
+                +URLFetcherImpl.USER_LOGIN_KEYWORD;
+        
+        WorkflowParameter wp = getDropDown(url);
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().size() == 1);
+        
+        WorkflowParameter wpTwo = getDropDown(url);
+        fetcher.fetchAndUpdate(wpTwo, getUser("joe"));
+        assertTrue(wpTwo.getValueMap().size() == 2);
+        assertTrue(wpTwo.getValueMap().get("x").equals("9"));
+    }
+    
+    @Test
+    public void testFetchAndUpdateAllCoalescesAndFetchesDistinctURLs() throws Exception {
+        File one = writeFile("one","a==1\n");
+        File two = writeFile("two","b==2\nc==3\n");
+        CachingURLFetcherImpl.DropDownValueCache cache = 
+                new CachingURLFetcherImpl.DropDownValueCache(10);
+        CachingURLFetcherImpl fetcher = getFetcher();
+        fetcher.setCache(cache);
+        
+        List<WorkflowParameter> params = new ArrayList<>();
+        params.add(getDropDown("file://"+one.getAbsolutePath()));
+        params.add(getDropDown("file://"+two.getAbsolutePath()));
+        params.add(getDropDown("file://"+one.getAbsolutePath()));
+        WorkflowParameter text = new WorkflowParameter();
+        text.setType(WorkflowParameter.Type.TEXT);
+        params.add(text);
+        
+        fetcher.fetchAndUpdateAll(params, getUser("bob"));
+        assertTrue(cache.size() == 2);
+        assertTrue(params.get(0).getValueMap().get("a").equals("1"));
+        assertTrue(params.get(1).getValueMap().size() == 2);
+        assertTrue(params.get(2).getValueMap().get("a").equals("1"));
+        assertTrue(params.get(0).getValueMap() != params.get(2).getValueMap());
+        assertTrue(text.getValueMap() == null);
+    }
+    
+    @Test
+    public void testFetchAndUpdateAllWithMissingURL() throws Exception {
+        File one = writeFile("one","a==1\n");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        List<WorkflowParameter> params = new ArrayList<>();
+        params.add(getDropDown("file://"+one.getAbsolutePath()));
+        params.add(getDropDown("file://"+_folder.getRoot().getAbsolutePath()
+                +File.separator+"doesnotexist"));
+        try {
+            fetcher.fetchAndUpdateAll(params, getUser("bob"));
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().contains("doesnotexist"));
+        }
+        assertTrue(params.get(0).getValueMap().get("a").equals("1"));
+    }
+    
+    @Test
+    public void testFetchAndUpdateExpiredEntryIsRefetched() throws Exception {
+        File f = writeFile("bob","a==1\n");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        fetcher.setTimeToLiveMillis(-1);
+        fetcher.setMaxStaleMillis(-1);
+        WorkflowParameter wp = getDropDown("file://"+f.getAbsolutePath());
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().containsKey("a"));
+        
+        writeFile("bob","c==3\n");
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().containsKey("c"));
+    }
+    
+    @Test
+    public void testFetchAndUpdateAllFetchesHttpURLsAsynchronously() throws Exception {
+        URLFetcherImpl urlFetcher = spy(new URLFetcherImpl());
+        WorkflowParameter one = getDropDown("http://foo/one?u=@@userlogin@@");
+        WorkflowParameter two = getDropDown("http://foo/two");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        fetcher.setURLFetcher(urlFetcher);
+        
+        List<WorkflowParameter> params = new ArrayList<>();
+        params.add(one);
+        params.add(two);
+        params.add(getDropDown("http://foo/one?u=@@userlogin@@"));
+        doReturn(Futures.immediateFuture(getResponse(200,"a==1\n")))
+                .when(urlFetcher).fetchAsync(any(WorkflowParameter.class), 
+                        any(User.class));
+        
+        fetcher.fetchAndUpdateAll(params, getUser("bob"));
+        verify(urlFetcher,times(2)).fetchAsync(any(WorkflowParameter.class),
+                any(User.class));
+        verify(urlFetcher,never()).fetchAndUpdate(any(WorkflowParameter.class),
+                any(User.class));
+        for (WorkflowParameter wp : params){
+            assertTrue(wp.getValueMap().get("a").equals("1"));
+        }
+        assertTrue(one.getValue().equals("http://foo/one?u=@@userlogin@@"));
+    }
+    
+    @Test
+    public void testFetchAndUpdateAllAsynchronousFetchFails() throws Exception {
+        File f = writeFile("one","a==1\n");
+        URLFetcherImpl urlFetcher = spy(new URLFetcherImpl());
+        CachingURLFetcherImpl fetcher = getFetcher();
+        fetcher.setURLFetcher(urlFetcher);
+        List<WorkflowParameter> params = new ArrayList<>();
+        params.add(getDropDown("http://foo/bad"));
+        doReturn(Futures.immediateFuture(getResponse(500,null)))
+                .when(urlFetcher).fetchAsync(eq(params.get(0)), 
+                        any(User.class));
+        params.add(getDropDown("file://"+f.getAbsolutePath()));
+        
+        try {
+            fetcher.fetchAndUpdateAll(params, getUser("bob"));
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().contains("500"));
+        }
+        assertTrue(params.get(0).getValueMap() == null);
+        assertTrue(params.get(1).getValueMap().get("a").equals("1"));
+    }
+    
+    @Test
+    public void testFetchAndUpdateStaleEntryReturnedAndRefreshed() throws Exception {
+        writeFile("bob","a==1\n");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        fetcher.setDeferredTaskSubmitter(submitter);
+        fetcher.setTimeToLiveMillis(-1);
+        WorkflowParameter wp = getDropDown("file://"+_folder.getRoot().getAbsolutePath()
+                +File.separator+URLFetcherImpl.USER_LOGIN_KEYWORD);
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        verify(submitter,never()).submit(anyString(), any(DeferredTask.class));
+        
+        writeFile("bob","c==3\n");
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().containsKey("a"));
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().containsKey("a"));
+        
+        //both stale hits submit a task with the same name so the queue
+        //only runs one refresh
+        ArgumentCaptor<String> names = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<DeferredTask> tasks = ArgumentCaptor.forClass(DeferredTask.class);
+        verify(submitter,times(2)).submit(names.capture(), tasks.capture());
+        assertTrue(names.getAllValues().get(0).startsWith(
+                DropDownRefreshTask.TASK_NAME_PREFIX));
+        assertTrue(names.getAllValues().get(0).equals(names.getAllValues().get(1)));
+        assertTrue(names.getAllValues().get(0).matches("[a-zA-Z0-9_-]+"));
+        
+        DropDownRefreshTask task = (DropDownRefreshTask)tasks.getAllValues().get(0);
+        task._cachingFetcher = fetcher;
+        task.run();
+        
+        fetcher.setTimeToLiveMillis(CachingURLFetcherImpl.DEFAULT_TTL_MILLIS);
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().containsKey("c"));
+        assertTrue(wp.getValue().endsWith(URLFetcherImpl.USER_LOGIN_KEYWORD));
+    }
+    
+    @Test
+    public void testStaleEntryWithUserTokenIsFetchedAgainNotRefreshed() throws Exception {
+        writeFile("secret","a==1\n");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        fetcher.setDeferredTaskSubmitter(submitter);
+        fetcher.setTimeToLiveMillis(-1);
+        WorkflowParameter wp = getDropDown("file://"+_folder.getRoot().getAbsolutePath()
+                +File.separator+URLFetcherImpl.USER_TOKEN_KEYWORD);
+        User user = getUser("bob");
+        user.setToken("secret");
+        fetcher.fetchAndUpdate(wp, user);
+        assertTrue(wp.getValueMap().containsKey("a"));
+        
+        writeFile("secret","c==3\n");
+        fetcher.fetchAndUpdate(wp, user);
+        assertTrue(wp.getValueMap().containsKey("c"));
+        verify(submitter,never()).submit(anyString(), any(DeferredTask.class));
+    }
+    
+    @Test
+    public void testRefreshTaskRejectsUserTokenURL() {
+        try {
+            new DropDownRefreshTask("abc","http://foo?t="
+                    +URLFetcherImpl.USER_TOKEN_KEYWORD,"==","bob",null,0);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().contains("token"));
+        }
+    }
+    
+    @Test
+    public void testRefreshTaskFailureKeepsStaleEntry() throws Exception {
+        File f = writeFile("bob","a==1\n");
+        CachingURLFetcherImpl fetcher = getFetcher();
+        WorkflowParameter wp = getDropDown("file://"+f.getAbsolutePath());
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        
+        assertTrue(f.delete());
+        DropDownRefreshTask task = new DropDownRefreshTask(
+                CachingURLFetcherImpl.getDigest("file://"+f.getAbsolutePath()
+                        +"\n=="),"file://"+f.getAbsolutePath(),"==","bob",
+                null,0);
+        task._cachingFetcher = fetcher;
+        task.run();
+        
+        fetcher.fetchAndUpdate(wp, getUser("bob"));
+        assertTrue(wp.getValueMap().containsKey("a"));
+    }
+    
+    @Test
+    public void testEntryInMemcacheIsUsedByOtherInstances() throws Exception {
+        File f = writeFile("bob","a==1\n");
+        WorkflowParameter wp = getDropDown("file://"+f.getAbsolutePath());
+        getFetcher().fetchAndUpdate(wp, getUser("bob"));
+        
+        assertTrue(f.delete());
+        CachingURLFetcherImpl.DropDownValueCache cache = 
+                new CachingURLFetcherImpl.DropDownValueCache(10);
+        CachingURLFetcherImpl fetcher = getFetcher();
+        fetcher.setCache(cache);
+        WorkflowParameter other = getDropDown("file://"+f.getAbsolutePath());
+        fetcher.fetchAndUpdate(other, getUser("bob"));
+        assertTrue(other.getValueMap().get("a").equals("1"));
+        assertTrue(cache.size() == 1);
+    }
+    
+    @Test
+    public void testDropDownValueCacheEvictsLeastRecentlyUsed() {
+        CachingURLFetcherImpl.DropDownValueCache cache = 
+                new CachingURLFetcherImpl.DropDownValueCache(2);
+        cache.put("a", new CachingURLFetcherImpl.CacheEntry(
+                new LinkedHashMap<String,String>(),0));
+        cache.put("b", new CachingURLFetcherImpl.CacheEntry(
+                new LinkedHashMap<String,String>(),0));
+        cache.get("a");
+        cache.put("c", new CachingURLFetcherImpl.CacheEntry(
+                new LinkedHashMap<String,String>(),0));
+        assertTrue(cache.size() == 2);
+        assertTrue(cache.get("a") != null);
+        assertTrue(cache.get("b") == null);
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
+import com.google.appengine.tools.cloudstorage.GcsFileOptions;
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.appengine.tools.cloudstorage.GcsInputChannel;
+import com.google.appengine.tools.cloudstorage.GcsOutputChannel;
+import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.appengine.tools.cloudstorage.GcsServiceFactory;
+import com.google.appengine.tools.cloudstorage.ListOptions;
+import com.google.appengine.tools.cloudstorage.ListResult;
+import com.google.appengine.tools.development.testing.LocalBlobstoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestGcsWorkflowChunkStoreImpl {
+
+    private final LocalServiceTestHelper _helper
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
+                    new LocalBlobstoreServiceTestConfig());
+    
+    public TestGcsWorkflowChunkStoreImpl() {
+    }
+
+    @Before
+    public void setUp() {
+        _helper.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        _helper.tearDown();
+    }
+    
+    /**
+     * In memory {@link GcsService}, the local one can not read objects 
+     * with the version of Guava used by this project
+     */
+    static class InMemoryGcsService implements GcsService {
+        
+        final Map<GcsFilename,byte[]> _objects = new HashMap<>();
+        
+        @Override
+        public GcsOutputChannel createOrReplace(final GcsFilename filename, 
+                GcsFileOptions options) {
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            return new GcsOutputChannel() {
+                boolean _open = true;
+                @Override
+                public GcsFilename getFilename() {
+                    return filename;
+                }
+                @Override
+                public int getBufferSizeBytes() {
+                    return 1024;
+                }
+                @Override
+                public int write(ByteBuffer src) {
+                    int len = src.remaining();
+                    byte[] buf = new byte[len];
+                    src.get(buf);
+                    data.write(buf, 0, len);
+                    return len;
+                }
+                @Override
+                public void waitForOutstandingWrites() {
+                }
+                @Override
+                public boolean isOpen() {
+                    return _open;
+                }
+                @Override
+                public void close() {
+                    _open = false;
+                    _objects.put(filename, data.toByteArray());
+                }
+            };
+        }
+
+        @Override
+        public void createOrReplace(GcsFilename filename, GcsFileOptions options, 
+                ByteBuffer src) {
+            byte[] buf = new byte[src.remaining()];
+            src.get(buf);
+            _objects.put(filename, buf);
+        }
+
+        @Override
+        public GcsInputChannel openReadChannel(GcsFilename filename, long startPosition) {
+            final ByteBuffer data = ByteBuffer.wrap(_objects.get(filename));
+            data.position((int)startPosition);
+            return new GcsInputChannel() {
+                @Override
+                public int read(ByteBuffer dst) {
+                    if (!data.hasRemaining()){
+                        return -1;
+                    }
+                    int len = Math.min(dst.remaining(), data.remaining());
+                    byte[] buf = new byte[len];
+                    data.get(buf);
+                    dst.put(buf);
+                    return len;
+                }
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public GcsInputChannel openPrefetchingReadChannel(GcsFilename filename, 
+                long startPosition, int blockSizeBytes) {
+            return openReadChannel(filename, startPosition);
+        }
+
+        @Override
+        public GcsFileMetadata getMetadata(GcsFilename filename) {
+            if (!_objects.containsKey(filename)){
+                return null;
+            }
+            return new GcsFileMetadata(filename,GcsFileOptions.getDefaultInstance(),
+                    null,_objects.get(filename).length,new Date());
+        }
+
+        @Override
+        public boolean delete(GcsFilename filename) {
+            return _objects.remove(filename) != null;
+        }
+
+        @Override
+        public void compose(Iterable<String> source, GcsFilename dest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void copy(GcsFilename source, GcsFilename dest) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void update(GcsFilename source, GcsFileOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ListResult list(String bucket, ListOptions options) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+    
+    private String read(InMemoryGcsService gcsService,long workflowId){
+        return new String(gcsService._objects.get(new GcsFilename("bucket",
+                GcsWorkflowChunkStoreImpl.WORKFLOW_DIR+Long.toString(workflowId)+
+                        GcsWorkflowChunkStoreImpl.KAR_SUFFIX)),StandardCharsets.UTF_8);
+    }
+    
+    @Test
+    public void testSaveChunkAndGetMissingChunks() throws Exception {
+        GcsWorkflowChunkStoreImpl store = new GcsWorkflowChunkStoreImpl(
+                GcsServiceFactory.createGcsService(),"bucket");
+        assertTrue(store.getMissingChunks(1L, null, Arrays.asList("a","b","a"))
+                .equals(Arrays.asList("a","b")));
+        store.saveChunk(1L, "a", "hello".getBytes());
+        assertTrue(store.getMissingChunks(1L, null, Arrays.asList("a","b"))
+                .equals(Arrays.asList("b")));
+        
+        //chunks are not shared between workflows
+        assertTrue(store.getMissingChunks(2L, null, Arrays.asList("a","b"))
+                .equals(Arrays.asList("a","b")));
+    }
+
+    @Test
+    public void testAssembleDeletesChunksAndReusesPreviousVersion() throws Exception {
+        InMemoryGcsService gcsService = new InMemoryGcsService();
+        GcsWorkflowChunkStoreImpl store = new GcsWorkflowChunkStoreImpl(gcsService,"bucket");
+        
+        store.saveChunk(5L, "a", "hello ".getBytes());
+        store.saveChunk(5L, "b", "world".getBytes());
+        String key = store.assemble(5L, null, Arrays.asList("a","b","a"));
+        assertTrue(key != null);
+        assertTrue(read(gcsService,5L).equals("hello worldhello "));
+        assertTrue(store.getMissingChunks(5L, null, Arrays.asList("a","b"))
+                .equals(Arrays.asList("a","b")));
+        
+        //next version only needs chunks not in previous version
+        assertTrue(store.getMissingChunks(6L, 5L, Arrays.asList("b","c","a"))
+                .equals(Arrays.asList("c")));
+        store.saveChunk(6L, "c", "!".getBytes());
+        store.assemble(6L, 5L, Arrays.asList("b","c","a"));
+        assertTrue(read(gcsService,6L).equals("world!hello "));
+    }
+    
+    @Test
+    public void testDeleteChunks() throws Exception {
+        GcsWorkflowChunkStoreImpl store = new GcsWorkflowChunkStoreImpl(
+                GcsServiceFactory.createGcsService(),"bucket");
+        store.saveChunk(1L, "a", "hello".getBytes());
+        store.saveChunk(1L, "b", "world".getBytes());
+        store.saveChunk(11L, "a", "hello".getBytes());
+        assertTrue(store.deleteChunks(1L) == 2);
+        assertTrue(store.getMissingChunks(1L, null, Arrays.asList("a","b"))
+                .equals(Arrays.asList("a","b")));
+        assertTrue(store.getMissingChunks(11L, null, Arrays.asList("a"))
+                .isEmpty());
+    }
+    
+    @Test
+    public void testAssembleWithMissingChunk() throws Exception {
+        GcsService gcsService = mock(GcsService.class);
+        GcsWorkflowChunkStoreImpl store = new GcsWorkflowChunkStoreImpl(gcsService,"bucket");
+        GcsOutputChannel out = mock(GcsOutputChannel.class);
+        when(gcsService.createOrReplace(any(GcsFilename.class), any(GcsFileOptions.class))).thenReturn(out);
+        try {
+            store.assemble(1L, null, Arrays.asList("nope"));
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().equals("Chunk nope not found"));
+        }
+        verify(out).close();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.gae;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import edu.ucsd.crbs.cws.dao.objectify.JobObjectifyDAOImpl;
+import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
+import edu.ucsd.crbs.cws.dao.objectify.WorkflowObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.dao.objectify.WorkspaceFileObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.log.Event;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestJobCreatedTask {
+
+    private final LocalServiceTestHelper _helper
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy());
+
+    public TestJobCreatedTask() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(JobCreatedTask.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        _helper.setUp();
+        ofy().clear();
+    }
+
+    @After
+    public void tearDown() {
+        _helper.tearDown();
+    }
+    
+    private Job insertJob(JobObjectifyDAOImpl jobDAO) throws Exception {
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        Workflow w = new Workflow();
+        w.setName("wf");
+        w = workflowDAO.insert(w);
+        
+        Job j = new Job();
+        j.setName("myjob");
+        j.setOwner("bob");
+        j.setWorkflow(w);
+        return jobDAO.insert(j, true);
+    }
+    
+    private int countEvents(long jobId){
+        return ofy().load().type(Event.class).filter("_jobId",jobId).count();
+    }
+
+    @Test
+    public void testConstructorWithNullJob() {
+        try {
+            new JobCreatedTask(null,null);
+            fail("Expected exception");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("Job and its id cannot be null"));
+        }
+    }
+    
+    @Test
+    public void testRunTwiceOnlyCreatesOneOfEach() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = insertJob(jobDAO);
+        Event event = new Event();
+        event.setJobId(j.getId());
+        event.setEventType(Event.CREATE_JOB_EVENT_TYPE);
+        
+        JobCreatedTask task = new JobCreatedTask(j,event);
+        assertTrue(task.getTaskName().equals(JobCreatedTask.TASK_NAME_PREFIX+j.getId()));
+        assertTrue(task.getJobId() == j.getId().longValue());
+        assertTrue(event.getId() != null);
+        
+        task.run();
+        task.run();
+        
+        WorkspaceFileObjectifyDAOImpl workspaceDAO = new WorkspaceFileObjectifyDAOImpl(jobDAO,null);
+        List<WorkspaceFile> wsfList = workspaceDAO.getWorkspaceFilesBySourceJobId(j.getId());
+        assertTrue(wsfList.size() == 1);
+        assertTrue(wsfList.get(0).getId() == task.getOutputWorkspaceFileId());
+        assertTrue(wsfList.get(0).getOwner().equals("bob"));
+        assertTrue(countEvents(j.getId()) == 1);
+    }
+    
+    @Test
+    public void testRunAfterSerialization() throws Exception {
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = insertJob(jobDAO);
+        JobCreatedTask task = new JobCreatedTask(j,null);
+        
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(task);
+        oos.close();
+        ObjectInputStream ois = new ObjectInputStream(
+                new ByteArrayInputStream(bos.toByteArray()));
+        JobCreatedTask copy = (JobCreatedTask)ois.readObject();
+        assertTrue(copy.getOutputWorkspaceFileId() == task.getOutputWorkspaceFileId());
+        
+        copy.run();
+        task.run();
+        
+        WorkspaceFileObjectifyDAOImpl workspaceDAO = new WorkspaceFileObjectifyDAOImpl(jobDAO,null);
+        assertTrue(workspaceDAO.getWorkspaceFilesBySourceJobId(j.getId()).size() == 1);
+        assertTrue(countEvents(j.getId()) == 0);
+    }
+    
+    @Test
+    public void testRunJobNotFound() throws Exception {
+        Job j = new Job();
+        j.setId(12345L);
+        JobCreatedTask task = new JobCreatedTask(j,null);
+        try {
+            task.run();
+            fail("Expected exception");
+        }
+        catch(RuntimeException re){
+            assertTrue(re.getCause().getMessage().equals("Unable to load Job 12345"));
+        }
+    }
+}
@@ -32,6 +32,7 @@
  */
 package edu.ucsd.crbs.cws.gae;
 
+import com.google.appengine.api.urlfetch.HTTPResponse;
 import edu.ucsd.crbs.cws.auth.User;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
 import java.io.File;
@@ -51,6 +52,8 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  *
@@ -424,4 +427,45 @@ public class TestURLFetcherImpl {
         assertTrue(wp.getValueMap().get("b").equals("2"));
         assertTrue(wp.getValueMap().get("c").equals("3"));
     }
+    
+    @Test
+    public void testFetchAsyncReturnsNullForFileURLAndOffAppEngine() throws Exception {
+        URLFetcherImpl fetcher = new URLFetcherImpl();
+        WorkflowParameter wp = new WorkflowParameter();
+        wp.setType(WorkflowParameter.Type.DROP_DOWN);
+        wp.setValue("file:///tmp/foo");
+        assertTrue(fetcher.fetchAsync(wp, new User()) == null);
+        wp.setValue("http://foo");
+        assertTrue(fetcher.fetchAsync(wp, new User()) == null);
+        assertTrue(fetcher.fetchAsync(wp, null) == null);
+        assertTrue(fetcher.fetchAsync(null, new User()) == null);
+    }
+    
+    @Test
+    public void testUpdateValueMapFromResponse() throws Exception {
+        URLFetcherImpl fetcher = new URLFetcherImpl();
+        WorkflowParameter wp = new WorkflowParameter();
+        wp.setType(WorkflowParameter.Type.DROP_DOWN);
+        wp.setNameValueDelimiter("==");
+        wp.setValue("http://foo");
+        HTTPResponse response = mock(HTTPResponse.class);
+        when(response.getResponseCode()).thenReturn(200);
+        when(response.getContent()).thenReturn("a==1\nb==2\n".getBytes());
+        fetcher.updateValueMap(response, wp);
+        assertTrue(wp.getValueMap().size() == 2);
+        assertTrue(wp.getValueMap().get("b").equals("2"));
+        
+        when(response.getContent()).thenReturn(null);
+        fetcher.updateValueMap(response, wp);
+        assertTrue(wp.getValueMap().isEmpty());
+        
+        when(response.getResponseCode()).thenReturn(404);
+        try {
+            fetcher.updateValueMap(response, wp);
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().contains("404"));
+        }
+    }
 }
@@ -0,0 +1,186 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.io;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestFileChunkerImpl {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+    
+    public TestFileChunkerImpl() {
+    }
+    
+    private File writeFile(final String name,byte[] data) throws Exception {
+        File f = new File(_folder.getRoot(),name);
+        Files.write(data, f);
+        return f;
+    }
+    
+    private void verifyChunks(List<FileChunk> chunks,byte[] data,int min,int max){
+        long offset = 0;
+        for (int i = 0; i < chunks.size(); i++){
+            FileChunk chunk = chunks.get(i);
+            assertTrue(chunk.getOffset() == offset);
+            assertTrue(chunk.getLength() <= max);
+            if (i < chunks.size() - 1){
+                assertTrue(chunk.getLength() >= min);
+            }
+            assertTrue(chunk.getHash().equals(Hashing.sha256().hashBytes(data, 
+                    (int)chunk.getOffset(), chunk.getLength()).toString()));
+            offset += chunk.getLength();
+        }
+        assertTrue(offset == data.length);
+    }
+
+    @Test
+    public void testConstructorWithInvalidArgs(){
+        try {
+            new FileChunkerImpl(0,16,32);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().startsWith("Minimum chunk size"));
+        }
+        try {
+            new FileChunkerImpl(8,15,32);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().startsWith("Average chunk size"));
+        }
+        try {
+            new FileChunkerImpl(8,16,4);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().startsWith("Maximum chunk size"));
+        }
+    }
+    
+    @Test
+    public void testNullFile() throws Exception {
+        try {
+            new FileChunkerImpl().getChunks(null);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("File cannot be null"));
+        }
+    }
+    
+    @Test
+    public void testEmptyFile() throws Exception {
+        File f = writeFile("empty",new byte[0]);
+        assertTrue(new FileChunkerImpl().getChunks(f).isEmpty());
+    }
+    
+    @Test
+    public void testFileSmallerThenMinimum() throws Exception {
+        byte[] data = "hello".getBytes();
+        List<FileChunk> chunks = new FileChunkerImpl().getChunks(writeFile("small",data));
+        assertTrue(chunks.size() == 1);
+        verifyChunks(chunks,data,1,FileChunkerImpl.DEFAULT_MAX_CHUNK_SIZE);
+    }
+    
+    @Test
+    public void testChunksCoverFileAndRespectLimits() throws Exception {
+        byte[] data = new byte[300000];
+        new Random(1).nextBytes(data);
+        FileChunker chunker = new FileChunkerImpl(1024,4096,16384);
+        List<FileChunk> chunks = chunker.getChunks(writeFile("random",data));
+        assertTrue(chunks.size() > 10);
+        verifyChunks(chunks,data,1024,16384);
+        
+        //zeros never hit a boundary so every chunk is max size
+        byte[] zeros = new byte[40000];
+        chunks = chunker.getChunks(writeFile("zeros",zeros));
+        assertTrue(chunks.size() == 3);
+        assertTrue(chunks.get(0).getLength() == 16384);
+        assertTrue(chunks.get(2).getLength() == 40000 - 2*16384);
+        verifyChunks(chunks,zeros,1024,16384);
+    }
+    
+    @Test
+    public void testInsertOnlyChangesNearbyChunks() throws Exception {
+        byte[] data = new byte[500000];
+        new Random(2).nextBytes(data);
+        byte[] modified = new byte[data.length+100];
+        System.arraycopy(data, 0, modified, 0, 250000);
+        System.arraycopy(data, 250000, modified, 250100, data.length - 250000);
+        
+        FileChunker chunker = new FileChunkerImpl(1024,4096,16384);
+        List<FileChunk> original = chunker.getChunks(writeFile("orig",data));
+        List<FileChunk> changed = chunker.getChunks(writeFile("changed",modified));
+        verifyChunks(changed,modified,1024,16384);
+        
+        HashSet<String> originalHashes = new HashSet<>();
+        for (FileChunk chunk : original){
+            originalHashes.add(chunk.getHash());
+        }
+        int numNew = 0;
+        for (FileChunk chunk : changed){
+            if (!originalHashes.contains(chunk.getHash())){
+                numNew++;
+            }
+        }
+        assertTrue("new chunks: "+numNew,numNew <= 3);
+        
+        //same content same chunks
+        List<FileChunk> again = chunker.getChunks(writeFile("again",
+                Arrays.copyOf(data, data.length)));
+        assertTrue(again.size() == original.size());
+        for (int i = 0; i < again.size(); i++){
+            assertTrue(again.get(i).getHash().equals(original.get(i).getHash()));
+        }
+    }
+}
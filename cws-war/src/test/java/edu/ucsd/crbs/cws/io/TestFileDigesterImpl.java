@@ -0,0 +1,130 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.io;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestFileDigesterImpl {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+    
+    public TestFileDigesterImpl() {
+    }
+    
+    private File createFile(final String name,int size) throws Exception {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        File f = new File(_folder.getRoot(),name);
+        Files.write(data, f);
+        return f;
+    }
+
+    @Test
+    public void testConstructorWithInvalidArgs(){
+        try {
+            new FileDigesterImpl(0,2);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().startsWith("Chunk size"));
+        }
+        try {
+            new FileDigesterImpl(10,0);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().startsWith("Number of chunks"));
+        }
+    }
+    
+    @Test
+    public void testNullFile() throws Exception {
+        try {
+            new FileDigesterImpl().getMd5(null);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("File cannot be null"));
+        }
+    }
+    
+    @Test
+    public void testNonExistentFile() throws Exception {
+        try {
+            new FileDigesterImpl().getMd5(new File(_folder.getRoot(),"doesnotexist"));
+            fail("Expected FileNotFoundException");
+        }
+        catch(FileNotFoundException fnfe){
+            assertTrue(fnfe.getMessage().contains("doesnotexist"));
+        }
+    }
+    
+    @Test
+    public void testEmptyFile() throws Exception {
+        File f = createFile("empty",0);
+        assertTrue(new FileDigesterImpl().getMd5(f).equals("d41d8cd98f00b204e9800998ecf8427e"));
+    }
+    
+    @Test
+    public void testVariousSizesMatchSingleThreadedMd5() throws Exception {
+        FileDigester digester = new FileDigesterImpl(16,2);
+        FileDigester singleChunk = new FileDigesterImpl(16,1);
+        int[] sizes = {1, 15, 16, 17, 32, 33, 1000};
+        for (int size : sizes){
+            File f = createFile("file"+size,size);
+            String expected = Files.hash(f, Hashing.md5()).toString();
+            assertTrue("size "+size,digester.getMd5(f).equals(expected));
+            assertTrue("size "+size,singleChunk.getMd5(f).equals(expected));
+        }
+        File f = createFile("big",3*FileDigesterImpl.DEFAULT_CHUNK_SIZE+7);
+        assertTrue(new FileDigesterImpl().getMd5(f).equals(
+                Files.hash(f, Hashing.md5()).toString()));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.jerseyclient;
+
+import edu.ucsd.crbs.cws.io.FileChunk;
+import edu.ucsd.crbs.cws.io.FileChunker;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.io.File;
+import java.util.ArrayList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestChunkedWorkflowFileUploaderImpl {
+
+    public TestChunkedWorkflowFileUploaderImpl() {
+    }
+
+    @Test
+    public void testNullWorkflowOrId() throws Exception {
+        ChunkedWorkflowFileUploaderImpl uploader = new ChunkedWorkflowFileUploaderImpl(
+                "http://localhost",null,null);
+        try {
+            uploader.uploadWorkflowFile(null, new File("foo"));
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("Workflow and its id must be set"));
+        }
+        try {
+            uploader.uploadWorkflowFile(new Workflow(), new File("foo"));
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("Workflow and its id must be set"));
+        }
+    }
+    
+    @Test
+    public void testEmptyFileUsesFallback() throws Exception {
+        WorkflowFileUploader fallback = mock(WorkflowFileUploader.class);
+        ChunkedWorkflowFileUploaderImpl uploader = new ChunkedWorkflowFileUploaderImpl(
+                "http://localhost",null,fallback);
+        FileChunker chunker = mock(FileChunker.class);
+        uploader._fileChunker = chunker;
+        
+        Workflow w = new Workflow();
+        w.setId(1L);
+        File f = new File("foo.kar");
+        when(chunker.getChunks(f)).thenReturn(new ArrayList<FileChunk>());
+        when(fallback.uploadWorkflowFile(w, f)).thenReturn("done");
+        assertTrue(uploader.uploadWorkflowFile(w, f).equals("done"));
+        
+        uploader = new ChunkedWorkflowFileUploaderImpl("http://localhost",null,null);
+        uploader._fileChunker = chunker;
+        try {
+            uploader.uploadWorkflowFile(w, f);
+            fail("Expected Exception");
+        }
+        catch(Exception ex){
+            assertTrue(ex.getMessage().contains("file is empty"));
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.jerseyclient;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sun.jersey.api.client.WebResource;
+import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.workflow.Job;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestRestClientFactory {
+
+    public TestRestClientFactory() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testGetClientIsShared() {
+        assertNotNull(RestClientFactory.getClient());
+        assertSame(RestClientFactory.getClient(), RestClientFactory.getClient());
+        assertSame(RestClientFactory.getObjectMapper(),
+                RestClientFactory.getObjectMapper());
+        assertSame(RestClientFactory.getWriter(), RestClientFactory.getWriter());
+    }
+
+    /**
+     * Sets or clears system property <b>name</b>
+     */
+    private void setProperty(final String name,final String value){
+        if (value == null){
+            System.clearProperty(name);
+        }
+        else {
+            System.setProperty(name, value);
+        }
+    }
+
+    @Test
+    public void testConfigureConnectionPool() {
+        String keepAlive = System.getProperty(RestClientFactory.HTTP_KEEP_ALIVE_PROPERTY);
+        String maxConns = System.getProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY);
+        try {
+            //getting client does not change JVM wide properties
+            System.clearProperty(RestClientFactory.HTTP_KEEP_ALIVE_PROPERTY);
+            System.clearProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY);
+            RestClientFactory.getClient();
+            assertNull(System.getProperty(RestClientFactory.HTTP_KEEP_ALIVE_PROPERTY));
+            assertNull(System.getProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY));
+            
+            //defaults used if unset
+            RestClientFactory.configureConnectionPool(null);
+            assertEquals("true", System.getProperty(RestClientFactory.HTTP_KEEP_ALIVE_PROPERTY));
+            assertEquals(Integer.toString(RestClientFactory.DEFAULT_MAX_CONNECTIONS),
+                    System.getProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY));
+            
+            //values already set are left alone
+            System.setProperty(RestClientFactory.HTTP_KEEP_ALIVE_PROPERTY, "false");
+            System.setProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY, "3");
+            RestClientFactory.configureConnectionPool(null);
+            assertEquals("false", System.getProperty(RestClientFactory.HTTP_KEEP_ALIVE_PROPERTY));
+            assertEquals("3", System.getProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY));
+            
+            //explicit value wins
+            RestClientFactory.configureConnectionPool(7);
+            assertEquals("7", System.getProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY));
+            
+            try {
+                RestClientFactory.configureConnectionPool(0);
+                fail("Expected IllegalArgumentException");
+            }
+            catch(IllegalArgumentException iae){
+                assertEquals("Max connections must be 1 or larger", iae.getMessage());
+            }
+            assertEquals("7", System.getProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY));
+        }
+        finally {
+            setProperty(RestClientFactory.HTTP_KEEP_ALIVE_PROPERTY, keepAlive);
+            setProperty(RestClientFactory.HTTP_MAX_CONNECTIONS_PROPERTY, maxConns);
+        }
+    }
+
+    @Test
+    public void testGetReaderIsCached() {
+        ObjectReader reader = RestClientFactory.getReader(Job.class);
+        assertSame(reader, RestClientFactory.getReader(Job.class));
+        
+        ObjectReader listReader = RestClientFactory.getReader(new TypeReference<List<Job>>() {});
+        assertSame(listReader, RestClientFactory.getReader(new TypeReference<List<Job>>() {}));
+        assertNotSame(reader, listReader);
+    }
+
+    @Test
+    public void testRoundTripViaStream() throws Exception {
+        Job j = new Job();
+        j.setId(new Long(5));
+        j.setName("foo");
+        j.setStatus(Job.RUNNING_STATUS);
+        byte[] json = RestClientFactory.getWriter().writeValueAsBytes(j);
+        Job res = RestClientFactory.getReader(Job.class).readValue(new ByteArrayInputStream(json));
+        assertEquals(j.getId(), res.getId());
+        assertEquals("foo", res.getName());
+        assertEquals(Job.RUNNING_STATUS, res.getStatus());
+    }
+
+    @Test
+    public void testGetWebResource() {
+        WebResource resource = RestClientFactory.getWebResource("http://localhost/foo", null);
+        assertEquals("http://localhost/foo", resource.getURI().toString());
+        
+        User u = new User();
+        u.setLogin("bob");
+        u.setToken("token");
+        resource = RestClientFactory.getWebResource("http://localhost/foo", u);
+        assertEquals("http://localhost/foo/rest", resource.path("rest").getURI().toString());
+    }
+}
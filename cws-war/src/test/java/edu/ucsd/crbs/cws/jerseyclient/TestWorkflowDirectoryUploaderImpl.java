@@ -0,0 +1,214 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.jerseyclient;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import edu.ucsd.crbs.cws.dao.WorkflowDAO;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestWorkflowDirectoryUploaderImpl {
+
+    @Rule
+    public TemporaryFolder Folder = new TemporaryFolder();
+    
+    public TestWorkflowDirectoryUploaderImpl() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        Workflow.REFS_ENABLED = false;
+    }
+
+    @After
+    public void tearDown() {
+        Workflow.REFS_ENABLED = true;
+    }
+    
+    private File copyResource(final String resource,File destDir,final String name) throws Exception {
+        File dest = new File(destDir,name);
+        try (InputStream in = getClass().getResourceAsStream(resource)){
+            java.nio.file.Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return dest;
+    }
+    
+    @Test
+    public void testInvalidArguments() throws Exception {
+        WorkflowDirectoryUploaderImpl uploader = new WorkflowDirectoryUploaderImpl(null,null,null);
+        try {
+            uploader.setNumberOfThreads(0);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().contains("Number of threads"));
+        }
+        try {
+            uploader.uploadWorkflows(Folder.newFile("notadir"));
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().contains("is not a directory"));
+        }
+    }
+    
+    @Test
+    public void testEmptyDirectory() throws Exception {
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        WorkflowFileUploader fileUploader = mock(WorkflowFileUploader.class);
+        WorkflowDirectoryUploaderImpl uploader = new WorkflowDirectoryUploaderImpl(workflowDAO,
+                fileUploader,null);
+        Folder.newFile("foo.txt");
+        assertEquals(0,uploader.uploadWorkflows(Folder.getRoot()));
+        verifyZeroInteractions(workflowDAO,fileUploader);
+    }
+
+    @Test
+    public void testUploadSkipsRegisteredAndDuplicateKars() throws Exception {
+        File dir = Folder.newFolder("kars");
+        File example = copyResource("/example.kar",dir,"a.kar");
+        copyResource("/example.kar",dir,"b.kar");
+        File helloworld = copyResource("/helloworld.kar",dir,"c.kar");
+        File exampleOld = copyResource("/example.old.kar",dir,"d.kar");
+        
+        String helloworldMd5 = Files.hash(helloworld, Hashing.md5()).toString();
+        String exampleOldMd5 = Files.hash(exampleOld, Hashing.md5()).toString();
+        List<Workflow> existing = new ArrayList<>();
+        Workflow registered = new Workflow();
+        registered.setId(5L);
+        registered.setMd5(helloworldMd5);
+        registered.setFileUploaded(true);
+        existing.add(registered);
+        
+        //md5 registered but file never uploaded so d.kar is uploaded again
+        Workflow failedUpload = new Workflow();
+        failedUpload.setId(6L);
+        failedUpload.setMd5(exampleOldMd5);
+        existing.add(failedUpload);
+        existing.add(new Workflow());
+        
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        when(workflowDAO.getAllWorkflows(true, null)).thenReturn(existing);
+        Workflow inserted = new Workflow();
+        inserted.setId(10L);
+        when(workflowDAO.insert(any(Workflow.class))).thenReturn(inserted);
+        
+        WorkflowFileUploader fileUploader = mock(WorkflowFileUploader.class);
+        
+        WorkflowDirectoryUploaderImpl uploader = new WorkflowDirectoryUploaderImpl(workflowDAO,
+                fileUploader,"bob");
+        uploader.setNumberOfThreads(3);
+        
+        assertEquals(0,uploader.uploadWorkflows(dir));
+        
+        //a.kar and b.kar are the same so only one of them is uploaded,
+        //c.kar is already registered
+        ArgumentCaptor<Workflow> captor = ArgumentCaptor.forClass(Workflow.class);
+        verify(workflowDAO,times(2)).insert(captor.capture());
+        verify(fileUploader,times(2)).uploadWorkflowFile(eq(inserted), any(File.class));
+        String exampleMd5 = Files.hash(example, Hashing.md5()).toString();
+        boolean foundExample = false;
+        boolean foundExampleOld = false;
+        for (Workflow w : captor.getAllValues()){
+            assertEquals("bob",w.getOwner());
+            assertNotNull(w.getMd5());
+            assertFalse(w.getMd5().equals(helloworldMd5));
+            if (w.getMd5().equals(exampleMd5)){
+                assertEquals("Example Workflow",w.getName());
+                foundExample = true;
+            }
+            if (w.getMd5().equals(exampleOldMd5)){
+                foundExampleOld = true;
+            }
+        }
+        assertTrue(foundExample);
+        assertTrue(foundExampleOld);
+    }
+    
+    @Test
+    public void testUploadFailures() throws Exception {
+        File dir = Folder.newFolder("kars");
+        copyResource("/example.kar",dir,"a.kar");
+        copyResource("/helloworld.kar",dir,"b.kar");
+        File bad = new File(dir,"c.kar");
+        Files.write("not a kar".getBytes(), bad);
+        
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        when(workflowDAO.getAllWorkflows(true, null)).thenReturn(null);
+        Workflow inserted = new Workflow();
+        inserted.setId(10L);
+        when(workflowDAO.insert(any(Workflow.class))).thenReturn(inserted);
+        
+        WorkflowFileUploader fileUploader = mock(WorkflowFileUploader.class);
+        when(fileUploader.uploadWorkflowFile(any(Workflow.class), 
+                eq(new File(dir,"b.kar")))).thenThrow(new Exception("upload failed"));
+        
+        WorkflowDirectoryUploaderImpl uploader = new WorkflowDirectoryUploaderImpl(workflowDAO,
+                fileUploader,null);
+        
+        assertEquals(2,uploader.uploadWorkflows(dir));
+        verify(workflowDAO,times(2)).insert(any(Workflow.class));
+        verify(fileUploader,times(2)).uploadWorkflowFile(any(Workflow.class), any(File.class));
+    }
+}
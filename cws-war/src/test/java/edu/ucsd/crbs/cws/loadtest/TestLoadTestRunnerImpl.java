@@ -0,0 +1,242 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.loadtest;
+
+import edu.ucsd.crbs.cws.dao.JobDAO;
+import edu.ucsd.crbs.cws.dao.WorkflowDAO;
+import edu.ucsd.crbs.cws.dao.WorkspaceFileDAO;
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestLoadTestRunnerImpl {
+
+    public TestLoadTestRunnerImpl() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(LoadTestRunnerImpl.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        Job.REFS_ENABLED = false;
+        Workflow.REFS_ENABLED = false;
+    }
+
+    @After
+    public void tearDown() {
+        Job.REFS_ENABLED = true;
+        Workflow.REFS_ENABLED = true;
+    }
+    
+    private Workflow getWorkflow(Long id){
+        Workflow w = new Workflow();
+        w.setId(id);
+        return w;
+    }
+
+    @Test
+    public void testPickOperationCoversAllOperations(){
+        assertEquals(LoadTestRunnerImpl.OPERATIONS.length,
+                LoadTestRunnerImpl.OPERATION_WEIGHTS.length);
+        Random random = new Random(1);
+        HashMap<String,Integer> picked = new HashMap<>();
+        for (int i = 0; i < 10000; i++){
+            String op = LoadTestRunnerImpl.pickOperation(random);
+            Integer count = picked.get(op);
+            picked.put(op, count == null ? 1 : count + 1);
+        }
+        for (String op : LoadTestRunnerImpl.OPERATIONS){
+            assertTrue(op,picked.containsKey(op));
+        }
+        //list jobs has a weight 10x of create workflow
+        assertTrue(picked.get(LoadTestRunnerImpl.LIST_JOBS) > 
+                picked.get(LoadTestRunnerImpl.CREATE_WORKFLOW)*5);
+    }
+    
+    @Test
+    public void testRunWhereSeedWorkflowFails() throws Exception {
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        when(workflowDAO.insert(any(Workflow.class))).thenReturn(getWorkflow(null));
+        LoadTestRunnerImpl runner = new LoadTestRunnerImpl(mock(JobDAO.class),
+                workflowDAO,mock(WorkspaceFileDAO.class),"bob");
+        try {
+            runner.run();
+            fail("Expected exception");
+        }
+        catch(Exception ex){
+            assertEquals("Unable to create seed workflow",ex.getMessage());
+        }
+    }
+    
+    @Test
+    public void testUpdatesFallBackToCreateWhenNothingCreated() throws Exception {
+        JobDAO jobDAO = mock(JobDAO.class);
+        Job j = new Job();
+        j.setId(5L);
+        when(jobDAO.insert(any(Job.class), anyBoolean())).thenReturn(j);
+        WorkspaceFileDAO workspaceFileDAO = mock(WorkspaceFileDAO.class);
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setId(6L);
+        when(workspaceFileDAO.insert(any(WorkspaceFile.class), anyBoolean())).thenReturn(wsf);
+        
+        LoadTestRunnerImpl runner = new LoadTestRunnerImpl(jobDAO,
+                mock(WorkflowDAO.class),workspaceFileDAO,"bob");
+        runner.invoke(LoadTestRunnerImpl.UPDATE_JOB_STATUS, new Random(1));
+        verify(jobDAO).insert(any(Job.class), anyBoolean());
+        verify(jobDAO,never()).update(anyLong(),anyString(),any(Long.class),
+                any(Long.class),any(Long.class),any(Long.class),any(Long.class),
+                any(Long.class),any(Boolean.class),anyString(),any(Boolean.class),
+                anyString(),anyString());
+        
+        runner.invoke(LoadTestRunnerImpl.UPDATE_JOB_STATUS, new Random(1));
+        verify(jobDAO).update(anyLong(),anyString(),any(Long.class),
+                any(Long.class),any(Long.class),any(Long.class),any(Long.class),
+                any(Long.class),any(Boolean.class),anyString(),any(Boolean.class),
+                anyString(),anyString());
+        
+        runner.invoke(LoadTestRunnerImpl.UPDATE_WORKSPACEFILE_PATH, new Random(1));
+        verify(workspaceFileDAO).insert(any(WorkspaceFile.class), anyBoolean());
+        runner.invoke(LoadTestRunnerImpl.UPDATE_WORKSPACEFILE_PATH, new Random(1));
+        verify(workspaceFileDAO).updatePathSizeAndFailStatus(anyLong(), 
+                anyString(), anyString(), any(Boolean.class));
+    }
+    
+    @Test
+    public void testRunWithMaxOperations() throws Exception {
+        JobDAO jobDAO = mock(JobDAO.class);
+        Job j = new Job();
+        j.setId(5L);
+        when(jobDAO.insert(any(Job.class), anyBoolean())).thenReturn(j);
+        
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        when(workflowDAO.insert(any(Workflow.class))).thenReturn(getWorkflow(1L));
+        
+        //all workspace file calls fail
+        WorkspaceFileDAO workspaceFileDAO = mock(WorkspaceFileDAO.class);
+        when(workspaceFileDAO.insert(any(WorkspaceFile.class), anyBoolean()))
+                .thenThrow(new Exception("fail"));
+        when(workspaceFileDAO.getWorkspaceFiles(anyString(), anyString(), 
+                any(Boolean.class), any(Boolean.class), any(Boolean.class)))
+                .thenThrow(new Exception("fail"));
+        
+        LoadTestRunnerImpl runner = new LoadTestRunnerImpl(jobDAO,
+                workflowDAO,workspaceFileDAO,"bob");
+        runner.setNumberOfThreads(3);
+        runner.setMaxOperations(500);
+        LoadTestReport report = runner.run();
+        
+        long successes = 0;
+        long errors = 0;
+        for (String op : LoadTestRunnerImpl.OPERATIONS){
+            successes += report.getHistograms().get(op).getTotalCount();
+            errors += report.getErrorCount(op);
+        }
+        assertEquals(500,successes+errors);
+        assertTrue(errors > 0);
+        assertEquals(0,report.getHistograms().get(
+                LoadTestRunnerImpl.CREATE_WORKSPACEFILE).getTotalCount());
+        assertTrue(report.getHistograms().get(LoadTestRunnerImpl.LIST_JOBS).getTotalCount() > 0);
+        
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        report.write(new PrintStream(bos));
+        String out = bos.toString();
+        assertTrue(out.contains(LoadTestRunnerImpl.LIST_JOBS));
+        assertTrue(out.contains("p99(ms)"));
+        assertTrue(out.contains("Latency distribution in milliseconds for "+
+                LoadTestRunnerImpl.LIST_JOBS));
+    }
+    
+    @Test
+    public void testRunWithRateStopsAfterDuration() throws Exception {
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        when(workflowDAO.insert(any(Workflow.class))).thenReturn(getWorkflow(1L));
+        Job j = new Job();
+        j.setId(5L);
+        JobDAO jobDAO = mock(JobDAO.class);
+        when(jobDAO.insert(any(Job.class), anyBoolean())).thenReturn(j);
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setId(6L);
+        WorkspaceFileDAO workspaceFileDAO = mock(WorkspaceFileDAO.class);
+        when(workspaceFileDAO.insert(any(WorkspaceFile.class), anyBoolean())).thenReturn(wsf);
+        
+        LoadTestRunnerImpl runner = new LoadTestRunnerImpl(jobDAO,
+                workflowDAO,workspaceFileDAO,"bob");
+        runner.setNumberOfThreads(2);
+        runner.setOperationsPerSecond(100);
+        runner.setDurationInSeconds(1);
+        LoadTestReport report = runner.run();
+        long total = 0;
+        for (String op : LoadTestRunnerImpl.OPERATIONS){
+            total += report.getHistograms().get(op).getTotalCount();
+            total += report.getErrorCount(op);
+        }
+        //at 100 per second for 1 second there should be 100 calls
+        assertEquals(100,total);
+        assertTrue(report.getElapsedMillis() >= 900);
+    }
+}
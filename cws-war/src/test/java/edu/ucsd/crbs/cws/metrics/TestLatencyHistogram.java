@@ -0,0 +1,156 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestLatencyHistogram {
+
+    public TestLatencyHistogram() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testConstructorInvalidArgs(){
+        try {
+            new LatencyHistogram(1,2);
+            fail("expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().contains("highestTrackableValue"));
+        }
+        try {
+            new LatencyHistogram(1000,0);
+            fail("expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().contains("significantDigits"));
+        }
+    }
+    
+    @Test
+    public void testEmptyHistogram(){
+        LatencyHistogram h = new LatencyHistogram(3600000000L,3);
+        assertEquals(0,h.getTotalCount());
+        assertEquals(0,h.getMaxValue());
+        assertEquals(0,h.getValueAtPercentile(99.0));
+        assertEquals(0.0,h.getMean(),0.0);
+        assertEquals(0.0,h.getStdDeviation(),0.0);
+    }
+    
+    @Test
+    public void testSmallValuesAreExact(){
+        LatencyHistogram h = new LatencyHistogram(3600000000L,3);
+        for (int i = 1; i <= 100; i++){
+            h.recordValue(i);
+        }
+        assertEquals(100,h.getTotalCount());
+        assertEquals(100,h.getMaxValue());
+        assertEquals(50,h.getValueAtPercentile(50.0));
+        assertEquals(95,h.getValueAtPercentile(95.0));
+        assertEquals(99,h.getValueAtPercentile(99.0));
+        assertEquals(100,h.getValueAtPercentile(100.0));
+        assertEquals(1,h.getValueAtPercentile(0.0));
+        assertEquals(50.5,h.getMean(),0.001);
+    }
+    
+    @Test
+    public void testLargeValuesWithinPrecision(){
+        LatencyHistogram h = new LatencyHistogram(3600000000L,3);
+        for (long i = 1; i <= 100000; i++){
+            h.recordValue(i*100);
+        }
+        assertEquals(100000,h.getTotalCount());
+        assertEquals(10000000,h.getMaxValue());
+        assertEquals(5000000,h.getValueAtPercentile(50.0),5000000*0.001);
+        assertEquals(9500000,h.getValueAtPercentile(95.0),9500000*0.001);
+        assertEquals(9900000,h.getValueAtPercentile(99.0),9900000*0.001);
+        assertEquals(10000000,h.getValueAtPercentile(100.0));
+    }
+    
+    @Test
+    public void testOutOfRangeValuesAreClamped(){
+        LatencyHistogram h = new LatencyHistogram(1000,2);
+        h.recordValue(-5);
+        h.recordValue(5000);
+        assertEquals(2,h.getTotalCount());
+        assertEquals(1000,h.getMaxValue());
+        assertEquals(0,h.getValueAtPercentile(50.0));
+        assertEquals(1000,h.getValueAtPercentile(100.0));
+    }
+    
+    @Test
+    public void testOutputPercentileDistribution(){
+        LatencyHistogram h = new LatencyHistogram(3600000000L,3);
+        for (int i = 1; i <= 1000; i++){
+            h.recordValue(i*1000);
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        h.outputPercentileDistribution(new PrintStream(bos), 1000.0);
+        String out = bos.toString();
+        assertTrue(out.contains("Percentile"));
+        assertTrue(out.contains("1/(1-Percentile)"));
+        assertTrue(out.contains("#[Max     =     1000.000, Total count    =         1000]"));
+        assertTrue(out.contains("500.223 0.500000000000        500           2.00"));
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestMetricsRegistry {
+
+    public TestMetricsRegistry() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testGetDefault(){
+        assertNotNull(MetricsRegistry.getDefault());
+        assertSame(MetricsRegistry.getDefault(),MetricsRegistry.getDefault());
+    }
+    
+    @Test
+    public void testCreateKey(){
+        assertEquals("foo",Metric.createKey("foo"));
+        assertEquals("foo{a=\"1\",b=\"2\"}",Metric.createKey("foo","a","1","b","2"));
+        assertEquals("foo{a=\"x\\\"y\\\\z\"}",Metric.createKey("foo","a","x\"y\\z"));
+    }
+    
+    @Test
+    public void testOddNumberOfLabels(){
+        MetricsRegistry registry = new MetricsRegistry();
+        try {
+            registry.counter("foo","help","a");
+            fail("expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertNotNull(iae.getMessage());
+        }
+    }
+    
+    @Test
+    public void testCounterReturnsSameInstanceForSameLabels(){
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter c = registry.counter("foo","help","a","1");
+        c.inc();
+        c.inc(4);
+        assertSame(c,registry.counter("foo","help","a","1"));
+        assertEquals(5,registry.counter("foo","help","a","1").getCount());
+        
+        Counter other = registry.counter("foo","help","a","2");
+        assertNotSame(c,other);
+        assertEquals(0,other.getCount());
+    }
+    
+    @Test
+    public void testDifferentTypeWithSameKey(){
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("foo","help");
+        try {
+            registry.timer("foo","help");
+            fail("expected IllegalStateException");
+        }
+        catch(IllegalStateException ise){
+            assertEquals("foo is already registered as counter",ise.getMessage());
+        }
+    }
+    
+    @Test
+    public void testTimerAndGauge(){
+        MetricsRegistry registry = new MetricsRegistry();
+        Timer t = registry.timer("t","help");
+        assertEquals(0,t.getCount());
+        t.record(2000000000L);
+        t.record(1000000L);
+        assertEquals(2,t.getCount());
+        assertEquals(2.001,t.getSumSeconds(),0.0001);
+        assertEquals(2.0,t.getMaxSeconds(),0.05);
+        
+        Gauge g = registry.gauge("g","help");
+        g.set(3.5);
+        assertEquals(3.5,registry.gauge("g","help").getValue(),0.0);
+    }
+    
+    @Test
+    public void testGetMetricsRunsCollectorsAndSorts(){
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("b","help");
+        registry.addCollector(new MetricsCollector(){
+            @Override
+            public void collect(MetricsRegistry registry) {
+                registry.gauge("a","help").set(1.0);
+            }
+        });
+        registry.addCollector(new MetricsCollector(){
+            @Override
+            public void collect(MetricsRegistry registry) {
+                throw new RuntimeException("should be logged and ignored");
+            }
+        });
+        List<Metric> metrics = registry.getMetrics();
+        assertEquals(2,metrics.size());
+        assertEquals("a",metrics.get(0).getKey());
+        assertEquals("b",metrics.get(1).getKey());
+        
+        registry.clear();
+        assertTrue(registry.getMetrics().isEmpty());
+    }
+    
+    @Test
+    public void testMetricSnapshot(){
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("c","help","x","y").inc(3);
+        MetricSnapshot snap = new MetricSnapshot(registry.counter("c","help","x","y"));
+        assertEquals("c",snap.getName());
+        assertEquals(Metric.COUNTER_TYPE,snap.getType());
+        assertEquals("y",snap.getLabels().get("x"));
+        assertEquals(3L,snap.getCount().longValue());
+        assertNull(snap.getValue());
+        assertNull(snap.getP50());
+        
+        snap = new MetricSnapshot(registry.gauge("g","help"));
+        assertNull(snap.getLabels());
+        assertEquals(0.0,snap.getValue(),0.0);
+        
+        registry.timer("t","help").record(1000000L);
+        snap = new MetricSnapshot(registry.timer("t","help"));
+        assertEquals(Metric.SUMMARY_TYPE,snap.getType());
+        assertEquals(1L,snap.getCount().longValue());
+        assertEquals(0.001,snap.getP99(),0.0001);
+    }
+}
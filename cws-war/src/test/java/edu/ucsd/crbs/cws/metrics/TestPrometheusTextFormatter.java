@@ -0,0 +1,138 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.metrics;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestPrometheusTextFormatter {
+
+    @Rule
+    public TemporaryFolder _folder = new TemporaryFolder();
+    
+    public TestPrometheusTextFormatter() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    @Test
+    public void testFormatEmpty(){
+        PrometheusTextFormatter formatter = new PrometheusTextFormatter();
+        assertEquals("",formatter.format(Arrays.<Metric>asList()));
+    }
+    
+    @Test
+    public void testFormatCountersAndGauges(){
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("cws_x_total","Some count","op","get").inc(2);
+        registry.counter("cws_x_total","Some count","op","put").inc();
+        registry.gauge("cws_x","Some\nvalue").set(1.5);
+        
+        PrometheusTextFormatter formatter = new PrometheusTextFormatter();
+        String res = formatter.format(registry.getMetrics());
+        assertEquals("# HELP cws_x Some\\nvalue\n"+
+                "# TYPE cws_x gauge\n"+
+                "cws_x 1.5\n"+
+                "# HELP cws_x_total Some count\n"+
+                "# TYPE cws_x_total counter\n"+
+                "cws_x_total{op=\"get\"} 2\n"+
+                "cws_x_total{op=\"put\"} 1\n",res);
+    }
+    
+    @Test
+    public void testFormatTimer(){
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.timer("cws_t_seconds","Time","stage","submit");
+        PrometheusTextFormatter formatter = new PrometheusTextFormatter();
+        String res = formatter.format(registry.getMetrics());
+        assertEquals("# HELP cws_t_seconds Time\n"+
+                "# TYPE cws_t_seconds summary\n"+
+                "cws_t_seconds{stage=\"submit\",quantile=\"0.5\"} 0.0\n"+
+                "cws_t_seconds{stage=\"submit\",quantile=\"0.95\"} 0.0\n"+
+                "cws_t_seconds{stage=\"submit\",quantile=\"0.99\"} 0.0\n"+
+                "cws_t_seconds_sum{stage=\"submit\"} 0.0\n"+
+                "cws_t_seconds_count{stage=\"submit\"} 0\n",res);
+    }
+    
+    @Test
+    public void testWriteTextFile() throws Exception {
+        File tempDir = _folder.newFolder();
+        File metricsFile = new File(tempDir.getAbsolutePath()+File.separator+"cws.prom");
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("c","help").inc();
+        List<Metric> metrics = registry.getMetrics();
+        PrometheusTextFormatter formatter = new PrometheusTextFormatter();
+        formatter.writeTextFile(metricsFile, metrics);
+        assertEquals(formatter.format(metrics),
+                FileUtils.readFileToString(metricsFile));
+        assertFalse(new File(metricsFile.getAbsolutePath()+
+                PrometheusTextFormatter.TMP_SUFFIX).exists());
+        
+        //overwrite existing file
+        registry.counter("c","help").inc();
+        formatter.writeTextFile(metricsFile, registry.getMetrics());
+        assertTrue(FileUtils.readFileToString(metricsFile).contains("c 2\n"));
+    }
+}
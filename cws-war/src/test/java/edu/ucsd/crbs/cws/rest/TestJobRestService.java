@@ -33,22 +33,28 @@
 package edu.ucsd.crbs.cws.rest;
 
 import com.google.appengine.api.datastore.dev.LocalDatastoreService;
+import com.google.appengine.api.taskqueue.DeferredTask;
 import com.google.appengine.tools.development.testing.LocalBlobstoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
 import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
 import edu.ucsd.crbs.cws.auth.Authenticator;
 import edu.ucsd.crbs.cws.auth.Permission;
 import edu.ucsd.crbs.cws.auth.User;
+import edu.ucsd.crbs.cws.cluster.OutputWorkspaceFileUtil;
 import edu.ucsd.crbs.cws.dao.objectify.JobObjectifyDAOImpl;
 import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
 import edu.ucsd.crbs.cws.dao.objectify.WorkflowObjectifyDAOImpl;
 import edu.ucsd.crbs.cws.dao.objectify.WorkspaceFileObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitterImpl;
+import edu.ucsd.crbs.cws.gae.JobCreatedTask;
 import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.Workflow;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import edu.ucsd.crbs.cws.workflow.validate.JobParametersNullNameChecker;
 import edu.ucsd.crbs.cws.workflow.validate.JobValidatorImpl;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
@@ -63,8 +69,15 @@ import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 /**
  *
@@ -73,7 +86,8 @@ import static org.mockito.Mockito.when;
 public class TestJobRestService {
     
     private final LocalServiceTestHelper _helper
-            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
                     new LocalBlobstoreServiceTestConfig());
 
     
@@ -101,6 +115,7 @@ public class TestJobRestService {
     @After
     public void tearDown() {
         _helper.tearDown();
+        new JobRestService().setDeferredTaskSubmitter(new DeferredTaskSubmitterImpl());
     }
 
     @Test
@@ -168,7 +183,21 @@ public class TestJobRestService {
         j.setFinishDate(new Date());
         j.setStatus(null);
         j.setWorkflow(w);
+        
+        //run the deferred task right away so output is registered
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                ((DeferredTask)invocation.getArguments()[1]).run();
+                return null;
+            }
+        }).when(submitter).submit(anyString(), any(DeferredTask.class));
+        jrs.setDeferredTaskSubmitter(submitter);
+        
         j = jrs.createJob(j, null, null, null, request);
+        verify(submitter).submit(eq(JobCreatedTask.TASK_NAME_PREFIX+j.getId()),
+                any(DeferredTask.class));
         assertTrue(j.getError() == null);
         assertTrue(j.getStatus().equals(Job.IN_QUEUE_STATUS));
         assertTrue(j.getStartDate() == null);
@@ -184,6 +213,125 @@ public class TestJobRestService {
         
     }
     
+    @Test
+    public void testCreateJobsNoPermission() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        
+        User u = new User();
+        when(auth.authenticate(request)).thenReturn(u);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        ArrayList<Job> jobs = new ArrayList<>();
+        jobs.add(new Job());
+        try {
+            jrs.createJobs(jobs, null, null, null, request);
+            fail("Expected exception");
+        }
+        catch(WebApplicationException wae){
+            
+        }
+    }
+    
+    @Test
+    public void testCreateJobsSomeFailValidation() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        Workflow w = new Workflow();
+        w.setName("bob");
+        w.setOwner("joe");
+        workflowDAO.insert(w);
+        
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.CREATE_JOB);
+        when(auth.authenticate(request)).thenReturn(u);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        
+        ArrayList<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < 3; i++){
+            Job j = new Job();
+            j.setName("myjob"+i);
+            j.setStartDate(new Date());
+            j.setHasJobBeenSubmittedToScheduler(true);
+            j.setWorkflow(w);
+            jobs.add(j);
+        }
+        //no workflow so this one should fail validation
+        jobs.get(1).setWorkflow(null);
+        
+        List<Job> res = jrs.createJobs(jobs, null, null, null, request);
+        assertTrue(res.size() == 3);
+        assertTrue(res.get(1).getError() != null);
+        assertTrue(res.get(1).getId() == null);
+        
+        WorkspaceFileObjectifyDAOImpl workspaceDAO = new WorkspaceFileObjectifyDAOImpl(jobDAO,null);
+        for (Job j : new Job[]{res.get(0),res.get(2)}){
+            assertTrue(j.getError() == null);
+            assertTrue(j.getId() != null);
+            assertTrue(j.getOwner().equals("bob"));
+            assertTrue(j.getStatus().equals(Job.IN_QUEUE_STATUS));
+            assertTrue(j.getStartDate() == null);
+            assertTrue(j.getHasJobBeenSubmittedToScheduler() == false);
+            assertTrue(jobDAO.getJobById(j.getId().toString()) != null);
+            List<WorkspaceFile> wsf = workspaceDAO.getWorkspaceFilesBySourceJobId(j.getId());
+            assertTrue(wsf.size() == 1);
+        }
+    }
+    
+    @Test
+    public void testCreateJobsRegisterOutputsFails() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        WorkflowObjectifyDAOImpl workflowDAO = new WorkflowObjectifyDAOImpl(jobDAO);
+        Workflow w = new Workflow();
+        w.setName("bob");
+        w.setOwner("joe");
+        workflowDAO.insert(w);
+        
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.CREATE_JOB);
+        when(auth.authenticate(request)).thenReturn(u);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        jrs.setDeferredTaskSubmitter(submitter);
+        
+        OutputWorkspaceFileUtil origUtil = JobRestService._workspaceFileUtil;
+        OutputWorkspaceFileUtil wsfUtil = mock(OutputWorkspaceFileUtil.class);
+        when(wsfUtil.createAndRegisterJobOutputsAsWorkspaceFiles(any(List.class)))
+                .thenThrow(new Exception("error"));
+        JobRestService._workspaceFileUtil = wsfUtil;
+        try {
+            ArrayList<Job> jobs = new ArrayList<>();
+            for (int i = 0; i < 2; i++){
+                Job j = new Job();
+                j.setName("myjob"+i);
+                j.setWorkflow(w);
+                jobs.add(j);
+            }
+            List<Job> res = jrs.createJobs(jobs, null, null, null, request);
+            assertTrue(res.size() == 2);
+            for (Job j : res){
+                assertTrue(j.getId() != null);
+                assertTrue(jobDAO.getJobById(j.getId().toString()) != null);
+                verify(submitter).submit(eq(JobCreatedTask.TASK_NAME_PREFIX+j.getId()),
+                        any(JobCreatedTask.class));
+            }
+        }
+        finally {
+            JobRestService._workspaceFileUtil = origUtil;
+        }
+    }
+    
     //test user not authorized to delete
     @Test
     public void testDeleteNotAuthorized() throws Exception {
@@ -553,6 +701,37 @@ public class TestJobRestService {
         
     }
  
+    @Test
+    public void testUpdateWithStaleVersionReturnsConflict() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        User u = new User();
+        u.setPermissions(Permission.UPDATE_ALL_JOBS);
+        when(auth.authenticate(request)).thenReturn(u);
+        
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        Job j = new Job();
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        j = jobDAO.insert(j, true);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        jobDAO.update(j.getId(), Job.RUNNING_STATUS, null, null, null, null, 
+                null, null, null, null, null, null, null);
+        
+        Job stale = new Job();
+        stale.setStatus(Job.COMPLETED_STATUS);
+        stale.setVersion(0L);
+        try {
+            jrs.update(j.getId(), stale,null, null,null, null, request);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_CONFLICT);
+        }
+        assertTrue(jobDAO.getJobById(j.getId().toString()).getStatus()
+                .equals(Job.RUNNING_STATUS));
+    }
+ 
     @Test
     public void testUpdateTheirAuthorizedAndResaveSetToFalse() throws Exception {
         Authenticator auth = mock(Authenticator.class);
@@ -656,4 +835,106 @@ public class TestJobRestService {
                     null, null,null, Boolean.TRUE, request);
         assertTrue(j.getStatus() == null);
     }
+    
+    @Test
+    public void testGetJobSummaryTheirAuthorizedOtherOwner() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        User u = new User();
+        u.setLogin("bob");
+        u.setLoginToRunJobAs("bob");
+        u.setPermissions(Permission.LIST_THEIR_JOBS);
+        when(auth.authenticate(request)).thenReturn(u);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        try {
+            jrs.getJobSummary("joe", null, null, null, null, request);
+            fail("Expected exception");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_UNAUTHORIZED);
+        }
+    }
+    
+    @Test
+    public void testGetJobLatencyReportTheirAuthorizedOtherOwner() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        User u = new User();
+        u.setLogin("bob");
+        u.setLoginToRunJobAs("bob");
+        u.setPermissions(Permission.LIST_THEIR_JOBS);
+        when(auth.authenticate(request)).thenReturn(u);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        try {
+            jrs.getJobLatencyReport("joe", null, null, null, null, request);
+            fail("Expected exception");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_UNAUTHORIZED);
+        }
+    }
+    
+    @Test
+    public void testGetJobLatencyReportDaysOutOfRange() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.LIST_ALL_JOBS);
+        when(auth.authenticate(request)).thenReturn(u);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        for (int days : new int[] {0, Constants.MAX_DAYS+1}){
+            try {
+                jrs.getJobLatencyReport(null, days, null, null, null, request);
+                fail("Expected exception");
+            }
+            catch(WebApplicationException wae){
+                assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_BAD_REQUEST);
+            }
+        }
+    }
+    
+    @Test
+    public void testGetJobsCreatedSince() throws Exception {
+        Authenticator auth = mock(Authenticator.class);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        User u = new User();
+        u.setLogin("bob");
+        u.setLoginToRunJobAs("bob");
+        u.setPermissions(Permission.LIST_THEIR_JOBS);
+        when(auth.authenticate(request)).thenReturn(u);
+        JobRestService jrs = new JobRestService();
+        jrs.setAuthenticator(auth);
+        
+        JobObjectifyDAOImpl jobDAO = new JobObjectifyDAOImpl(null);
+        for (String owner : new String[] {"bob","joe"}){
+            Job j = new Job();
+            j.setOwner(owner);
+            jobDAO.insert(j, true);
+        }
+        long since = System.currentTimeMillis() - 60000;
+        List<Job> res = jrs.getJobsCreatedSince(null, since, null, null, 
+                null, request);
+        assertTrue(res.size() == 1);
+        assertTrue(res.get(0).getOwner().equals("bob"));
+        
+        try {
+            jrs.getJobsCreatedSince("joe", since, null, null, null, request);
+            fail("Expected exception");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_UNAUTHORIZED);
+        }
+        
+        try {
+            jrs.getJobsCreatedSince(null, 0L, null, null, null, request);
+            fail("Expected exception");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_BAD_REQUEST);
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2015 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.rest;
+
+import edu.ucsd.crbs.cws.auth.Authenticator;
+import edu.ucsd.crbs.cws.auth.Permission;
+import edu.ucsd.crbs.cws.auth.User;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.mockito.Mockito.*;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestStatusRestService {
+
+    public TestStatusRestService() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+        Logger.getLogger(StatusRestService.class.getName()).setLevel(Level.OFF);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+    
+    private StatusRestService getService(User user) throws Exception {
+        StatusRestService srs = new StatusRestService();
+        Authenticator auth = mock(Authenticator.class);
+        when(auth.authenticate(any(HttpServletRequest.class))).thenReturn(user);
+        srs.setAuthenticator(auth);
+        return srs;
+    }
+    
+    @Test
+    public void testGetMetricsWithoutPermission() throws Exception {
+        User u = new User();
+        u.setPermissions(Permission.LIST_ALL_JOBS);
+        StatusRestService srs = getService(u);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        try {
+            srs.getMetrics(request);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+                    wae.getResponse().getStatus());
+        }
+        try {
+            srs.getMetricsAsText(request);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+                    wae.getResponse().getStatus());
+        }
+    }
+    
+    @Test
+    public void testGetMetricsWhenAuthenticationFails() throws Exception {
+        StatusRestService srs = new StatusRestService();
+        Authenticator auth = mock(Authenticator.class);
+        when(auth.authenticate(any(HttpServletRequest.class)))
+                .thenThrow(new Exception("bad token"));
+        srs.setAuthenticator(auth);
+        try {
+            srs.getMetrics(mock(HttpServletRequest.class));
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertEquals(HttpServletResponse.SC_UNAUTHORIZED,
+                    wae.getResponse().getStatus());
+        }
+    }
+    
+    @Test
+    public void testGetMetricsWithPermission() throws Exception {
+        User u = new User();
+        u.setPermissions(Permission.VIEW_METRICS);
+        StatusRestService srs = getService(u);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        assertNotNull(srs.getMetrics(request));
+        assertNotNull(srs.getMetricsAsText(request));
+    }
+}
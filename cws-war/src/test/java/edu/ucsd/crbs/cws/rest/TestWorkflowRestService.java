@@ -44,11 +44,18 @@ import edu.ucsd.crbs.cws.dao.EventDAO;
 import edu.ucsd.crbs.cws.dao.WorkflowDAO;
 import static edu.ucsd.crbs.cws.dao.objectify.OfyService.ofy;
 import edu.ucsd.crbs.cws.dao.objectify.WorkflowObjectifyDAOImpl;
+import edu.ucsd.crbs.cws.gae.DeferredTaskSubmitter;
+import edu.ucsd.crbs.cws.gae.WorkflowChunkExpiryTask;
+import edu.ucsd.crbs.cws.gae.WorkflowChunkStore;
 import edu.ucsd.crbs.cws.log.Event;
 import edu.ucsd.crbs.cws.log.EventBuilder;
 import edu.ucsd.crbs.cws.workflow.Workflow;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import com.google.common.hash.Hashing;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
@@ -62,7 +69,12 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -76,7 +88,8 @@ import static org.mockito.Mockito.when;
 public class TestWorkflowRestService {
 
     private final LocalServiceTestHelper _helper
-            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
                     new LocalBlobstoreServiceTestConfig());
 
     
@@ -470,6 +483,162 @@ public class TestWorkflowRestService {
         verify(workflowDAO).delete(1L, Boolean.TRUE);
 //        verify(eventBuilder).setAsDeleteWorkflowEvent(event, w);
     }
-
     
-}
\ No newline at end of file
+    private WorkflowRestService createServiceForChunkTests(WorkflowDAO workflowDAO,
+            WorkflowChunkStore store,DeferredTaskSubmitter submitter) throws Exception {
+        WorkflowRestService wrs = new WorkflowRestService();
+        Authenticator auth = mock(Authenticator.class);
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.CREATE_WORKFLOW);
+        when(auth.authenticate(null)).thenReturn(u);
+        wrs.setAuthenticator(auth);
+        EventBuilder eventBuilder = mock(EventBuilder.class);
+        when(eventBuilder.createEvent(null,u)).thenReturn(new Event());
+        wrs.setEventBuilder(eventBuilder);
+        wrs.setWorkflowDAO(workflowDAO);
+        wrs.setWorkflowChunkStore(store);
+        wrs.setDeferredTaskSubmitter(submitter);
+        
+        Workflow parent = new Workflow();
+        parent.setId(5L);
+        Workflow w = new Workflow();
+        w.setId(1L);
+        w.setOwner("bob");
+        w.setParentWorkflow(parent);
+        when(workflowDAO.getWorkflowByIdWithoutDropDownFetch(1L)).thenReturn(w);
+        
+        Workflow joes = new Workflow();
+        joes.setId(3L);
+        joes.setOwner("joe");
+        when(workflowDAO.getWorkflowByIdWithoutDropDownFetch(3L)).thenReturn(joes);
+        
+        Workflow hasBlob = new Workflow();
+        hasBlob.setId(4L);
+        hasBlob.setOwner("bob");
+        hasBlob.setBlobKey("existing");
+        when(workflowDAO.getWorkflowByIdWithoutDropDownFetch(4L)).thenReturn(hasBlob);
+        return wrs;
+    }
+    
+    private void checkChunkUploadRefused(WorkflowRestService wrs,long workflowId,
+            int expectedStatus) throws Exception {
+        byte[] data = "hello".getBytes();
+        String hash = Hashing.sha256().hashBytes(data).toString();
+        try {
+            wrs.addWorkflowFileChunk(workflowId, hash, data, null, null, null, null);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == expectedStatus);
+        }
+        try {
+            wrs.assembleWorkflowFile(workflowId, Arrays.asList(hash), null, null, null, null);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == expectedStatus);
+        }
+    }
+    
+    @Test
+    public void testAddWorkflowFileChunk() throws Exception {
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        WorkflowChunkStore store = mock(WorkflowChunkStore.class);
+        DeferredTaskSubmitter submitter = mock(DeferredTaskSubmitter.class);
+        WorkflowRestService wrs = createServiceForChunkTests(workflowDAO, store,
+                submitter);
+        
+        byte[] data = "hello".getBytes();
+        String hash = Hashing.sha256().hashBytes(data).toString();
+        
+        //hash does not match
+        try {
+            wrs.addWorkflowFileChunk(1L, "abc", data, null, null, null, null);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_BAD_REQUEST);
+        }
+        
+        //empty chunk
+        try {
+            wrs.addWorkflowFileChunk(1L, hash, new byte[0], null, null, null, null);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_BAD_REQUEST);
+        }
+        
+        //no workflow
+        try {
+            wrs.addWorkflowFileChunk(2L, hash, data, null, null, null, null);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_NOT_FOUND);
+        }
+        verify(store, never()).saveChunk(anyLong(), anyString(), any(byte[].class));
+        
+        wrs.addWorkflowFileChunk(1L, hash, data, null, null, null, null);
+        verify(store).saveChunk(1L, hash, data);
+        verify(submitter).submit(eq(WorkflowChunkExpiryTask.TASK_NAME_PREFIX+"1"),
+                any(WorkflowChunkExpiryTask.class), 
+                eq(WorkflowChunkExpiryTask.EXPIRY_MILLIS));
+        
+        //drop down values are never fetched
+        verify(workflowDAO, never()).getWorkflowById(anyString(), any(User.class));
+    }
+    
+    @Test
+    public void testChunkUploadToOtherUsersWorkflow() throws Exception {
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        WorkflowChunkStore store = mock(WorkflowChunkStore.class);
+        WorkflowRestService wrs = createServiceForChunkTests(workflowDAO, store,
+                mock(DeferredTaskSubmitter.class));
+        checkChunkUploadRefused(wrs, 3L, HttpServletResponse.SC_UNAUTHORIZED);
+        verify(store, never()).saveChunk(anyLong(), anyString(), any(byte[].class));
+        verify(workflowDAO, never()).updateBlobKey(anyLong(), anyString());
+    }
+    
+    @Test
+    public void testChunkUploadToWorkflowWithFile() throws Exception {
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        WorkflowChunkStore store = mock(WorkflowChunkStore.class);
+        WorkflowRestService wrs = createServiceForChunkTests(workflowDAO, store,
+                mock(DeferredTaskSubmitter.class));
+        checkChunkUploadRefused(wrs, 4L, HttpServletResponse.SC_CONFLICT);
+        verify(store, never()).saveChunk(anyLong(), anyString(), any(byte[].class));
+        verify(workflowDAO, never()).updateBlobKey(anyLong(), anyString());
+    }
+    
+    @Test
+    public void testAssembleWorkflowFile() throws Exception {
+        WorkflowDAO workflowDAO = mock(WorkflowDAO.class);
+        WorkflowChunkStore store = mock(WorkflowChunkStore.class);
+        WorkflowRestService wrs = createServiceForChunkTests(workflowDAO, store,
+                mock(DeferredTaskSubmitter.class));
+        
+        try {
+            wrs.assembleWorkflowFile(1L, null, null, null, null, null);
+            fail("Expected WebApplicationException");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_BAD_REQUEST);
+        }
+        
+        List<String> hashes = Arrays.asList("a","b","c","b");
+        when(store.getMissingChunks(1L, 5L, hashes)).thenReturn(Arrays.asList("b","c"));
+        List<String> missing = wrs.assembleWorkflowFile(1L, hashes, null, null, null, null);
+        assertTrue(missing.equals(Arrays.asList("b","c")));
+        verify(store, never()).assemble(anyLong(), anyLong(), any(List.class));
+        verify(workflowDAO, never()).updateBlobKey(anyLong(), anyString());
+        
+        when(store.getMissingChunks(1L, 5L, hashes)).thenReturn(new ArrayList<String>());
+        when(store.assemble(1L, 5L, hashes)).thenReturn("key");
+        missing = wrs.assembleWorkflowFile(1L, hashes, null, null, null, null);
+        assertTrue(missing.isEmpty());
+        verify(workflowDAO).updateBlobKey(1L, "key");
+        verify(workflowDAO, never()).getWorkflowById(anyString(), any(User.class));
+    }
+}
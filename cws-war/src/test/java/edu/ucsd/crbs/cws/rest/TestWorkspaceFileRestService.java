@@ -43,6 +43,8 @@ import edu.ucsd.crbs.cws.log.EventBuilder;
 import edu.ucsd.crbs.cws.workflow.WorkspaceFile;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReport;
 import edu.ucsd.crbs.cws.workflow.report.DeleteReportImpl;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletResponse;
@@ -377,6 +379,167 @@ public class TestWorkspaceFileRestService {
         verify(eventBuilder).setAsDeleteWorkspaceFileEvent(event, wsf);
     }
     
+    @Test
+    public void testCreateWorkspaceFileWithDedupAndMatchingMd5() throws Exception {
+        WorkspaceFileRestService wrs = new WorkspaceFileRestService();
+        Authenticator auth = mock(Authenticator.class);
+        wrs.setAuthenticator(auth);
+        
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.CREATE_WORKSPACEFILE);
+        when(auth.authenticate(null)).thenReturn(u);
+        
+        EventBuilder eventBuilder = mock(EventBuilder.class);
+        Event event = new Event();
+        when(eventBuilder.createEvent(null,u)).thenReturn(event);
+        wrs.setEventBuilder(eventBuilder);
+        wrs.setEventDAO(mock(EventDAO.class));
+        
+        WorkspaceFileDAO workspaceFileDAO = mock(WorkspaceFileDAO.class);
+        wrs.setWorkspaceFileDAO(workspaceFileDAO);
+        
+        WorkspaceFile existing = new WorkspaceFile();
+        existing.setId(5L);
+        existing.setMd5("abc");
+        existing.setBlobKey("key");
+        existing.setSize(10L);
+        when(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob")).thenReturn(existing);
+        
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setName("foo");
+        wsf.setMd5("abc");
+        when(workspaceFileDAO.insert(wsf, false)).thenReturn(wsf);
+        
+        WorkspaceFile res = wrs.createWorkspaceFile(wsf, Boolean.TRUE, Boolean.TRUE,
+                null, null, null, null);
+        assertTrue(res == wsf);
+        assertTrue(res.getBlobKey().equals("key"));
+        assertTrue(res.getSize() == 10L);
+        assertTrue(res.getUploadURL() == null);
+        assertTrue(res.getOwner().equals("bob"));
+        verify(workspaceFileDAO).insert(wsf, false);
+    }
     
+    @Test
+    public void testCreateWorkspaceFilesSetsOwner() throws Exception {
+        WorkspaceFileRestService wrs = new WorkspaceFileRestService();
+        Authenticator auth = mock(Authenticator.class);
+        wrs.setAuthenticator(auth);
+        
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.CREATE_WORKSPACEFILE);
+        when(auth.authenticate(null)).thenReturn(u);
+        
+        EventBuilder eventBuilder = mock(EventBuilder.class);
+        when(eventBuilder.createEvent(null,u)).thenReturn(new Event());
+        wrs.setEventBuilder(eventBuilder);
+        wrs.setEventDAO(mock(EventDAO.class));
+        
+        WorkspaceFileDAO workspaceFileDAO = mock(WorkspaceFileDAO.class);
+        wrs.setWorkspaceFileDAO(workspaceFileDAO);
+        
+        List<WorkspaceFile> wsfList = new ArrayList<>();
+        for (int i = 0; i < 2; i++){
+            WorkspaceFile wsf = new WorkspaceFile();
+            wsf.setOwner("joe");
+            wsfList.add(wsf);
+        }
+        when(workspaceFileDAO.insertAll(wsfList)).thenReturn(wsfList);
+        
+        List<WorkspaceFile> res = wrs.createWorkspaceFiles(wsfList, null, null, 
+                null, null);
+        assertTrue(res.size() == 2);
+        for (WorkspaceFile wsf : res){
+            assertTrue(wsf.getOwner().equals("bob"));
+        }
+        verify(workspaceFileDAO).insertAll(wsfList);
+        
+        u.setPermissions(Permission.NONE);
+        try {
+            wrs.createWorkspaceFiles(wsfList, null, null, null, null);
+            fail("Expected exception");
+        }
+        catch(WebApplicationException wae){
+            assertTrue(wae.getResponse().getStatus() == HttpServletResponse.SC_UNAUTHORIZED);
+        }
+    }
     
-}
\ No newline at end of file
+    @Test
+    public void testCreateWorkspaceFileWithDedupAndNoMatchingMd5() throws Exception {
+        WorkspaceFileRestService wrs = new WorkspaceFileRestService();
+        Authenticator auth = mock(Authenticator.class);
+        wrs.setAuthenticator(auth);
+        
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.CREATE_WORKSPACEFILE);
+        when(auth.authenticate(null)).thenReturn(u);
+        
+        EventBuilder eventBuilder = mock(EventBuilder.class);
+        when(eventBuilder.createEvent(null,u)).thenReturn(new Event());
+        wrs.setEventBuilder(eventBuilder);
+        wrs.setEventDAO(mock(EventDAO.class));
+        
+        WorkspaceFileDAO workspaceFileDAO = mock(WorkspaceFileDAO.class);
+        wrs.setWorkspaceFileDAO(workspaceFileDAO);
+        
+        WorkspaceFile wsf = new WorkspaceFile();
+        wsf.setName("foo");
+        wsf.setMd5("abc");
+        when(workspaceFileDAO.insert(wsf, false)).thenReturn(wsf);
+        
+        WorkspaceFile res = wrs.createWorkspaceFile(wsf, Boolean.FALSE, Boolean.TRUE,
+                null, null, null, null);
+        assertTrue(res.getBlobKey() == null);
+        verify(workspaceFileDAO).getWorkspaceFileWithBlobByMd5("abc","bob");
+        
+        //without dedup no lookup is done
+        wrs.createWorkspaceFile(wsf, Boolean.FALSE, null, null, null, null, null);
+        verify(workspaceFileDAO, times(1)).getWorkspaceFileWithBlobByMd5("abc","bob");
+    }
+    
+    @Test
+    public void testGetWorkspaceFilesByMd5OnlyReturnsCallersFiles() throws Exception {
+        WorkspaceFileRestService wrs = new WorkspaceFileRestService();
+        Authenticator auth = mock(Authenticator.class);
+        wrs.setAuthenticator(auth);
+        
+        User u = new User();
+        u.setLogin("bob");
+        u.setPermissions(Permission.LIST_THEIR_WORKSPACEFILES);
+        when(auth.authenticate(null)).thenReturn(u);
+        
+        EventBuilder eventBuilder = mock(EventBuilder.class);
+        when(eventBuilder.createEvent(null,u)).thenReturn(new Event());
+        wrs.setEventBuilder(eventBuilder);
+        
+        WorkspaceFileDAO workspaceFileDAO = mock(WorkspaceFileDAO.class);
+        wrs.setWorkspaceFileDAO(workspaceFileDAO);
+        WorkspaceFile existing = new WorkspaceFile();
+        existing.setId(5L);
+        existing.setBlobKey("key");
+        when(workspaceFileDAO.getWorkspaceFileWithBlobByMd5("abc","bob")).thenReturn(existing);
+        
+        List<WorkspaceFile> res = wrs.getWorkspaceFiles(null, null, null, null, 
+                null, null, null, "abc", null, null, null, null);
+        assertTrue(res.size() == 1);
+        assertTrue(res.get(0) == existing);
+        
+        res = wrs.getWorkspaceFiles(null, null, null, null, 
+                null, null, null, "def", null, null, null, null);
+        assertTrue(res.isEmpty());
+        
+        //cannot look up md5 of files owned by someone else
+        try {
+            wrs.getWorkspaceFiles("joe", null, null, null, 
+                null, null, null, "abc", null, null, null, null);
+            fail("Expected exception");
+        }
+        catch(WebApplicationException wae){
+            
+        }
+        verify(workspaceFileDAO,never()).getWorkspaceFileWithBlobByMd5("abc","joe");
+    }
+}
@@ -62,7 +62,8 @@ import static org.mockito.Mockito.*;
 public class TestUsersServlet {
 
     private final LocalServiceTestHelper _helper
-            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig(),
+            = new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy(),
                     new LocalBlobstoreServiceTestConfig());
 
     public TestUsersServlet() {
@@ -61,7 +61,8 @@ public class TestWorkflowDownloaderImpl {
 
     
      private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy());
 
     
     public TestWorkflowDownloaderImpl() {
@@ -65,7 +65,8 @@ public class TestWorkflowFile {
 
     
     private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy());
     
     public TestWorkflowFile() {
     }
@@ -61,7 +61,8 @@ import static org.mockito.Mockito.*;
 public class TestWorkspaceFileDownloader {
 
       private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy());
 
     
     public TestWorkspaceFileDownloader() {
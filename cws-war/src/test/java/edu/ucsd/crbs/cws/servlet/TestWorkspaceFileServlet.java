@@ -65,7 +65,8 @@ import static org.mockito.Mockito.when;
 public class TestWorkspaceFileServlet {
     
         private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy());
 
     
     public TestWorkspaceFileServlet() {
@@ -134,4 +134,148 @@ public class TestJob {
         t.setError("some error");
         assertTrue(t.getSummaryOfErrors().equals("JobError: some error\nParameter: name=someparam,value=3,error=bad\nParameter: name=m,value=v,error=x\n"));
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testAddStatusChange(){
+        Job t = new Job();
+        assertNull(t.getStatusTimeline());
+        assertNull(t.getDateStatusEntered(Job.PENDING_STATUS));
+        t.addStatusChange(null, new Date(1L));
+        assertNull(t.getStatusTimeline());
+        
+        t.addStatusChange(Job.IN_QUEUE_STATUS, new Date(1L));
+        t.addStatusChange(Job.IN_QUEUE_STATUS, new Date(2L));
+        t.addStatusChange(Job.PENDING_STATUS, new Date(3L));
+        t.addStatusChange(Job.IN_QUEUE_STATUS, new Date(4L));
+        assertTrue(t.getStatusTimeline().size() == 3);
+        assertTrue(t.getDateStatusEntered(Job.IN_QUEUE_STATUS).getTime() == 1L);
+        assertTrue(t.getDateStatusEntered(Job.PENDING_STATUS).getTime() == 3L);
+        assertNull(t.getDateStatusEntered(Job.RUNNING_STATUS));
+        assertNull(t.getDateStatusEntered(null));
+    }
+    
+    @Test
+    public void testUpdateStatusTimeline(){
+        Job t = new Job();
+        t.setStatus(Job.IN_QUEUE_STATUS);
+        t.addStatusChange(Job.RUNNING_STATUS, new Date(1L));
+        t.updateStatusTimeline(null, new Date(2L));
+        assertTrue(t.getStatusTimeline().size() == 1);
+        assertTrue(t.getDateStatusEntered(Job.IN_QUEUE_STATUS).getTime() == 2L);
+        
+        Job updated = new Job();
+        updated.setStatus(Job.PENDING_STATUS);
+        updated.updateStatusTimeline(t, new Date(3L));
+        assertTrue(updated.getStatusTimeline().size() == 2);
+        assertTrue(t.getStatusTimeline().size() == 1);
+        
+        updated.updateStatusTimeline(updated, new Date(4L));
+        assertTrue(updated.getStatusTimeline().size() == 2);
+        assertTrue(updated.getDateStatusEntered(Job.PENDING_STATUS).getTime() == 3L);
+    }
+    
+    @Test
+    public void testGetWorkflowId(){
+        Job.REFS_ENABLED = false;
+        try {
+            Job t = new Job();
+            assertNull(t.getWorkflowId());
+            Workflow w = new Workflow();
+            w.setId(5L);
+            t.setWorkflow(w);
+            assertTrue(t.getWorkflowId() == 5L);
+        }
+        finally {
+            Job.REFS_ENABLED = true;
+        }
+    }
+    
+    @Test
+    public void testWorkflowSummaryOnly(){
+        Job.REFS_ENABLED = false;
+        try {
+            Job t = new Job();
+            Workflow w = new Workflow();
+            w.setId(5L);
+            w.setName("wf");
+            w.setVersion(2);
+            w.setParameters(new ArrayList<WorkflowParameter>());
+            t.setWorkflow(w);
+            assertNull(t.getWorkflowSummary());
+            
+            //no summary so flag is ignored
+            t.setWorkflowSummaryOnly(true);
+            assertTrue(t.getWorkflow() == w);
+            
+            t.setWorkflowSummary(new WorkflowSummary(w));
+            assertTrue(t.getWorkflow() != w);
+            assertTrue(t.getWorkflow().getId() == 5L);
+            assertTrue(t.getWorkflow().getName().equals("wf"));
+            assertTrue(t.getWorkflow().getVersion() == 2);
+            assertNull(t.getWorkflow().getParameters());
+            
+            //setting workflow clears flag
+            t.setWorkflow(w);
+            assertFalse(t.isWorkflowSummaryOnly());
+            assertTrue(t.getWorkflow() == w);
+        }
+        finally {
+            Job.REFS_ENABLED = true;
+        }
+    }
+    
+    @Test
+    public void testIsActive(){
+        Job t = new Job();
+        assertFalse(t.isActive());
+        for (String status : Job.ACTIVE_STATUSES){
+            t.setStatus(status);
+            assertTrue(status,t.isActive());
+        }
+        t.setStatus(Job.COMPLETED_STATUS);
+        assertFalse(t.isActive());
+        t.setStatus(Job.ERROR_STATUS);
+        assertFalse(t.isActive());
+        t.setStatus(null);
+        assertFalse(t.isActive());
+        assertFalse(Job.isActiveStatus(""));
+    }
+    
+    @Test
+    public void testUpdateWithChanges(){
+        Job t = new Job();
+        assertFalse(t.updateWithChanges(null, null, null, null, null, null, 
+                null, null, null, null, null, null));
+        
+        assertTrue(t.updateWithChanges(Job.RUNNING_STATUS, 1L, 2L, 3L, 4L, 
+                5L, 6L, Boolean.TRUE, "7", Boolean.TRUE, "8", "9"));
+        assertTrue(t.getStatus().equals(Job.RUNNING_STATUS));
+        assertTrue(t.isActive());
+        assertTrue(t.getEstimatedCpuInSeconds() == 1L);
+        assertTrue(t.getEstimatedWallTimeInSeconds() == 2L);
+        assertTrue(t.getEstimatedDiskInBytes() == 3L);
+        assertTrue(t.getSubmitDate().getTime() == 4L);
+        assertTrue(t.getStartDate().getTime() == 5L);
+        assertTrue(t.getFinishDate().getTime() == 6L);
+        assertTrue(t.getHasJobBeenSubmittedToScheduler());
+        assertTrue(t.getSchedulerJobId().equals("7"));
+        assertTrue(t.isDeleted());
+        assertTrue(t.getError().equals("8"));
+        assertTrue(t.getDetailedError().equals("9"));
+        
+        //same values again
+        assertFalse(t.updateWithChanges(Job.RUNNING_STATUS, 1L, 2L, 3L, 4L, 
+                5L, 6L, Boolean.TRUE, "7", Boolean.TRUE, "8", "9"));
+        
+        //one value at a time
+        assertTrue(t.updateWithChanges(null, null, null, null, null, 
+                null, 10L, null, null, null, null, null));
+        assertTrue(t.getFinishDate().getTime() == 10L);
+        assertTrue(t.updateWithChanges(null, null, null, null, null, 
+                null, null, null, null, Boolean.FALSE, null, null));
+        assertFalse(t.isDeleted());
+        assertTrue(t.updateWithChanges(Job.COMPLETED_STATUS, null, null, 
+                null, null, null, null, null, null, null, null, null));
+        assertFalse(t.isActive());
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestVersionOneWorkflowXmlWriter {
+
+    public static final String HEADER = "<?xml version=\"1.0\" standalone=\"no\"?>\n"
+            + "<entity name=\"foo\" class=\"ptolemy.actor.TypedCompositeActor\">\n"
+            + "\t<property name=\"WORKFLOWID\" value=\"5\"/>\n"
+            + "\t<property name=\"CAMERA_outputdir\" class=\"ptolemy.data.expr.StringParameter\" value=\"\"/>\n"
+            + "\t<property name=\"CAMERA_userid\" class=\"ptolemy.data.expr.StringParameter\" value=\"\"/>\n"
+            + "\t<property name=\"CAMERA_taskid\" class=\"ptolemy.data.expr.StringParameter\" value=\"\"/>\n"
+            + "\t<property name=\"CAMERA_taskname\" class=\"ptolemy.data.expr.StringParameter\" value=\"\"/>\n";
+    
+    public static final String FOOTER = "</entity>\n";
+    
+    public TestVersionOneWorkflowXmlWriter() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+    
+    private Workflow getWorkflow(){
+        Workflow w = new Workflow();
+        w.setId(5L);
+        w.setName("foo");
+        return w;
+    }
+    
+    private String getProperty(final String indent,final String name,final String value,
+            final String end){
+        return indent+"<property name=\""+name
+                +"\" class=\"ptolemy.data.expr.StringParameter\" value=\""+value+"\""+end+"\n";
+    }
+    
+    @Test
+    public void testNullArguments() throws Exception {
+        VersionOneWorkflowXmlWriter writer = new VersionOneWorkflowXmlWriter();
+        try {
+            writer.write(null, getWorkflow());
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertEquals("Writer is null",iae.getMessage());
+        }
+        try {
+            writer.write(new StringWriter(), null);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertEquals("Workflow is null",iae.getMessage());
+        }
+    }
+
+    @Test
+    public void testWorkflowWithNoParameters() throws Exception {
+        VersionOneWorkflowXmlWriter writer = new VersionOneWorkflowXmlWriter();
+        StringWriter sw = new StringWriter();
+        writer.write(sw, getWorkflow());
+        assertEquals(HEADER+FOOTER,sw.toString());
+    }
+    
+    @Test
+    public void testWorkflowWithParameters() throws Exception {
+        Workflow w = getWorkflow();
+        List<WorkflowParameter> params = new ArrayList<>();
+        
+        WorkflowParameter text = new WorkflowParameter();
+        text.setName("text");
+        text.setDisplayName("Text");
+        text.setValue("hi");
+        text.setHelp("line one\n12345678901234567890123456789012345678901234567890123456789012345678901234567890");
+        text.setIsAdvanced(true);
+        text.setIsRequired(true);
+        text.setValidationType("string");
+        text.setValidationHelp("help");
+        text.setValidationRegex("^[a-z]+$");
+        params.add(text);
+        
+        WorkflowParameter dropdown = new WorkflowParameter();
+        dropdown.setName("dd");
+        dropdown.setDisplayName("Drop Down");
+        dropdown.setType("dropdown");
+        dropdown.setValue("a==1");
+        dropdown.setNameValueDelimiter("==");
+        params.add(dropdown);
+        
+        WorkflowParameter hidden = new WorkflowParameter();
+        hidden.setName("hid");
+        hidden.setDisplayName("Hidden");
+        hidden.setType("hidden");
+        hidden.setValue("x");
+        params.add(hidden);
+        
+        WorkflowParameter checkbox = new WorkflowParameter();
+        checkbox.setName("cb");
+        checkbox.setDisplayName("Check");
+        checkbox.setType("checkbox");
+        checkbox.setValue("true");
+        params.add(checkbox);
+        
+        WorkflowParameter file = new WorkflowParameter();
+        file.setName("file");
+        file.setDisplayName("File");
+        file.setType("file");
+        file.setValue("http://foo/workspacefiles?a=1&b=2");
+        file.setNameValueDelimiter("::");
+        params.add(file);
+        w.setParameters(params);
+        
+        String expected = HEADER
+                + getProperty("\t","text","hi",">")
+                + "\t\t<display name=\"Text\"/>\n"
+                + getProperty("\t\t","tooltip","&lt;pre&gt;line one&lt;br/&gt;"
+                        + "12345678901234567890123456789012345678901234567890123456789012345678901234567"
+                        + "&lt;br/&gt;890&lt;/pre&gt;","/>")
+                + getProperty("\t\t","advanced","true","/>")
+                + getProperty("\t\t","inputtype","string","/>")
+                + getProperty("\t\t","inputtypehelp","help","/>")
+                + getProperty("\t\t","stringregex","^[a-z]+$","/>")
+                + getProperty("\t\t","required","true","/>")
+                + "\t</property>\n"
+                + getProperty("\t","dd","a==1",">")
+                + "\t\t<display name=\"Drop Down\"/>\n"
+                + getProperty("\t\t","displaytype","dropdown","/>")
+                + getProperty("\t\t","delimitervalue","==","/>")
+                + "\t</property>\n"
+                + getProperty("\t","hid","x",">")
+                + "\t\t<display name=\"Hidden\"/>\n"
+                + getProperty("\t\t","hidden","true","/>")
+                + "\t</property>\n"
+                + getProperty("\t","cb","true",">")
+                + "\t\t<display name=\"Check\"/>\n"
+                + getProperty("\t\t","displaytype","checkbox","/>")
+                + "\t</property>\n"
+                + getProperty("\t","file","http://foo/workspacefiles/aslist?a=1&amp;b=2",">")
+                + "\t\t<display name=\"File\"/>\n"
+                + getProperty("\t\t","displaytype","dropdown","/>")
+                + getProperty("\t\t","delimitervalue","==","/>")
+                + "\t</property>\n"
+                + FOOTER;
+        
+        VersionOneWorkflowXmlWriter writer = new VersionOneWorkflowXmlWriter();
+        StringWriter sw = new StringWriter();
+        writer.write(sw, w);
+        assertEquals(expected,sw.toString());
+        
+        //writing does not alter the parameters so output is the same
+        assertEquals("::",file.getNameValueDelimiter());
+        sw = new StringWriter();
+        writer.write(sw, w);
+        assertEquals(expected,sw.toString());
+    }
+    
+    @Test
+    public void testValuesAreEscaped() throws Exception {
+        Workflow w = getWorkflow();
+        w.setName("a \"b\" & <c>");
+        List<WorkflowParameter> params = new ArrayList<>();
+        WorkflowParameter text = new WorkflowParameter();
+        text.setName("text");
+        text.setDisplayName("x < y");
+        text.setValue("\"quoted\" & more");
+        params.add(text);
+        w.setParameters(params);
+        
+        VersionOneWorkflowXmlWriter writer = new VersionOneWorkflowXmlWriter();
+        StringWriter sw = new StringWriter();
+        writer.write(sw, w);
+        String res = sw.toString();
+        assertTrue(res, res.contains("<entity name=\"a &quot;b&quot; &amp; &lt;c&gt;\""));
+        assertTrue(res, res.contains("<display name=\"x &lt; y\"/>"));
+        assertTrue(res, res.contains("value=\"&quot;quoted&quot; &amp; more\">"));
+    }
+    
+    @Test
+    public void testSharedWriterAcrossThreads() throws Exception {
+        final VersionOneWorkflowXmlWriter writer = new VersionOneWorkflowXmlWriter();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++){
+                futures.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        StringWriter sw = new StringWriter();
+                        writer.write(sw, getWorkflow());
+                        return sw.toString();
+                    }
+                }));
+            }
+            for (Future<String> f : futures){
+                assertEquals(HEADER+FOOTER,f.get());
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -6,6 +6,7 @@
 
 package edu.ucsd.crbs.cws.workflow;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -137,4 +138,23 @@ public class TestWorkflow {
     }
     
     
-}
\ No newline at end of file
+    
+    @Test
+    public void testIsFileUploaded() throws Exception {
+        Workflow w = new Workflow();
+        assertFalse(w.isFileUploaded());
+        w.setBlobKey("key");
+        assertTrue(w.isFileUploaded());
+        
+        //blob key is not in JSON but whether file was uploaded is
+        String json = new ObjectMapper().writeValueAsString(w);
+        assertFalse(json.contains("key\""));
+        Workflow fromJson = new ObjectMapper().readValue(json, Workflow.class);
+        assertTrue(fromJson.getBlobKey() == null);
+        assertTrue(fromJson.isFileUploaded());
+        
+        fromJson = new ObjectMapper().readValue(new ObjectMapper()
+                .writeValueAsString(new Workflow()), Workflow.class);
+        assertFalse(fromJson.isFileUploaded());
+    }
+}
@@ -34,6 +34,7 @@
 package edu.ucsd.crbs.cws.workflow;
 
 import edu.ucsd.crbs.cws.io.KeplerMomlFromKar;
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.net.URL;
 import java.nio.file.Path;
@@ -99,6 +100,75 @@ public class TestWorkflowFromAnnotatedVersionTwoFourMomlXmlFactory {
         assertTrue(xmlFactory.getWorkflow() == null);
     }
     
+    @Test
+    public void testWhereWorkflowXmlIsMalformed() throws Exception {
+        WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
+        xmlFactory.setWorkflowXml(new ByteArrayInputStream("<entity><property></entity>".getBytes()));
+        assertTrue(xmlFactory.getWorkflow() == null);
+    }
+    
+    @Test
+    public void testWhereRootElementIsNotEntity() throws Exception {
+        WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
+        xmlFactory.setWorkflowXml(new ByteArrayInputStream(("<class name=\"foo\">"
+                + getRectangleXml("workflowname", false)
+                + getTextXml("My Workflow")+"</class>").getBytes()));
+        Workflow w = xmlFactory.getWorkflow();
+        assertTrue(w != null);
+        assertTrue(w.getName() == null);
+    }
+    
+    @Test
+    public void testOnlyTopLevelPropertiesAreParsed() throws Exception {
+        WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
+        xmlFactory.setWorkflowXml(new ByteArrayInputStream(("<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE entity PUBLIC \"-//UC Berkeley//DTD MoML 1//EN\" "
+                + "\"http://ptolemy.eecs.berkeley.edu/xml/dtd/MoML_1.dtd\">"
+                + "<entity name=\"wf\" class=\"ptolemy.actor.TypedCompositeActor\">"
+                + getRectangleXml("workflowname", false)
+                + getTextXml("My Workflow")
+                + "<entity name=\"sub\" class=\"ptolemy.actor.TypedCompositeActor\">"
+                + getRectangleXml("description", false)
+                + getTextXml("nested")
+                + "</entity></entity>").getBytes()));
+        Workflow w = xmlFactory.getWorkflow();
+        assertTrue(w.getName().equals("My Workflow"));
+        assertTrue(w.getDescription() == null);
+    }
+    
+    @Test
+    public void testCenteredRectangle() throws Exception {
+        WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
+        xmlFactory.setWorkflowXml(new ByteArrayInputStream(("<entity name=\"wf\">"
+                + getRectangleXml("workflowname", true)
+                + getTextXml("My Workflow")
+                + "</entity>").getBytes()));
+        Workflow w = xmlFactory.getWorkflow();
+        
+        //centered rectangle spans -50,-50 to 50,50 so text at 10,10 is 
+        //still inside
+        assertTrue(w.getName().equals("My Workflow"));
+    }
+    
+    private String getRectangleXml(final String name, boolean centered) {
+        return "<property name=\"" + name + "\" class=\""
+                + WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory.RECTANGLE_ATTRIBUTE_CLASS + "\">"
+                + "<property name=\"_location\" class=\"ptolemy.kernel.util.Location\" value=\"[0.0, 0.0]\"/>"
+                + "<property name=\"width\" class=\"ptolemy.data.expr.Parameter\" value=\"100.0\"/>"
+                + "<property name=\"height\" class=\"ptolemy.data.expr.Parameter\" value=\"100.0\"/>"
+                + "<property name=\"centered\" class=\"ptolemy.data.expr.Parameter\" value=\""
+                + Boolean.toString(centered) + "\"/>"
+                + "</property>";
+    }
+    
+    private String getTextXml(final String text) {
+        return "<property name=\"Annotation\" class=\""
+                + WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory.TEXT_ATTRIBUTE_CLASS + "\">"
+                + "<property name=\"text\" class=\"ptolemy.kernel.util.StringAttribute\" value=\"" + text + "\"/>"
+                + "<property name=\"_location\" class=\"ptolemy.kernel.util.Location\" value=\"[10.0, 10.0]\"/>"
+                + "</property>";
+    }
+    
      @Test
     public void testExampleKarInTestResourcesDirectory() throws Exception {
         WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory xmlFactory = new WorkflowFromAnnotatedVersionTwoFourMomlXmlFactory();
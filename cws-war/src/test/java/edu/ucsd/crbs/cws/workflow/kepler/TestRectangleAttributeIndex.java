@@ -0,0 +1,202 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.kepler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestRectangleAttributeIndex {
+
+    public TestRectangleAttributeIndex() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+    
+    private RectangleAttribute createRectangle(double x, double y, double width, double height){
+        RectangleAttribute ra = new RectangleAttribute();
+        ra.setXCoordinate(x);
+        ra.setYCoordinate(y);
+        ra.setWidth(width);
+        ra.setHeight(height);
+        return ra;
+    }
+    
+    private TextAttribute createText(double x, double y){
+        TextAttribute ta = new TextAttribute();
+        ta.setXCoordinate(x);
+        ta.setYCoordinate(y);
+        return ta;
+    }
+
+    @Test
+    public void testNullAndEmpty(){
+        RectangleAttributeIndex index = new RectangleAttributeIndex(null);
+        assertTrue(index.getIntersectingRectangles(null).isEmpty());
+        assertTrue(index.getIntersectingRectangles(createText(0,0)).isEmpty());
+        index.addTextAttributesToIntersectingRectangles(null);
+        index.addParameterAttributesToIntersectingRectangles(null);
+        
+        List<RectangleAttribute> rects = new ArrayList<>();
+        rects.add(null);
+        index = new RectangleAttributeIndex(rects);
+        assertTrue(index.getIntersectingRectangles(createText(0,0)).isEmpty());
+    }
+    
+    @Test
+    public void testEdgesOverlapAndNegativeSize(){
+        List<RectangleAttribute> rects = new ArrayList<>();
+        RectangleAttribute a = createRectangle(0, 0, 10, 10);
+        RectangleAttribute b = createRectangle(5, 5, 10, 10);
+        RectangleAttribute c = createRectangle(100, 100, -10, -10);
+        rects.add(a);
+        rects.add(b);
+        rects.add(c);
+        RectangleAttributeIndex index = new RectangleAttributeIndex(rects);
+        
+        List<RectangleAttribute> res = index.getIntersectingRectangles(createText(0, 0));
+        assertTrue(res.size() == 1 && res.contains(a));
+        
+        res = index.getIntersectingRectangles(createText(10, 10));
+        assertTrue(res.size() == 2 && res.contains(a) && res.contains(b));
+        
+        res = index.getIntersectingRectangles(createText(15, 15));
+        assertTrue(res.size() == 1 && res.contains(b));
+        
+        assertTrue(index.getIntersectingRectangles(createText(15.1, 15)).isEmpty());
+        assertTrue(index.getIntersectingRectangles(createText(-1, 0)).isEmpty());
+        assertTrue(index.getIntersectingRectangles(createText(95, 95)).isEmpty());
+    }
+    
+    @Test
+    public void testHugeAndNonFiniteRectangles(){
+        List<RectangleAttribute> rects = new ArrayList<>();
+        RectangleAttribute small = createRectangle(0, 0, 1, 1);
+        RectangleAttribute huge = createRectangle(-1000000, -1000000, 2000000, 2000000);
+        RectangleAttribute infinite = createRectangle(0, 0, Double.POSITIVE_INFINITY, 5);
+        rects.add(small);
+        rects.add(huge);
+        rects.add(infinite);
+        RectangleAttributeIndex index = new RectangleAttributeIndex(rects);
+        
+        List<RectangleAttribute> res = index.getIntersectingRectangles(createText(0.5, 0.5));
+        assertTrue(res.size() == 3);
+        
+        res = index.getIntersectingRectangles(createText(500000, 1));
+        assertTrue(res.size() == 2 && res.contains(huge) && res.contains(infinite));
+        
+        res = index.getIntersectingRectangles(createText(-500000, -500000));
+        assertTrue(res.size() == 1 && res.contains(huge));
+    }
+    
+    @Test
+    public void testAddAttributesPreservesOrder(){
+        List<RectangleAttribute> rects = new ArrayList<>();
+        RectangleAttribute a = createRectangle(0, 0, 100, 100);
+        rects.add(a);
+        rects.add(createRectangle(200, 200, 100, 100));
+        RectangleAttributeIndex index = new RectangleAttributeIndex(rects);
+        
+        List<TextAttribute> texts = new ArrayList<>();
+        for (int i = 0; i < 5; i++){
+            TextAttribute ta = createText(90 - (i * 10), 10);
+            ta.setText(Integer.toString(i));
+            texts.add(ta);
+        }
+        index.addTextAttributesToIntersectingRectangles(texts);
+        assertTrue(a.getTextFromTextAttributes().equals("0\n1\n2\n3\n4"));
+        
+        List<ParameterAttribute> params = new ArrayList<>();
+        ParameterAttribute pa = new ParameterAttribute();
+        pa.setXCoordinate(250);
+        pa.setYCoordinate(250);
+        params.add(pa);
+        index.addParameterAttributesToIntersectingRectangles(params);
+        assertTrue(a.getIntersectingParameterAttributes() == null);
+        assertTrue(rects.get(1).getIntersectingParameterAttributes().get(0) == pa);
+    }
+    
+    @Test
+    public void testMatchesBruteForceOnRandomCanvas(){
+        Random random = new Random(12345);
+        List<RectangleAttribute> rects = new ArrayList<>();
+        for (int i = 0; i < 300; i++){
+            rects.add(createRectangle(random.nextInt(2000) - 1000,
+                    random.nextInt(2000) - 1000,
+                    random.nextInt(400), random.nextInt(400)));
+        }
+        RectangleAttributeIndex index = new RectangleAttributeIndex(rects);
+        for (int i = 0; i < 2000; i++){
+            TextAttribute ta = createText(random.nextDouble() * 3000 - 1500,
+                    random.nextDouble() * 3000 - 1500);
+            HashSet<RectangleAttribute> expected = new HashSet<>();
+            for (RectangleAttribute ra : rects){
+                if (ra.doesIntersect(ta)){
+                    expected.add(ra);
+                }
+            }
+            List<RectangleAttribute> res = index.getIntersectingRectangles(ta);
+            assertEquals(expected.size(), res.size());
+            assertEquals(expected, new HashSet<>(res));
+        }
+    }
+}
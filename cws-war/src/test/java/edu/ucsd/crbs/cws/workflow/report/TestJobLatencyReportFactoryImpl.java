@@ -0,0 +1,212 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.report;
+
+import edu.ucsd.crbs.cws.workflow.Job;
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestJobLatencyReportFactoryImpl {
+
+    public TestJobLatencyReportFactoryImpl() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() {
+        Job.REFS_ENABLED = false;
+    }
+
+    @After
+    public void tearDown() {
+        Job.REFS_ENABLED = true;
+    }
+    
+    private Job createJob(long id,final String owner,long workflowId,long createSecs){
+        Job j = new Job();
+        j.setId(id);
+        j.setOwner(owner);
+        Workflow w = new Workflow();
+        w.setId(workflowId);
+        j.setWorkflow(w);
+        j.setCreateDate(new Date(createSecs*1000L));
+        return j;
+    }
+    
+    private void addStatus(Job j,final String status,long secs){
+        j.setStatus(status);
+        j.addStatusChange(status, new Date(secs*1000L));
+    }
+
+    @Test
+    public void testEmptyAndNullLists(){
+        JobLatencyReportFactoryImpl factory = new JobLatencyReportFactoryImpl();
+        Date since = new Date(1L);
+        Date now = new Date(2L);
+        JobLatencyReport report = factory.getJobLatencyReport(null, null, since, now);
+        assertEquals(since,report.getSince());
+        assertEquals(now,report.getCreateDate());
+        assertEquals(0,report.getOverall().getJobCount());
+        assertEquals(0,report.getOverall().getQueueWait().getCount());
+        assertTrue(report.getByOwner().isEmpty());
+        assertTrue(report.getByWorkflow().isEmpty());
+        assertTrue(report.getBacklog().isEmpty());
+        assertNull(report.getOldestActiveJobAgeInSeconds());
+        assertNull(report.getOldestUnsubmittedJobId());
+        
+        report = factory.getJobLatencyReport(new ArrayList<Job>(), 
+                new ArrayList<Job>(), since, now);
+        assertEquals(0,report.getOverall().getJobCount());
+        assertNull(report.getOldestActiveJobId());
+    }
+    
+    @Test
+    public void testLatencyStatsFromTimeline(){
+        List<Job> jobs = new ArrayList<>();
+        
+        //waits 100 seconds in queue, 50 pending, runs 20 seconds
+        Job j = createJob(1L,"bob",10L,0);
+        addStatus(j,Job.IN_QUEUE_STATUS,0);
+        addStatus(j,Job.PENDING_STATUS,100);
+        addStatus(j,Job.RUNNING_STATUS,150);
+        addStatus(j,Job.COMPLETED_STATUS,170);
+        jobs.add(j);
+        
+        //waits 10 seconds and fails after 5 seconds
+        j = createJob(2L,"joe",11L,1000);
+        addStatus(j,Job.IN_QUEUE_STATUS,1000);
+        addStatus(j,Job.RUNNING_STATUS,1010);
+        addStatus(j,Job.ERROR_STATUS,1015);
+        jobs.add(j);
+        
+        //job without timeline falls back to start and finish dates
+        j = createJob(3L,"bob",10L,2000);
+        j.setStartDate(new Date(2030*1000L));
+        j.setFinishDate(new Date(2090*1000L));
+        jobs.add(j);
+        
+        //job that has not started yet
+        j = createJob(4L,"bob",10L,3000);
+        addStatus(j,Job.IN_QUEUE_STATUS,3000);
+        jobs.add(j);
+        
+        JobLatencyReportFactoryImpl factory = new JobLatencyReportFactoryImpl();
+        JobLatencyReport report = factory.getJobLatencyReport(jobs, null, 
+                new Date(0), new Date(4000*1000L));
+        
+        JobLatencyStats overall = report.getOverall();
+        assertEquals(4,overall.getJobCount());
+        assertEquals(3,overall.getQueueWait().getCount());
+        assertEquals(150.0,overall.getQueueWait().getMax(),1.0);
+        assertEquals(30.0,overall.getQueueWait().getP50(),0.5);
+        assertEquals(3,overall.getRunTime().getCount());
+        assertEquals(60.0,overall.getRunTime().getMax(),0.5);
+        
+        assertEquals(2,overall.getTimeInStatus().get(Job.IN_QUEUE_STATUS).getCount());
+        assertEquals(100.0,overall.getTimeInStatus().get(Job.IN_QUEUE_STATUS).getMax(),1.0);
+        assertEquals(50.0,overall.getTimeInStatus().get(Job.PENDING_STATUS).getP50(),0.5);
+        assertEquals(2,overall.getTimeInStatus().get(Job.RUNNING_STATUS).getCount());
+        assertNull(overall.getTimeInStatus().get(Job.COMPLETED_STATUS));
+        
+        assertEquals(2,report.getByOwner().size());
+        assertEquals(3,report.getByOwner().get("bob").getJobCount());
+        assertEquals(1,report.getByOwner().get("joe").getJobCount());
+        assertEquals(10.0,report.getByOwner().get("joe").getQueueWait().getP99(),0.1);
+        assertEquals(5.0,report.getByOwner().get("joe").getRunTime().getP50(),0.1);
+        
+        assertEquals(2,report.getByWorkflow().size());
+        assertEquals(3,report.getByWorkflow().get("10").getJobCount());
+        assertEquals(1,report.getByWorkflow().get("11").getJobCount());
+    }
+    
+    @Test
+    public void testBacklog(){
+        List<Job> active = new ArrayList<>();
+        Job j = createJob(1L,"bob",10L,500);
+        j.setStatus(Job.RUNNING_STATUS);
+        j.setHasJobBeenSubmittedToScheduler(true);
+        active.add(j);
+        
+        j = createJob(2L,"bob",10L,800);
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        active.add(j);
+        
+        j = createJob(3L,"bob",10L,700);
+        j.setStatus(Job.WORKSPACE_SYNC_STATUS);
+        active.add(j);
+        
+        j = createJob(4L,"bob",10L,900);
+        j.setStatus(Job.IN_QUEUE_STATUS);
+        active.add(j);
+        
+        j = createJob(5L,"bob",10L,100);
+        j.setCreateDate(null);
+        j.setStatus(Job.PENDING_STATUS);
+        j.setHasJobBeenSubmittedToScheduler(true);
+        active.add(j);
+        
+        JobLatencyReportFactoryImpl factory = new JobLatencyReportFactoryImpl();
+        JobLatencyReport report = factory.getJobLatencyReport(null, active, 
+                new Date(0), new Date(1000*1000L));
+        assertEquals(4,report.getBacklog().size());
+        assertEquals(2L,report.getBacklog().get(Job.IN_QUEUE_STATUS).longValue());
+        assertEquals(1L,report.getBacklog().get(Job.PENDING_STATUS).longValue());
+        assertEquals(1L,report.getOldestActiveJobId().longValue());
+        assertEquals(500L,report.getOldestActiveJobAgeInSeconds().longValue());
+        assertEquals(3L,report.getOldestUnsubmittedJobId().longValue());
+        assertEquals(300L,report.getOldestUnsubmittedJobAgeInSeconds().longValue());
+    }
+}
@@ -43,8 +43,10 @@ import edu.ucsd.crbs.cws.workflow.Job;
 import edu.ucsd.crbs.cws.workflow.Workflow;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -63,7 +65,8 @@ import static org.mockito.Mockito.*;
 public class TestJobValidatorImpl {
 
      private final LocalServiceTestHelper _helper =
-        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+        new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig()
+                    .setApplyAllHighRepJobPolicy());
     
     public TestJobValidatorImpl() {
     }
@@ -277,7 +280,7 @@ public class TestJobValidatorImpl {
        when(mockDAO.getWorkflowForJob(t,u)).thenReturn(w);
        
        ParameterValidator pMock = mock(ParameterValidator.class);
-       when(pMock.validate(param)).thenReturn("error");
+       when(pMock.validate(eq(param),any(Pattern.class))).thenReturn("error");
        tvi._parameterValidator = pMock;
        
        tvi._workflowDAO = mockDAO;
@@ -381,4 +384,135 @@ public class TestJobValidatorImpl {
    }
 
    
-}
\ No newline at end of file
+   
+   @Test
+   public void testValidateAllNullJobs() throws Exception{
+       JobValidatorImpl tvi = new JobValidatorImpl();
+       try {
+           tvi.validateAll(null, new User());
+           fail("Expected exception");
+       }catch(Exception ex){
+           assertTrue(ex.getMessage().startsWith("Jobs cannot be null"));
+       }
+   }
+   
+   @Test
+   public void testValidateAllLoadsEachWorkflowOnce() throws Exception{
+       JobValidatorImpl tvi = new JobValidatorImpl();
+       tvi._jobParamNullChecker = mock(JobParametersChecker.class);
+       tvi._jobParamDuplicateChecker = mock(JobParametersChecker.class);
+       
+       User u = new User();
+       u.setLogin("bob");
+       
+       Workflow w = new Workflow();
+       w.setId(1L);
+       WorkflowParameter wp = new WorkflowParameter();
+       wp.setIsRequired(true);
+       wp.setName("foo");
+       wp.setType(WorkflowParameter.Type.TEXT);
+       ArrayList<WorkflowParameter> wpList = new ArrayList<>();
+       wpList.add(wp);
+       w.setParameters(wpList);
+       
+       ArrayList<Job> jobs = new ArrayList<>();
+       for (int i = 0; i < 3; i++){
+           Job t = new Job();
+           Workflow jobWorkflow = new Workflow();
+           jobWorkflow.setId(i < 2 ? 1L : 2L);
+           t.setWorkflow(jobWorkflow);
+           Parameter param = new Parameter();
+           param.setName("foo");
+           param.setValue("value"+i);
+           ArrayList<Parameter> paramList = new ArrayList<>();
+           paramList.add(param);
+           t.setParameters(paramList);
+           jobs.add(t);
+       }
+       
+       WorkflowDAO mockDAO = mock(WorkflowDAO.class);
+       when(mockDAO.getWorkflowForJob(jobs.get(0),u)).thenReturn(w);
+       when(mockDAO.getWorkflowForJob(jobs.get(2),u)).thenReturn(null);
+       tvi._workflowDAO = mockDAO;
+       
+       List<Job> res = tvi.validateAll(jobs, u);
+       assertTrue(res == jobs);
+       for (int i = 0; i < 2; i++){
+           Job t = res.get(i);
+           assertTrue(t.getError() == null);
+           assertTrue(t.getParametersWithErrors() == null);
+           assertTrue(t.getOwner().equals("bob"));
+           assertTrue(t.getWorkflow() != w);
+           assertTrue(t.getWorkflow().getId() == 1L);
+           assertTrue(t.getParameters().get(0).getWorkflowParameter() == wp);
+       }
+       assertTrue(res.get(0).getWorkflow() != res.get(1).getWorkflow());
+       assertTrue(res.get(2).getError().equals("Unable to load workflow for job"));
+       
+       //the loaded workflow should not be altered by validation
+       assertTrue(w.getParameters().size() == 1);
+       verify(mockDAO, times(2)).getWorkflowForJob(any(Job.class), eq(u));
+   }
+   
+   @Test
+   public void testValidateDoesNotModifyWorkflowAndReusesPlan() throws Exception{
+       JobValidatorImpl tvi = new JobValidatorImpl();
+       tvi._jobParamNullChecker = mock(JobParametersChecker.class);
+       tvi._jobParamDuplicateChecker = mock(JobParametersChecker.class);
+       
+       User u = new User();
+       u.setLogin("bob");
+       
+       Workflow w = new Workflow();
+       w.setId(3L);
+       ArrayList<WorkflowParameter> wpList = new ArrayList<>();
+       WorkflowParameter wp = new WorkflowParameter();
+       wp.setIsRequired(true);
+       wp.setName("foo");
+       wp.setType(WorkflowParameter.Type.TEXT);
+       wp.setValidationType(WorkflowParameter.ValidationType.STRING);
+       wp.setValidationRegex("^a+$");
+       wpList.add(wp);
+       WorkflowParameter wpTwo = new WorkflowParameter();
+       wpTwo.setIsRequired(true);
+       wpTwo.setName("bar");
+       wpTwo.setType(WorkflowParameter.Type.TEXT);
+       wpList.add(wpTwo);
+       w.setParameters(wpList);
+       
+       WorkflowDAO mockDAO = mock(WorkflowDAO.class);
+       when(mockDAO.getWorkflowForJob(any(Job.class),eq(u))).thenReturn(w);
+       tvi._workflowDAO = mockDAO;
+       
+       for (int i = 0; i < 2; i++){
+           Job t = new Job();
+           Parameter param = new Parameter();
+           param.setName("foo");
+           param.setValue(i == 0 ? "aaa" : "b");
+           ArrayList<Parameter> paramList = new ArrayList<>();
+           paramList.add(param);
+           t.setParameters(paramList);
+           
+           Job res = tvi.validate(t, u);
+           assertTrue(res.getError() == null);
+           assertTrue(res.getWorkflow() == w);
+           List<ParameterWithError> errors = res.getParametersWithErrors();
+           if (i == 0){
+               assertTrue(errors.size() == 1);
+               assertTrue(res.getParameters().get(0).getWorkflowParameter() == wp);
+           }
+           else {
+               assertTrue(errors.size() == 2);
+               assertTrue(errors.get(1).getName().equals("foo"));
+               assertTrue(errors.get(1).getError().startsWith("String does not match regex"));
+           }
+           assertTrue(errors.get(0).getName().equals("bar"));
+           assertTrue(errors.get(0).getError().equals("Required parameter not found"));
+           
+           //workflow parameters are left untouched
+           assertTrue(w.getParameters().size() == 2);
+       }
+       assertTrue(tvi._validationPlanCache.getMisses() == 1);
+       assertTrue(tvi._validationPlanCache.getHits() == 1);
+   }
+}
@@ -36,6 +36,7 @@ package edu.ucsd.crbs.cws.workflow.validate;
 import edu.ucsd.crbs.cws.rest.Constants;
 import edu.ucsd.crbs.cws.workflow.Parameter;
 import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.util.regex.Pattern;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -245,6 +246,28 @@ public class TestParameterValidatorImpl {
         assertTrue(pvi.validate(p).startsWith("Parameter value length:"));
     }
     
+    @Test
+    public void testStringValidationWithPrecompiledPattern(){
+        ParameterValidator pvi = new ParameterValidatorImpl();
+        Parameter p = new Parameter();
+        p.setName("foo");
+        WorkflowParameter wp = new WorkflowParameter();
+        wp.setValidationType(WorkflowParameter.ValidationType.STRING);
+        wp.setIsRequired(false);
+        wp.setValidationRegex("^true|false$");
+        p.setWorkflowParameter(wp);
+        
+        //pattern passed in is used instead of regex in workflow parameter
+        p.setValue("hello");
+        assertTrue(pvi.validate(p,Pattern.compile("^hello$")) == null);
+        assertTrue(pvi.validate(p,Pattern.compile("^bye$")).startsWith("String does not match regex"));
+        
+        //null pattern falls back to regex in workflow parameter
+        assertTrue(pvi.validate(p,null).startsWith("String does not match regex"));
+        p.setValue("true");
+        assertTrue(pvi.validate(p,null) == null);
+    }
+    
     @Test
     public void testEmailValidation(){
         ParameterValidator pvi = new ParameterValidatorImpl();
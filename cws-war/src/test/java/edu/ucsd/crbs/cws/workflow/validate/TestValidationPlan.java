@@ -0,0 +1,150 @@
+/*
+ * COPYRIGHT AND LICENSE
+ * 
+ * Copyright 2014 The Regents of the University of California All Rights Reserved
+ * 
+ * Permission to copy, modify and distribute any part of this CRBS Workflow 
+ * Service for educational, research and non-profit purposes, without fee, and
+ * without a written agreement is hereby granted, provided that the above 
+ * copyright notice, this paragraph and the following three paragraphs appear
+ * in all copies.
+ * 
+ * Those desiring to incorporate this CRBS Workflow Service into commercial 
+ * products or use for commercial purposes should contact the Technology
+ * Transfer Office, University of California, San Diego, 9500 Gilman Drive, 
+ * Mail Code 0910, La Jolla, CA 92093-0910, Ph: (858) 534-5815, 
+ * FAX: (858) 534-7345, E-MAIL:invent@ucsd.edu.
+ * 
+ * IN NO EVENT SHALL THE UNIVERSITY OF CALIFORNIA BE LIABLE TO ANY PARTY FOR 
+ * DIRECT, INDIRECT, SPECIAL, INCIDENTAL, OR CONSEQUENTIAL DAMAGES, INCLUDING 
+ * LOST PROFITS, ARISING OUT OF THE USE OF THIS CRBS Workflow Service, EVEN IF 
+ * THE UNIVERSITY OF CALIFORNIA HAS BEEN ADVISED OF THE POSSIBILITY OF SUCH
+ * DAMAGE.
+ * 
+ * THE CRBS Workflow Service PROVIDED HEREIN IS ON AN "AS IS" BASIS, AND THE
+ * UNIVERSITY OF CALIFORNIA HAS NO OBLIGATION TO PROVIDE MAINTENANCE, SUPPORT, 
+ * UPDATES, ENHANCEMENTS, OR MODIFICATIONS. THE UNIVERSITY OF CALIFORNIA MAKES
+ * NO REPRESENTATIONS AND EXTENDS NO WARRANTIES OF ANY KIND, EITHER IMPLIED OR 
+ * EXPRESS, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF 
+ * MERCHANTABILITY OR FITNESS FOR A PARTICULAR PURPOSE, OR THAT THE USE OF 
+ * THE CRBS Workflow Service WILL NOT INFRINGE ANY PATENT, TRADEMARK OR OTHER
+ * RIGHTS. 
+ */
+
+package edu.ucsd.crbs.cws.workflow.validate;
+
+import edu.ucsd.crbs.cws.workflow.Workflow;
+import edu.ucsd.crbs.cws.workflow.WorkflowParameter;
+import java.util.ArrayList;
+import java.util.BitSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ *
+ * @author Christopher Churas <churas@ncmir.ucsd.edu>
+ */
+@RunWith(JUnit4.class)
+public class TestValidationPlan {
+
+    public TestValidationPlan() {
+    }
+    
+    private WorkflowParameter createParameter(final String name,boolean required,
+            final String regex){
+        WorkflowParameter wp = new WorkflowParameter();
+        wp.setName(name);
+        wp.setIsRequired(required);
+        wp.setValidationRegex(regex);
+        wp.setType(WorkflowParameter.Type.TEXT);
+        return wp;
+    }
+
+    @Test
+    public void testNullWorkflow(){
+        try {
+            new ValidationPlan(null);
+            fail("Expected IllegalArgumentException");
+        }
+        catch(IllegalArgumentException iae){
+            assertTrue(iae.getMessage().equals("Workflow cannot be null"));
+        }
+    }
+    
+    @Test
+    public void testWorkflowWithNullParameters(){
+        Workflow w = new Workflow();
+        w.setId(5L);
+        ValidationPlan plan = new ValidationPlan(w);
+        assertTrue(plan.getWorkflowId() == 5L);
+        assertTrue(plan.getNumberOfParameters() == 0);
+        BitSet used = new BitSet();
+        assertTrue(plan.getIndexOfUnusedParameter("foo", used) == -1);
+        assertTrue(plan.getIndexOfUnusedParameter(null, used) == -1);
+        assertTrue(plan.getNextMissingRequiredIndex(used, 0) == -1);
+    }
+    
+    @Test
+    public void testDuplicateNamesAreReturnedInOrder(){
+        Workflow w = new Workflow();
+        ArrayList<WorkflowParameter> params = new ArrayList<>();
+        params.add(createParameter("foo",false,null));
+        params.add(createParameter("bar",false,null));
+        params.add(createParameter("foo",false,null));
+        w.setParameters(params);
+        ValidationPlan plan = new ValidationPlan(w);
+        assertTrue(plan.getNumberOfParameters() == 3);
+        
+        BitSet used = new BitSet();
+        assertTrue(plan.getIndexOfUnusedParameter("foo", used) == 0);
+        used.set(0);
+        assertTrue(plan.getIndexOfUnusedParameter("foo", used) == 2);
+        used.set(2);
+        assertTrue(plan.getIndexOfUnusedParameter("foo", used) == -1);
+        assertTrue(plan.getIndexOfUnusedParameter("bar", used) == 1);
+        assertTrue(plan.getIndexOfUnusedParameter("nope", used) == -1);
+    }
+    
+    @Test
+    public void testValidationPatterns(){
+        Workflow w = new Workflow();
+        ArrayList<WorkflowParameter> params = new ArrayList<>();
+        params.add(createParameter("foo",false,null));
+        params.add(createParameter("bar",false,"^a+$"));
+        params.add(createParameter("bad",false,"[a-"));
+        w.setParameters(params);
+        ValidationPlan plan = new ValidationPlan(w);
+        assertTrue(plan.getValidationPattern(0) == null);
+        assertTrue(plan.getValidationPattern(1).matcher("aaa").matches());
+        assertFalse(plan.getValidationPattern(1).matcher("b").matches());
+        
+        //invalid regex is left for the validator to report
+        assertTrue(plan.getValidationPattern(2) == null);
+    }
+    
+    @Test
+    public void testGetNextMissingRequiredIndex(){
+        Workflow w = new Workflow();
+        ArrayList<WorkflowParameter> params = new ArrayList<>();
+        params.add(createParameter("a",true,null));
+        params.add(createParameter("b",false,null));
+        params.add(createParameter("c",true,null));
+        params.add(createParameter("d",true,null));
+        w.setParameters(params);
+        ValidationPlan plan = new ValidationPlan(w);
+        
+        BitSet used = new BitSet();
+        assertTrue(plan.getNextMissingRequiredIndex(used, 0) == 0);
+        assertTrue(plan.getNextMissingRequiredIndex(used, 1) == 2);
+        used.set(0);
+        used.set(2);
+        assertTrue(plan.getNextMissingRequiredIndex(used, 0) == 3);
+        used.set(3);
+        assertTrue(plan.getNextMissingRequiredIndex(used, 0) == -1);
+        
+        //plan is not changed by callers bitset
+        assertTrue(plan.getNextMissingRequiredIndex(new BitSet(), 0) == 0);
+    }
+}